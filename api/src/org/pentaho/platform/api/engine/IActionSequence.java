@@ -49,6 +49,23 @@ public interface IActionSequence extends ISequenceDefinition {
    */
   public boolean getLoopUsingPeek();
 
+  /**
+   * Returns how many iterations of the loop may run at the same time. Loops run their iterations one after another
+   * unless they are declared parallel.
+   * 
+   * @return 1 to run the iterations one after another, 0 to use the platform default for parallel loops, otherwise the
+   *         maximum number of iterations to run at once
+   */
+  public int getLoopParallelism();
+
+  /**
+   * Returns whether a parallel loop runs all of its iterations even when some of them fail, reporting the failures
+   * together at the end, instead of stopping at the first failure.
+   * 
+   * @return true to run all iterations, false to stop at the first failure
+   */
+  public boolean getLoopCollectsErrors();
+
   /**
    * Returns whether the ActionSequence has a loop in its definition.
    * 
@@ -0,0 +1,38 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.api.engine;
+
+/**
+ * Bounds the persistence work done on a thread by one request or job, for callers that cannot reach the persistence
+ * layer directly, such as the scheduler. Unlike the system exit point, the work is only committed when it completed.
+ */
+public interface IPersistenceScope {
+
+  /**
+   * Starts a scope on the current thread.
+   * 
+   * @return false if a scope is already open on this thread, the caller then must not end it
+   */
+  public boolean begin();
+
+  /**
+   * Ends the scope started by {@link #begin()}, releasing what the thread holds. Pending changes are committed only if
+   * <code>completed</code> is true.
+   */
+  public void end( boolean completed );
+}
@@ -120,6 +120,23 @@ public interface IUserRoleDao {
    */
   List<IPentahoUser> getUsers( ITenant tenant, boolean includeSubtenants ) throws UncategorizedUserRoleDaoException;
 
+  /**
+   * Retrieve one page of the users of the specified tenant whose name starts with <code>namePrefix</code>, sorted by
+   * name. If the tenant is null then it will retrieve the users of the default tenant.
+   * 
+   * @param tenant
+   * @param namePrefix
+   *          null or an empty string for all users
+   * @param offset
+   *          the number of matching users to skip
+   * @param limit
+   *          the maximum number of users to return, or -1 for all of them
+   * @return pentaho user list
+   * @throws UncategorizedUserRoleDaoException
+   */
+  List<IPentahoUser> getUsers( ITenant tenant, String namePrefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException;
+
   /**
    * Create a role under a specified tenant. If the tenant is null then this role will be created under a default
    * tenant
@@ -197,6 +214,23 @@ public interface IUserRoleDao {
    */
   List<IPentahoRole> getRoles( ITenant tenant, boolean includeSubtenants ) throws UncategorizedUserRoleDaoException;
 
+  /**
+   * Retrieve one page of the roles of the specified tenant whose name starts with <code>namePrefix</code>, sorted by
+   * name. If the tenant is null then it will retrieve the roles of the default tenant.
+   * 
+   * @param tenant
+   * @param namePrefix
+   *          null or an empty string for all roles
+   * @param offset
+   *          the number of matching roles to skip
+   * @param limit
+   *          the maximum number of roles to return, or -1 for all of them
+   * @return pentaho role list
+   * @throws UncategorizedUserRoleDaoException
+   */
+  List<IPentahoRole> getRoles( ITenant tenant, String namePrefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException;
+
   /**
    * Assign list of user names to a particular role in a specified tenant. If the tenant is null, then it will
    * search for this role in a default tenant
@@ -234,6 +268,22 @@ public interface IUserRoleDao {
    */
   List<IPentahoUser> getRoleMembers( ITenant tenant, String roleName ) throws UncategorizedUserRoleDaoException;
 
+  /**
+   * Retrieves one page of the users associated to a particular role in a given tenant, sorted by name. If the tenant
+   * is null, then it will get role members in a default tenant
+   * 
+   * @param tenant
+   * @param roleName
+   * @param offset
+   *          the number of members to skip
+   * @param limit
+   *          the maximum number of members to return, or -1 for all of them
+   * @return pentaho user list
+   * @throws UncategorizedUserRoleDaoException
+   */
+  List<IPentahoUser> getRoleMembers( ITenant tenant, String roleName, int offset, int limit )
+    throws UncategorizedUserRoleDaoException;
+
   /**
    * Retrieves the list of roles associated to a particular user in a given tenant. If the tenant is null, then it
    * will get user roles in a default tenant
@@ -456,6 +456,54 @@ public interface IUnifiedRepository {
    */
   void undeleteFile( final Serializable fileId, final String versionMessage );
 
+  // ~ Batch methods
+  // ================================================================================================
+
+  /**
+   * Deletes files as a single unit of work. A file that cannot be deleted does not stop the others from being
+   * deleted.
+   *
+   * @param fileIds
+   *          file ids
+   * @param permanent
+   *          if {@code true}, once files are deleted, they cannot be undeleted
+   * @param versionMessage
+   *          optional version comment
+   * @return the ids of the files that could not be deleted, in the order given, mapped to the reason; empty if all
+   *         files were deleted
+   */
+  Map<Serializable, Exception> deleteFilesInBatch( final List<Serializable> fileIds, final boolean permanent,
+      final String versionMessage );
+
+  /**
+   * Moves files into a folder as a single unit of work. A file that cannot be moved does not stop the others from
+   * being moved.
+   *
+   * @param fileIds
+   *          ids of files or folders to move
+   * @param destAbsPath
+   *          path to the destination folder
+   * @param versionMessage
+   *          optional version comment to be applied to source and destination parent folders
+   * @return the ids of the files that could not be moved, in the order given, mapped to the reason; empty if all
+   *         files were moved
+   */
+  Map<Serializable, Exception> moveFilesInBatch( final List<Serializable> fileIds, final String destAbsPath,
+      final String versionMessage );
+
+  /**
+   * Recovers deleted files to their original folders as a single unit of work. A file that cannot be recovered does
+   * not stop the others from being recovered.
+   *
+   * @param fileIds
+   *          deleted file ids
+   * @param versionMessage
+   *          optional version comment to be applied to original parent folders
+   * @return the ids of the files that could not be recovered, in the order given, mapped to the reason; empty if all
+   *         files were recovered
+   */
+  Map<Serializable, Exception> undeleteFilesInBatch( final List<Serializable> fileIds, final String versionMessage );
+
   /**
    * Gets all deleted files for the current user in this folder.
    * 
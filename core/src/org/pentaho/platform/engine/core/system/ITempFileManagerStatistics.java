@@ -0,0 +1,63 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+/**
+ * Usage of the temp files tracked for the sessions, published over JMX as {@link TempFileManager#MBEAN_NAME}.
+ */
+public interface ITempFileManagerStatistics {
+
+  /**
+   * @return the number of temp files tracked
+   */
+  int getFileCount();
+
+  /**
+   * @return the bytes of the temp files tracked, as of the last time their size was checked
+   */
+  long getTotalSize();
+
+  /**
+   * @return the number of sessions with temp files
+   */
+  int getOwnerCount();
+
+  /**
+   * @return the number of temp files being sent to a client, these are not reclaimed
+   */
+  int getInUseCount();
+
+  /**
+   * @return the number of temp files deleted to stay within a quota
+   */
+  long getReclaimedCount();
+
+  /**
+   * @return the bytes of the temp files deleted to stay within a quota
+   */
+  long getReclaimedSize();
+
+  /**
+   * @return the number of temp files left over by an earlier run and deleted at startup
+   */
+  long getOrphanCount();
+
+  long getMaxSize();
+
+  long getMaxOwnerSize();
+}
@@ -1093,6 +1093,55 @@ public class PentahoSystem {
     return PentahoSystem.systemSettingsService.getSystemSetting( settingName, defaultValue );
   }
 
+  /**
+   * Returns a numeric system setting, or <code>defaultValue</code> if the setting is empty or not a number.
+   */
+  public static int getSystemSettingAsInt( final String settingName, final int defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( settingName, null );
+    try {
+      return isEmptySetting( value ) ? defaultValue : Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      warnInvalidSetting( settingName, value, defaultValue );
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Returns a numeric setting of the given settings file, or <code>defaultValue</code> if the setting is empty or not
+   * a number.
+   */
+  public static int getSystemSettingAsInt( final String path, final String settingName, final int defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( path, settingName, null );
+    try {
+      return isEmptySetting( value ) ? defaultValue : Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      warnInvalidSetting( path + "/" + settingName, value, defaultValue ); //$NON-NLS-1$
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Returns a decimal system setting, or <code>defaultValue</code> if the setting is empty or not a number.
+   */
+  public static double getSystemSettingAsDouble( final String settingName, final double defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( settingName, null );
+    try {
+      return isEmptySetting( value ) ? defaultValue : Double.parseDouble( value.trim() );
+    } catch ( NumberFormatException e ) {
+      warnInvalidSetting( settingName, value, defaultValue );
+      return defaultValue;
+    }
+  }
+
+  private static boolean isEmptySetting( final String value ) {
+    return ( value == null ) || ( value.trim().length() == 0 );
+  }
+
+  private static void warnInvalidSetting( final String settingName, final String value, final Object defaultValue ) {
+    Logger.warn( PentahoSystem.class.getName(), "Invalid value \"" + value + "\" for " + settingName //$NON-NLS-1$ //$NON-NLS-2$
+        + ", using " + defaultValue ); //$NON-NLS-1$
+  }
+
   public static ISystemSettings getSystemSettings() {
     return PentahoSystem.systemSettingsService;
   }
@@ -21,42 +21,31 @@ package org.pentaho.platform.engine.core.system;
 import org.pentaho.platform.api.util.ITempFileDeleter;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.UUID;
 
+/**
+ * Tracks the temp files of one session in the {@link TempFileManager}, which may reclaim them earlier to keep within
+ * its quotas.
+ */
 public class StandaloneTempFileDeleter implements ITempFileDeleter {
 
-  private List<File> tmpFileList = Collections.synchronizedList( new ArrayList<File>() );
+  private final String owner = UUID.randomUUID().toString();
 
   public void trackTempFile( File aFile ) {
     if ( aFile != null ) {
-      tmpFileList.add( aFile );
+      TempFileManager.getInstance().track( owner, aFile );
     } else {
       throw new IllegalArgumentException();
     }
   }
 
   public void doTempFileCleanup() {
-    synchronized ( tmpFileList ) {
-      for ( File file : tmpFileList ) {
-        if ( file.exists() ) {
-          file.delete();
-        }
-      }
-      tmpFileList.clear();
-    }
+    TempFileManager.getInstance().discard( owner );
   }
 
   public boolean hasTempFile( String aFileName ) {
     if ( ( aFileName != null ) && ( aFileName.length() > 0 ) ) {
-      synchronized ( tmpFileList ) {
-        for ( File f : tmpFileList ) {
-          if ( ( f.getName().equals( aFileName ) ) ) {
-            return true;
-          }
-        }
-      }
+      return TempFileManager.getInstance().isTracked( owner, aFileName );
     }
     return false;
   }
@@ -0,0 +1,84 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publishes the statistics of platform services on the platform MBean server. Services are registered once they are
+ * fully constructed, by whoever manages their life cycle, and unregistered when they are shut down. A name already
+ * taken is never replaced, and only the service that registered a name can unregister it.
+ */
+public class StatisticsMBeans {
+
+  private static final Log logger = LogFactory.getLog( StatisticsMBeans.class );
+
+  /**
+   * The services registered by this class, by MBean name
+   */
+  private static final Map<String, Object> registered = new HashMap<String, Object>();
+
+  private StatisticsMBeans() {
+  }
+
+  /**
+   * Registers <code>service</code> under <code>name</code>, exposing the operations of <code>statistics</code>.
+   *
+   * @return true when the service was registered, false when the name is taken or JMX is not available
+   */
+  public static synchronized <T> boolean register( final String name, final T service, final Class<T> statistics ) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName( name );
+      if ( server.isRegistered( objectName ) ) {
+        logger.warn( "Not publishing the statistics of " + service.getClass().getName() + ", " + name //$NON-NLS-1$ //$NON-NLS-2$
+            + " is already registered" ); //$NON-NLS-1$
+        return false;
+      }
+      server.registerMBean( new StandardMBean( service, statistics ), objectName );
+      registered.put( name, service );
+      return true;
+    } catch ( Exception e ) {
+      logger.debug( "Could not publish " + name, e ); //$NON-NLS-1$
+      return false;
+    }
+  }
+
+  /**
+   * Unregisters <code>name</code> if <code>service</code> registered it.
+   */
+  public static synchronized void unregister( final String name, final Object service ) {
+    if ( registered.get( name ) != service ) {
+      return;
+    }
+    registered.remove( name );
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean( new ObjectName( name ) );
+    } catch ( Exception e ) {
+      logger.debug( "Could not unregister " + name, e ); //$NON-NLS-1$
+    }
+  }
+}
@@ -0,0 +1,452 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the temp files of all sessions. Each session, the owner, hands its files to the manager through its
+ * {@link StandaloneTempFileDeleter}; they are deleted when the session ends.
+ * <p>
+ * The bytes of temp files can be bounded for the whole server and for each session. When a quota is exceeded the
+ * least recently used files are deleted until the files fit again. A file being sent to a client is retained until
+ * the response is written and is never reclaimed; if its session ends meanwhile it is deleted on release. File sizes
+ * grow after the files are tracked, so they are checked again when an owner tracks a file and periodically for all
+ * files.
+ * <p>
+ * Usage is published over JMX as {@link #MBEAN_NAME} by {@link #registerMBean()}.
+ */
+public class TempFileManager implements ITempFileManagerStatistics {
+
+  public static final String MBEAN_NAME = "org.pentaho.platform:type=TempFileManager"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( TempFileManager.class );
+
+  private static final TempFileManager instance = new TempFileManager();
+
+  private static class TempFile {
+
+    final File file;
+
+    final String owner;
+
+    long size;
+
+    int references;
+
+    boolean discarded;
+
+    boolean tracked = true;
+
+    TempFile( final File file, final String owner ) {
+      this.file = file;
+      this.owner = owner;
+    }
+  }
+
+  /**
+   * All files by absolute path, the least recently used first
+   */
+  private final LinkedHashMap<String, TempFile> files = new LinkedHashMap<String, TempFile>( 64, 0.75f, true );
+
+  /**
+   * The files of each owner by file name, the least recently used first
+   */
+  private final Map<String, LinkedHashMap<String, TempFile>> owners =
+      new HashMap<String, LinkedHashMap<String, TempFile>>();
+
+  private long totalSize;
+
+  private int inUseCount;
+
+  private long reclaimedCount;
+
+  private long reclaimedSize;
+
+  private long orphanCount;
+
+  private long maxSize;
+
+  private long maxOwnerSize;
+
+  private ScheduledThreadPoolExecutor sweeper;
+
+  TempFileManager() {
+  }
+
+  public static TempFileManager getInstance() {
+    return instance;
+  }
+
+  /**
+   * Sets the quotas, 0 for none, and checks the sizes of all files every <code>checkIntervalSeconds</code>, unless
+   * that is 0.
+   */
+  public synchronized void configure( final long maxSize, final long maxOwnerSize, final int checkIntervalSeconds ) {
+    this.maxSize = maxSize;
+    this.maxOwnerSize = maxOwnerSize;
+    stopSweeper();
+    if ( checkIntervalSeconds > 0 ) {
+      sweeper = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "pentaho-temp-file-sweeper" ); //$NON-NLS-1$
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+      sweeper.scheduleWithFixedDelay( new Runnable() {
+        public void run() {
+          sweep();
+        }
+      }, checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS );
+    }
+  }
+
+  /**
+   * Stops the periodic size checks.
+   */
+  public synchronized void shutdown() {
+    stopSweeper();
+  }
+
+  private void stopSweeper() {
+    if ( sweeper != null ) {
+      sweeper.shutdownNow();
+      sweeper = null;
+    }
+  }
+
+  public void registerMBean() {
+    StatisticsMBeans.register( MBEAN_NAME, this, ITempFileManagerStatistics.class );
+  }
+
+  public void unregisterMBean() {
+    StatisticsMBeans.unregister( MBEAN_NAME, this );
+  }
+
+  /**
+   * Tracks <code>file</code> for <code>owner</code>. Files over the quota of the owner or the server are reclaimed
+   * right away.
+   */
+  public void track( final String owner, final File file ) {
+    List<TempFile> victims;
+    synchronized ( this ) {
+      String path = file.getAbsolutePath();
+      TempFile tempFile = files.get( path );
+      if ( tempFile == null ) {
+        tempFile = new TempFile( file, owner );
+        files.put( path, tempFile );
+        LinkedHashMap<String, TempFile> ownerFiles = owners.get( owner );
+        if ( ownerFiles == null ) {
+          ownerFiles = new LinkedHashMap<String, TempFile>( 16, 0.75f, true );
+          owners.put( owner, ownerFiles );
+        }
+        ownerFiles.put( file.getName(), tempFile );
+      } else if ( tempFile.owner.equals( owner ) ) {
+        owners.get( owner ).get( file.getName() );
+      }
+      updateSize( tempFile, file.length() );
+      victims = selectVictims( owner, true );
+    }
+    delete( victims, true );
+  }
+
+  /**
+   * @return true if <code>owner</code> tracks a file named <code>fileName</code>
+   */
+  public synchronized boolean isTracked( final String owner, final String fileName ) {
+    Map<String, TempFile> ownerFiles = owners.get( owner );
+    return ( ownerFiles != null ) && ( ownerFiles.get( fileName ) != null );
+  }
+
+  /**
+   * Keeps a tracked file from being reclaimed while it is read, e.g. sent to a client. Every call that returns true
+   * needs a call to {@link #release(File)}.
+   *
+   * @return false if the file is not tracked
+   */
+  public synchronized boolean retain( final File file ) {
+    TempFile tempFile = files.get( file.getAbsolutePath() );
+    if ( tempFile == null ) {
+      return false;
+    }
+    if ( tempFile.references++ == 0 ) {
+      inUseCount++;
+    }
+    Map<String, TempFile> ownerFiles = owners.get( tempFile.owner );
+    if ( ownerFiles != null ) {
+      ownerFiles.get( file.getName() );
+    }
+    return true;
+  }
+
+  /**
+   * Ends a {@link #retain(File)}. The file is deleted now if its owner was cleaned up while it was retained.
+   */
+  public void release( final File file ) {
+    TempFile deleted = null;
+    synchronized ( this ) {
+      TempFile tempFile = files.get( file.getAbsolutePath() );
+      if ( ( tempFile == null ) || ( tempFile.references == 0 ) ) {
+        return;
+      }
+      if ( --tempFile.references == 0 ) {
+        inUseCount--;
+        if ( tempFile.discarded ) {
+          remove( tempFile );
+          deleted = tempFile;
+        }
+      }
+    }
+    if ( deleted != null ) {
+      delete( Collections.singletonList( deleted ), false );
+    }
+  }
+
+  /**
+   * Deletes the files of <code>owner</code>, those being read are deleted once released.
+   */
+  public void discard( final String owner ) {
+    List<TempFile> victims = new ArrayList<TempFile>();
+    synchronized ( this ) {
+      Map<String, TempFile> ownerFiles = owners.get( owner );
+      if ( ownerFiles == null ) {
+        return;
+      }
+      for ( TempFile tempFile : new ArrayList<TempFile>( ownerFiles.values() ) ) {
+        if ( tempFile.references > 0 ) {
+          tempFile.discarded = true;
+        } else {
+          remove( tempFile );
+          victims.add( tempFile );
+        }
+      }
+    }
+    delete( victims, false );
+  }
+
+  /**
+   * Deletes the files in <code>directory</code>, not in its sub directories, that were last modified before
+   * <code>time</code> and are not tracked. Meant for the files left behind when the server stopped without cleaning
+   * up its sessions.
+   *
+   * @return the number of files deleted
+   */
+  public int deleteOrphans( final File directory, final long time ) {
+    File[] candidates = directory.listFiles();
+    if ( candidates == null ) {
+      return 0;
+    }
+    int count = 0;
+    for ( File candidate : candidates ) {
+      if ( !candidate.isFile() || ( candidate.lastModified() >= time ) ) {
+        continue;
+      }
+      synchronized ( this ) {
+        if ( files.containsKey( candidate.getAbsolutePath() ) ) {
+          continue;
+        }
+      }
+      if ( candidate.delete() ) {
+        count++;
+      }
+    }
+    synchronized ( this ) {
+      orphanCount += count;
+    }
+    return count;
+  }
+
+  /**
+   * Checks the sizes of all files, drops files deleted by others and reclaims files over a quota.
+   */
+  void sweep() {
+    List<TempFile> snapshot;
+    synchronized ( this ) {
+      snapshot = new ArrayList<TempFile>( files.values() );
+    }
+    long[] sizes = new long[snapshot.size()];
+    boolean[] exists = new boolean[snapshot.size()];
+    for ( int i = 0; i < sizes.length; i++ ) {
+      File file = snapshot.get( i ).file;
+      sizes[i] = file.length();
+      exists[i] = ( sizes[i] > 0 ) || file.exists();
+    }
+    List<TempFile> victims = new ArrayList<TempFile>();
+    synchronized ( this ) {
+      for ( int i = 0; i < sizes.length; i++ ) {
+        TempFile tempFile = snapshot.get( i );
+        if ( !tempFile.tracked ) {
+          continue;
+        }
+        if ( !exists[i] && ( tempFile.references == 0 ) ) {
+          remove( tempFile );
+        } else {
+          updateSize( tempFile, sizes[i] );
+        }
+      }
+      if ( maxOwnerSize > 0 ) {
+        for ( String owner : new ArrayList<String>( owners.keySet() ) ) {
+          victims.addAll( selectVictims( owner, false ) );
+        }
+      }
+      victims.addAll( selectVictims( null, false ) );
+    }
+    delete( victims, true );
+  }
+
+  /**
+   * Removes the least recently used files of <code>owner</code>, and then of the server, until both fit their
+   * quota again.
+   *
+   * @param owner the owner to check, null to only check the server
+   * @param refresh true to check the sizes of the files of the owner first
+   * @return the files to delete
+   */
+  private List<TempFile> selectVictims( final String owner, final boolean refresh ) {
+    List<TempFile> victims = new ArrayList<TempFile>();
+    Map<String, TempFile> ownerFiles = ( owner != null ) ? owners.get( owner ) : null;
+    if ( ( ownerFiles != null ) && ( maxOwnerSize > 0 ) ) {
+      long ownerSize = 0;
+      for ( TempFile tempFile : ownerFiles.values() ) {
+        if ( refresh ) {
+          updateSize( tempFile, tempFile.file.length() );
+        }
+        ownerSize += tempFile.size;
+      }
+      if ( ownerSize > maxOwnerSize ) {
+        collect( ownerFiles.values().iterator(), ownerSize - maxOwnerSize, victims );
+      }
+    }
+    if ( ( maxSize > 0 ) && ( totalSize > maxSize ) ) {
+      collect( files.values().iterator(), totalSize - maxSize, victims );
+    }
+    return victims;
+  }
+
+  private void collect( final Iterator<TempFile> leastRecentFirst, final long excess, final List<TempFile> victims ) {
+    List<TempFile> selected = new ArrayList<TempFile>();
+    long freed = 0;
+    while ( ( freed < excess ) && leastRecentFirst.hasNext() ) {
+      TempFile tempFile = leastRecentFirst.next();
+      if ( tempFile.references == 0 ) {
+        selected.add( tempFile );
+        freed += tempFile.size;
+      }
+    }
+    for ( TempFile tempFile : selected ) {
+      remove( tempFile );
+    }
+    victims.addAll( selected );
+  }
+
+  private void updateSize( final TempFile tempFile, final long size ) {
+    totalSize += size - tempFile.size;
+    tempFile.size = size;
+  }
+
+  private void remove( final TempFile tempFile ) {
+    if ( !tempFile.tracked ) {
+      return;
+    }
+    tempFile.tracked = false;
+    files.remove( tempFile.file.getAbsolutePath() );
+    Map<String, TempFile> ownerFiles = owners.get( tempFile.owner );
+    if ( ownerFiles != null ) {
+      if ( ownerFiles.get( tempFile.file.getName() ) == tempFile ) {
+        ownerFiles.remove( tempFile.file.getName() );
+      }
+      if ( ownerFiles.isEmpty() ) {
+        owners.remove( tempFile.owner );
+      }
+    }
+    totalSize -= tempFile.size;
+    if ( tempFile.references > 0 ) {
+      inUseCount--;
+    }
+  }
+
+  private void delete( final List<TempFile> victims, final boolean reclaimed ) {
+    long count = 0;
+    long size = 0;
+    for ( TempFile tempFile : victims ) {
+      File file = tempFile.file;
+      if ( file.exists() && !file.delete() ) {
+        logger.debug( "Could not delete temp file " + file ); //$NON-NLS-1$
+        continue;
+      }
+      count++;
+      size += tempFile.size;
+    }
+    if ( reclaimed && ( count > 0 ) ) {
+      synchronized ( this ) {
+        reclaimedCount += count;
+        reclaimedSize += size;
+      }
+    }
+  }
+
+  public synchronized int getFileCount() {
+    return files.size();
+  }
+
+  public synchronized long getTotalSize() {
+    return totalSize;
+  }
+
+  public synchronized int getOwnerCount() {
+    return owners.size();
+  }
+
+  public synchronized int getInUseCount() {
+    return inUseCount;
+  }
+
+  public synchronized long getReclaimedCount() {
+    return reclaimedCount;
+  }
+
+  public synchronized long getReclaimedSize() {
+    return reclaimedSize;
+  }
+
+  public synchronized long getOrphanCount() {
+    return orphanCount;
+  }
+
+  public synchronized long getMaxSize() {
+    return maxSize;
+  }
+
+  public synchronized long getMaxOwnerSize() {
+    return maxOwnerSize;
+  }
+}
@@ -0,0 +1,63 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IPentahoSystemListener;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Sets up the {@link TempFileManager} from the <code>tmp-files</code> system settings and deletes the temp files an
+ * earlier run of the server left in system/tmp.
+ */
+public class TempFileSystemListener implements IPentahoSystemListener {
+
+  private static final Log logger = LogFactory.getLog( TempFileSystemListener.class );
+
+  private static final int DEFAULT_CHECK_INTERVAL = 60;
+
+  public boolean startup( final IPentahoSession session ) {
+    TempFileManager manager = TempFileManager.getInstance();
+    manager.configure( PentahoSystem.getSystemSettingAsInt( "tmp-files/max-size", 0 ) * 1024L * 1024L, //$NON-NLS-1$
+        PentahoSystem.getSystemSettingAsInt( "tmp-files/max-session-size", 0 ) * 1024L * 1024L, //$NON-NLS-1$
+        PentahoSystem.getSystemSettingAsInt( "tmp-files/check-interval", DEFAULT_CHECK_INTERVAL ) ); //$NON-NLS-1$
+    manager.registerMBean();
+
+    String deleteOrphans =
+        PentahoSystem.getSystemSetting( "tmp-files/delete-orphans", "true" ); //$NON-NLS-1$ //$NON-NLS-2$
+    if ( !"false".equalsIgnoreCase( deleteOrphans ) ) { //$NON-NLS-1$
+      File tmpDirectory =
+          new File( PentahoSystem.getApplicationContext().getSolutionPath( "system/tmp" ) ); //$NON-NLS-1$
+      long started = ManagementFactory.getRuntimeMXBean().getStartTime();
+      int count = manager.deleteOrphans( tmpDirectory, started );
+      if ( count > 0 ) {
+        logger.info( "Deleted " + count + " temp files left over in " + tmpDirectory ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return true;
+  }
+
+  public void shutdown() {
+    TempFileManager.getInstance().unregisterMBean();
+    TempFileManager.getInstance().shutdown();
+  }
+}
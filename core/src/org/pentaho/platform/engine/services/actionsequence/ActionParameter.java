@@ -100,6 +100,22 @@ public class ActionParameter implements IActionParameter {
     }
   }
 
+  /**
+   * Creates a parameter with the definition and the current value of <code>other</code>, so the copy can be given
+   * another value without changing <code>other</code>. Note that the value object itself is shared, not copied.
+   */
+  public ActionParameter( final ActionParameter other ) {
+    this.name = other.name;
+    this.type = other.type;
+    this.value = other.value;
+    this.variables = other.variables;
+    this.defaultValue = other.defaultValue;
+    this.paramSelections = other.paramSelections;
+    this.promptType = other.promptType;
+    this.saveLocations = ( other.saveLocations == null ) ? null : new ArrayList( other.saveLocations );
+    this.isOutputParameter = other.isOutputParameter;
+  }
+
   public List getSaveLocations() {
     return ( saveLocations == null ) ? new ArrayList() : saveLocations;
   }
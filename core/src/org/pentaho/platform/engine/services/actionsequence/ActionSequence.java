@@ -36,6 +36,10 @@ public class ActionSequence implements IActionSequence {
 
   private boolean loopUsingPeek;
 
+  private int loopParallelism = 1;
+
+  private boolean loopCollectsErrors;
+
   protected ActionSequence( final String loopParameter, final ISequenceDefinition sequenceDefinition,
       final List actionDefinitions, boolean loopUsingPeek ) {
     this.loopParameter = loopParameter;
@@ -128,4 +132,20 @@ public class ActionSequence implements IActionSequence {
     return loopUsingPeek;
   }
 
+  public int getLoopParallelism() {
+    return loopParallelism;
+  }
+
+  public void setLoopParallelism( final int loopParallelism ) {
+    this.loopParallelism = loopParallelism;
+  }
+
+  public boolean getLoopCollectsErrors() {
+    return loopCollectsErrors;
+  }
+
+  public void setLoopCollectsErrors( final boolean loopCollectsErrors ) {
+    this.loopCollectsErrors = loopCollectsErrors;
+  }
+
 }
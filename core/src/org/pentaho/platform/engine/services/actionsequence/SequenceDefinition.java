@@ -129,11 +129,36 @@ public class SequenceDefinition implements ISequenceDefinition {
         SequenceDefinition.parseConditionalExecution( actionsNode, logger, "condition" ); //$NON-NLS-1$
 
     ActionSequence sequence = new ActionSequence( loopParameterName, seqDef, actionDefinitionList, loopUsingPeek );
+    if ( loopParameterName != null ) {
+      sequence.setLoopParallelism( SequenceDefinition.parseLoopParallelism( XmlDom4JHelper.getNodeText(
+          "@parallel", actionsNode ), logger ) ); //$NON-NLS-1$
+      String onError = XmlDom4JHelper.getNodeText( "@on-error", actionsNode ); //$NON-NLS-1$
+      sequence.setLoopCollectsErrors( "collect-all".equalsIgnoreCase( onError ) ); //$NON-NLS-1$
+    }
 
     sequence.setConditionalExecution( conditionalExecution );
     return sequence;
   }
 
+  /**
+   * Parses the <code>parallel</code> attribute of a loop: <code>true</code> runs the iterations in parallel with the
+   * platform default parallelism, a number sets the maximum number of iterations to run at once.
+   */
+  static int parseLoopParallelism( final String parallel, final ILogger logger ) {
+    if ( ( parallel == null ) || ( parallel.trim().length() == 0 ) || "false".equalsIgnoreCase( parallel.trim() ) ) { //$NON-NLS-1$
+      return 1;
+    }
+    if ( "true".equalsIgnoreCase( parallel.trim() ) ) { //$NON-NLS-1$
+      return 0;
+    }
+    try {
+      return Math.max( Integer.parseInt( parallel.trim() ), 1 );
+    } catch ( NumberFormatException e ) {
+      logger.warn( Messages.getInstance().getString( "SequenceDefinition.WARN_INVALID_LOOP_PARALLELISM", parallel ) ); //$NON-NLS-1$
+      return 1;
+    }
+  }
+
   private SequenceDefinition( final Node sequenceRootNode, final String solutionPath, final ILogger logger,
       final IApplicationContext applicationContext ) {
 
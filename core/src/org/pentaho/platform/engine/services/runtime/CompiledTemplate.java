@@ -0,0 +1,243 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parsed form of a template used by {@link TemplateUtil}: the positions of every parameter matched by the
+ * parameter pattern, with everything that can be derived from the parameter text alone worked out up front. Templates
+ * are immutable once compiled and are cached by pattern and template text, so the parameter regex only runs once per
+ * distinct template.
+ */
+class CompiledTemplate {
+
+  /** Maximum number of compiled templates kept in the cache */
+  static final int MAX_CACHED_TEMPLATES = 1000;
+
+  /** Templates longer than this are compiled on every use rather than cached */
+  static final int MAX_CACHED_TEMPLATE_LENGTH = 64 * 1024;
+
+  private static final String TABLE_COLUMN_MARKER = ":col:"; //$NON-NLS-1$
+
+  private static final Map<Key, CompiledTemplate> cache = new LinkedHashMap<Key, CompiledTemplate>( 16, 0.75f,
+      true ) {
+    private static final long serialVersionUID = -2916447017736316155L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<Key, CompiledTemplate> eldest ) {
+      return size() > MAX_CACHED_TEMPLATES;
+    }
+  };
+
+  final String template;
+
+  final Pattern pattern;
+
+  final Slot[] slots;
+
+  /** The slots containing a <code>:col:</code> marker, in template order */
+  final Slot[] tableSlots;
+
+  /**
+   * A parameter found in the template.
+   */
+  static final class Slot {
+    /** Offsets of the whole match (including the braces) in the template */
+    final int start;
+
+    final int end;
+
+    /** The text of the first capture group, i.e. the parameter without the braces */
+    final String parameter;
+
+    final boolean hasSpaces;
+
+    final boolean isTableTemplate;
+
+    final boolean isComponentResolved;
+
+    /** Non null when the parameter is a data table lookup: name, key column, key value, value column, default */
+    final String[] tableKey;
+
+    /** The literal text between the previous table slot (or the template start) and this one */
+    final String tablePart;
+
+    final String tableInputName;
+
+    final String tableColumnNoStr;
+
+    /** The parsed column number, or null if it is not a valid number */
+    final Integer tableColumnNo;
+
+    Slot( final String template, final Matcher matcher, final int tablePartStart ) {
+      start = matcher.start();
+      end = matcher.end();
+      parameter = matcher.group( 1 );
+      hasSpaces = parameter.indexOf( ' ' ) != -1;
+      int colPosition = parameter.indexOf( TABLE_COLUMN_MARKER );
+      isTableTemplate = !hasSpaces && colPosition != -1;
+      isComponentResolved = !hasSpaces && parameter.indexOf( ':' ) != -1;
+
+      String[] key = null;
+      if ( isComponentResolved ) {
+        StringTokenizer tokenizer = new StringTokenizer( parameter, ":" ); //$NON-NLS-1$
+        if ( tokenizer.countTokens() >= 5 ) {
+          key = new String[5];
+          key[0] = tokenizer.nextToken();
+          key[1] = tokenizer.nextToken();
+          key[2] = tokenizer.nextToken();
+          key[3] = tokenizer.nextToken();
+          StringBuilder defaultValue = new StringBuilder( tokenizer.nextToken() );
+          while ( tokenizer.hasMoreTokens() ) {
+            defaultValue.append( ':' ).append( tokenizer.nextToken() );
+          }
+          key[4] = defaultValue.toString();
+        }
+      }
+      tableKey = key;
+
+      if ( colPosition != -1 ) {
+        tablePart = template.substring( tablePartStart, start );
+        tableInputName = parameter.substring( 0, colPosition );
+        tableColumnNoStr = parameter.substring( colPosition + TABLE_COLUMN_MARKER.length() );
+        Integer columnNo;
+        try {
+          columnNo = Integer.valueOf( tableColumnNoStr );
+        } catch ( NumberFormatException e ) {
+          columnNo = null;
+        }
+        tableColumnNo = columnNo;
+      } else {
+        tablePart = null;
+        tableInputName = null;
+        tableColumnNoStr = null;
+        tableColumnNo = null;
+      }
+    }
+  }
+
+  private CompiledTemplate( final String template, final Pattern pattern ) {
+    this.template = template;
+    this.pattern = pattern;
+    List<Slot> slotList = new ArrayList<Slot>();
+    List<Slot> tableSlotList = new ArrayList<Slot>();
+    Matcher matcher = pattern.matcher( template );
+    int lastTableEnd = 0;
+    while ( matcher.find() ) {
+      Slot slot = new Slot( template, matcher, lastTableEnd );
+      slotList.add( slot );
+      if ( slot.tablePart != null ) {
+        tableSlotList.add( slot );
+        lastTableEnd = slot.end;
+      }
+    }
+    slots = slotList.toArray( new Slot[slotList.size()] );
+    tableSlots = tableSlotList.toArray( new Slot[tableSlotList.size()] );
+  }
+
+  /**
+   * The literal text following the last table slot, or null if there are no table slots.
+   */
+  String getTableTail() {
+    if ( tableSlots.length == 0 ) {
+      return null;
+    }
+    return template.substring( tableSlots[tableSlots.length - 1].end );
+  }
+
+  /**
+   * Returns a matcher positioned on the given slot, for the benefit of parameter resolvers that expect one.
+   */
+  Matcher matcherAt( final Slot slot ) {
+    Matcher matcher = pattern.matcher( template );
+    matcher.find( slot.start );
+    return matcher;
+  }
+
+  static CompiledTemplate compile( final String template, final Pattern pattern ) {
+    if ( template.length() > MAX_CACHED_TEMPLATE_LENGTH ) {
+      return new CompiledTemplate( template, pattern );
+    }
+    Key key = new Key( template, pattern );
+    CompiledTemplate compiled;
+    synchronized ( cache ) {
+      compiled = cache.get( key );
+    }
+    if ( compiled == null ) {
+      compiled = new CompiledTemplate( template, pattern );
+      synchronized ( cache ) {
+        cache.put( key, compiled );
+      }
+    }
+    return compiled;
+  }
+
+  static void clearCache() {
+    synchronized ( cache ) {
+      cache.clear();
+    }
+  }
+
+  static int cacheSize() {
+    synchronized ( cache ) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Cache key; {@link Pattern} does not implement equals, so patterns are compared by their source and flags.
+   */
+  private static final class Key {
+    private final String template;
+
+    private final String pattern;
+
+    private final int flags;
+
+    Key( final String template, final Pattern pattern ) {
+      this.template = template;
+      this.pattern = pattern.pattern();
+      this.flags = pattern.flags();
+    }
+
+    @Override
+    public int hashCode() {
+      return ( template.hashCode() * 31 + pattern.hashCode() ) * 31 + flags;
+    }
+
+    @Override
+    public boolean equals( final Object obj ) {
+      if ( this == obj ) {
+        return true;
+      }
+      if ( !( obj instanceof Key ) ) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return flags == other.flags && template.equals( other.template ) && pattern.equals( other.pattern );
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.util.messages.LocaleHelper;
+import org.springframework.security.context.SecurityContext;
+import org.springframework.security.context.SecurityContextHolder;
+
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads running the iterations of parallel action sequence loops. All parallel loops of the server share one
+ * pool, sized by the <code>parallel-loops/max-threads</code> system setting, so a burst of requests can not start more
+ * threads than that. The <code>parallel-loops/default-parallelism</code> setting is the number of iterations a loop
+ * declared with <code>parallel="true"</code> runs at once.
+ * <p>
+ * Tasks run with the session, security context and locale of the thread that submitted them. Idle threads end after a
+ * minute.
+ */
+class ParallelLoopExecutor {
+
+  public static final int DEFAULT_MAX_THREADS = 8;
+
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  private static ThreadPoolExecutor executor;
+
+  private static int defaultParallelism;
+
+  private ParallelLoopExecutor() {
+  }
+
+  /**
+   * Returns the number of iterations to run at once for a loop declaring <code>parallelism</code>, where 0 stands for
+   * the platform default.
+   */
+  static synchronized int getParallelism( final int parallelism ) {
+    getExecutor();
+    return ( parallelism > 0 ) ? parallelism : defaultParallelism;
+  }
+
+  static Future<?> submit( final Runnable task ) {
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    final Locale locale = LocaleHelper.getLocale();
+    return getExecutor().submit( new Runnable() {
+      public void run() {
+        IPentahoSession previousSession = PentahoSessionHolder.getSession();
+        SecurityContext previousContext = SecurityContextHolder.getContext();
+        Locale previousLocale = LocaleHelper.getLocale();
+        PentahoSessionHolder.setSession( session );
+        SecurityContextHolder.setContext( securityContext );
+        LocaleHelper.setLocale( locale );
+        try {
+          task.run();
+        } finally {
+          PentahoSessionHolder.setSession( previousSession );
+          SecurityContextHolder.setContext( previousContext );
+          LocaleHelper.setLocale( previousLocale );
+        }
+      }
+    } );
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    if ( executor == null ) {
+      int threads =
+          Math.max( PentahoSystem.getSystemSettingAsInt( "parallel-loops/max-threads", DEFAULT_MAX_THREADS ), 1 ); //$NON-NLS-1$
+      defaultParallelism =
+          Math.max( PentahoSystem.getSystemSettingAsInt( "parallel-loops/default-parallelism", //$NON-NLS-1$
+              DEFAULT_PARALLELISM ), 1 );
+      ThreadPoolExecutor pool =
+          new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+              new LoopThreadFactory() );
+      pool.allowCoreThreadTimeOut( true );
+      executor = pool;
+    }
+    return executor;
+  }
+
+  private static class LoopThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread( final Runnable r ) {
+      Thread thread = new Thread( r, "pentaho-parallel-loop-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+}
@@ -32,6 +32,8 @@ import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource
 import org.pentaho.platform.engine.services.messages.Messages;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +63,12 @@ public class ParameterManager implements IParameterManager {
 
   private Map sequenceOutputDefs;
 
+  /**
+   * The parameters copied from the enclosing scope when this is the scope of a parallel loop iteration, otherwise
+   * null. Their values still belong to the enclosing scope, so they are never disposed here.
+   */
+  private Set<IActionParameter> inheritedParams;
+
   ParameterManager() {
     allParams = new ListOrderedMap();
     allResources = new ListOrderedMap();
@@ -89,6 +97,76 @@ public class ParameterManager implements IParameterManager {
     sequenceOutputDefs.putAll( actionSequence.getOutputDefinitions() );
   }
 
+  /**
+   * Creates the parameter scope for one iteration of a parallel loop. The scope starts with copies of all parameters
+   * of this scope, so the actions of the iteration can set parameters without affecting this scope or the other
+   * iterations. What the iteration sets is taken over with {@link #mergeIterationScope(ParameterManager)} once it is
+   * done.
+   */
+  @SuppressWarnings( "unchecked" )
+  ParameterManager createIterationScope() {
+    ParameterManager scope = new ParameterManager();
+    scope.sequenceInputNames = sequenceInputNames;
+    scope.sequenceResourceNames = sequenceResourceNames;
+    scope.sequenceOutputDefs.putAll( sequenceOutputDefs );
+    scope.allResources.putAll( allResources );
+    scope.inheritedParams = Collections.newSetFromMap( new IdentityHashMap<IActionParameter, Boolean>() );
+    for ( Iterator it = allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      Object param = entry.getValue();
+      if ( param instanceof ActionParameter ) {
+        param = new ActionParameter( (ActionParameter) param );
+        scope.inheritedParams.add( (IActionParameter) param );
+      }
+      scope.allParams.put( entry.getKey(), param );
+    }
+    return scope;
+  }
+
+  /**
+   * Takes over the parameters a parallel loop iteration set in its scope, as if the iteration had run in this scope.
+   * Merging the iterations in the order of the loop gives the same parameters as running them one after another.
+   */
+  void mergeIterationScope( final ParameterManager scope ) {
+    for ( Iterator it = scope.allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      IActionParameter param = (IActionParameter) entry.getValue();
+      if ( ( param != null ) && !scope.inheritedParams.contains( param ) ) {
+        addToAllInputs( (String) entry.getKey(), param );
+      }
+    }
+    for ( IActionParameter param : scope.waitingToDieParams ) {
+      if ( !scope.inheritedParams.contains( param ) ) {
+        waitingToDieParams.add( param );
+      }
+    }
+  }
+
+  /**
+   * Disposes what a parallel loop iteration that is not merged set in its scope.
+   */
+  void discardIterationScope() {
+    List<IActionParameter> created = new ArrayList<IActionParameter>( waitingToDieParams );
+    for ( Iterator it = allParams.values().iterator(); it.hasNext(); ) {
+      created.add( (IActionParameter) it.next() );
+    }
+    for ( IActionParameter param : created ) {
+      if ( ( param instanceof ActionParameter ) && !inheritedParams.contains( param )
+          && !isInheritedValue( param.getValue() ) ) {
+        disposeParameter( (ActionParameter) param );
+      }
+    }
+  }
+
+  private boolean isInheritedValue( final Object value ) {
+    for ( IActionParameter param : inheritedParams ) {
+      if ( param.getValue() == value ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public Map getAllParameters() {
     return ( allParams );
   }
@@ -208,6 +286,8 @@ public class ParameterManager implements IParameterManager {
         value = actionDefinition.getActionInputDefinitions().get( key );
         if ( !( (ActionParameter) value ).hasDefaultValue() ) {
           value = null; // Only use if there is a default value;
+        } else if ( inheritedParams != null ) {
+          value = new ActionParameter( (ActionParameter) value ); // definitions are shared by parallel iterations
         }
       }
 
@@ -222,7 +302,7 @@ public class ParameterManager implements IParameterManager {
     for ( Object outKey : outParams.keySet() ) {
       ActionParameter param = (ActionParameter) outParams.get( outKey );
       if ( param.isOutputParameter() ) {
-        currentOutputs.put( outKey, param );
+        currentOutputs.put( outKey, ( inheritedParams != null ) ? new ActionParameter( param ) : param );
       }
     }
 
@@ -263,7 +343,10 @@ public class ParameterManager implements IParameterManager {
 
       // If we already have a parameter with this name, set the value and reuse the definition.
       IActionParameter param = (IActionParameter) allParams.get( key );
-      if ( param != null ) {
+      if ( ( param != null ) && ( inheritedParams != null ) && inheritedParams.contains( param ) ) {
+        // the value of an inherited parameter still belongs to the enclosing scope, replace instead of disposing it
+        allParams.put( key, outputParam );
+      } else if ( param != null ) {
         if ( param != outputParam ) { // This is a trap for catching temp params that didn't get deleted at the end
                                       // of
                                       // the last loop
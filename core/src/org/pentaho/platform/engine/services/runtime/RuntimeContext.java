@@ -44,6 +44,10 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,6 +61,7 @@ import org.dom4j.Element;
 import org.pentaho.actionsequence.dom.actions.ActionDefinition;
 import org.pentaho.actionsequence.dom.actions.ActionFactory;
 import org.pentaho.commons.connection.IPeekable;
+import org.pentaho.commons.connection.IPentahoMetaData;
 import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.commons.connection.IPentahoStreamSource;
 import org.pentaho.platform.api.action.IAction;
@@ -75,6 +80,7 @@ import org.pentaho.platform.api.engine.IContentOutputHandler;
 import org.pentaho.platform.api.engine.ICreateFeedbackParameterCallback;
 import org.pentaho.platform.api.engine.IExecutionListener;
 import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.engine.IMimeTypeListener;
 import org.pentaho.platform.api.engine.IOutputHandler;
 import org.pentaho.platform.api.engine.IParameterManager;
 import org.pentaho.platform.api.engine.IParameterProvider;
@@ -197,6 +203,12 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
   private IPluginManager pluginManager;
 
+  /**
+   * The components of this context when it runs an iteration of a parallel loop, otherwise null and the components
+   * cached by the action definitions are used.
+   */
+  private Map<ISolutionActionDefinition, IComponent> iterationComponents;
+
   static {
     RuntimeContext.getComponentClassMap();
   }
@@ -351,7 +363,8 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   }
 
   public boolean feedbackAllowed() {
-    return ( outputHandler != null ) && outputHandler.allowFeedback();
+    // iterations of a parallel loop run like background executions, they can't prompt
+    return ( iterationComponents == null ) && ( outputHandler != null ) && outputHandler.allowFeedback();
   }
 
   public IContentItem getFeedbackContentItem() {
@@ -515,46 +528,11 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
               "RuntimeContext.DEBUG_VALIDATING_COMPONENT", actionDef.getComponentName() ) ); //$NON-NLS-1$
         }
 
-        IComponent component = null;
-        try {
-          component = resolveComponent( actionDef, instanceId, processId, session );
-          component.setLoggingLevel( loggingLevel );
-
-          // allow the ActionDefinition to cache the component
-          actionDef.setComponent( component );
-          paramManager.setCurrentParameters( actionDef );
-          /*
-           * We need to catch checked and unchecked exceptions here so we can create an ActionSequeceException with
-           * contextual information, including the root cause. Allowing unchecked exceptions to pass through would
-           * prevent valuable feedback in the log or response.
-           */
-        } catch ( Throwable ex ) {
-          ActionDefinition actionDefinition = new ActionDefinition( (Element) actionDef.getNode(), null );
-          throw new ActionValidationException( Messages.getInstance().getErrorString(
-              "RuntimeContext.ERROR_0009_COULD_NOT_CREATE_COMPONENT", actionDef.getComponentName().trim() ), ex, //$NON-NLS-1$
-              session.getName(), instanceId, getActionSequence().getSequenceName(), actionDefinition.getDescription(),
-              actionDefinition.getComponentName() );
-        }
-
-        int validateResult = IRuntimeContext.RUNTIME_CONTEXT_VALIDATE_OK;
-        try {
-          validateResult = component.validate();
-          /*
-           * We need to catch checked and unchecked exceptions here so we can create an ActionSequeceException with
-           * contextual information, including the root cause. Allowing unchecked exceptions to pass through would
-           * prevent valuable feedback in the log or response.
-           */
-        } catch ( Throwable t ) {
-          throw new ActionValidationException( Messages.getInstance().getErrorString(
-              "RuntimeContext.ERROR_0035_ACTION_VALIDATION_FAILED" ), t, //$NON-NLS-1$
-              session.getName(), instanceId, getActionSequence().getSequenceName(), component.getActionDefinition() );
-        }
-
-        if ( validateResult != IRuntimeContext.RUNTIME_CONTEXT_VALIDATE_OK ) {
-          throw new ActionValidationException( Messages.getInstance().getErrorString(
-              "RuntimeContext.ERROR_0035_ACTION_VALIDATION_FAILED" ), //$NON-NLS-1$
-              session.getName(), instanceId, getActionSequence().getSequenceName(), component.getActionDefinition() );
-        }
+        IComponent component = createComponent( actionDef );
+        // allow the ActionDefinition to cache the component
+        actionDef.setComponent( component );
+        paramManager.setCurrentParameters( actionDef );
+        validateComponent( component );
 
         paramManager.addOutputParameters( actionDef );
         setCurrentComponent( "" ); //$NON-NLS-1$
@@ -566,6 +544,57 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     }
   }
 
+  private IComponent createComponent( final ISolutionActionDefinition actionDef ) throws ActionValidationException {
+    try {
+      IComponent component = resolveComponent( actionDef, instanceId, processId, session );
+      component.setLoggingLevel( loggingLevel );
+      return component;
+      /*
+       * We need to catch checked and unchecked exceptions here so we can create an ActionSequeceException with
+       * contextual information, including the root cause. Allowing unchecked exceptions to pass through would prevent
+       * valuable feedback in the log or response.
+       */
+    } catch ( Throwable ex ) {
+      ActionDefinition actionDefinition = new ActionDefinition( (Element) actionDef.getNode(), null );
+      throw new ActionValidationException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0009_COULD_NOT_CREATE_COMPONENT", actionDef.getComponentName().trim() ), ex, //$NON-NLS-1$
+          session.getName(), instanceId, getActionSequence().getSequenceName(), actionDefinition.getDescription(),
+          actionDefinition.getComponentName() );
+    }
+  }
+
+  private void validateComponent( final IComponent component ) throws ActionValidationException {
+    int validateResult = IRuntimeContext.RUNTIME_CONTEXT_VALIDATE_OK;
+    try {
+      validateResult = component.validate();
+      /*
+       * We need to catch checked and unchecked exceptions here so we can create an ActionSequeceException with
+       * contextual information, including the root cause. Allowing unchecked exceptions to pass through would prevent
+       * valuable feedback in the log or response.
+       */
+    } catch ( Throwable t ) {
+      throw new ActionValidationException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0035_ACTION_VALIDATION_FAILED" ), t, //$NON-NLS-1$
+          session.getName(), instanceId, getActionSequence().getSequenceName(), component.getActionDefinition() );
+    }
+
+    if ( validateResult != IRuntimeContext.RUNTIME_CONTEXT_VALIDATE_OK ) {
+      throw new ActionValidationException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0035_ACTION_VALIDATION_FAILED" ), //$NON-NLS-1$
+          session.getName(), instanceId, getActionSequence().getSequenceName(), component.getActionDefinition() );
+    }
+  }
+
+  /**
+   * Returns the component running <code>actionDefinition</code> in this context.
+   */
+  private IComponent getComponent( final ISolutionActionDefinition actionDefinition ) {
+    if ( iterationComponents != null ) {
+      return iterationComponents.get( actionDefinition );
+    }
+    return actionDefinition.getComponent();
+  }
+
   public IPentahoStreamSource getDataSource( final String parameterName ) {
     IPentahoStreamSource dataSource = null;
 
@@ -891,17 +920,189 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
     }
 
+    boolean parallel = isParallelLoop( sequence, loopParm, loopList, peekOnly );
     if ( loopList instanceof List ) {
-      executeLoop( loopParm, (List) loopList, sequence, doneListener, execListener, async );
+      if ( parallel ) {
+        executeParallelLoop( new ParallelLoop( loopParm, ( (List) loopList ).iterator(), null, sequence,
+            doneListener, execListener ), ( (List) loopList ).size() );
+      } else {
+        executeLoop( loopParm, (List) loopList, sequence, doneListener, execListener, async );
+      }
       if ( loopParm != null ) {
         addInputParameter( loopParm.getName(), loopParm ); // replace the loop param in case the last loop muggled
                                                            // it
       }
     } else if ( loopList instanceof IPentahoResultSet ) {
-      executeLoop( loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly );
+      if ( parallel ) {
+        IPentahoResultSet loopSet = (IPentahoResultSet) loopList;
+        if ( loopSet.isScrollable() ) {
+          loopSet.beforeFirst();
+        }
+        executeParallelLoop( new ParallelLoop( loopParm, null, loopSet, sequence, doneListener, execListener ),
+            loopSet.getRowCount() );
+      } else {
+        executeLoop( loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly );
+      }
     }
   }
 
+  private boolean isParallelLoop( final IActionSequence sequence, final IActionParameter loopParm,
+      final Object loopList, final boolean peekOnly ) {
+    // loops nested in an iteration of a parallel loop run in the thread of that iteration
+    if ( ( loopParm == null ) || ( sequence.getLoopParallelism() == 1 ) || ( iterationComponents != null )
+        || !( paramManager instanceof ParameterManager ) ) {
+      return false;
+    }
+    if ( peekOnly ) {
+      // the actions of a peek-only loop consume the rows themselves, one iteration at a time
+      warn( Messages.getInstance().getString( "RuntimeContext.WARN_PEEK_ONLY_LOOP_NOT_PARALLEL", loopParm.getName() ) ); //$NON-NLS-1$
+      return false;
+    }
+    if ( ( loopList instanceof IPentahoResultSet ) && isMultiDimensional( (IPentahoResultSet) loopList ) ) {
+      // the loop variables are named after a single row of column headers, as in the sequential loop
+      warn( Messages.getInstance().getString( "RuntimeContext.WARN_OLAP_LOOP_NOT_PARALLEL", loopParm.getName() ) ); //$NON-NLS-1$
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns true for result sets with row headers or more than one row of column headers, as OLAP queries return.
+   */
+  private static boolean isMultiDimensional( final IPentahoResultSet loopSet ) {
+    IPentahoMetaData metaData = loopSet.getMetaData();
+    Object[][] columnHeaders = metaData.getColumnHeaders();
+    Object[][] rowHeaders = metaData.getRowHeaders();
+    return ( ( columnHeaders != null ) && ( columnHeaders.length > 1 ) )
+        || ( ( rowHeaders != null ) && ( rowHeaders.length > 0 ) );
+  }
+
+  /**
+   * Runs the iterations of a loop declared parallel on the shared loop threads. Every iteration runs in a context of
+   * its own, with copies of the parameters of this context and its own component instances, so the iterations do not
+   * see each other's parameters. Once all iterations are done, the parameters they set are taken over in the order of
+   * the loop, which gives the same result no matter which iteration finished first.
+   * 
+   * @param iterations
+   *          the number of iterations if known, otherwise -1
+   */
+  private void executeParallelLoop( final ParallelLoop loop, final int iterations ) throws ActionSequenceException {
+    int parallelism = ParallelLoopExecutor.getParallelism( loop.sequence.getLoopParallelism() );
+    if ( iterations >= 0 ) {
+      parallelism = Math.min( parallelism, iterations );
+    }
+    List<Future<?>> workers = new ArrayList<Future<?>>();
+    for ( int i = 1; i < parallelism; i++ ) {
+      workers.add( ParallelLoopExecutor.submit( loop ) );
+    }
+    // the calling thread works on the loop as well, so the loop makes progress even when all loop threads are busy
+    try {
+      loop.run();
+    } catch ( RuntimeException e ) {
+      // e.g. the result set failed to read the next row; the workers must not go on against this context
+      abandonParallelLoop( loop, workers );
+      throw e;
+    } catch ( Error e ) {
+      abandonParallelLoop( loop, workers );
+      throw e;
+    }
+    try {
+      for ( Future<?> worker : workers ) {
+        worker.get();
+      }
+    } catch ( InterruptedException e ) {
+      loop.abandon();
+      Thread.currentThread().interrupt();
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw new ActionExecutionException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0036_PARALLEL_LOOP_INTERRUPTED", loop.loopParm.getName() ), e, //$NON-NLS-1$
+          session.getName(), instanceId, getActionSequence().getSequenceName(), null );
+    } catch ( ExecutionException e ) {
+      // failures of the iterations are recorded by the loop, this is a failure of the loop itself
+      abandonParallelLoop( loop, workers );
+      throw new ActionExecutionException( e.getCause() );
+    }
+    loop.finish();
+  }
+
+  /**
+   * Abandons a parallel loop that failed as a whole and waits for the workers still running on it, so none of them
+   * works against this context once the failure is reported.
+   */
+  private void abandonParallelLoop( final ParallelLoop loop, final List<Future<?>> workers ) {
+    loop.abandon();
+    status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+    boolean interrupted = false;
+    for ( Future<?> worker : workers ) {
+      while ( true ) {
+        try {
+          worker.get();
+          break;
+        } catch ( InterruptedException e ) {
+          interrupted = true;
+        } catch ( ExecutionException e ) {
+          // the failure that abandoned the loop is reported, this one is a consequence of it
+          break;
+        }
+      }
+    }
+    if ( interrupted ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private RuntimeContext createIterationContext( final IOutputHandler iterationOutputHandler ) {
+    RuntimeContext iteration =
+        new RuntimeContext( instanceId, solutionEngine, null, runtimeData, session, iterationOutputHandler, processId,
+            urlFactory, parameterProviders, new ArrayList(), createFeedbackParameterCallback );
+    iteration.actionSequence = actionSequence;
+    iteration.paramManager = ( (ParameterManager) paramManager ).createIterationScope();
+    iteration.iterationComponents = new HashMap<ISolutionActionDefinition, IComponent>();
+    iteration.logId = logId;
+    iteration.audit = audit;
+    iteration.setLoggingLevel( loggingLevel );
+    iteration.parameterXsl = parameterXsl;
+    iteration.parameterTemplate = parameterTemplate;
+    iteration.parameterTarget = parameterTarget;
+    iteration.status = IRuntimeContext.RUNTIME_STATUS_RUNNING;
+    return iteration;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private void mergeIteration( final RuntimeContext iteration ) {
+    ( (ParameterManager) paramManager ).mergeIterationScope( (ParameterManager) iteration.paramManager );
+    mergeIterationMessages( iteration );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private void mergeIterationMessages( final RuntimeContext iteration ) {
+    if ( getMessages() != null ) {
+      getMessages().addAll( iteration.getMessages() );
+    }
+  }
+
+  private String getLoopVariableType( final String name, final Object value ) {
+    String type = null;
+    if ( value instanceof String ) {
+      type = IActionParameter.TYPE_STRING;
+    } else if ( value instanceof Date ) {
+      type = IActionParameter.TYPE_DATE;
+    } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
+      type = IActionParameter.TYPE_INTEGER;
+    } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
+      type = IActionParameter.TYPE_DECIMAL;
+    } else if ( value instanceof String[] ) {
+      type = IActionParameter.TYPE_STRING;
+    } else if ( value == null ) {
+      warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
+    } else {
+      type = IActionParameter.TYPE_OBJECT;
+      warn( Messages.getInstance().getString(
+          "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
+    }
+    return type;
+  }
+
   private void executeLoop( final IActionParameter loopParm, final IPentahoResultSet loopSet,
       final IActionSequence sequence, final IActionCompleteListener doneListener,
       final IExecutionListener execListener, final boolean async, boolean peekOnly ) throws ActionSequenceException {
@@ -940,24 +1141,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
           String name = headers[columnNo].toString();
           Object value = row[columnNo];
-          String type = null;
-          if ( value instanceof String ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value instanceof Date ) {
-            type = IActionParameter.TYPE_DATE;
-          } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
-            type = IActionParameter.TYPE_INTEGER;
-          } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
-            type = IActionParameter.TYPE_DECIMAL;
-          } else if ( value instanceof String[] ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value == null ) {
-            warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
-          } else {
-            type = IActionParameter.TYPE_OBJECT;
-            warn( Messages.getInstance().getString(
-                "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
-          }
+          String type = getLoopVariableType( name, value );
           // TODO make sure any previous loop values are removed
           ap = paramManager.getInput( name );
           if ( ap == null ) {
@@ -1060,6 +1244,12 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         paramManager.setCurrentParameters( actionDef );
 
         try {
+          if ( ( iterationComponents != null ) && !iterationComponents.containsKey( actionDef ) ) {
+            // components keep state while they run, the iterations of a parallel loop can't share them
+            IComponent component = createComponent( actionDef );
+            iterationComponents.put( actionDef, component );
+            validateComponent( component );
+          }
           executeAction( actionDef, parameterProviders, doneListener, execListener, async );
           paramManager.addOutputParameters( actionDef );
         } catch ( ActionSequenceException ex ) {
@@ -1111,7 +1301,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     audit( auditPre );
 
     // initialize the component
-    IComponent component = actionDefinition.getComponent();
+    IComponent component = getComponent( actionDefinition );
 
     if ( RuntimeContext.debug ) {
       debug( Messages.getInstance().getString(
@@ -1181,13 +1371,13 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     try {
       if ( getOutputPreference() == IOutputHandler.OUTPUT_TYPE_PARAMETERS
           && actionDefinition.getComponentName().contains( "SecureFilterComponent" ) ) {
-        status = actionDefinition.getComponent().execute();
+        status = getComponent( actionDefinition ).execute();
       } else if ( getOutputPreference() != IOutputHandler.OUTPUT_TYPE_PARAMETERS ) {
-        status = actionDefinition.getComponent().execute();
+        status = getComponent( actionDefinition ).execute();
       } else {
         status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
       }
-      actionDefinition.getComponent().done();
+      getComponent( actionDefinition ).done();
       if ( RuntimeContext.debug ) {
         debug( Messages.getInstance().getString( "RuntimeContext.DEBUG_FINISHED_COMPONENT_EXECUTE" ) ); //$NON-NLS-1$
       }
@@ -1203,14 +1393,14 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       audit( MessageTypes.COMPONENT_EXECUTE_FAILED, MessageTypes.FAILED, e.getLocalizedMessage(), 0 );
       throw new ActionExecutionException( Messages.getInstance().getErrorString(
           "RuntimeContext.ERROR_0017_COMPONENT_EXECUTE_FAILED" ), e, //$NON-NLS-1$
-          session.getName(), instanceId, getActionSequence().getSequenceName(), actionDefinition.getComponent()
+          session.getName(), instanceId, getActionSequence().getSequenceName(), getComponent( actionDefinition )
               .getActionDefinition() );
     }
 
     if ( status != IRuntimeContext.RUNTIME_STATUS_SUCCESS ) {
       throw new ActionExecutionException( Messages.getInstance().getErrorString(
           "RuntimeContext.ERROR_0017_COMPONENT_EXECUTE_FAILED" ), //$NON-NLS-1$
-          session.getName(), instanceId, getActionSequence().getSequenceName(), actionDefinition.getComponent()
+          session.getName(), instanceId, getActionSequence().getSequenceName(), getComponent( actionDefinition )
               .getActionDefinition() );
     }
   }
@@ -2029,4 +2219,307 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   public void setCreateFeedbackParameterCallback( ICreateFeedbackParameterCallback callback ) {
     createFeedbackParameterCallback = callback;
   }
+
+  /**
+   * The state of a parallel loop, shared by the threads working on it. Each thread takes the next item of the loop,
+   * runs the actions for it in a context of its own and records the outcome under the index of the item.
+   */
+  private class ParallelLoop implements Runnable {
+
+    private final IActionParameter loopParm;
+
+    private final Iterator loopItems;
+
+    private final IPentahoResultSet loopSet;
+
+    private final IActionSequence sequence;
+
+    private final IActionCompleteListener doneListener;
+
+    private final IExecutionListener execListener;
+
+    private final boolean collectErrors;
+
+    private final IOutputHandler outputHandler;
+
+    private final SortedMap<Integer, RuntimeContext> iterations = new TreeMap<Integer, RuntimeContext>();
+
+    private final SortedMap<Integer, ActionSequenceException> failures =
+        new TreeMap<Integer, ActionSequenceException>();
+
+    private Object[] headers;
+
+    private int count;
+
+    private boolean stopped;
+
+    private boolean abandoned;
+
+    ParallelLoop( final IActionParameter loopParm, final Iterator loopItems, final IPentahoResultSet loopSet,
+        final IActionSequence sequence, final IActionCompleteListener doneListener,
+        final IExecutionListener execListener ) {
+      this.loopParm = loopParm;
+      this.loopItems = loopItems;
+      this.loopSet = loopSet;
+      this.sequence = sequence;
+      this.collectErrors = sequence.getLoopCollectsErrors();
+      SynchronizedLoopListener listener = new SynchronizedLoopListener( doneListener, execListener );
+      this.doneListener = ( doneListener != null ) ? listener : null;
+      this.execListener = ( execListener != null ) ? listener : null;
+      // the iterations share the output handler of the loop, so their outputs are written one at a time
+      IOutputHandler loopOutputHandler = RuntimeContext.this.outputHandler;
+      this.outputHandler = ( loopOutputHandler != null ) ? new SynchronizedOutputHandler( loopOutputHandler ) : null;
+      if ( loopSet != null ) {
+        // multi-dimensional result sets are looped over sequentially, see isParallelLoop
+        headers = loopSet.getMetaData().getColumnHeaders()[0];
+      }
+    }
+
+    public void run() {
+      while ( true ) {
+        List<IActionParameter> parameters;
+        int index;
+        synchronized ( this ) {
+          parameters = stopped ? null : nextParameters();
+          if ( parameters == null ) {
+            return;
+          }
+          index = count++;
+        }
+        if ( RuntimeContext.debug ) {
+          debug( Messages.getInstance().getString( "RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString( index ) ) ); //$NON-NLS-1$
+        }
+        if ( execListener != null ) {
+          execListener.loop( RuntimeContext.this, index );
+        }
+
+        RuntimeContext iteration = createIterationContext( outputHandler );
+        for ( IActionParameter parameter : parameters ) {
+          iteration.addInputParameter( parameter.getName(), parameter );
+        }
+        ActionSequenceException failure = null;
+        try {
+          iteration.performActions( sequence, doneListener, execListener, false );
+        } catch ( ActionSequenceException e ) {
+          failure = e;
+          /*
+           * We need to catch checked and unchecked exceptions here, a failure of one iteration must not keep the others
+           * from being recorded.
+           */
+        } catch ( Throwable t ) {
+          failure = new ActionExecutionException( Messages.getInstance().getErrorString(
+              "RuntimeContext.ERROR_0038_LOOP_ITERATION_FAILED", Integer.toString( index ), loopParm.getName() ), t, //$NON-NLS-1$
+              session.getName(), instanceId, getActionSequence().getSequenceName(), null );
+        }
+        if ( failure != null ) {
+          failure.setLoopIndex( index );
+        }
+        record( index, iteration, failure );
+      }
+    }
+
+    /**
+     * Returns the parameters the next item of the loop sets, or null at the end of the loop.
+     */
+    private List<IActionParameter> nextParameters() {
+      List<IActionParameter> parameters = new ArrayList<IActionParameter>();
+      if ( loopItems != null ) {
+        if ( !loopItems.hasNext() ) {
+          return null;
+        }
+        Object loopVar = loopItems.next();
+        if ( loopVar instanceof Map ) {
+          parameters.add( new ActionParameter( loopParm.getName(), "property-map", loopVar, null, null ) ); //$NON-NLS-1$
+        } else {
+          parameters.add( new ActionParameter( loopParm.getName(), "string", loopVar, null, null ) ); //$NON-NLS-1$
+        }
+      } else {
+        Object[] row = loopSet.next();
+        if ( row == null ) {
+          return null;
+        }
+        for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
+          String name = headers[columnNo].toString();
+          Object value = row[columnNo];
+          parameters.add( new ActionParameter( name, getLoopVariableType( name, value ), value, null, null ) );
+        }
+      }
+      return parameters;
+    }
+
+    private synchronized void record( final int index, final RuntimeContext iteration,
+        final ActionSequenceException failure ) {
+      if ( abandoned ) {
+        ( (ParameterManager) iteration.paramManager ).discardIterationScope();
+        return;
+      }
+      iterations.put( index, iteration );
+      if ( failure != null ) {
+        failures.put( index, failure );
+        stopped = !collectErrors;
+      }
+    }
+
+    /**
+     * Stops handing out items and discards the iterations, when the loop ends without waiting for all of them.
+     */
+    private synchronized void abandon() {
+      stopped = true;
+      abandoned = true;
+      for ( RuntimeContext iteration : iterations.values() ) {
+        ( (ParameterManager) iteration.paramManager ).discardIterationScope();
+      }
+      iterations.clear();
+    }
+
+    /**
+     * Takes over the iterations in the order of the loop. When the loop stopped at a failure, only the iterations
+     * before the failed one are taken over, as if the loop had run sequentially; iterations that were still running
+     * at that time are discarded.
+     */
+    private synchronized void finish() throws ActionSequenceException {
+      int end = ( collectErrors || failures.isEmpty() ) ? Integer.MAX_VALUE : failures.firstKey();
+      for ( Map.Entry<Integer, RuntimeContext> entry : iterations.entrySet() ) {
+        RuntimeContext iteration = entry.getValue();
+        if ( ( entry.getKey() < end ) && !failures.containsKey( entry.getKey() ) ) {
+          mergeIteration( iteration );
+        } else {
+          if ( entry.getKey() <= end ) {
+            mergeIterationMessages( iteration );
+          }
+          ( (ParameterManager) iteration.paramManager ).discardIterationScope();
+        }
+      }
+      iterations.clear();
+
+      if ( failures.isEmpty() ) {
+        status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
+        return;
+      }
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      ActionSequenceException first = failures.get( failures.firstKey() );
+      if ( failures.size() == 1 ) {
+        throw first;
+      }
+      for ( Map.Entry<Integer, ActionSequenceException> entry : failures.entrySet() ) {
+        error( Messages.getInstance().getErrorString(
+            "RuntimeContext.ERROR_0038_LOOP_ITERATION_FAILED", entry.getKey().toString(), loopParm.getName() ), //$NON-NLS-1$
+            entry.getValue() );
+      }
+      ActionExecutionException ex =
+          new ActionExecutionException( Messages.getInstance().getErrorString(
+              "RuntimeContext.ERROR_0037_PARALLEL_LOOP_FAILED", Integer.toString( failures.size() ), //$NON-NLS-1$
+              Integer.toString( count ), loopParm.getName() ), first, session.getName(), instanceId,
+              getActionSequence().getSequenceName(), null );
+      ex.setLoopIndex( failures.firstKey() );
+      throw ex;
+    }
+  }
+
+  /**
+   * Passes the notifications from the iterations of a parallel loop to the listeners of the loop one at a time.
+   */
+  private static class SynchronizedLoopListener implements IActionCompleteListener, IExecutionListener {
+
+    private final IActionCompleteListener doneListener;
+
+    private final IExecutionListener execListener;
+
+    SynchronizedLoopListener( final IActionCompleteListener doneListener, final IExecutionListener execListener ) {
+      this.doneListener = doneListener;
+      this.execListener = execListener;
+    }
+
+    public synchronized void actionComplete( final IRuntimeContext runtime ) {
+      if ( doneListener != null ) {
+        doneListener.actionComplete( runtime );
+      }
+    }
+
+    public synchronized void loaded( final IRuntimeContext runtime ) {
+      if ( execListener != null ) {
+        execListener.loaded( runtime );
+      }
+    }
+
+    public synchronized void validated( final IRuntimeContext runtime ) {
+      if ( execListener != null ) {
+        execListener.validated( runtime );
+      }
+    }
+
+    public synchronized void action( final IRuntimeContext runtime, final ISolutionActionDefinition action ) {
+      if ( execListener != null ) {
+        execListener.action( runtime, action );
+      }
+    }
+
+    public synchronized void loop( final IRuntimeContext runtime, final long count ) {
+      if ( execListener != null ) {
+        execListener.loop( runtime, count );
+      }
+    }
+  }
+
+  /**
+   * Passes the outputs of the iterations of a parallel loop to the output handler of the loop one at a time.
+   */
+  private static class SynchronizedOutputHandler implements IOutputHandler {
+
+    private final IOutputHandler outputHandler;
+
+    SynchronizedOutputHandler( final IOutputHandler outputHandler ) {
+      this.outputHandler = outputHandler;
+    }
+
+    public synchronized void setSession( final IPentahoSession session ) {
+      outputHandler.setSession( session );
+    }
+
+    public synchronized IPentahoSession getSession() {
+      return outputHandler.getSession();
+    }
+
+    @Deprecated
+    public synchronized boolean contentDone() {
+      return outputHandler.contentDone();
+    }
+
+    public synchronized boolean isResponseExpected() {
+      return outputHandler.isResponseExpected();
+    }
+
+    public synchronized IContentItem getFeedbackContentItem() {
+      return outputHandler.getFeedbackContentItem();
+    }
+
+    public synchronized IContentItem getOutputContentItem( final String objectName, final String contentName,
+        final String instanceId, final String mimeType ) {
+      return outputHandler.getOutputContentItem( objectName, contentName, instanceId, mimeType );
+    }
+
+    public synchronized boolean allowFeedback() {
+      return outputHandler.allowFeedback();
+    }
+
+    public synchronized void setOutputPreference( final int outputType ) {
+      outputHandler.setOutputPreference( outputType );
+    }
+
+    public synchronized int getOutputPreference() {
+      return outputHandler.getOutputPreference();
+    }
+
+    public synchronized void setOutput( final String name, final Object value ) throws IOException {
+      outputHandler.setOutput( name, value );
+    }
+
+    public synchronized IMimeTypeListener getMimeTypeListener() {
+      return outputHandler.getMimeTypeListener();
+    }
+
+    public synchronized void setMimeTypeListener( final IMimeTypeListener mimeTypeListener ) {
+      outputHandler.setMimeTypeListener( mimeTypeListener );
+    }
+  }
 }
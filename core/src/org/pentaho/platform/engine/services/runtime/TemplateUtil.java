@@ -35,11 +35,11 @@ import org.pentaho.platform.util.DateMath;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -66,6 +66,19 @@ public class TemplateUtil {
 
   private static final Pattern datePattern = Pattern.compile( TemplateUtil.DATE_PATTERN );
 
+  /** Maximum number of custom parameter patterns kept compiled */
+  static final int MAX_CACHED_PATTERNS = 100;
+
+  /** Custom parameter patterns by their source, least recently used first */
+  private static final Map<String, Pattern> parameterPatterns = new LinkedHashMap<String, Pattern>( 16, 0.75f, true ) {
+    private static final long serialVersionUID = 3406927318735262183L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, Pattern> eldest ) {
+      return size() > MAX_CACHED_PATTERNS;
+    }
+  };
+
   private static final List<String> SystemInputs = new ArrayList<String>();
 
   private static final Log logger = LogFactory.getLog( TemplateUtil.class );
@@ -106,7 +119,16 @@ public class TemplateUtil {
 
   public static String applyTemplate( final String template, final IRuntimeContext context,
       final String parameterPatternStr ) {
-    Pattern pattern = Pattern.compile( parameterPatternStr );
+    Pattern pattern;
+    synchronized ( TemplateUtil.parameterPatterns ) {
+      pattern = TemplateUtil.parameterPatterns.get( parameterPatternStr );
+    }
+    if ( pattern == null ) {
+      pattern = Pattern.compile( parameterPatternStr );
+      synchronized ( TemplateUtil.parameterPatterns ) {
+        TemplateUtil.parameterPatterns.put( parameterPatternStr, pattern );
+      }
+    }
     return TemplateUtil.applyTemplate( template, new InputProperties( context ), pattern, null );
   }
 
@@ -135,54 +157,43 @@ public class TemplateUtil {
    */
   public static String applyTemplate( final String template, final Properties inputs, final Pattern parameterPattern,
       final IParameterResolver resolver ) {
-    StringBuffer results = new StringBuffer();
-    Matcher parameterMatcher = parameterPattern.matcher( template );
+    CompiledTemplate compiled = CompiledTemplate.compile( template, parameterPattern );
+    if ( compiled.slots.length == 0 ) {
+      return template;
+    }
+    // size the buffer for the common case of values about as long as the parameters they replace
+    StringBuffer results = new StringBuffer( template.length() + 16 );
     int copyStart = 0;
 
-    while ( parameterMatcher.find() ) {
-      int start = parameterMatcher.start();
-      String parameter = parameterMatcher.group( 1 );
+    for ( CompiledTemplate.Slot slot : compiled.slots ) {
+      String parameter = slot.parameter;
       String value = null;
-      int colonPosition = parameter.indexOf( ':' );
-      boolean hasSpaces = parameter.indexOf( ' ' ) != -1;
-      boolean isTableTemplate = !hasSpaces && parameter.indexOf( ":col:" ) != -1; //$NON-NLS-1$
-      boolean isComponentResoved = !hasSpaces && colonPosition != -1;
-      boolean isNamedParameter = !hasSpaces;
-      boolean isDateParamter = hasSpaces;
-      if ( isTableTemplate ) {
-        TemplateUtil.applyTableTemplate( template, inputs, parameterPattern, results );
+      if ( slot.isTableTemplate ) {
+        TemplateUtil.applyTableTemplate( compiled, inputs, results );
         return results.toString();
       }
-      if ( isComponentResoved ) {
+      if ( slot.isComponentResolved ) {
         // Allow alternate parameter resolution to be provided by the
         // component.
         if ( resolver != null ) {
-          int newCopyStart = resolver.resolveParameter( template, parameter, parameterMatcher, copyStart, results );
+          int newCopyStart =
+              resolver.resolveParameter( template, parameter, compiled.matcherAt( slot ), copyStart, results );
           if ( newCopyStart >= 0 ) {
             copyStart = newCopyStart;
             continue;
           }
         }
-        StringTokenizer tokenizer = new StringTokenizer( parameter, ":" ); //$NON-NLS-1$
-        if ( tokenizer.countTokens() >= 5 ) {
+        if ( slot.tableKey != null ) {
           // this looks like a data table key
-          parameter = tokenizer.nextToken();
-          String keyColumn = tokenizer.nextToken();
-          String keyValue = tokenizer.nextToken();
-          String valueColumn = tokenizer.nextToken();
-          StringBuffer defaultValue = new StringBuffer();
-          defaultValue.append( tokenizer.nextToken() );
-          while ( tokenizer.hasMoreTokens() ) {
-            defaultValue.append( ':' ).append( tokenizer.nextToken() );
-          }
+          parameter = slot.tableKey[0];
           // see if we can find this in the data
           if ( inputs instanceof InputProperties ) {
             value =
-                ( (InputProperties) inputs ).getProperty( parameter, keyColumn, keyValue, valueColumn, defaultValue
-                    .toString() );
+                ( (InputProperties) inputs ).getProperty( parameter, slot.tableKey[1], slot.tableKey[2],
+                    slot.tableKey[3], slot.tableKey[4] );
           }
         }
-      } else if ( isNamedParameter ) {
+      } else if ( !slot.hasSpaces ) {
         // TODO support type conversion
         value = inputs.getProperty( parameter );
         if ( value == null ) {
@@ -192,21 +203,21 @@ public class TemplateUtil {
         }
       }
 
-      results.append( template.substring( copyStart, start ) );
-      copyStart = parameterMatcher.end();
-      if ( isDateParamter || value == null ) {
+      results.append( template, copyStart, slot.start );
+      copyStart = slot.end;
+      if ( slot.hasSpaces || value == null ) {
         value = TemplateUtil.matchDateRegex( parameter, inputs );
       }
 
       if ( value == null ) {
-        results.append( parameterMatcher.group() );
+        results.append( template, slot.start, slot.end );
       } else {
         results.append( value );
       }
     }
 
     if ( copyStart < template.length() ) {
-      results.append( template.substring( copyStart ) );
+      results.append( template, copyStart, template.length() );
     }
 
     return results.toString();
@@ -214,56 +225,52 @@ public class TemplateUtil {
 
   public static void applyTableTemplate( final String template, final Properties inputs,
       final Pattern parameterPattern, final StringBuffer results ) {
-    Matcher parameterMatcher = parameterPattern.matcher( template );
-    ArrayList<String> partsList = new ArrayList<String>();
-    ArrayList<Integer> columnsList = new ArrayList<Integer>();
-    int idx = 0;
-    int lastEnd = 0;
+    TemplateUtil.applyTableTemplate( CompiledTemplate.compile( template, parameterPattern ), inputs, results );
+  }
+
+  private static void applyTableTemplate( final CompiledTemplate compiled, final Properties inputs,
+      final StringBuffer results ) {
+    List<Integer> columnsList = new ArrayList<Integer>( compiled.tableSlots.length );
     IPentahoResultSet data = null;
-    while ( parameterMatcher.find() ) {
-      int start = parameterMatcher.start();
-      String parameter = parameterMatcher.group( 1 );
-      // pull out the repeating part
-      int pos1 = parameter.indexOf( ":col:" ); //$NON-NLS-1$ 
-      if ( pos1 > -1 ) {
-        String part = template.substring( lastEnd, start );
-        if ( PentahoSystem.debug ) {
-          TemplateUtil.logger.debug( "parameter=" + parameter ); //$NON-NLS-1$ 
-          TemplateUtil.logger.debug( "part=" + part ); //$NON-NLS-1$ 
-        }
-        String inputName = parameter.substring( 0, pos1 );
-        String columnNoStr = parameter.substring( pos1 + 5 );
-        int columnNo = Integer.parseInt( columnNoStr );
-        if ( PentahoSystem.debug ) {
-          TemplateUtil.logger.debug( "inputName=" + inputName ); //$NON-NLS-1$ 
-          TemplateUtil.logger.debug( "columnNoStr=" + columnNoStr ); //$NON-NLS-1$ 
-          TemplateUtil.logger.debug( "columnNo=" + columnNo ); //$NON-NLS-1$ 
-        }
-        Object obj = null;
-        if ( inputs instanceof InputProperties ) {
-          obj = ( (InputProperties) inputs ).getInput( inputName );
+    for ( CompiledTemplate.Slot slot : compiled.tableSlots ) {
+      if ( PentahoSystem.debug ) {
+        TemplateUtil.logger.debug( "parameter=" + slot.parameter ); //$NON-NLS-1$ 
+        TemplateUtil.logger.debug( "part=" + slot.tablePart ); //$NON-NLS-1$ 
+      }
+      String inputName = slot.tableInputName;
+      if ( slot.tableColumnNo == null ) {
+        throw new NumberFormatException( Messages.getInstance().getErrorString(
+            "TemplateUtil.ERROR_0001_INVALID_COLUMN_NUMBER", slot.tableColumnNoStr, slot.parameter ) ); //$NON-NLS-1$
+      }
+      int columnNo = slot.tableColumnNo.intValue();
+      if ( PentahoSystem.debug ) {
+        TemplateUtil.logger.debug( "inputName=" + inputName ); //$NON-NLS-1$ 
+        TemplateUtil.logger.debug( "columnNoStr=" + slot.tableColumnNoStr ); //$NON-NLS-1$ 
+        TemplateUtil.logger.debug( "columnNo=" + columnNo ); //$NON-NLS-1$ 
+      }
+      Object obj = null;
+      if ( inputs instanceof InputProperties ) {
+        obj = ( (InputProperties) inputs ).getInput( inputName );
+      }
+      if ( obj == null ) {
+        if ( TemplateUtil.logger.isDebugEnabled() ) {
+          TemplateUtil.logger.debug( Messages.getInstance().getString( "TemplateUtil.NOT_FOUND", inputName ) ); //$NON-NLS-1$
         }
-        if ( obj == null ) {
-          if ( TemplateUtil.logger.isDebugEnabled() ) {
-            TemplateUtil.logger.debug( Messages.getInstance().getString( "TemplateUtil.NOT_FOUND", inputName ) ); //$NON-NLS-1$
-          }
-        } else {
-          if ( obj instanceof IPentahoResultSet ) {
-            data = (IPentahoResultSet) obj;
-            if ( columnNo < data.getColumnCount() ) {
-              columnsList.add( new Integer( columnNo ) );
-            } else {
-              TemplateUtil.logger.warn( Messages.getInstance().getString(
-                  "TemplateUtil.INVALID_COLUMN", String.valueOf( columnNo ) ) ); //$NON-NLS-1$
-            }
+      } else {
+        if ( obj instanceof IPentahoResultSet ) {
+          data = (IPentahoResultSet) obj;
+          if ( columnNo < data.getColumnCount() ) {
+            columnsList.add( slot.tableColumnNo );
+          } else {
+            TemplateUtil.logger.warn( Messages.getInstance().getString(
+                "TemplateUtil.INVALID_COLUMN", String.valueOf( columnNo ) ) ); //$NON-NLS-1$
           }
         }
-        partsList.add( part );
-        lastEnd = parameterMatcher.end();
       }
     }
+    int partsCount = compiled.tableSlots.length;
     if ( PentahoSystem.debug ) {
-      TemplateUtil.logger.debug( "partsList.size()=" + partsList.size() ); //$NON-NLS-1$ 
+      TemplateUtil.logger.debug( "partsList.size()=" + ( partsCount == 0 ? 0 : partsCount + 1 ) ); //$NON-NLS-1$ 
     }
     if ( PentahoSystem.debug ) {
       TemplateUtil.logger.debug( "columnsList.size()=" + columnsList.size() ); //$NON-NLS-1$ 
@@ -271,26 +278,25 @@ public class TemplateUtil {
     if ( PentahoSystem.debug ) {
       TemplateUtil.logger.debug( "data=" + data ); //$NON-NLS-1$ 
     }
-    if ( partsList.size() > 0 ) {
-      partsList.add( template.substring( lastEnd ) );
-    } else {
+    if ( partsCount == 0 ) {
       TemplateUtil.logger.warn( Messages.getInstance().getString( "TemplateUtil.NO_TOKEN" ) ); //$NON-NLS-1$
     }
 
-    if ( ( data != null ) && ( partsList.size() == columnsList.size() + 1 ) ) {
+    if ( ( data != null ) && ( partsCount == columnsList.size() ) ) {
       // here we go
-      String[] parts = new String[partsList.size()];
-      partsList.toArray( parts );
-      Integer[] cols = new Integer[columnsList.size()];
-      columnsList.toArray( cols );
+      String tail = compiled.getTableTail();
+      int[] cols = new int[columnsList.size()];
+      for ( int idx = 0; idx < cols.length; idx++ ) {
+        cols[idx] = columnsList.get( idx ).intValue();
+      }
       int rowNo = 0;
       Object[] row = data.getDataRow( rowNo );
       while ( row != null ) {
-        for ( idx = 0; idx < cols.length; idx++ ) {
-          results.append( parts[idx] );
-          results.append( row[cols[idx].intValue()] );
+        for ( int idx = 0; idx < cols.length; idx++ ) {
+          results.append( compiled.tableSlots[idx].tablePart );
+          results.append( row[cols[idx]] );
         }
-        results.append( parts[parts.length - 1] );
+        results.append( tail );
         rowNo++;
         row = data.getDataRow( rowNo );
       }
@@ -22,6 +22,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.pentaho.platform.engine.core.solution.CustomSettingsParameterProvider;
 import org.pentaho.platform.engine.core.solution.SystemSettingsParameterProvider;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.core.system.boot.PlatformInitializationException;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
@@ -80,6 +81,16 @@ public class SettingsParameterProviderTest {
     Assert.assertEquals( "Expected null result", null, value );
   }
 
+  @Test
+  public void testNumericSystemSettings() {
+    Assert.assertEquals( 10, PentahoSystem.getSystemSettingAsInt( "dbcp-defaults/max-act-conn", 3 ) );
+    Assert.assertEquals( 100.0, PentahoSystem.getSystemSettingAsDouble( "dbcp-defaults/wait", 3 ), 0.0 );
+    // missing and invalid settings fall back to the default
+    Assert.assertEquals( 3, PentahoSystem.getSystemSettingAsInt( "dbcp-defaults/bogus", 3 ) );
+    Assert.assertEquals( 3, PentahoSystem.getSystemSettingAsInt( "dbcp-defaults/valid-query", 3 ) );
+    Assert.assertEquals( 0.5, PentahoSystem.getSystemSettingAsDouble( "log-file", 0.5 ), 0.0 );
+  }
+
   @Test
   public void testCustomSettingsParameterProvider() {
     CustomSettingsParameterProvider provider = new CustomSettingsParameterProvider();
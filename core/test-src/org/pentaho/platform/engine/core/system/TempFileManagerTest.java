@@ -0,0 +1,194 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings( "nls" )
+public class TempFileManagerTest {
+
+  private File directory;
+
+  private TempFileManager manager;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = new File( System.getProperty( "java.io.tmpdir" ), "test-temp-file-manager" );
+    FileUtils.deleteDirectory( directory );
+    directory.mkdirs();
+    manager = new TempFileManager();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    manager.shutdown();
+    FileUtils.deleteDirectory( directory );
+  }
+
+  private File createFile( final String name, final int size ) throws IOException {
+    File file = new File( directory, name );
+    FileOutputStream out = new FileOutputStream( file );
+    try {
+      out.write( new byte[size] );
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  @Test
+  public void testDiscardDeletesFilesOfOwner() throws Exception {
+    File mine = createFile( "mine.png", 10 );
+    File other = createFile( "other.png", 10 );
+    manager.track( "session1", mine );
+    manager.track( "session2", other );
+
+    assertTrue( manager.isTracked( "session1", "mine.png" ) );
+    assertFalse( manager.isTracked( "session1", "other.png" ) );
+    assertEquals( 20, manager.getTotalSize() );
+
+    manager.discard( "session1" );
+
+    assertFalse( mine.exists() );
+    assertTrue( other.exists() );
+    assertFalse( manager.isTracked( "session1", "mine.png" ) );
+    assertEquals( 1, manager.getFileCount() );
+    assertEquals( 10, manager.getTotalSize() );
+    assertEquals( 0, manager.getReclaimedCount() );
+  }
+
+  @Test
+  public void testServerQuotaReclaimsLeastRecentlyUsed() throws Exception {
+    manager.configure( 250, 0, 0 );
+    File first = createFile( "first.png", 100 );
+    File second = createFile( "second.png", 100 );
+    File third = createFile( "third.png", 100 );
+    manager.track( "session1", first );
+    manager.track( "session2", second );
+    // first is used again, so second is the least recently used
+    manager.retain( first );
+    manager.release( first );
+
+    manager.track( "session1", third );
+
+    assertTrue( first.exists() );
+    assertFalse( second.exists() );
+    assertTrue( third.exists() );
+    assertFalse( manager.isTracked( "session2", "second.png" ) );
+    assertEquals( 200, manager.getTotalSize() );
+    assertEquals( 1, manager.getReclaimedCount() );
+    assertEquals( 100, manager.getReclaimedSize() );
+  }
+
+  @Test
+  public void testSessionQuotaReclaimsOnlyFilesOfSession() throws Exception {
+    manager.configure( 0, 150, 0 );
+    File other = createFile( "other.png", 100 );
+    File first = createFile( "first.png", 100 );
+    File second = createFile( "second.png", 100 );
+    manager.track( "session2", other );
+    manager.track( "session1", first );
+    manager.track( "session1", second );
+
+    assertTrue( other.exists() );
+    assertFalse( first.exists() );
+    assertTrue( second.exists() );
+  }
+
+  @Test
+  public void testRetainedFileIsKeptUntilReleased() throws Exception {
+    manager.configure( 50, 0, 0 );
+    File sent = createFile( "sent.png", 100 );
+    manager.track( "session1", sent );
+    // a file over the quota on its own is reclaimed as well
+    assertFalse( sent.exists() );
+
+    sent = createFile( "sent.png", 10 );
+    manager.track( "session1", sent );
+    assertTrue( manager.retain( sent ) );
+    assertEquals( 1, manager.getInUseCount() );
+    createFile( "sent.png", 100 );
+    manager.sweep();
+    assertTrue( sent.exists() );
+
+    manager.discard( "session1" );
+    assertTrue( sent.exists() );
+
+    manager.release( sent );
+    assertFalse( sent.exists() );
+    assertEquals( 0, manager.getInUseCount() );
+    assertEquals( 0, manager.getFileCount() );
+  }
+
+  @Test
+  public void testSweepDropsFilesDeletedByOthers() throws Exception {
+    File file = createFile( "gone.png", 10 );
+    manager.track( "session1", file );
+    file.delete();
+
+    manager.sweep();
+
+    assertEquals( 0, manager.getFileCount() );
+    assertEquals( 0, manager.getTotalSize() );
+    assertEquals( 0, manager.getOwnerCount() );
+  }
+
+  @Test
+  public void testDeleteOrphansKeepsTrackedAndNewFiles() throws Exception {
+    File orphan = createFile( "orphan.png", 10 );
+    File tracked = createFile( "tracked.png", 10 );
+    File subDirectory = new File( directory, "sub" );
+    subDirectory.mkdirs();
+    long start = System.currentTimeMillis() + 60000;
+    manager.track( "session1", tracked );
+
+    assertEquals( 1, manager.deleteOrphans( directory, start ) );
+
+    assertFalse( orphan.exists() );
+    assertTrue( tracked.exists() );
+    assertTrue( subDirectory.exists() );
+    assertEquals( 1, manager.getOrphanCount() );
+    assertEquals( 0, manager.deleteOrphans( directory, 0 ) );
+  }
+
+  @Test
+  public void testDeleterTracksThroughManager() throws Exception {
+    StandaloneTempFileDeleter deleter = new StandaloneTempFileDeleter();
+    File file = createFile( "deleter.png", 10 );
+    deleter.trackTempFile( file );
+
+    assertTrue( deleter.hasTempFile( "deleter.png" ) );
+    assertFalse( new StandaloneTempFileDeleter().hasTempFile( "deleter.png" ) );
+
+    deleter.doTempFileCleanup();
+
+    assertFalse( file.exists() );
+    assertFalse( deleter.hasTempFile( "deleter.png" ) );
+  }
+}
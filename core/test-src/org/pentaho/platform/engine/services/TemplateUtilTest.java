@@ -25,6 +25,7 @@ import org.pentaho.platform.util.DateMath;
 
 import java.util.Properties;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @SuppressWarnings( { "all" } )
 public class TemplateUtilTest extends TestCase implements IParameterResolver {
@@ -52,6 +53,79 @@ public class TemplateUtilTest extends TestCase implements IParameterResolver {
 
   }
 
+  public void testMultipleVariables() {
+
+    Properties props = new Properties();
+    props.put( "name1", "value1" );
+    props.put( "name2", "value2" );
+
+    String template = "select * from t where a = '{name1}' and b = '{name2}' and c = '{missing}'";
+    String expected = "select * from t where a = 'value1' and b = 'value2' and c = '{missing}'";
+    // the second call is served from the compiled template cache and must give the same result
+    assertEquals( expected, TemplateUtil.applyTemplate( template, props, (IParameterResolver) null ) );
+    assertEquals( expected, TemplateUtil.applyTemplate( template, props, (IParameterResolver) null ) );
+
+    props.put( "name1", "other" );
+    assertEquals( "select * from t where a = 'other' and b = 'value2' and c = '{missing}'", TemplateUtil
+        .applyTemplate( template, props, (IParameterResolver) null ) );
+
+  }
+
+  public void testNoVariables() {
+
+    String template = "select * from t";
+    assertSame( template, TemplateUtil.applyTemplate( template, new Properties(), (IParameterResolver) null ) );
+
+  }
+
+  public void testCustomPattern() {
+
+    Properties props = new Properties();
+    props.put( "name1", "value1" );
+
+    Pattern pattern = Pattern.compile( "\\[([^\\]]*)\\]" );
+    assertEquals( "a value1 {name1}", TemplateUtil.applyTemplate( "a [name1] {name1}", props, pattern, null ) );
+    // same template text with the default pattern must not reuse the compiled form above
+    assertEquals( "a [name1] value1", TemplateUtil.applyTemplate( "a [name1] {name1}", props,
+        (IParameterResolver) null ) );
+
+  }
+
+  public void testInvalidTableColumn() {
+
+    Pattern pattern = Pattern.compile( "\\{([^\\}\\{$^]*)\\}" );
+    try {
+      TemplateUtil.applyTableTemplate( "a in ({rows:col:x})", new Properties(), pattern, new StringBuffer() );
+      fail( "a column number that is not a number must be rejected" );
+    } catch ( NumberFormatException e ) {
+      assertTrue( e.getMessage(), e.getMessage().indexOf( "TemplateUtil.ERROR_0001" ) >= 0 );
+      assertTrue( e.getMessage(), e.getMessage().indexOf( "rows:col:x" ) >= 0 );
+    }
+
+  }
+
+  public void testResolverSeesMatcher() {
+
+    Properties props = new Properties();
+    props.put( "name2", "value2" );
+
+    String template = "x={PREPARE:name1} y={name2} z={PREPARE:other}";
+    IParameterResolver resolver = new IParameterResolver() {
+      public int resolveParameter( String template, String parameter, Matcher parameterMatcher, int copyStart,
+          StringBuffer results ) {
+        if ( !parameter.equals( "PREPARE:name1" ) ) {
+          return -1;
+        }
+        assertEquals( "{PREPARE:name1}", parameterMatcher.group() );
+        results.append( template.substring( copyStart, parameterMatcher.start() ) );
+        results.append( "?" );
+        return parameterMatcher.end();
+      }
+    };
+    assertEquals( "x=? y=value2 z={PREPARE:other}", TemplateUtil.applyTemplate( template, props, resolver ) );
+
+  }
+
   public void testDateRegexSimple() {
 
     doCompare( "+1:MS" );
@@ -20,7 +20,6 @@ package org.pentaho.platform.plugin.action.javascript;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mozilla.javascript.Context;
-import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -31,7 +30,7 @@ import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.platform.api.engine.IActionSequenceResource;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
-import org.pentaho.platform.plugin.condition.javascript.RhinoScriptable;
+import org.pentaho.platform.plugin.condition.javascript.RhinoScriptCache;
 import org.pentaho.platform.plugin.services.connections.javascript.JavaScriptResultSet;
 
 import java.util.ArrayList;
@@ -126,7 +125,8 @@ public class JavascriptRule extends ComponentBase {
    */
   @Override
   protected boolean executeAction() {
-    Context cx = ContextFactory.getGlobal().enterContext();
+    RhinoScriptCache scriptCache = RhinoScriptCache.getInstance();
+    Context cx = scriptCache.enterContext();
     StringBuffer buffer = new StringBuffer();
     @SuppressWarnings( "unchecked" )
     Iterator<String> iter = getResourceNames().iterator();
@@ -175,9 +175,10 @@ public class JavascriptRule extends ComponentBase {
           debug( "script=" + script ); //$NON-NLS-1$
         }
         try {
-          ScriptableObject scriptable = new RhinoScriptable();
-          // initialize the standard javascript objects
-          Scriptable scope = cx.initStandardObjects( scriptable );
+          // the standard javascript objects live in the shared scope; this execution only sees them through its
+          // own child scope
+          ScriptableObject scriptable = scriptCache.getSharedScope( cx );
+          Scriptable scope = scriptCache.newScope( cx );
 
           Object resultObject = executeScript( scriptable, scope, script, cx );
           if ( oldStyleOutputs ) {
@@ -242,7 +243,6 @@ public class JavascriptRule extends ComponentBase {
 
   protected Object executeScript( final ScriptableObject scriptable, final Scriptable scope, final String script,
       final Context cx ) throws Exception {
-    ScriptableObject.defineClass( scope, JavaScriptResultSet.class );
     @SuppressWarnings( "unchecked" )
     Set<String> inputNames = getInputNames();
     Iterator<String> inputNamesIterator = inputNames.iterator();
@@ -276,8 +276,8 @@ public class JavascriptRule extends ComponentBase {
     Object wrappedThis = Context.javaToJS( this, scope );
     ScriptableObject.putProperty( scope, "out", wrappedOut ); //$NON-NLS-1$
     ScriptableObject.putProperty( scope, "rule", wrappedThis ); //$NON-NLS-1$
-    // evaluate the script
-    return cx.evaluateString( scope, script, "<cmd>", 1, null ); //$NON-NLS-1$
+    // evaluate the script, reusing the compiled form if it has been run before
+    return RhinoScriptCache.getInstance().exec( cx, scope, script );
 
   }
 
@@ -40,6 +40,8 @@ import org.pentaho.platform.api.engine.IComponent;
 import org.pentaho.platform.api.engine.IPentahoRequestContext;
 import org.pentaho.platform.api.engine.IRuntimeContext;
 import org.pentaho.platform.api.repository.IContentItem;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.jfreereport.components.JFreeReportValidateParametersComponent;
@@ -49,6 +51,7 @@ import org.pentaho.platform.plugin.action.jfreereport.helper.PentahoResourceLoad
 import org.pentaho.platform.plugin.action.jfreereport.helper.PentahoTableDataFactory;
 import org.pentaho.platform.plugin.action.jfreereport.helper.PentahoTableModel;
 import org.pentaho.platform.plugin.action.jfreereport.helper.PentahoURLRewriter;
+import org.pentaho.platform.plugin.action.jfreereport.helper.ReportDefinitionCache;
 import org.pentaho.platform.plugin.action.jfreereport.helper.ReportUtils;
 import org.pentaho.platform.plugin.action.messages.Messages;
 import org.pentaho.platform.util.xml.XmlHelper;
@@ -574,13 +577,16 @@ public class JFreeReportComponent extends AbstractJFreeReportComponent {
         }
       }
 
-      ResourceManager resourceManager = new ResourceManager();
-      resourceManager.registerDefaults();
+      ResourceManager resourceManager = ReportDefinitionCache.getResourceManager();
 
       ResourceKey contextKey = resourceManager.createKey( resourceUrl, helperObjects );
       ResourceKey key = resourceManager.createKey( resourceUrl, helperObjects );
 
-      return ReportGenerator.getInstance().parseReport( resourceManager, key, contextKey );
+      Object fileId = getReportFileId( resource.getAddress() );
+      if ( fileId == null ) {
+        return ReportGenerator.getInstance().parseReport( resourceManager, key, contextKey );
+      }
+      return ReportDefinitionCache.getInstance().getReport( fileId, key, contextKey );
 
     } catch ( Exception ex ) {
       error(
@@ -589,6 +595,22 @@ public class JFreeReportComponent extends AbstractJFreeReportComponent {
     }
   }
 
+  /**
+   * Returns what identifies the report definition file in the cache of parsed definitions: the repository file id, or
+   * the path for files under system. Returns null if the file cannot be found, in which case it is parsed as before.
+   */
+  private Object getReportFileId( final String address ) {
+    if ( address.startsWith( "system" ) ) { //$NON-NLS-1$
+      return address;
+    }
+    IUnifiedRepository repository = PentahoSystem.get( IUnifiedRepository.class, getSession() );
+    if ( repository == null ) {
+      return null;
+    }
+    RepositoryFile file = repository.getFile( address );
+    return file != null ? file.getId() : null;
+  }
+
   public MasterReport getReport() throws Exception {
     JFreeReportAction jFreeReportAction = (JFreeReportAction) getActionDefinition();
     MasterReport report = getReportFromResource();
@@ -28,6 +28,7 @@ import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.jfreereport.AbstractJFreeReportComponent;
 import org.pentaho.platform.plugin.action.jfreereport.helper.PentahoResourceLoader;
+import org.pentaho.platform.plugin.action.jfreereport.helper.ReportDefinitionCache;
 import org.pentaho.platform.plugin.action.jfreereport.helper.ReportUtils;
 import org.pentaho.platform.plugin.action.messages.Messages;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
@@ -310,8 +311,7 @@ public class JFreeReportLoadComponent extends AbstractJFreeReportComponent {
         }
       }
 
-      ResourceManager resourceManager = new ResourceManager();
-      resourceManager.registerDefaults();
+      ResourceManager resourceManager = ReportDefinitionCache.getResourceManager();
 
       ResourceKey contextKey = resourceManager.createKey( resourceUrl, helperObjects );
       ResourceKey key = resourceManager.createKey( resourceUrl, helperObjects );
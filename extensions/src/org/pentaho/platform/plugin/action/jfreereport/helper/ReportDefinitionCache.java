@@ -0,0 +1,178 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.action.jfreereport.helper;
+
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps parsed report definitions, so running the same report again only copies the parsed definition instead of
+ * parsing it again.
+ * <p>
+ * Definitions are cached by the id of the file they were parsed from together with the factory parameters used to
+ * parse it, since the parameters may change what gets included. Before a cached definition is reused, the
+ * {@link ResourceManager} checks that neither the file nor anything it included changed since it was parsed; the check
+ * reads the files as the current user, so a user who cannot read them gets no cached copy either. Every caller gets its
+ * own copy of the definition.
+ * <p>
+ * All reports are parsed with one shared {@link ResourceManager}, see {@link #getResourceManager()}. The number of
+ * definitions kept is read from the <code>reporting/definition-cache-size</code> system setting; 0 disables the cache.
+ */
+public class ReportDefinitionCache {
+
+  public static final int DEFAULT_CACHE_SIZE = 50;
+
+  private static ReportDefinitionCache instance;
+
+  private static ResourceManager resourceManager;
+
+  private final int maxEntries;
+
+  private final Map<CacheKey, Resource> definitions;
+
+  public static synchronized ReportDefinitionCache getInstance() {
+    if ( instance == null ) {
+      instance =
+          new ReportDefinitionCache( PentahoSystem.getSystemSettingAsInt( "reporting/definition-cache-size", //$NON-NLS-1$
+              DEFAULT_CACHE_SIZE ) );
+    }
+    return instance;
+  }
+
+  /**
+   * Discards the shared instance, so the next call to {@link #getInstance()} re-reads the system settings.
+   */
+  public static synchronized void reset() {
+    instance = null;
+  }
+
+  /**
+   * Returns the resource manager shared by all report runs. Registering the default loaders and factories is done
+   * once instead of on every run, and the resource caches configured for the reporting engine are shared as well.
+   */
+  public static synchronized ResourceManager getResourceManager() {
+    if ( resourceManager == null ) {
+      ResourceManager manager = new ResourceManager();
+      manager.registerDefaults();
+      resourceManager = manager;
+    }
+    return resourceManager;
+  }
+
+  public ReportDefinitionCache( final int cacheSize ) {
+    this.maxEntries = Math.max( cacheSize, 0 );
+    this.definitions = new LinkedHashMap<CacheKey, Resource>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 3046183935611427361L;
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<CacheKey, Resource> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns a copy of the report definition at <code>key</code>, parsing it with the shared resource manager unless a
+   * current parsed definition is cached.
+   *
+   * @param fileId
+   *          identifies the definition file, e.g. its repository file id
+   */
+  public MasterReport getReport( final Object fileId, final ResourceKey key, final ResourceKey contextKey )
+    throws ResourceException {
+    ResourceManager manager = getResourceManager();
+    CacheKey cacheKey = new CacheKey( fileId, key.getFactoryParameters() );
+    Resource cached;
+    synchronized ( definitions ) {
+      cached = definitions.get( cacheKey );
+    }
+    if ( cached != null ) {
+      if ( manager.isResourceUnchanged( cached ) ) {
+        return copy( cached );
+      }
+      synchronized ( definitions ) {
+        definitions.remove( cacheKey );
+      }
+    }
+
+    Resource resource = manager.create( key, contextKey, MasterReport.class );
+    if ( maxEntries > 0 ) {
+      synchronized ( definitions ) {
+        definitions.put( cacheKey, resource );
+      }
+      return copy( resource );
+    }
+    return (MasterReport) resource.getResource();
+  }
+
+  public int size() {
+    synchronized ( definitions ) {
+      return definitions.size();
+    }
+  }
+
+  public void clear() {
+    synchronized ( definitions ) {
+      definitions.clear();
+    }
+  }
+
+  private static MasterReport copy( final Resource resource ) throws ResourceException {
+    try {
+      return (MasterReport) ( (MasterReport) resource.getResource() ).clone();
+    } catch ( Exception e ) {
+      throw new ResourceException( "Failed to copy the report definition " + resource.getSource(), e ); //$NON-NLS-1$
+    }
+  }
+
+  private static class CacheKey {
+    private final Object fileId;
+
+    private final Map<?, ?> parameters;
+
+    CacheKey( final Object fileId, final Map<?, ?> parameters ) {
+      this.fileId = fileId;
+      this.parameters = parameters;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof CacheKey ) ) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return fileId.equals( other.fileId )
+          && ( parameters == null ? other.parameters == null : parameters.equals( other.parameters ) );
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileId.hashCode() + ( parameters != null ? parameters.hashCode() : 0 );
+    }
+  }
+}
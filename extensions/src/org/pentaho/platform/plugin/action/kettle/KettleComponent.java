@@ -40,11 +40,15 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.xml.XMLHandlerCache;
 import org.pentaho.di.job.Job;
 import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.RepositoriesMeta;
 import org.pentaho.di.repository.Repository;
 import org.pentaho.di.repository.RepositoryDirectoryInterface;
 import org.pentaho.di.repository.RepositoryMeta;
+import org.pentaho.di.repository.RepositoryObject;
+import org.pentaho.di.repository.RepositoryObjectType;
 import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransAdapter;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.RowListener;
 import org.pentaho.di.trans.step.StepMetaDataCombi;
@@ -58,6 +62,7 @@ import org.pentaho.platform.util.xml.w3c.XmlW3CHelper;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -91,6 +96,12 @@ import java.util.Map;
  * 
  * KETTLELOGLEVEL Sets the logging level to be used in the EXECUTION_LOG_OUTPUT Valid settings: basic detail error debug
  * minimal rowlevel
+ * 
+ * STREAM_OUTPUT - (stream-output-rows) [Requires MONITORSTEP and TRANSFORM_SUCCESS_OUTPUT] [TRANS] If true, the action
+ * returns as soon as the transformation has started and TRANSFORM_SUCCESS_OUTPUT is a result set that receives the
+ * rows as they are written. The transformation waits while STREAM_BUFFER_SIZE (stream-buffer-size) rows are waiting to
+ * be read; rows beyond that many that were read are spooled to a temporary file so the result set can be read again.
+ * TRANSFORM_ERROR_OUTPUT and the count outputs are not set in this mode.
  */
 public class KettleComponent extends ComponentBase implements RowListener {
 
@@ -113,6 +124,17 @@ public class KettleComponent extends ComponentBase implements RowListener {
 
   private static final String KETTLELOGLEVEL = "kettle-logging-level"; //$NON-NLS-1$
 
+  private static final String STREAM_OUTPUT = "stream-output-rows"; //$NON-NLS-1$
+
+  private static final String STREAM_BUFFER_SIZE = "stream-buffer-size"; //$NON-NLS-1$
+
+  private static final int DEFAULT_STREAM_BUFFER_SIZE = 1000;
+
+  /**
+   * How long a streamed transformation waits for its output to be read before giving up, in milliseconds
+   */
+  private static final long STREAM_MAX_WAIT = 5 * 60 * 1000;
+
   private static final String EXECUTION_STATUS_OUTPUT = "kettle-execution-status"; //$NON-NLS-1$
 
   private static final String EXECUTION_LOG_OUTPUT = "kettle-execution-log"; //$NON-NLS-1$
@@ -154,6 +176,13 @@ public class KettleComponent extends ComponentBase implements RowListener {
 
   private MemoryResultSet errorResults;
 
+  private KettleStreamingResultSet streamingResults;
+
+  /**
+   * Set once a streamed transformation is running; it is cleaned up when it finishes rather than by this component
+   */
+  private boolean streaming;
+
   private String executionStatus;
 
   private String executionLog;
@@ -475,7 +504,7 @@ public class KettleComponent extends ComponentBase implements RowListener {
         try {
           if ( fileAddress != null ) { // We have an actual loadable
             // filesystem and file
-            transMeta = new TransMeta( fileAddress, repository, true );
+            transMeta = loadTransformFromFile( fileAddress, repository );
             transMeta.setFilename( fileAddress );
           } else if ( repository != null && repository.isConnected() ) {
 
@@ -486,9 +515,7 @@ public class KettleComponent extends ComponentBase implements RowListener {
             String jobXmlStr = getResourceAsString( getResource( KettleComponent.TRANSFORMFILE ) );
             jobXmlStr = jobXmlStr.replaceAll( "\\$\\{pentaho.solutionpath\\}", solutionPath ); //$NON-NLS-1$
             jobXmlStr = jobXmlStr.replaceAll( "\\%\\%pentaho.solutionpath\\%\\%", solutionPath ); //$NON-NLS-1$
-            org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
-            // create a tranformation from the document
-            transMeta = new TransMeta( doc.getFirstChild(), repository );
+            transMeta = loadTransformFromXml( transformResource.getAddress(), jobXmlStr, repository );
           }
         } catch ( Exception e ) {
           error( Messages.getInstance().getErrorString(
@@ -540,22 +567,30 @@ public class KettleComponent extends ComponentBase implements RowListener {
             // XmlW3CHelper.getContentFromSolutionResource(fileAddress);
             jobXmlStr = jobXmlStr.replaceAll( "\\$\\{pentaho.solutionpath\\}", solutionPath ); //$NON-NLS-1$
             jobXmlStr = jobXmlStr.replaceAll( "\\%\\%pentaho.solutionpath\\%\\%", solutionPath ); //$NON-NLS-1$
-            org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
-            if ( doc == null ) {
-              error( Messages.getInstance().getErrorString(
-                  "Kettle.ERROR_0015_BAD_RESOURCE", KettleComponent.JOBFILE, fileAddress ) ); //$NON-NLS-1$
-              debug( getKettleLog( true ) );
-              return false;
-            }
-            // create a job from the document
+            String cacheKey = getMetaCacheKey( "job-xml", solutionPath + fileAddress ); //$NON-NLS-1$
+            // connect before the cache lookup, so a cached job gets the same repository as a parsed one
+            repository = connectToRepository();
             try {
-              repository = connectToRepository();
-              // if we get a valid repository its great, if not try it
-              // without
-
-              jobMeta = new JobMeta( solutionPath + fileAddress, repository );
-            } catch ( Exception e ) {
-              error( Messages.getInstance().getString( "Kettle.ERROR_0023_NO_META" ), e ); //$NON-NLS-1$
+              jobMeta = KettleMetaCache.getInstance().getJobMeta( cacheKey, jobXmlStr, repository );
+              if ( jobMeta == null ) {
+                org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( jobXmlStr );
+                if ( doc == null ) {
+                  error( Messages.getInstance().getErrorString(
+                      "Kettle.ERROR_0015_BAD_RESOURCE", KettleComponent.JOBFILE, fileAddress ) ); //$NON-NLS-1$
+                  debug( getKettleLog( true ) );
+                  return false;
+                }
+                // create a job from the document
+                try {
+                  // if we get a valid repository its great, if not try it
+                  // without
+
+                  jobMeta = new JobMeta( solutionPath + fileAddress, repository );
+                  KettleMetaCache.getInstance().putJobMeta( cacheKey, jobXmlStr, jobMeta );
+                } catch ( Exception e ) {
+                  error( Messages.getInstance().getString( "Kettle.ERROR_0023_NO_META" ), e ); //$NON-NLS-1$
+                }
+              }
             } finally {
               if ( repository != null ) {
                 if ( ComponentBase.debug ) {
@@ -616,7 +651,7 @@ public class KettleComponent extends ComponentBase implements RowListener {
         }
       }
 
-      if ( transMeta != null ) {
+      if ( transMeta != null && !streaming ) {
         try {
           cleanLogChannel( transMeta );
           transMeta.clear();
@@ -694,6 +729,79 @@ public class KettleComponent extends ComponentBase implements RowListener {
     return ( fileAddress );
   }
 
+  private TransMeta loadTransformFromFile( final String fileAddress, final Repository repository )
+    throws KettleException {
+    File file = new File( fileAddress );
+    String cacheKey = getMetaCacheKey( "trans-file", file.getAbsolutePath() ); //$NON-NLS-1$
+    String version = file.lastModified() + ":" + file.length(); //$NON-NLS-1$
+    TransMeta transMeta = KettleMetaCache.getInstance().getTransMeta( cacheKey, version, repository );
+    if ( transMeta == null ) {
+      transMeta = new TransMeta( fileAddress, repository, true );
+      KettleMetaCache.getInstance().putTransMeta( cacheKey, version, transMeta );
+    }
+    return transMeta;
+  }
+
+  private TransMeta loadTransformFromXml( final String address, final String transXmlStr,
+                                          final Repository repository ) throws KettleException {
+    // the resource is read anyway, so its content is the version the cached transformation is checked against
+    String cacheKey = getMetaCacheKey( "trans-xml", address ); //$NON-NLS-1$
+    TransMeta transMeta = KettleMetaCache.getInstance().getTransMeta( cacheKey, transXmlStr, repository );
+    if ( transMeta == null ) {
+      org.w3c.dom.Document doc = XmlW3CHelper.getDomFromString( transXmlStr );
+      // create a tranformation from the document
+      transMeta = new TransMeta( doc.getFirstChild(), repository );
+      KettleMetaCache.getInstance().putTransMeta( cacheKey, transXmlStr, transMeta );
+    }
+    return transMeta;
+  }
+
+  /**
+   * Metadata parsed with a repository may refer to its shared objects, so the repository is part of the cache key.
+   */
+  private String getMetaCacheKey( final String type, final String name ) {
+    return type + ":" + ( repositoryName != null ? repositoryName : "" ) + ":" + name; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+  }
+
+  /**
+   * Returns the version a cached repository transformation or job must match: its id and modification date, or null
+   * if it cannot be determined, in which case nothing is cached.
+   */
+  private Object getRepositoryObjectVersion( final Repository repository, final ObjectId id,
+                                             final RepositoryObjectType type ) {
+    if ( id == null ) {
+      return null;
+    }
+    try {
+      RepositoryObject info = repository.getObjectInformation( id, type );
+      Date modified = info != null ? info.getModifiedDate() : null;
+      return modified != null ? id.getId() + ":" + modified.getTime() : null; //$NON-NLS-1$
+    } catch ( Exception e ) {
+      if ( ComponentBase.debug ) {
+        debug( "Could not read the version of " + type + " " + id.getId(), e ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      return null;
+    }
+  }
+
+  private boolean isStreamingOutput() {
+    return isDefinedInput( KettleComponent.STREAM_OUTPUT )
+        && "true".equalsIgnoreCase( getInputStringValue( KettleComponent.STREAM_OUTPUT ) ); //$NON-NLS-1$
+  }
+
+  private int getStreamBufferSize() {
+    if ( isDefinedInput( KettleComponent.STREAM_BUFFER_SIZE ) ) {
+      String bufferSize = getInputStringValue( KettleComponent.STREAM_BUFFER_SIZE );
+      try {
+        return Integer.parseInt( bufferSize );
+      } catch ( NumberFormatException e ) {
+        warn( "Invalid " + KettleComponent.STREAM_BUFFER_SIZE + " " + bufferSize + ", using " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            + DEFAULT_STREAM_BUFFER_SIZE );
+      }
+    }
+    return DEFAULT_STREAM_BUFFER_SIZE;
+  }
+
   protected boolean customizeTrans( Trans trans ) {
     // override this to customize the transformation before it runs
     // by default there is no transformation
@@ -750,7 +858,10 @@ public class KettleComponent extends ComponentBase implements RowListener {
         outputName = getTransformSuccessOutputName();
 
         if ( outputName != null ) {
-          registerAsStepListener( stepName, trans );
+          registerAsStepListener( stepName, trans, isStreamingOutput() );
+        }
+        if ( streamingResults != null ) {
+          registerStreamingListener( trans );
         }
       } catch ( Exception e ) {
         throw new KettleComponentException( Messages.getInstance().getErrorString(
@@ -765,6 +876,14 @@ public class KettleComponent extends ComponentBase implements RowListener {
             "Kettle.ERROR_0013_TRANSFORMATION_START_FAILED" ), e ); //$NON-NLS-1$
       }
 
+      if ( streamingResults != null ) {
+        // the rows are read while the transformation runs, it is cleaned up by the streaming listener
+        streaming = true;
+        setOutputValue( outputName, streamingResults );
+        prepareKettleOutput( trans );
+        return success;
+      }
+
       try {
         // It's running in a separate thread to allow monitoring,
         // etc.
@@ -810,7 +929,37 @@ public class KettleComponent extends ComponentBase implements RowListener {
     return success;
   }
 
-  private boolean registerAsStepListener( String stepName, Trans trans ) throws KettleComponentException {
+  private void registerStreamingListener( final Trans trans ) {
+    final KettleStreamingResultSet streamed = streamingResults;
+    streamed.setCloseHandler( new Runnable() {
+      public void run() {
+        // the consumer is done reading, there is no point in producing more rows
+        trans.stopAll();
+      }
+    } );
+    trans.addTransListener( new TransAdapter() {
+      @Override
+      public void transFinished( final Trans finished ) {
+        KettleComponentException failure = null;
+        if ( finished.getErrors() > 0 ) {
+          failure = new KettleComponentException( Messages.getInstance().getErrorString(
+              "Kettle.ERROR_0014_ERROR_DURING_EXECUTE" ) ); //$NON-NLS-1$
+        }
+        streamed.finish( failure );
+        try {
+          cleanLogChannel( finished );
+          TransMeta transMeta = finished.getTransMeta();
+          cleanLogChannel( transMeta );
+          transMeta.clear();
+        } catch ( Exception ignored ) {
+          //ignore
+        }
+      }
+    } );
+  }
+
+  private boolean registerAsStepListener( String stepName, Trans trans, boolean streamOutput )
+    throws KettleComponentException {
     boolean success = false;
 
     try {
@@ -839,8 +988,13 @@ public class KettleComponent extends ComponentBase implements RowListener {
             }
 
             MemoryMetaData metaData = new MemoryMetaData( columns, null );
-            results = new MemoryResultSet( metaData );
-            errorResults = new MemoryResultSet( metaData );
+            if ( streamOutput ) {
+              streamingResults = new KettleStreamingResultSet( metaData, getStreamBufferSize(), STREAM_MAX_WAIT );
+              streamingResults.setSession( getSession() );
+            } else {
+              results = new MemoryResultSet( metaData );
+              errorResults = new MemoryResultSet( metaData );
+            }
 
             // add ourself as a row listener
             step.step.addRowListener( this );
@@ -1068,7 +1222,17 @@ public class KettleComponent extends ComponentBase implements RowListener {
         // Load the transformation from the repository
         RepositoryDirectoryInterface repositoryDirectory =
             repository.loadRepositoryDirectoryTree().findDirectory( directoryName );
-        transMeta = repository.loadTransformation( transformationName, repositoryDirectory, null, true, null );
+        String cacheKey = getMetaCacheKey( "trans", directoryName + "/" + transformationName ); //$NON-NLS-1$ //$NON-NLS-2$
+        Object version =
+            getRepositoryObjectVersion( repository, repository.getTransformationID( transformationName,
+                repositoryDirectory ), RepositoryObjectType.TRANSFORMATION );
+        transMeta = KettleMetaCache.getInstance().getTransMeta( cacheKey, version, repository );
+        if ( transMeta == null ) {
+          transMeta = repository.loadTransformation( transformationName, repositoryDirectory, null, true, null );
+          if ( transMeta != null ) {
+            KettleMetaCache.getInstance().putTransMeta( cacheKey, version, transMeta );
+          }
+        }
       } catch ( Exception e ) {
         error( Messages.getInstance().getErrorString(
             "Kettle.ERROR_0009_TRANSFROMATION_METADATA_NOT_FOUND", directoryName + "/" + transformationName ), e ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1112,7 +1276,17 @@ public class KettleComponent extends ComponentBase implements RowListener {
         // Load the job from the repository
         RepositoryDirectoryInterface repositoryDirectory =
             repository.loadRepositoryDirectoryTree().findDirectory( directoryName );
-        jobMeta = repository.loadJob( jobName, repositoryDirectory, null, null );
+        String cacheKey = getMetaCacheKey( "job", directoryName + "/" + jobName ); //$NON-NLS-1$ //$NON-NLS-2$
+        Object version =
+            getRepositoryObjectVersion( repository, repository.getJobId( jobName, repositoryDirectory ),
+                RepositoryObjectType.JOB );
+        jobMeta = KettleMetaCache.getInstance().getJobMeta( cacheKey, version, repository );
+        if ( jobMeta == null ) {
+          jobMeta = repository.loadJob( jobName, repositoryDirectory, null, null );
+          if ( jobMeta != null ) {
+            KettleMetaCache.getInstance().putJobMeta( cacheKey, version, jobMeta );
+          }
+        }
       } catch ( Exception e ) {
         error( Messages.getInstance().getErrorString(
             "Kettle.ERROR_0020_JOB_METADATA_NOT_FOUND", directoryName + "/" + jobName ), e ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -1240,53 +1414,76 @@ public class KettleComponent extends ComponentBase implements RowListener {
   }
 
   public void rowWrittenEvent( final RowMetaInterface rowMeta, final Object[] row ) throws KettleStepException {
-    processRow( results, rowMeta, row );
+    if ( streamingResults != null ) {
+      streamRow( rowMeta, row );
+    } else {
+      processRow( results, rowMeta, row );
+    }
   }
 
   public void errorRowWrittenEvent( final RowMetaInterface rowMeta, final Object[] row ) throws KettleStepException {
     processRow( errorResults, rowMeta, row );
   }
 
+  /**
+   * Hands a row to the streamed output, blocking the step that wrote it while the consumer is behind.
+   */
+  private void streamRow( final RowMetaInterface rowMeta, final Object[] row ) throws KettleStepException {
+    try {
+      streamingResults.put( toPentahoRow( streamingResults.getColumnCount(), rowMeta, row ) );
+    } catch ( KettleValueException e ) {
+      throw new KettleStepException( e );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleStepException( e );
+    }
+  }
+
   public void processRow( MemoryResultSet memResults, final RowMetaInterface rowMeta, final Object[] row )
     throws KettleStepException {
     if ( memResults == null ) {
       return;
     }
     try {
-      Object[] pentahoRow = new Object[memResults.getColumnCount()];
-      for ( int columnNo = 0; columnNo < memResults.getColumnCount(); columnNo++ ) {
-        ValueMetaInterface valueMeta = rowMeta.getValueMeta( columnNo );
-
-        switch ( valueMeta.getType() ) {
-          case ValueMetaInterface.TYPE_BIGNUMBER:
-            pentahoRow[columnNo] = rowMeta.getBigNumber( row, columnNo );
-            break;
-          case ValueMetaInterface.TYPE_BOOLEAN:
-            pentahoRow[columnNo] = rowMeta.getBoolean( row, columnNo );
-            break;
-          case ValueMetaInterface.TYPE_DATE:
-            pentahoRow[columnNo] = rowMeta.getDate( row, columnNo );
-            break;
-          case ValueMetaInterface.TYPE_INTEGER:
-            pentahoRow[columnNo] = rowMeta.getInteger( row, columnNo );
-            break;
-          case ValueMetaInterface.TYPE_NONE:
-            pentahoRow[columnNo] = rowMeta.getString( row, columnNo );
-            break;
-          case ValueMetaInterface.TYPE_NUMBER:
-            pentahoRow[columnNo] = rowMeta.getNumber( row, columnNo );
-            break;
-          case ValueMetaInterface.TYPE_STRING:
-            pentahoRow[columnNo] = rowMeta.getString( row, columnNo );
-            break;
-          default:
-            pentahoRow[columnNo] = rowMeta.getString( row, columnNo );
-        }
-      }
-      memResults.addRow( pentahoRow );
+      memResults.addRow( toPentahoRow( memResults.getColumnCount(), rowMeta, row ) );
     } catch ( KettleValueException e ) {
       throw new KettleStepException( e );
     }
   }
 
+  private Object[] toPentahoRow( final int columnCount, final RowMetaInterface rowMeta, final Object[] row )
+    throws KettleValueException {
+    Object[] pentahoRow = new Object[columnCount];
+    for ( int columnNo = 0; columnNo < columnCount; columnNo++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( columnNo );
+
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_BIGNUMBER:
+          pentahoRow[columnNo] = rowMeta.getBigNumber( row, columnNo );
+          break;
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          pentahoRow[columnNo] = rowMeta.getBoolean( row, columnNo );
+          break;
+        case ValueMetaInterface.TYPE_DATE:
+          pentahoRow[columnNo] = rowMeta.getDate( row, columnNo );
+          break;
+        case ValueMetaInterface.TYPE_INTEGER:
+          pentahoRow[columnNo] = rowMeta.getInteger( row, columnNo );
+          break;
+        case ValueMetaInterface.TYPE_NONE:
+          pentahoRow[columnNo] = rowMeta.getString( row, columnNo );
+          break;
+        case ValueMetaInterface.TYPE_NUMBER:
+          pentahoRow[columnNo] = rowMeta.getNumber( row, columnNo );
+          break;
+        case ValueMetaInterface.TYPE_STRING:
+          pentahoRow[columnNo] = rowMeta.getString( row, columnNo );
+          break;
+        default:
+          pentahoRow[columnNo] = rowMeta.getString( row, columnNo );
+      }
+    }
+    return pentahoRow;
+  }
+
 }
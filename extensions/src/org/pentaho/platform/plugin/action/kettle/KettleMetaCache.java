@@ -0,0 +1,182 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps parsed transformations and jobs so that running the same <code>.ktr</code> or <code>.kjb</code> again does not
+ * read and parse it again.
+ * <p>
+ * Every entry is stored with the version of its source it was parsed from (a file's modification time and size, the
+ * XML text of a solution resource or the modification date of a Kettle repository object); a lookup with a different
+ * version misses and the caller parses and stores the new version. The cached metadata is never handed out: both
+ * {@link #putTransMeta} and {@link #getTransMeta} work on clones, so callers may set parameters and variables on, and
+ * clear, what they get.
+ * <p>
+ * The number of entries kept is read from the <code>meta-cache-size</code> setting of
+ * <code>kettle/settings.xml</code>; 0 disables the cache.
+ */
+public class KettleMetaCache {
+
+  public static final int DEFAULT_CACHE_SIZE = 100;
+
+  private static KettleMetaCache instance;
+
+  private final int maxEntries;
+
+  private final Map<String, CachedMeta> entries;
+
+  public static synchronized KettleMetaCache getInstance() {
+    if ( instance == null ) {
+      instance =
+          new KettleMetaCache( PentahoSystem.getSystemSettingAsInt( "kettle/settings.xml", "meta-cache-size", //$NON-NLS-1$ //$NON-NLS-2$
+              DEFAULT_CACHE_SIZE ) );
+    }
+    return instance;
+  }
+
+  /**
+   * Discards the shared instance, so the next call to {@link #getInstance()} re-reads the settings.
+   */
+  public static synchronized void reset() {
+    instance = null;
+  }
+
+  public KettleMetaCache( final int cacheSize ) {
+    this.maxEntries = Math.max( cacheSize, 0 );
+    this.entries = new LinkedHashMap<String, CachedMeta>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = -3206583714327513093L;
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<String, CachedMeta> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns a copy of the transformation cached under <code>key</code>, or null if there is none or it was parsed from
+   * another version of its source.
+   *
+   * @param repository
+   *          the repository the copy should use, since the one the transformation was parsed with may have been
+   *          disconnected since
+   */
+  public TransMeta getTransMeta( final String key, final Object version, final Repository repository ) {
+    TransMeta prototype = (TransMeta) lookup( key, version );
+    if ( prototype == null ) {
+      return null;
+    }
+    TransMeta transMeta = (TransMeta) prototype.clone();
+    transMeta.setRepository( repository );
+    transMeta.initializeVariablesFrom( null );
+    transMeta.setInternalKettleVariables();
+    return transMeta;
+  }
+
+  public void putTransMeta( final String key, final Object version, final TransMeta transMeta ) {
+    if ( maxEntries > 0 && version != null ) {
+      store( key, version, transMeta.clone() );
+    }
+  }
+
+  /**
+   * Returns a copy of the job cached under <code>key</code>, or null if there is none or it was parsed from another
+   * version of its source.
+   *
+   * @param repository
+   *          the repository the copy should use
+   */
+  public JobMeta getJobMeta( final String key, final Object version, final Repository repository ) {
+    JobMeta prototype = (JobMeta) lookup( key, version );
+    if ( prototype == null ) {
+      return null;
+    }
+    JobMeta jobMeta = (JobMeta) prototype.clone();
+    jobMeta.setRepository( repository );
+    jobMeta.initializeVariablesFrom( null );
+    jobMeta.setInternalKettleVariables();
+    return jobMeta;
+  }
+
+  public void putJobMeta( final String key, final Object version, final JobMeta jobMeta ) {
+    if ( maxEntries > 0 && version != null ) {
+      store( key, version, jobMeta.clone() );
+    }
+  }
+
+  public void remove( final String key ) {
+    synchronized ( entries ) {
+      entries.remove( key );
+    }
+  }
+
+  public int size() {
+    synchronized ( entries ) {
+      return entries.size();
+    }
+  }
+
+  public void clear() {
+    synchronized ( entries ) {
+      entries.clear();
+    }
+  }
+
+  private Object lookup( final String key, final Object version ) {
+    if ( version == null ) {
+      return null;
+    }
+    synchronized ( entries ) {
+      CachedMeta cached = entries.get( key );
+      if ( cached == null ) {
+        return null;
+      }
+      if ( !cached.version.equals( version ) ) {
+        // the source changed, the caller is about to parse and store the new version
+        entries.remove( key );
+        return null;
+      }
+      return cached.meta;
+    }
+  }
+
+  private void store( final String key, final Object version, final Object meta ) {
+    synchronized ( entries ) {
+      entries.put( key, new CachedMeta( version, meta ) );
+    }
+  }
+
+  private static class CachedMeta {
+    private final Object version;
+
+    private final Object meta;
+
+    CachedMeta( final Object version, final Object meta ) {
+      this.version = version;
+      this.meta = meta;
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.action.kettle;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.commons.connection.IPeekable;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.plugin.services.connections.sql.IRowSource;
+import org.pentaho.platform.plugin.services.connections.sql.SpoolingResultSet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A result set fed by a running transformation. Rows are handed over through a bounded queue: when the consumer falls
+ * behind, the step writing the rows blocks until there is room again, so only <code>capacity</code> rows are ever
+ * waiting to be read.
+ * <p>
+ * Rows that were read are kept by a {@link SpoolingResultSet}, the first <code>capacity</code> of them in memory and
+ * the rest in a temp file of the session, so {@link #beforeFirst()}, {@link #getValueAt(int, int)} and the other
+ * multi-pass methods work as on any other result set. Methods that need all rows, like {@link #getRowCount()}, wait
+ * for the transformation to finish. A transformation that failed is reported to the consumer as an
+ * {@link IllegalStateException} once the rows it wrote have been read.
+ * <p>
+ * Closing the result set before the last row was read runs the close handler, which stops the transformation. A
+ * producer that finds the queue full, or a consumer that gets no row, for longer than <code>maxWait</code>
+ * milliseconds assumes the other side went away and closes the result set as well; 0 waits indefinitely.
+ */
+public class KettleStreamingResultSet implements IPentahoResultSet, IPeekable {
+
+  private static final Log logger = LogFactory.getLog( KettleStreamingResultSet.class );
+
+  private static final Object[] END_OF_ROWS = new Object[0];
+
+  private static final long POLL_INTERVAL = 100;
+
+  private final IPentahoMetaData metaData;
+
+  private final BlockingQueue<Object[]> rows;
+
+  private final long maxWait;
+
+  private final SpoolingResultSet spool;
+
+  private volatile boolean closed;
+
+  private volatile boolean finished;
+
+  private volatile Throwable error;
+
+  private Runnable closeHandler;
+
+  public KettleStreamingResultSet( final IPentahoMetaData metaData, final int capacity, final long maxWait ) {
+    this.metaData = metaData;
+    this.rows = new ArrayBlockingQueue<Object[]>( Math.max( capacity, 1 ) );
+    this.maxWait = maxWait;
+    this.spool = new SpoolingResultSet( new QueueReader(), capacity, null );
+  }
+
+  /**
+   * Spools the rows to a temp file of <code>session</code>, which counts towards the temp file quotas.
+   */
+  public void setSession( final IPentahoSession session ) {
+    spool.setSession( session );
+  }
+
+  /**
+   * Sets what to do when the consumer closes the result set before all rows were read, typically stopping the
+   * transformation producing them.
+   */
+  public synchronized void setCloseHandler( final Runnable closeHandler ) {
+    this.closeHandler = closeHandler;
+  }
+
+  /**
+   * Hands a row to the consumer, waiting while the queue is full.
+   *
+   * @return false if the result set was closed and the row was dropped
+   */
+  public boolean put( final Object[] row ) throws InterruptedException {
+    long waited = 0;
+    while ( !closed ) {
+      if ( rows.offer( row, POLL_INTERVAL, TimeUnit.MILLISECONDS ) ) {
+        return true;
+      }
+      waited += POLL_INTERVAL;
+      if ( maxWait > 0 && waited >= maxWait ) {
+        logger.warn( "No rows were read from the streamed transformation output for " + maxWait //$NON-NLS-1$
+            + " ms, closing it" ); //$NON-NLS-1$
+        closeQueue();
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Signals that no more rows will be written.
+   *
+   * @param failure
+   *          the reason the transformation ended early, or null if it completed; it is rethrown to the consumer after
+   *          the rows already queued have been read
+   */
+  public void finish( final Throwable failure ) {
+    error = failure;
+    finished = true;
+    // the end marker is the only signal a waiting consumer gets, so wait for room unless nobody reads any more
+    try {
+      boolean queued = false;
+      while ( !closed && !queued ) {
+        queued = rows.offer( END_OF_ROWS, POLL_INTERVAL, TimeUnit.MILLISECONDS );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public IPentahoMetaData getMetaData() {
+    return metaData;
+  }
+
+  public Object[] peek() {
+    return spool.peek();
+  }
+
+  /**
+   * Returns the next row, waiting for the transformation to produce it, or null once all rows were read.
+   */
+  public Object[] next() {
+    return spool.next();
+  }
+
+  public void beforeFirst() {
+    spool.beforeFirst();
+  }
+
+  public void close() {
+    spool.close();
+    // closes the queue as well if the spool never got to read from it
+    closeQueue();
+  }
+
+  public void closeConnection() {
+    close();
+  }
+
+  public void dispose() {
+    close();
+  }
+
+  public boolean isScrollable() {
+    return true;
+  }
+
+  public int getColumnCount() {
+    return metaData.getColumnCount();
+  }
+
+  /**
+   * Waits for the transformation to finish to count the rows.
+   */
+  public int getRowCount() {
+    return spool.getRowCount();
+  }
+
+  public Object getValueAt( final int row, final int column ) {
+    return spool.getValueAt( row, column );
+  }
+
+  public Object[] getDataColumn( final int column ) {
+    return spool.getDataColumn( column );
+  }
+
+  public Object[] getDataRow( final int row ) {
+    return spool.getDataRow( row );
+  }
+
+  /**
+   * Copies all rows, from the first one, into a {@link org.pentaho.commons.connection.memory.MemoryResultSet} and
+   * closes this result set.
+   */
+  public IPentahoResultSet memoryCopy() {
+    try {
+      return spool.memoryCopy();
+    } finally {
+      closeQueue();
+    }
+  }
+
+  /**
+   * Stops accepting rows, and stops the transformation through the close handler unless it has finished.
+   */
+  private void closeQueue() {
+    Runnable handler;
+    synchronized ( this ) {
+      if ( closed ) {
+        return;
+      }
+      closed = true;
+      handler = finished ? null : closeHandler;
+      closeHandler = null;
+    }
+    rows.clear();
+    if ( handler != null ) {
+      handler.run();
+    }
+  }
+
+  /**
+   * Takes the rows off the queue, in the order they were written, for the spool to keep.
+   */
+  private Object[] take() {
+    long waited = 0;
+    while ( !closed ) {
+      Object[] row;
+      try {
+        row = rows.poll( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        closeQueue();
+        return null;
+      }
+      if ( row == END_OF_ROWS ) {
+        closeQueue();
+        if ( error != null ) {
+          throw new IllegalStateException( error.getMessage(), error );
+        }
+        return null;
+      }
+      if ( row != null ) {
+        return row;
+      }
+      waited += POLL_INTERVAL;
+      if ( maxWait > 0 && waited >= maxWait ) {
+        closeQueue();
+        throw new IllegalStateException( "The transformation did not write a row for " + maxWait //$NON-NLS-1$
+            + " ms" ); //$NON-NLS-1$
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The forward-only source of the spool.
+   */
+  private class QueueReader implements IRowSource {
+
+    public IPentahoMetaData getMetaData() {
+      return metaData;
+    }
+
+    public Object[] next() {
+      return take();
+    }
+
+    public void close() {
+      closeQueue();
+    }
+  }
+}
@@ -22,6 +22,7 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPentahoSystemListener;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.messages.Messages;
+import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCacheWarmer;
 import org.pentaho.platform.util.logging.Logger;
 
 import java.io.File;
@@ -33,6 +34,7 @@ public class MondrianSystemListener implements IPentahoSystemListener {
 
   public boolean startup( final IPentahoSession session ) {
     loadMondrianProperties( session );
+    MondrianCacheWarmer.getInstance().warmUpAll();
     return true;
   }
 
@@ -69,6 +71,6 @@ public class MondrianSystemListener implements IPentahoSystemListener {
   }
 
   public void shutdown() {
-    // Nothing required
+    MondrianCacheWarmer.reset();
   }
 }
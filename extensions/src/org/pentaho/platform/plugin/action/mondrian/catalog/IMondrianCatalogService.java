@@ -90,6 +90,17 @@ public interface IMondrianCatalogService {
    */
   public void reInit( IPentahoSession pentahoSession ) throws MondrianCatalogServiceException;
 
+  /**
+   * Flushes the cached definition, schema and cell data of one catalog, leaving the other catalogs cached. The warmup
+   * queries declared by the schema are then run in the background.
+   * 
+   * @param catalogName
+   *          the name of the catalog to flush
+   * @param pentahoSession
+   *          current session object
+   */
+  void flushCatalog( String catalogName, IPentahoSession pentahoSession ) throws MondrianCatalogServiceException;
+
   /**
    * pass the input stream directly from data access PUC and schema workbench
    * 
@@ -0,0 +1,216 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.action.mondrian.catalog;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.olap4j.OlapConnection;
+import org.olap4j.OlapStatement;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.plugin.action.messages.Messages;
+import org.pentaho.platform.plugin.action.olap.IOlapService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the warmup queries of Mondrian catalogs in the background, so the caches flushed when a schema is published
+ * are loaded again before users ask for the data. A schema declares its warmup queries as annotations named
+ * <code>pentaho.warmup...</code>, see {@link MondrianCatalogHelper#WARMUP_ANNOTATION_PREFIX}.
+ * <p>
+ * The queries run as the system user. A catalog waiting to be warmed up is not queued a second time. The
+ * <code>mondrian-warmup</code> system settings turn warmup on or off, size the thread pool and set the delay of the
+ * warmup of all catalogs at startup.
+ */
+public class MondrianCacheWarmer {
+
+  public static final int DEFAULT_THREADS = 1;
+
+  public static final int DEFAULT_STARTUP_DELAY = 60;
+
+  private static final Log logger = LogFactory.getLog( MondrianCacheWarmer.class );
+
+  private static MondrianCacheWarmer instance;
+
+  private final boolean enabled;
+
+  private final ScheduledThreadPoolExecutor executor;
+
+  private final Set<String> pending = new HashSet<String>();
+
+  public static synchronized MondrianCacheWarmer getInstance() {
+    if ( instance == null ) {
+      instance =
+          new MondrianCacheWarmer( !"false".equalsIgnoreCase( PentahoSystem.getSystemSetting( //$NON-NLS-1$
+              "mondrian-warmup/enabled", "true" ) ), //$NON-NLS-1$ //$NON-NLS-2$
+              Math.max( PentahoSystem.getSystemSettingAsInt( "mondrian-warmup/threads", //$NON-NLS-1$
+                  DEFAULT_THREADS ), 0 ) );
+    }
+    return instance;
+  }
+
+  /**
+   * Stops the shared instance, so the next call to {@link #getInstance()} re-reads the system settings.
+   */
+  public static synchronized void reset() {
+    if ( instance != null ) {
+      instance.executor.shutdownNow();
+      instance = null;
+    }
+  }
+
+  public MondrianCacheWarmer( final boolean enabled, final int threads ) {
+    this.enabled = enabled;
+    this.executor = new ScheduledThreadPoolExecutor( Math.max( threads, 1 ), new WarmupThreadFactory() );
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues the warmup of a catalog.
+   *
+   * @return false if warmup is disabled, there are no queries or the catalog is queued already
+   */
+  public boolean warmUp( final String catalogName, final List<String> queries ) {
+    if ( !enabled || queries == null || queries.isEmpty() ) {
+      return false;
+    }
+    synchronized ( pending ) {
+      if ( !pending.add( catalogName ) ) {
+        return false;
+      }
+    }
+    final List<String> copy = new ArrayList<String>( queries );
+    executor.execute( new Runnable() {
+      public void run() {
+        synchronized ( pending ) {
+          pending.remove( catalogName );
+        }
+        runAsSystem( catalogName, copy );
+      }
+    } );
+    return true;
+  }
+
+  /**
+   * Queues the warmup of all catalogs declaring warmup queries after the <code>mondrian-warmup/startup-delay</code>
+   * seconds, giving the server time to finish starting.
+   */
+  public void warmUpAll() {
+    warmUpAll( Math.max( PentahoSystem.getSystemSettingAsInt( "mondrian-warmup/startup-delay", //$NON-NLS-1$
+        DEFAULT_STARTUP_DELAY ), 0 ) );
+  }
+
+  /**
+   * Queues the warmup of all catalogs declaring warmup queries after <code>delay</code> seconds.
+   */
+  public void warmUpAll( final long delay ) {
+    if ( !enabled ) {
+      return;
+    }
+    executor.schedule( new Runnable() {
+      public void run() {
+        try {
+          SecurityHelper.getInstance().runAsSystem( new Callable<Void>() {
+            public Void call() throws Exception {
+              IMondrianCatalogService catalogService =
+                  PentahoSystem.get( IMondrianCatalogService.class, "IMondrianCatalogService", //$NON-NLS-1$
+                      PentahoSessionHolder.getSession() );
+              for ( MondrianCatalog catalog : catalogService.listCatalogs( PentahoSessionHolder.getSession(),
+                  false ) ) {
+                if ( catalog.getSchema() != null ) {
+                  warmUp( catalog.getName(), catalog.getSchema().getWarmupQueries() );
+                }
+              }
+              return null;
+            }
+          } );
+        } catch ( Exception e ) {
+          logger.warn( Messages.getInstance().getErrorString( "MondrianCacheWarmer.ERROR_0002_WARMUP_FAILED", //$NON-NLS-1$
+              "*" ), e ); //$NON-NLS-1$
+        }
+      }
+    }, delay, TimeUnit.SECONDS );
+  }
+
+  private void runAsSystem( final String catalogName, final List<String> queries ) {
+    try {
+      SecurityHelper.getInstance().runAsSystem( new Callable<Void>() {
+        public Void call() throws Exception {
+          runQueries( catalogName, queries, PentahoSessionHolder.getSession() );
+          return null;
+        }
+      } );
+    } catch ( Exception e ) {
+      logger.warn( Messages.getInstance().getErrorString( "MondrianCacheWarmer.ERROR_0002_WARMUP_FAILED", //$NON-NLS-1$
+          catalogName ), e );
+    }
+  }
+
+  /**
+   * Runs the queries one after the other on one connection. A failing query is logged and the next one runs.
+   */
+  void runQueries( final String catalogName, final List<String> queries, final IPentahoSession session )
+    throws Exception {
+    long start = System.currentTimeMillis();
+    IOlapService olapService = PentahoSystem.get( IOlapService.class, "IOlapService", session ); //$NON-NLS-1$
+    OlapConnection connection = olapService.getConnection( catalogName, session );
+    try {
+      for ( String query : queries ) {
+        OlapStatement statement = connection.createStatement();
+        try {
+          statement.executeOlapQuery( query );
+        } catch ( Exception e ) {
+          logger.warn( Messages.getInstance().getErrorString( "MondrianCacheWarmer.ERROR_0001_WARMUP_QUERY_FAILED", //$NON-NLS-1$
+              catalogName, query ), e );
+        } finally {
+          statement.close();
+        }
+      }
+    } finally {
+      connection.close();
+    }
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( Messages.getInstance().getString( "MondrianCacheWarmer.DEBUG_WARMED_UP", catalogName, //$NON-NLS-1$
+          String.valueOf( queries.size() ), String.valueOf( System.currentTimeMillis() - start ) ) );
+    }
+  }
+
+  private static class WarmupThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread( final Runnable r ) {
+      Thread thread = new Thread( r, "pentaho-mondrian-warmup-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      thread.setPriority( Thread.MIN_PRIORITY );
+      return thread;
+    }
+  }
+}
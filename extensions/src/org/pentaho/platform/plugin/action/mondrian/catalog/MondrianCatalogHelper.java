@@ -19,6 +19,7 @@ package org.pentaho.platform.plugin.action.mondrian.catalog;
 
 import com.google.common.annotations.VisibleForTesting;
 import mondrian.i18n.LocalizingDynamicSchemaProcessor;
+import mondrian.olap.CacheControl;
 import mondrian.olap.Connection;
 import mondrian.olap.MondrianDef;
 import mondrian.olap.Util;
@@ -96,9 +97,11 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Reads in file containing Mondrian data sources and catalogs. (Contains code copied from <code>XmlaServlet</code>.)
@@ -137,6 +140,11 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   private IAclNodeHelper aclHelper;
   private MondrianCatalogRepositoryHelper catalogRepositoryHelper;
 
+  /**
+   * The locales catalogs were loaded into the cache for, see {@link #refreshCatalog(String, IPentahoSession)}.
+   */
+  private final Set<String> cachedLocales = new HashSet<String>();
+
   public static final String MONDRIAN_DATASOURCE_FOLDER = "mondrian"; //$NON-NLS-1$
 
   // ~ Constructors ====================================================================================================
@@ -249,6 +257,11 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
 
   public static String MONDRIAN_CATALOG_CACHE_REGION = "mondrian-catalog-cache"; //$NON-NLS-1$
 
+  /**
+   * Schema annotations whose name starts with this prefix hold an MDX query to warm the caches of the catalog with.
+   */
+  public static final String WARMUP_ANNOTATION_PREFIX = "pentaho.warmup"; //$NON-NLS-1$
+
   // ~ Methods =========================================================================================================
 
   protected synchronized void init( final IPentahoSession pentahoSession ) {
@@ -274,6 +287,61 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     init( pentahoSession );
   }
 
+  /**
+   * Reloads the cached definition of a single catalog from the repository, instead of reloading all of them like
+   * {@link #reInit(IPentahoSession)} does. The catalogs of the current locale are reloaded right away; the ones cached
+   * for other locales are dropped and load again when they are next used.
+   * <p>
+   * With a datasources file configured, the catalogs are not read from the repository and everything is reloaded.
+   */
+  @SuppressWarnings( "unchecked" )
+  protected synchronized void refreshCatalog( final String catalogName, final IPentahoSession pentahoSession ) {
+    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
+    if ( dataSourcesConfig != null || !cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
+      reInit( pentahoSession );
+      return;
+    }
+    final String localeKey = getLocale().toString();
+    synchronized ( cachedLocales ) {
+      for ( String key : cachedLocales ) {
+        if ( !localeKey.equals( key ) ) {
+          cacheMgr.removeFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION, key );
+        }
+      }
+      cachedLocales.clear();
+      cachedLocales.add( localeKey );
+    }
+    final Map<String, Object> cached =
+        (Map<String, Object>) cacheMgr.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION, localeKey );
+    if ( cached == null ) {
+      // nothing loaded yet, init() reads everything on first use
+      return;
+    }
+
+    // Readers use the cached map without locking, so the changes are made to a copy. Entries other than catalogs
+    // are derived from the schemas and are dropped, as reInit() would.
+    final Map<String, MondrianCatalog> catalogs = new HashMap<String, MondrianCatalog>();
+    for ( Map.Entry<String, Object> entry : cached.entrySet() ) {
+      if ( entry.getValue() instanceof MondrianCatalog ) {
+        MondrianCatalog catalog = (MondrianCatalog) entry.getValue();
+        if ( !catalog.getName().equals( catalogName )
+            && !definitionEquals( catalog.getDefinition(), "mondrian:/" + catalogName ) ) { //$NON-NLS-1$
+          catalogs.put( entry.getKey(), catalog );
+        }
+      }
+    }
+    final MondrianCatalogRepositoryHelper.HostedCatalogInfo info =
+        getMondrianCatalogRepositoryHelper().getHostedCatalogInfo( catalogName );
+    if ( info != null ) {
+      final DataSourcesConfig.Catalog catalog = new DataSourcesConfig.Catalog();
+      catalog.name = info.name;
+      catalog.dataSourceInfo = info.dataSourceInfo;
+      catalog.definition = info.definition;
+      loadCatalogIntoCache( catalogs, catalog, pentahoSession );
+    }
+    cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, localeKey, catalogs );
+  }
+
   private static Locale getLocale() {
     final Locale locale = LocaleHelper.getLocale();
     if ( locale != null ) {
@@ -628,13 +696,45 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
       MondrianCatalogHelper.logger
           .debug( "refreshing from dataSourcesConfig (" + dataSourcesConfig + ")" ); //$NON-NLS-1$ //$NON-NLS-2$
     }
-    reInit( pentahoSession );
+    refreshCatalog( catalog.getName(), pentahoSession );
 
     setAclFor( catalog.getName(), acl );
 
     if ( catalogExistsWithSameDatasource || catalogExistsWithDifferentDatasource ) {
       flushCacheForCatalog( catalog.getName(), pentahoSession );
     }
+    warmUp( catalog.getName(), pentahoSession );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void flushCatalog( final String catalogName, final IPentahoSession pentahoSession )
+    throws MondrianCatalogServiceException {
+    refreshCatalog( catalogName, pentahoSession );
+    flushCacheForCatalog( catalogName, pentahoSession );
+    warmUp( catalogName, pentahoSession );
+  }
+
+  /**
+   * Queues the warmup queries of the freshly loaded catalog, if it declares any.
+   */
+  @SuppressWarnings( "unchecked" )
+  private void warmUp( final String catalogName, final IPentahoSession pentahoSession ) {
+    final Map<String, Object> catalogs =
+        (Map<String, Object>) PentahoSystem.getCacheManager( pentahoSession ).getFromRegionCache(
+            MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString() );
+    if ( catalogs == null ) {
+      return;
+    }
+    Object catalog = catalogs.get( "mondrian:/" + catalogName ); //$NON-NLS-1$
+    if ( !( catalog instanceof MondrianCatalog ) ) {
+      catalog = catalogs.get( catalogName );
+    }
+    if ( catalog instanceof MondrianCatalog && ( (MondrianCatalog) catalog ).getSchema() != null ) {
+      MondrianCacheWarmer.getInstance().warmUp( catalogName,
+          ( (MondrianCatalog) catalog ).getSchema().getWarmupQueries() );
+    }
   }
 
   private void flushCacheForCatalog( String catalogName, IPentahoSession pentahoSession ) {
@@ -644,7 +744,15 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     try {
       OlapConnection connection = olapService.getConnection( catalogName, pentahoSession );
       unwrap = connection.unwrap( Connection.class );
-      unwrap.getCacheControl( null ).flushSchema( unwrap.getSchema() );
+      final CacheControl cacheControl = unwrap.getCacheControl( null );
+      // The cell segments first, so an external segment cache shared with other servers is flushed as well.
+      final mondrian.olap.Cube[] cubes = unwrap.getSchema().getCubes();
+      if ( cubes != null ) {
+        for ( mondrian.olap.Cube cube : cubes ) {
+          cacheControl.flush( cacheControl.createMeasuresRegion( cube ) );
+        }
+      }
+      cacheControl.flushSchema( unwrap.getSchema() );
     } catch ( Throwable e ) {
       MondrianCatalogHelper.logger.warn(
           Messages.getInstance().getErrorString(
@@ -719,9 +827,7 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
               .get( IUnifiedRepository.class ) );
       helper.addSchema( schemaInputStream, catalogName, datasourceInfo );
 
-      reInit( PentahoSessionHolder.getSession() );
-
-      flushCacheForCatalog( catalogName, PentahoSessionHolder.getSession() );
+      flushCatalog( catalogName, PentahoSessionHolder.getSession() );
     } catch ( SAXParseException e ) {
       throw new MondrianCatalogServiceException( Messages.getInstance().getString(
           "MondrianCatalogHelper.ERROR_0018_IMPORT_SCHEMA_ERROR" ) ); //$NON-NLS-1$
@@ -812,6 +918,9 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
       // Create the region
       cacheMgr.addCacheRegion( MONDRIAN_CATALOG_CACHE_REGION );
     }
+    synchronized ( cachedLocales ) {
+      cachedLocales.add( getLocale().toString() );
+    }
     if ( cacheMgr.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString() ) == null ) {
       // Put the map in the region
       cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(),
@@ -829,35 +938,40 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
               .toString() );
 
       for ( DataSourcesConfig.Catalog catalog : dataSource.catalogs.catalogs ) {
-        if ( catalog.definition.startsWith( "mondrian:" ) || catalog.definition
-            .startsWith( "solution:" ) ) { //$NON-NLS-1$
-
-          // try catch here so the whole thing doesn't blow up if one datasource is configured incorrectly.
-          MondrianSchema schema = null;
-          try {
-            schema = makeSchema( getCatalogAsString( pentahoSession, catalog ) );
+        loadCatalogIntoCache( catalogs, catalog, pentahoSession );
+      }
+    }
+  }
 
-          } catch ( Exception e ) {
-            MondrianCatalogHelper.logger.error( Messages.getInstance().getErrorString(
-                "MondrianCatalogHelper.ERROR_0013_FAILED_TO_LOAD_SCHEMA", catalog.definition ), e ); //$NON-NLS-1$
-          }
-          MondrianCatalog mondrianCatalog = null;
-          if ( schema == null ) {
-            mondrianCatalog = new MondrianCatalog( catalog.name, catalog.dataSourceInfo, catalog.definition, schema );
-          } else {
-            mondrianCatalog =
-                new MondrianCatalog( useSchemaNameAsCatalogName ? schema.getName() : catalog.name,
-                    catalog.dataSourceInfo, catalog.definition, schema );
-          }
+  private void loadCatalogIntoCache( final Map<String, MondrianCatalog> catalogs,
+      final DataSourcesConfig.Catalog catalog, final IPentahoSession pentahoSession ) {
+    if ( catalog.definition.startsWith( "mondrian:" ) || catalog.definition
+        .startsWith( "solution:" ) ) { //$NON-NLS-1$
 
-          catalogs.put( mondrianCatalog.getName(), mondrianCatalog );
-          catalogs.put( mondrianCatalog.getDefinition(), mondrianCatalog );
+      // try catch here so the whole thing doesn't blow up if one datasource is configured incorrectly.
+      MondrianSchema schema = null;
+      try {
+        schema = makeSchema( getCatalogAsString( pentahoSession, catalog ) );
 
-        } else {
-          MondrianCatalogHelper.logger.warn( Messages.getInstance().getString(
-              "MondrianCatalogHelper.WARN_SKIPPING_DATASOURCE_DEF", catalog.definition ) ); //$NON-NLS-1$
-        }
+      } catch ( Exception e ) {
+        MondrianCatalogHelper.logger.error( Messages.getInstance().getErrorString(
+            "MondrianCatalogHelper.ERROR_0013_FAILED_TO_LOAD_SCHEMA", catalog.definition ), e ); //$NON-NLS-1$
+      }
+      MondrianCatalog mondrianCatalog = null;
+      if ( schema == null ) {
+        mondrianCatalog = new MondrianCatalog( catalog.name, catalog.dataSourceInfo, catalog.definition, schema );
+      } else {
+        mondrianCatalog =
+            new MondrianCatalog( useSchemaNameAsCatalogName ? schema.getName() : catalog.name,
+                catalog.dataSourceInfo, catalog.definition, schema );
       }
+
+      catalogs.put( mondrianCatalog.getName(), mondrianCatalog );
+      catalogs.put( mondrianCatalog.getDefinition(), mondrianCatalog );
+
+    } else {
+      MondrianCatalogHelper.logger.warn( Messages.getInstance().getString(
+          "MondrianCatalogHelper.WARN_SKIPPING_DATASOURCE_DEF", catalog.definition ) ); //$NON-NLS-1$
     }
   }
 
@@ -1026,7 +1140,18 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
         }
       }
 
-      schema = new MondrianSchema( schemaName, mondrianCubes, roleNames );
+      // Queries to warm the caches with are declared as schema annotations named pentaho.warmup...
+      List<String> warmupQueries = new ArrayList<String>();
+      if ( schemaFromXml.annotations != null && schemaFromXml.annotations.array != null ) {
+        for ( MondrianDef.Annotation annotation : schemaFromXml.annotations.array ) {
+          if ( annotation.name != null && annotation.name.startsWith( WARMUP_ANNOTATION_PREFIX )
+              && !StringUtils.isBlank( annotation.cdata ) ) {
+            warmupQueries.add( annotation.cdata.trim() );
+          }
+        }
+      }
+
+      schema = new MondrianSchema( schemaName, mondrianCubes, roleNames, warmupQueries );
 
     } catch ( XOMException e ) {
       if ( MondrianCatalogHelper.logger.isErrorEnabled() ) {
@@ -1188,6 +1313,6 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     RepositoryFile deletingFile = solutionRepository.getFile( RepositoryFile.SEPARATOR + "etc" //$NON-NLS-1$
         + RepositoryFile.SEPARATOR + "mondrian" + RepositoryFile.SEPARATOR + catalog.getName() ); //$NON-NLS-1$
     solutionRepository.deleteFile( deletingFile.getId(), true, "" ); //$NON-NLS-1$
-    reInit( pentahoSession );
+    refreshCatalog( catalog.getName(), pentahoSession );
   }
 }
@@ -21,6 +21,7 @@ import org.apache.commons.lang.builder.ToStringBuilder;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class MondrianSchema implements Serializable {
@@ -33,12 +34,20 @@ public class MondrianSchema implements Serializable {
 
   private String[] roleNames;
 
+  private List<String> warmupQueries;
+
   public MondrianSchema( final String name, final List<MondrianCube> cubes ) {
     this( name, cubes, null );
   }
 
   public MondrianSchema( final String name, final List<MondrianCube> cubes, String[] roles ) {
+    this( name, cubes, roles, null );
+  }
+
+  public MondrianSchema( final String name, final List<MondrianCube> cubes, String[] roles,
+      List<String> warmupQueries ) {
     this.name = name;
+    this.warmupQueries = warmupQueries;
     this.cubes = cubes;
     if ( ( roles != null ) ) {
       if ( roles.length > 0 ) {
@@ -67,6 +76,17 @@ public class MondrianSchema implements Serializable {
     return this.roleNames;
   }
 
+  /**
+   * Returns the MDX queries to run after the caches of this schema were flushed, so the first users do not pay for
+   * loading them. Never null.
+   */
+  public List<String> getWarmupQueries() {
+    if ( warmupQueries == null ) {
+      return Collections.emptyList();
+    }
+    return warmupQueries;
+  }
+
   @Override
   public String toString() {
     return new ToStringBuilder( this ).append( "name", name ).append( "cubes", cubes ).toString(); //$NON-NLS-1$ //$NON-NLS-2$
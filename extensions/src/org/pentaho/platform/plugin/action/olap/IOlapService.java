@@ -175,6 +175,11 @@ public interface IOlapService {
    */
   public void flushAll( IPentahoSession pentahoSession );
 
+  /**
+   * Flushes the schema cache of a single catalog and reloads its cached metadata.
+   */
+  public void flush( IPentahoSession pentahoSession, String catalogName );
+
   /**
    * Representation of a catalog. Catalogs have {@link Schema} children.
    */
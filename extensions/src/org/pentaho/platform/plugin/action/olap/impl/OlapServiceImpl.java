@@ -29,12 +29,21 @@ import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mondrian.olap.MondrianServer;
 import mondrian.olap.Role;
@@ -84,8 +93,10 @@ import org.springframework.security.userdetails.UserDetailsService;
  * <p>It will also check for the presence of a {@link IConnectionUserRoleMapper}
  * and change the roles accordingly before creating a connection.
  *
- * <p>This implementation is thread safe. It will use a {@link ReadWriteLock}
- * to manage the access to its metadata.
+ * <p>This implementation is thread safe. The catalog metadata is served
+ * from immutable snapshots which are swapped in once rebuilt, so readers
+ * never wait for a rebuild. Catalogs are loaded on a small pool of
+ * threads, sized by the <code>olap/catalog-loader-threads</code> setting.
  */
 public class OlapServiceImpl implements IOlapService {
 
@@ -93,7 +104,30 @@ public class OlapServiceImpl implements IOlapService {
 
   static final String MONDRIAN_DATASOURCE_FOLDER = "mondrian"; //$NON-NLS-1$
 
-  final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
+  /**
+   * The default number of seconds to wait for a catalog when building the metadata snapshot of a locale.
+   */
+  public static final int DEFAULT_CATALOG_LOAD_TIMEOUT = 10;
+
+  public static final int DEFAULT_CATALOG_LOADER_THREADS = 4;
+
+  /**
+   * Held while swapping in a new snapshot of the catalog metadata. Readers do not use it.
+   */
+  private final Object snapshotLock = new Object();
+
+  /**
+   * The snapshots being built, by locale, so concurrent readers wait for the same build.
+   */
+  private final ConcurrentMap<Object, FutureTask<List<Catalog>>> pendingBuilds =
+    new ConcurrentHashMap<Object, FutureTask<List<Catalog>>>();
+
+  /**
+   * The locales snapshots were built for, by cache key.
+   */
+  private final ConcurrentMap<Object, Locale> cachedLocales = new ConcurrentHashMap<Object, Locale>();
+
+  private ThreadPoolExecutor loader;
 
   /**
    * This is the default name of an XMLA data source on the server.
@@ -111,7 +145,7 @@ public class OlapServiceImpl implements IOlapService {
   private IUnifiedRepository repository;
   private MondrianCatalogRepositoryHelper helper;
 
-  private MondrianServer server = null;
+  private volatile MondrianServer server = null;
   private final List<IOlapConnectionFilter> filters;
   private Role role;
 
@@ -188,158 +222,287 @@ public class OlapServiceImpl implements IOlapService {
   }
 
   /**
-   * Returns a list of catalogs for the current session.
-   *
-   * <p>The cache is stored in the platform's caches in the region
-   * {@link #CATALOG_CACHE_REGION}. It is also segmented by
-   * locale, but we only return the correct sub-region according to the
-   * session passed as a parameter.
+   * Returns the catalog metadata of the current locale. Readers never lock: they get the immutable snapshot last
+   * swapped into the platform's cache region {@link #CATALOG_CACHE_REGION}, segmented by locale. Only when there is
+   * no snapshot for the locale yet does the caller wait for one to be built, sharing the build with other callers
+   * asking at the same time.
    */
   @SuppressWarnings( "unchecked" )
-  protected synchronized List<IOlapService.Catalog> getCache( IPentahoSession session ) {
-    // Create the cache region if necessary.
+  protected List<IOlapService.Catalog> getSnapshot( final IPentahoSession session ) {
     final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
-    final Object cacheKey = makeCacheSubRegionKey( getLocale() );
-
-
-    final Lock writeLock = cacheLock.writeLock();
-    try {
-
-      writeLock.lock();
-
-      if ( !cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
-        // Create the region. This requires write access.
-        cacheMgr.addCacheRegion( CATALOG_CACHE_REGION );
+    final Locale locale = getLocale();
+    final Object cacheKey = makeCacheSubRegionKey( locale );
+    if ( cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
+      final List<Catalog> snapshot =
+        (List<Catalog>) cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey );
+      if ( snapshot != null ) {
+        return snapshot;
       }
+    }
 
-      if ( cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey ) == null ) {
-        // Create the sub-region. This requires write access.
-        cacheMgr.putInRegionCache(
-          CATALOG_CACHE_REGION,
-          cacheKey,
-          new ArrayList<IOlapService.Catalog>() );
+    FutureTask<List<Catalog>> build = new FutureTask<List<Catalog>>(
+      new Callable<List<Catalog>>() {
+        public List<Catalog> call() throws Exception {
+          return buildSnapshot( locale, session );
+        }
+      } );
+    final FutureTask<List<Catalog>> running = pendingBuilds.putIfAbsent( cacheKey, build );
+    if ( running == null ) {
+      try {
+        build.run();
+      } finally {
+        pendingBuilds.remove( cacheKey, build );
       }
-
-      return (List<IOlapService.Catalog>)
-        cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey );
-
-    } finally {
-      writeLock.unlock();
+    } else {
+      build = running;
+    }
+    try {
+      return build.get();
+    } catch ( ExecutionException e ) {
+      LOG.error(
+        "Failed to initialize the connection cache",
+        e.getCause() );
+      throw new IOlapServiceException( e.getCause() );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IOlapServiceException( e );
     }
   }
 
   /**
-   * Clears all caches for all locales.
+   * Returns the catalogs of the session's locale.
+   *
+   * @deprecated the catalogs are kept in immutable snapshots, so the returned list cannot be changed; use
+   *             {@link #getSnapshot(IPentahoSession)}
    */
-  protected void resetCache( IPentahoSession session ) {
-    final Lock writeLock = cacheLock.writeLock();
-    try {
-      writeLock.lock();
-      final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
-      cacheMgr.clearRegionCache( CATALOG_CACHE_REGION );
-    } finally {
-      writeLock.unlock();
-    }
+  @Deprecated
+  protected List<IOlapService.Catalog> getCache( IPentahoSession session ) {
+    return getSnapshot( session );
   }
 
-  protected Object makeCacheSubRegionKey( Locale locale ) {
-    return locale.toString();
+  /**
+   * Clears the catalogs of all locales, they are loaded again on the next request.
+   *
+   * @deprecated readers wait for the catalogs to be loaded again; {@link #flushAll(IPentahoSession)} reloads them in
+   *             the background while readers keep using the previous ones
+   */
+  @Deprecated
+  protected void resetCache( IPentahoSession session ) {
+    synchronized ( snapshotLock ) {
+      PentahoSystem.getCacheManager( session ).clearRegionCache( CATALOG_CACHE_REGION );
+    }
   }
 
   /**
-   * Initializes the cache. Only the cache specific to the sesison's locale
-   * will be populated.
+   * Loads the catalogs of the session's locale unless they are loaded already.
+   *
+   * @deprecated use {@link #getSnapshot(IPentahoSession)}, which loads the catalogs when needed
    */
+  @Deprecated
   protected void initCache( IPentahoSession session ) {
+    getSnapshot( session );
+  }
 
-    final List<Catalog> cache = getCache( session );
-
-    final boolean needUpdate;
-    final Lock readLock = cacheLock.readLock();
-
-    try {
-      readLock.lock();
-      // Check if the cache is empty.
-      if ( cache.size() == 0 ) {
-        needUpdate = true;
-      } else {
-        needUpdate = false;
+  /**
+   * Loads the metadata of all catalogs for a locale and swaps it in as its snapshot. The catalogs are loaded in
+   * parallel on the loader threads; the ones not loaded within the <code>olap/catalog-load-timeout</code> setting are
+   * left out and added to the snapshot once they are loaded, so one slow remote server does not hold up the others.
+   */
+  private List<Catalog> buildSnapshot( final Locale locale, final IPentahoSession session ) throws Exception {
+    final List<String> names = runAsSystem( new Callable<List<String>>() {
+      public List<String> call() throws Exception {
+        final List<String> names = new ArrayList<String>( getHelper().getHostedCatalogs() );
+        names.addAll( getHelper().getOlap4jServers() );
+        return names;
       }
-    } finally {
-      readLock.unlock();
+    }, session );
+
+    final SnapshotBuild snapshotBuild = new SnapshotBuild( locale, session );
+    final List<Future<?>> loads = new ArrayList<Future<?>>();
+    for ( final String name : names ) {
+      loads.add( submitLoad( locale, session, new Runnable() {
+        public void run() {
+          final Catalog catalog = loadCatalog( name, session );
+          if ( catalog != null ) {
+            snapshotBuild.loaded( catalog );
+          }
+        }
+      } ) );
     }
 
-    if ( needUpdate ) {
-      final Lock writeLock = cacheLock.writeLock();
+    final int timeout =
+      Math.max( PentahoSystem.getSystemSettingAsInt( "olap/catalog-load-timeout", //$NON-NLS-1$
+        DEFAULT_CATALOG_LOAD_TIMEOUT ), 0 );
+    final long deadline = System.currentTimeMillis() + timeout * 1000L;
+    for ( Future<?> load : loads ) {
       try {
-        writeLock.lock();
-
-        // First clear the cache
-        cache.clear();
-
-        final Callable<Void> call = new Callable<Void>() {
-          public Void call() throws Exception {
-            // Now build the cache. Use the system session in the holder.
-            for ( String name : getHelper().getHostedCatalogs() ) {
-              try {
-                addCatalogToCache( PentahoSessionHolder.getSession(), name );
-              } catch ( Throwable t ) {
-                LOG.error(
-                  "Failed to initialize the cache for OLAP connection "
-                  + name,
-                  t );
-              }
-            }
-            for ( String name : getHelper().getOlap4jServers() ) {
-              try {
-                addCatalogToCache( PentahoSessionHolder.getSession(), name );
-              } catch ( Throwable t ) {
-                LOG.error(
-                  "Failed to initialize the cache for OLAP connection "
-                  + name,
-                  t );
-              }
-            }
-            return null;
-          }
-        };
-
-        if ( isSecurityEnabled() ) {
-          SecurityHelper.getInstance().runAsSystem( call );
+        if ( timeout > 0 ) {
+          load.get( Math.max( deadline - System.currentTimeMillis(), 0 ), TimeUnit.MILLISECONDS );
         } else {
-          call.call();
+          load.get();
         }
+      } catch ( TimeoutException e ) {
+        // left out of the snapshot for now, added when done
+      }
+    }
+    return snapshotBuild.publish();
+  }
 
-        // Sort it all.
-        Collections.sort(
-          cache,
-          new Comparator<IOlapService.Catalog>() {
-            public int compare( Catalog o1, Catalog o2 ) {
-              return o1.name.compareTo( o2.name );
-            }
-          } );
+  /**
+   * Loads the metadata of a catalog again and swaps it into the snapshots of all locales, in the background. Readers
+   * keep using the previous metadata meanwhile. A catalog that does not exist anymore is removed; one that fails to
+   * load keeps its previous metadata.
+   */
+  private void refreshInBackground( final String catalogName, final IPentahoSession session ) {
+    for ( final Map.Entry<Object, Locale> entry : cachedLocales.entrySet() ) {
+      submitLoad( entry.getValue(), session, new Runnable() {
+        public void run() {
+          final Catalog catalog = loadCatalog( catalogName, session );
+          if ( catalog != null ) {
+            replaceInSnapshot( entry.getKey(), catalogName, catalog, session );
+          } else if ( !catalogExists( catalogName, session ) ) {
+            replaceInSnapshot( entry.getKey(), catalogName, null, session );
+          }
+        }
+      } );
+    }
+  }
 
-      } catch ( Throwable t ) {
+  private boolean catalogExists( final String catalogName, final IPentahoSession session ) {
+    try {
+      return runAsSystem( new Callable<Boolean>() {
+        public Boolean call() throws Exception {
+          return getHelper().getHostedCatalogs().contains( catalogName )
+            || getHelper().getOlap4jServers().contains( catalogName );
+        }
+      }, session );
+    } catch ( Exception e ) {
+      LOG.warn( "Failed to look up OLAP connection " + catalogName, e );
+      return true;
+    }
+  }
 
-        LOG.error(
-          "Failed to initialize the connection cache",
-          t );
+  /**
+   * Reloads the metadata of all catalogs in the background, swapping each catalog into the snapshots once it is
+   * loaded. Readers keep using the previous metadata meanwhile. Catalogs that do not exist anymore are removed right
+   * away.
+   */
+  @SuppressWarnings( "unchecked" )
+  private void rebuildInBackground( final IPentahoSession session ) throws Exception {
+    final List<String> names = runAsSystem( new Callable<List<String>>() {
+      public List<String> call() throws Exception {
+        final List<String> names = new ArrayList<String>( getHelper().getHostedCatalogs() );
+        names.addAll( getHelper().getOlap4jServers() );
+        return names;
+      }
+    }, session );
 
-        throw new IOlapServiceException( t );
+    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
+    synchronized ( snapshotLock ) {
+      if ( cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
+        for ( Object cacheKey : cachedLocales.keySet() ) {
+          final List<Catalog> snapshot =
+            (List<Catalog>) cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey );
+          if ( snapshot != null ) {
+            final List<Catalog> catalogs = new ArrayList<Catalog>( snapshot.size() );
+            for ( Catalog catalog : snapshot ) {
+              if ( names.contains( catalog.name ) ) {
+                catalogs.add( catalog );
+              }
+            }
+            swapSnapshot( cacheMgr, cacheKey, catalogs );
+          }
+        }
+      }
+    }
+    for ( String name : names ) {
+      refreshInBackground( name, session );
+    }
+  }
 
-      } finally {
-        writeLock.unlock();
+  /**
+   * Swaps in a copy of the snapshot of a locale where the catalog named <code>catalogName</code> is replaced by
+   * <code>catalog</code>, or removed if it is null. Does nothing if there is no snapshot for the locale.
+   */
+  @SuppressWarnings( "unchecked" )
+  private void replaceInSnapshot(
+    final Object cacheKey,
+    final String catalogName,
+    final Catalog catalog,
+    final IPentahoSession session ) {
+    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
+    synchronized ( snapshotLock ) {
+      if ( !cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
+        return;
       }
+      final List<Catalog> snapshot =
+        (List<Catalog>) cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey );
+      if ( snapshot == null ) {
+        return;
+      }
+      final List<Catalog> catalogs = new ArrayList<Catalog>( snapshot.size() + 1 );
+      for ( Catalog existing : snapshot ) {
+        if ( !existing.name.equals( catalogName ) ) {
+          catalogs.add( existing );
+        }
+      }
+      if ( catalog != null ) {
+        catalogs.add( catalog );
+      }
+      swapSnapshot( cacheMgr, cacheKey, catalogs );
     }
   }
 
   /**
-   * Adds a catalog and its children to the cache.
-   * Do not use directly. This must be called with a write lock
-   * on the cache.
-   * @param catalogName The name of the catalog to load in cache.
+   * Sorts the catalogs and puts them into the cache as the snapshot of a locale. Must be called holding
+   * {@link #snapshotLock}.
    */
-  private void addCatalogToCache( IPentahoSession session, String catalogName ) {
+  private List<Catalog> swapSnapshot(
+    final ICacheManager cacheMgr,
+    final Object cacheKey,
+    final List<Catalog> catalogs ) {
+    Collections.sort(
+      catalogs,
+      new Comparator<IOlapService.Catalog>() {
+        public int compare( Catalog o1, Catalog o2 ) {
+          return o1.name.compareTo( o2.name );
+        }
+      } );
+    if ( !cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
+      // Create the region.
+      cacheMgr.addCacheRegion( CATALOG_CACHE_REGION );
+    }
+    final List<Catalog> snapshot = Collections.unmodifiableList( catalogs );
+    cacheMgr.putInRegionCache( CATALOG_CACHE_REGION, cacheKey, snapshot );
+    return snapshot;
+  }
+
+  protected Object makeCacheSubRegionKey( Locale locale ) {
+    return locale.toString();
+  }
+
+  /**
+   * Loads a catalog and its children as the system user.
+   * @param catalogName The name of the catalog to load.
+   * @return the catalog, or null if it could not be loaded
+   */
+  private Catalog loadCatalog( final String catalogName, final IPentahoSession session ) {
+    try {
+      return runAsSystem( new Callable<Catalog>() {
+        public Catalog call() throws Exception {
+          return makeCatalog( PentahoSessionHolder.getSession(), catalogName );
+        }
+      }, session );
+    } catch ( Throwable t ) {
+      LOG.error(
+        "Failed to initialize the cache for OLAP connection "
+        + catalogName,
+        t );
+      return null;
+    }
+  }
+
+  private Catalog makeCatalog( IPentahoSession session, String catalogName ) {
 
     final IOlapService.Catalog catalog =
       new Catalog( catalogName, new ArrayList<IOlapService.Schema>() );
@@ -371,7 +534,7 @@ public class OlapServiceImpl implements IOlapService {
       }
 
       // We're done.
-      getCache( session ).add( catalog );
+      return catalog;
 
     } catch ( OlapException e ) {
 
@@ -379,6 +542,7 @@ public class OlapServiceImpl implements IOlapService {
         "Failed to initialize the olap connection cache for catalog "
         + catalogName,
         e );
+      return null;
 
     } finally {
       try {
@@ -394,6 +558,93 @@ public class OlapServiceImpl implements IOlapService {
     }
   }
 
+  /**
+   * Runs a task as the system user, or as the given session when security is not set up.
+   */
+  private <T> T runAsSystem( final Callable<T> call, final IPentahoSession session ) throws Exception {
+    if ( isSecurityEnabled() ) {
+      return SecurityHelper.getInstance().runAsSystem( call );
+    }
+    final IPentahoSession previous = PentahoSessionHolder.getSession();
+    PentahoSessionHolder.setSession( session );
+    try {
+      return call.call();
+    } finally {
+      PentahoSessionHolder.setSession( previous );
+    }
+  }
+
+  /**
+   * Runs a catalog load on the loader threads, with the locale the metadata is loaded for.
+   */
+  private Future<?> submitLoad( final Locale locale, final IPentahoSession session, final Runnable load ) {
+    cachedLocales.put( makeCacheSubRegionKey( locale ), locale );
+    return getLoader().submit( new Runnable() {
+      public void run() {
+        final Locale previous = LocaleHelper.getLocale();
+        LocaleHelper.setLocale( locale );
+        try {
+          load.run();
+        } finally {
+          LocaleHelper.setLocale( previous );
+        }
+      }
+    } );
+  }
+
+  private synchronized ThreadPoolExecutor getLoader() {
+    if ( loader == null ) {
+      final int threads =
+        Math.max( PentahoSystem.getSystemSettingAsInt( "olap/catalog-loader-threads", //$NON-NLS-1$
+          DEFAULT_CATALOG_LOADER_THREADS ), 1 );
+      final AtomicInteger count = new AtomicInteger();
+      loader =
+        new ThreadPoolExecutor(
+          threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+              final Thread thread = new Thread( r, "pentaho-olap-catalog-loader-" + count.incrementAndGet() ); //$NON-NLS-1$
+              thread.setDaemon( true );
+              return thread;
+            }
+          } );
+      loader.allowCoreThreadTimeOut( true );
+    }
+    return loader;
+  }
+
+  /**
+   * Collects the catalogs loaded for a new snapshot. Catalogs loaded after the snapshot was published are swapped
+   * into it one by one.
+   */
+  private class SnapshotBuild {
+    private final Object cacheKey;
+    private final IPentahoSession session;
+    private final List<Catalog> catalogs = new ArrayList<Catalog>();
+    private boolean published;
+
+    SnapshotBuild( final Locale locale, final IPentahoSession session ) {
+      this.cacheKey = makeCacheSubRegionKey( locale );
+      this.session = session;
+    }
+
+    synchronized void loaded( final Catalog catalog ) {
+      if ( published ) {
+        replaceInSnapshot( cacheKey, catalog.name, catalog, session );
+      } else {
+        catalogs.add( catalog );
+      }
+    }
+
+    synchronized List<Catalog> publish() {
+      published = true;
+      final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
+      synchronized ( snapshotLock ) {
+        return swapSnapshot( cacheMgr, cacheKey, new ArrayList<Catalog>( catalogs ) );
+      }
+    }
+  }
+
   public void addHostedCatalog(
     String name,
     String dataSourceInfo,
@@ -427,6 +678,7 @@ public class OlapServiceImpl implements IOlapService {
         e,
         IOlapServiceException.Reason.convert( e ) );
     }
+    refreshInBackground( name, session );
   }
 
   protected boolean hasAccess(
@@ -467,6 +719,7 @@ public class OlapServiceImpl implements IOlapService {
         new MondrianCatalogRepositoryHelper( getRepository() );
 
     helper.addOlap4jServer( name, className, URL, user, password, props );
+    refreshInBackground( name, session );
   }
 
   public void removeCatalog( String name, IPentahoSession session ) {
@@ -489,41 +742,56 @@ public class OlapServiceImpl implements IOlapService {
 
     // This could be a remote connection
     getHelper().deleteCatalog( name );
+
+    for ( Object cacheKey : cachedLocales.keySet() ) {
+      replaceInSnapshot( cacheKey, name, null, session );
+    }
   }
 
   public void flushAll( IPentahoSession session ) {
-    final Lock writeLock = cacheLock.writeLock();
     try {
-      writeLock.lock();
-
-      // Start by flushing the local cache.
-      resetCache( session );
-
       flushHostedAndRemote( session );
+
+      // The metadata is reloaded in the background, readers use the previous metadata meanwhile.
+      rebuildInBackground( session );
     } catch ( Exception e ) {
       throw new IOlapServiceException( e );
-    } finally {
-      writeLock.unlock();
     }
   }
 
+  /**
+   * Flushes the schema cache of one catalog. The cached metadata of the catalog is reloaded in the background.
+   */
+  public void flush( IPentahoSession session, String catalogName ) {
+    try {
+      flushCatalog( catalogName, session );
+    } catch ( SQLException e ) {
+      throw new IOlapServiceException( e );
+    }
+    refreshInBackground( catalogName, session );
+  }
+
   private void flushHostedAndRemote( final IPentahoSession session )
     throws SQLException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
     for ( String name : getCatalogNames( session ) ) {
-      OlapConnection connection = null;
-      try {
-        connection = getConnection( name, session );
-        XmlaHandler.XmlaExtra xmlaExtra = getXmlaExtra( connection );
-        if ( xmlaExtra != null ) {
-          xmlaExtra.flushSchemaCache( connection );
-        }
-      } catch ( Exception e ) {
-        LOG.warn(
-          Messages.getInstance().getErrorString("MondrianCatalogHelper.ERROR_0019_FAILED_TO_FLUSH", name ), e );
-      } finally {
-        if ( connection != null ) {
-          connection.close();
-        }
+      flushCatalog( name, session );
+    }
+  }
+
+  private void flushCatalog( final String name, final IPentahoSession session ) throws SQLException {
+    OlapConnection connection = null;
+    try {
+      connection = getConnection( name, session );
+      XmlaHandler.XmlaExtra xmlaExtra = getXmlaExtra( connection );
+      if ( xmlaExtra != null ) {
+        xmlaExtra.flushSchemaCache( connection );
+      }
+    } catch ( Exception e ) {
+      LOG.warn(
+        Messages.getInstance().getErrorString("MondrianCatalogHelper.ERROR_0019_FAILED_TO_FLUSH", name ), e );
+    } finally {
+      if ( connection != null ) {
+        connection.close();
       }
     }
   }
@@ -562,30 +830,16 @@ public class OlapServiceImpl implements IOlapService {
     IPentahoSession session )
     throws IOlapServiceException {
 
-    // Make sure the cache is initialized.
-    initCache( session );
-    final List<Catalog> cache = getCache( session );
-
-    final Lock readLock = cacheLock.readLock();
-    try {
-      readLock.lock();
-
-      final List<IOlapService.Catalog> catalogs =
-        new ArrayList<IOlapService.Catalog>();
-      for ( Catalog catalog : cache ) {
-        if ( hasAccess( catalog.name, EnumSet.of( RepositoryFilePermission.READ ), session ) ) {
-          catalogs.add( catalog );
-        }
+    final List<IOlapService.Catalog> catalogs =
+      new ArrayList<IOlapService.Catalog>();
+    for ( Catalog catalog : getSnapshot( session ) ) {
+      if ( hasAccess( catalog.name, EnumSet.of( RepositoryFilePermission.READ ), session ) ) {
+        catalogs.add( catalog );
       }
-
-      // Do not leak the cache list.
-      // Do not allow modifications on the list.
-      return Collections.unmodifiableList(
-        new ArrayList<IOlapService.Catalog>( cache ) );
-
-    } finally {
-      readLock.unlock();
     }
+
+    // Do not allow modifications on the list.
+    return Collections.unmodifiableList( catalogs );
   }
 
   public List<IOlapService.Schema> getSchemas(
@@ -772,27 +1026,34 @@ public class OlapServiceImpl implements IOlapService {
     }
   }
 
-  private synchronized MondrianServer getServer() {
-    if ( server == null ) {
-      server =
-        MondrianServerRegistry.INSTANCE.createWithRepository(
-          new DynamicContentFinder( "http://not-needed.com" ) {
-            @Override
-            public String getContent() {
-              // We dynamically generate the XML required by the
-              // XMLA servlet. It must conform to Datasources.dtd,
-              // as specified by olap4j-xmlaserver.
-              return getDatasourcesXml();
-            }
-          },
-          new CatalogLocator() {
-            public String locate( String URL ) {
-              return URL;
+  private MondrianServer getServer() {
+    // Read without locking on every connection; only the first one creates the server.
+    final MondrianServer current = server;
+    if ( current != null ) {
+      return current;
+    }
+    synchronized ( this ) {
+      if ( server == null ) {
+        server =
+          MondrianServerRegistry.INSTANCE.createWithRepository(
+            new DynamicContentFinder( "http://not-needed.com" ) {
+              @Override
+              public String getContent() {
+                // We dynamically generate the XML required by the
+                // XMLA servlet. It must conform to Datasources.dtd,
+                // as specified by olap4j-xmlaserver.
+                return getDatasourcesXml();
+              }
+            },
+            new CatalogLocator() {
+              public String locate( String URL ) {
+                return URL;
+              }
             }
-          }
-        );
+          );
+      }
+      return server;
     }
-    return server;
   }
 
   private String getDatasourcesXml() {
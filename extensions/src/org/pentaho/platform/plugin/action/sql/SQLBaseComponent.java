@@ -32,12 +32,15 @@ import org.pentaho.commons.connection.memory.MemoryMetaData;
 import org.pentaho.platform.api.data.IDataComponent;
 import org.pentaho.platform.api.data.IPreparedComponent;
 import org.pentaho.platform.api.engine.IParameterResolver;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.connection.PentahoConnectionFactory;
 import org.pentaho.platform.engine.services.runtime.TemplateUtil;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
 import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
+import org.pentaho.platform.plugin.services.connections.sql.SpoolingResultSet;
 
+import java.io.File;
 import java.text.Format;
 import java.util.ArrayList;
 import java.util.List;
@@ -58,6 +61,13 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
 
   public static final String PREPARE_PARAMETER_PREFIX = "PREPARE"; //$NON-NLS-1$
 
+  /** the input that turns streaming of result sets that are not live on or off */
+  public static final String STREAM_INPUT = "stream"; //$NON-NLS-1$
+
+  public static final int DEFAULT_STREAM_FETCH_SIZE = 500;
+
+  public static final int DEFAULT_STREAM_MEMORY_ROWS = 10000;
+
   /** stores the prepared query for later use */
   protected String preparedQuery = null;
 
@@ -158,7 +168,8 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
    * 
    * various inputs that impact the state include:
    * 
-   * live - returns a live result set vs. an in memory copy transform - transform a result set based on additional
+   * live - returns a live result set vs. an in memory copy stream - instead of the in memory copy, returns a result set
+   * reading the rows of a forward-only cursor as they are needed transform - transform a result set based on additional
    * inputs prepared_component - if available, use existing connection from prepared component max_rows - sets the
    * number of rows that should be returned in result sets
    * 
@@ -460,6 +471,26 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         dumpQuery( query );
       }
 
+      boolean live = true;
+      IActionDefinition actionDefinition = getActionDefinition();
+      if ( actionDefinition instanceof AbstractRelationalDbAction ) {
+        AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) actionDefinition;
+        live = relationalDbAction.getLive().getBooleanValue( false );
+      }
+
+      if ( !live && ( connection instanceof SQLConnection ) && isStreaming() ) {
+        SQLConnection sqlConnection = (SQLConnection) connection;
+        IPentahoResultSet resultSet;
+        if ( copyOfPreparedParameters.size() > 0 ) {
+          resultSet = doStreamingQuery( sqlConnection, query, copyOfPreparedParameters );
+        } else {
+          resultSet = doStreamingQuery( sqlConnection, query );
+        }
+        // the connection stays with this component, it may execute the query again
+        rSet = streamResultSet( resultSet, false );
+        return rSet;
+      }
+
       // evaluate
       IPentahoResultSet resultSet = null;
       if ( preparedParameters.size() > 0 ) {
@@ -474,13 +505,6 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         }
       }
 
-      boolean live = true;
-      IActionDefinition actionDefinition = getActionDefinition();
-      if ( actionDefinition instanceof AbstractRelationalDbAction ) {
-        AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) actionDefinition;
-        live = relationalDbAction.getLive().getBooleanValue( false );
-      }
-
       IPentahoResultSet rs = resultSet;
 
       // BISERVER-5915, BISERVER-5875 - if the live setting is false, return an in memory resultset.
@@ -567,6 +591,24 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
       IPentahoResultSet resultSet = null;
       boolean isForwardOnly = relationalDbAction.getUseForwardOnlyResultSet().getBooleanValue( false );
 
+      if ( !live && ( sqlConnection != null ) && isStreaming() ) {
+        IPentahoResultSet streamedResultSet = doStreamingQuery( sqlConnection, query );
+        // After preparation and execution, we need to clear out the
+        // prepared parameters.
+        preparedParameters.clear();
+        resultSet = streamResultSet( streamedResultSet, connectionOwner );
+        if ( connectionOwner ) {
+          // the result set closes the connection once its rows were read
+          connection = null;
+        }
+        rSet = resultSet;
+        IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
+        if ( actionOutput != null ) {
+          actionOutput.setValue( resultSet );
+        }
+        return true;
+      }
+
       resultSet = doQuery( sqlConnection, query, isForwardOnly );
 
       if ( sqlConnection.isForcedForwardOnly() ) {
@@ -674,6 +716,66 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
     return resultSet;
   }
 
+  /**
+   * Returns true if a result set that is not live should be streamed instead of copied into memory. The
+   * <code>stream</code> input of the action decides, and without one the <code>sql/stream-results</code> system
+   * setting.
+   */
+  protected boolean isStreaming() {
+    return getInputBooleanValue( SQLBaseComponent.STREAM_INPUT, "true".equalsIgnoreCase( //$NON-NLS-1$
+        PentahoSystem.getSystemSetting( "sql/stream-results", "false" ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * Runs <code>query</code> with a forward-only, read-only cursor, fetching rows in batches of the
+   * <code>sql/stream-fetch-size</code> system setting unless the connection has a fetch size already.
+   */
+  protected IPentahoResultSet doStreamingQuery( final SQLConnection sqlConnection, final String query )
+    throws Exception {
+    return doStreamingQuery( sqlConnection, query, null );
+  }
+
+  private IPentahoResultSet doStreamingQuery( final SQLConnection sqlConnection, final String query,
+      final List parameters ) throws Exception {
+    if ( ComponentBase.debug ) {
+      dumpQuery( query );
+    }
+    if ( sqlConnection.getFetchSize() < 0 ) {
+      sqlConnection.setFetchSize( PentahoSystem.getSystemSettingAsInt( "sql/stream-fetch-size", //$NON-NLS-1$
+          SQLBaseComponent.DEFAULT_STREAM_FETCH_SIZE ) );
+    }
+    if ( parameters != null ) {
+      return sqlConnection.prepareAndExecuteQuery( query, parameters, SQLConnection.RESULTSET_FORWARDONLY,
+          SQLConnection.CONCUR_READONLY );
+    }
+    if ( preparedParameters.size() > 0 ) {
+      return sqlConnection.prepareAndExecuteQuery( query, preparedParameters, SQLConnection.RESULTSET_FORWARDONLY,
+          SQLConnection.CONCUR_READONLY );
+    }
+    return sqlConnection.executeQuery( query, SQLConnection.RESULTSET_FORWARDONLY, SQLConnection.CONCUR_READONLY );
+  }
+
+  /**
+   * Wraps a forward-only result set so downstream components read its rows as they arrive. Up to
+   * <code>sql/stream-memory-rows</code> rows are kept in memory for consumers reading the rows more than once, more
+   * are spooled to a temp file of the session in system/tmp.
+   * 
+   * @param closeConnection
+   *          true if the result set should close the connection once its rows were read
+   */
+  protected IPentahoResultSet streamResultSet( final IPentahoResultSet resultSet, final boolean closeConnection ) {
+    File spoolDirectory = null;
+    if ( PentahoSystem.getApplicationContext() != null ) {
+      spoolDirectory = new File( PentahoSystem.getApplicationContext().getSolutionPath( "system/tmp" ) ); //$NON-NLS-1$
+    }
+    SpoolingResultSet spoolingResultSet =
+        new SpoolingResultSet( resultSet, PentahoSystem.getSystemSettingAsInt( "sql/stream-memory-rows", //$NON-NLS-1$
+            SQLBaseComponent.DEFAULT_STREAM_MEMORY_ROWS ), spoolDirectory );
+    spoolingResultSet.setCloseSourceConnection( closeConnection );
+    spoolingResultSet.setSession( getSession() );
+    return spoolingResultSet;
+  }
+
   /**
    * dispose of the resultset, and if the owner, dispose of the connection.
    */
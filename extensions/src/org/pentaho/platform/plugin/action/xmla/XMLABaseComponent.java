@@ -14,59 +14,78 @@
  *
  * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
  */
-
 package org.pentaho.platform.plugin.action.xmla;
 
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.BasicScheme;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.commons.connection.memory.MemoryMetaData;
 import org.pentaho.commons.connection.memory.MemoryResultSet;
 import org.pentaho.platform.api.data.IDataComponent;
+import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
 
-import javax.xml.soap.Detail;
-import javax.xml.soap.DetailEntry;
 import javax.xml.soap.MessageFactory;
-import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.Name;
-import javax.xml.soap.Node;
 import javax.xml.soap.SOAPBody;
-import javax.xml.soap.SOAPConnection;
-import javax.xml.soap.SOAPConnectionFactory;
 import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPEnvelope;
 import javax.xml.soap.SOAPException;
-import javax.xml.soap.SOAPFault;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.soap.SOAPPart;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Locale;
 
+/**
+ * Runs MDX against an XML/A server. The SOAP requests are posted over HTTP connections pooled for all XML/A actions,
+ * so consecutive queries to the same server reuse a persistent connection. The replies are read with a streaming
+ * parser, cell by cell, and each row is added to the result set as soon as its cells have arrived, so a reply is
+ * never held in memory as a whole. The pool is set up from the <code>xmla</code> system settings.
+ */
 public abstract class XMLABaseComponent extends ComponentBase implements IDataComponent {
 
   private static final long serialVersionUID = 8405489984774339891L;
 
-  private static final String MDD_URI = "urn:schemas-microsoft-com:xml-analysis:mddataset"; //$NON-NLS-1$
-
-  private static final String ROWS_URI = "urn:schemas-microsoft-com:xml-analysis:rowset"; //$NON-NLS-1$
-
   private static final String XMLA_URI = "urn:schemas-microsoft-com:xml-analysis"; //$NON-NLS-1$
 
   private static final String EXECUTE_ACTION = "\"urn:schemas-microsoft-com:xml-analysis:Execute\""; //$NON-NLS-1$
 
+  private static final String DISCOVER_ACTION = "\"urn:schemas-microsoft-com:xml-analysis:Discover\""; //$NON-NLS-1$
+
   private static final String ENCODING_STYLE = "http://schemas.xmlsoap.org/soap/encoding/"; //$NON-NLS-1$
 
+  private static final String CONTENT_TYPE = "text/xml; charset=utf-8"; //$NON-NLS-1$
+
   private static final String URI = "uri"; //$NON-NLS-1$
 
   private static final String USER = "user-id"; //$NON-NLS-1$
@@ -81,14 +100,30 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
 
   private static final int AXIS_ROWS = 1;
 
-  private IPentahoResultSet rSet;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+  private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
 
-  private SOAPConnectionFactory scf = null;
+  private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+  private static final int DEFAULT_READ_TIMEOUT = 300000;
+
+  private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+  static {
+    inputFactory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+  }
+
+  private static HttpClient httpClient;
+
+  private IPentahoResultSet rSet;
 
   private MessageFactory mf = null;
 
   private URL url = null;
 
+  private String authorization = null;
+
   private int provider = 0;
 
   private String dataSource = null;
@@ -110,7 +145,17 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
   public abstract Log getLogger();
 
   interface Rowhandler {
-    void handleRow( SOAPElement eRow, SOAPEnvelope envelope );
+    /**
+     * @param row the text of each column of the row, by column name
+     */
+    void handleRow( Map<String, String> row );
+  }
+
+  /**
+   * Reads the content of a SOAP body, the reader is positioned on the start of its first element.
+   */
+  interface ReplyHandler {
+    void handleReply( XMLStreamReader reader ) throws XMLStreamException, XMLAException;
   }
 
   public IPentahoResultSet getResultSet() {
@@ -175,15 +220,6 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
 
   @Override
   protected boolean executeAction() {
-    try {
-      scf = SOAPConnectionFactory.newInstance();
-      mf = MessageFactory.newInstance();
-    } catch ( UnsupportedOperationException e ) {
-      e.printStackTrace();
-    } catch ( SOAPException e ) {
-      e.printStackTrace();
-    }
-
     String uri = this.getInputStringValue( XMLABaseComponent.URI );
     String user = this.getInputStringValue( XMLABaseComponent.USER );
     String password = this.getInputStringValue( XMLABaseComponent.PASSWORD );
@@ -202,27 +238,49 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
     return false;
   }
 
-  private void buildURl( final String uri, final String user, final String password ) {
+  void buildURl( final String uri, final String user, final String password ) {
     try {
       this.url = new URL( uri );
     } catch ( MalformedURLException e ) {
       e.printStackTrace();
     }
 
+    // sent with every request, the pooled connections are shared by all users
+    authorization = null;
     if ( ( user != null ) && ( user.length() > 0 ) ) {
-      String newUri = this.url.getProtocol() + "://" + user; //$NON-NLS-1$
-      if ( ( password != null ) && ( password.length() > 0 ) ) {
-        newUri += ":" + password; //$NON-NLS-1$
-      }
-      newUri += "@" + this.url.getHost() + ":" + this.url.getPort() //$NON-NLS-1$ //$NON-NLS-2$
-        + this.url.getPath();
+      String pwd = ( password != null ) ? password : ""; //$NON-NLS-1$
+      authorization = BasicScheme.authenticate( new UsernamePasswordCredentials( user, pwd ), "UTF-8" ); //$NON-NLS-1$
+    }
+  }
 
-      try {
-        this.url = new URL( newUri );
-      } catch ( MalformedURLException e ) {
-        e.printStackTrace();
-      }
+  /**
+   * The client posting to all XML/A servers. Its connections stay open between queries, up to
+   * <code>xmla/max-connections-per-host</code> to one server.
+   */
+  private static synchronized HttpClient getHttpClient() {
+    if ( httpClient == null ) {
+      MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+      HttpConnectionManagerParams params = connectionManager.getParams();
+      params.setDefaultMaxConnectionsPerHost( PentahoSystem.getSystemSettingAsInt( "xmla/max-connections-per-host", //$NON-NLS-1$
+        DEFAULT_MAX_CONNECTIONS_PER_HOST ) );
+      params.setMaxTotalConnections( PentahoSystem.getSystemSettingAsInt( "xmla/max-total-connections", //$NON-NLS-1$
+        DEFAULT_MAX_TOTAL_CONNECTIONS ) );
+      params.setConnectionTimeout( PentahoSystem.getSystemSettingAsInt( "xmla/connect-timeout", //$NON-NLS-1$
+        DEFAULT_CONNECT_TIMEOUT ) );
+      params.setSoTimeout( PentahoSystem.getSystemSettingAsInt( "xmla/read-timeout", //$NON-NLS-1$
+        DEFAULT_READ_TIMEOUT ) );
+      params.setStaleCheckingEnabled( true );
+      httpClient = new HttpClient( connectionManager );
+      httpClient.getParams().setConnectionManagerTimeout( params.getConnectionTimeout() );
+    }
+    return httpClient;
+  }
+
+  private MessageFactory getMessageFactory() throws SOAPException {
+    if ( mf == null ) {
+      mf = MessageFactory.newInstance();
     }
+    return mf;
   }
 
   /**
@@ -230,27 +288,12 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
    *
    * @param query   - MDX to be executed
    * @param catalog
-   * @param handler Callback handler
    * @throws XMLAException
    */
   public boolean executeQuery( final String query, final String catalog ) throws XMLAException {
 
-    Object[][] columnHeaders = null;
-    Object[][] rowHeaders = null;
-    Object[][] data = null;
-
-    int columnCount = 0;
-    int rowCount = 0;
-
-    SOAPConnection connection = null;
-    SOAPMessage reply = null;
-
     try {
-      connection = scf.createConnection();
-      SOAPMessage msg = mf.createMessage();
-
-      MimeHeaders mh = msg.getMimeHeaders();
-      mh.setHeader( "SOAPAction", XMLABaseComponent.EXECUTE_ACTION ); //$NON-NLS-1$
+      SOAPMessage msg = getMessageFactory().createMessage();
 
       SOAPPart soapPart = msg.getSOAPPart();
       SOAPEnvelope envelope = soapPart.getEnvelope();
@@ -296,156 +339,178 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
       debug( "Request for Execute" ); //$NON-NLS-1$
       logSoapMsg( msg );
 
-      // run the call
-      reply = connection.call( msg, url );
+      final MemoryResultSet resultSet = new MemoryResultSet();
+      call( msg, XMLABaseComponent.EXECUTE_ACTION, new ReplyHandler() {
+        public void handleReply( XMLStreamReader reader ) throws XMLStreamException, XMLAException {
+          if ( !"ExecuteResponse".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+            throw new XMLAException( Messages.getInstance().getString(
+              "XMLABaseComponent.ERROR_0011_NO_EXECUTE_RESPONSE_ELEMENT" ) ); //$NON-NLS-1$
+          }
+          if ( !findChild( reader, "return" ) || !findChild( reader, "root" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+            throw new XMLAException( Messages.getInstance().getString(
+              "XMLABaseComponent.ERROR_0012_NO_RESPONSE_ROOT_ELEMENT" ) ); //$NON-NLS-1$
+          }
+          readDataSet( reader, resultSet );
+        }
+      } );
 
-      debug( "Reply from Execute" ); //$NON-NLS-1$
-      logSoapMsg( reply );
+      rSet = resultSet;
+      if ( getResultOutputName() != null ) {
+        setOutputValue( getResultOutputName(), resultSet );
+      }
+      return true;
 
-      // error check
-      errorCheck( reply );
+    } catch ( SOAPException se ) {
+      throw new XMLAException( se );
+    }
 
-      // process the reply
-      SOAPElement eRoot = findExecRoot( reply );
+  }
 
-      // for each axis, get the positions (tuples)
-      Name name = envelope.createName( "Axes", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-      SOAPElement eAxes = selectSingleNode( eRoot, name );
-      if ( eAxes == null ) {
-        throw new XMLAException( "Excecute result has no Axes element" ); //$NON-NLS-1$
+  /**
+   * Reads the axes and cells of a multidimensional data set, the reader is positioned on its root element. The axes
+   * come first and give the headers of the result, the cells then come in the order of their ordinal, so each row is
+   * added to the result set once a cell of a later row is read.
+   */
+  private void readDataSet( final XMLStreamReader reader, final MemoryResultSet resultSet )
+    throws XMLStreamException, XMLAException {
+    List<Object[]> columnTuples = null;
+    List<Object[]> rowTuples = new ArrayList<Object[]>();
+
+    while ( nextChild( reader ) ) {
+      String name = reader.getLocalName();
+      if ( "Axes".equals( name ) ) { //$NON-NLS-1$
+        columnTuples = new ArrayList<Object[]>();
+        int iOrdinal = 0;
+        while ( nextChild( reader ) ) {
+          if ( !"Axis".equals( reader.getLocalName() ) //$NON-NLS-1$
+            || "SlicerAxis".equals( reader.getAttributeValue( null, "name" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+            skipElement( reader );
+            continue;
+          }
+          int axisOrdinal = iOrdinal++;
+          if ( axisOrdinal == XMLABaseComponent.AXIS_COLUMNS ) {
+            readTuples( reader, columnTuples );
+          } else if ( axisOrdinal == XMLABaseComponent.AXIS_ROWS ) {
+            readTuples( reader, rowTuples );
+          } else {
+            skipElement( reader );
+          }
+        }
+      } else if ( "CellData".equals( name ) ) { //$NON-NLS-1$
+        if ( columnTuples == null ) {
+          throw new XMLAException( "Excecute result has no Axes element" ); //$NON-NLS-1$
+        }
+        resultSet.setMetaData( createMetaData( columnTuples, rowTuples ) );
+        readCells( reader, resultSet, columnTuples.size(), rowTuples.size() );
+        return;
+      } else {
+        skipElement( reader );
       }
+    }
+    if ( columnTuples == null ) {
+      throw new XMLAException( "Excecute result has no Axes element" ); //$NON-NLS-1$
+    }
+    // no cells at all
+    resultSet.setMetaData( createMetaData( columnTuples, rowTuples ) );
+    readCells( null, resultSet, columnTuples.size(), rowTuples.size() );
+  }
 
-      name = envelope.createName( "Axis", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-      Iterator itAxis = eAxes.getChildElements( name );
-
-    AxisLoop:
-      for ( int iOrdinal = 0; itAxis.hasNext(); ) {
-        SOAPElement eAxis = (SOAPElement) itAxis.next();
-        name = envelope.createName( "name" ); //$NON-NLS-1$
-        String axisName = eAxis.getAttributeValue( name );
-        int axisOrdinal;
-        if ( axisName.equals( "SlicerAxis" ) ) { //$NON-NLS-1$
+  /**
+   * Adds the member captions of each tuple of an axis to <code>tuples</code>.
+   */
+  private void readTuples( final XMLStreamReader reader, final List<Object[]> tuples ) throws XMLStreamException {
+    if ( !findChild( reader, "Tuples" ) ) { //$NON-NLS-1$
+      return; // what else?
+    }
+    List<Object> captions = new ArrayList<Object>();
+    while ( nextChild( reader ) ) { // TupleLoop
+      if ( !"Tuple".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+        skipElement( reader );
+        continue;
+      }
+      captions.clear();
+      while ( nextChild( reader ) ) { // MemberLoop
+        if ( !"Member".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+          skipElement( reader );
           continue;
-        } else {
-          axisOrdinal = iOrdinal++;
-        }
-
-        name = envelope.createName( "Tuples", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-        SOAPElement eTuples = selectSingleNode( eAxis, name );
-        if ( eTuples == null ) {
-          continue AxisLoop; // what else?
         }
-
-        name = envelope.createName( "Tuple", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-        Iterator itTuple = eTuples.getChildElements( name );
-
-        // loop over tuples
-        int positionOrdinal = 0;
-        while ( itTuple.hasNext() ) { // TupleLoop
-
-          SOAPElement eTuple = (SOAPElement) itTuple.next();
-
-          if ( ( axisOrdinal == XMLABaseComponent.AXIS_COLUMNS ) && ( columnHeaders == null ) ) {
-            columnCount = getChildCount( envelope, eTuples, "Tuple" ); //$NON-NLS-1$
-            columnHeaders = new Object[ getChildCount( envelope, eTuple, "Member" ) ][ columnCount ]; //$NON-NLS-1$
-          } else if ( ( axisOrdinal == XMLABaseComponent.AXIS_ROWS ) && ( rowHeaders == null ) ) {
-            rowCount = getChildCount( envelope, eTuples, "Tuple" ); //$NON-NLS-1$
-            rowHeaders = new Object[ rowCount ][ getChildCount( envelope, eTuple, "Member" ) ]; //$NON-NLS-1$
+        String caption = null;
+        while ( nextChild( reader ) ) {
+          if ( "Caption".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+            caption = readText( reader );
+          } else {
+            skipElement( reader );
           }
-
-          int index = 0;
-          name = envelope.createName( "Member", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-          Iterator itMember = eTuple.getChildElements( name );
-          while ( itMember.hasNext() ) { // MemberLoop
-            SOAPElement eMem = (SOAPElement) itMember.next();
-            // loop over children nodes
-            String caption = null;
-            Iterator it = eMem.getChildElements();
-          InnerLoop:
-            while ( it.hasNext() ) {
-              Node n = (Node) it.next();
-              if ( !( n instanceof SOAPElement ) ) {
-                continue InnerLoop;
-              }
-              SOAPElement el = (SOAPElement) n;
-              String enam = el.getElementName().getLocalName();
-              if ( enam.equals( "Caption" ) ) { //$NON-NLS-1$
-                caption = el.getValue();
-              }
-            }
-            if ( axisOrdinal == XMLABaseComponent.AXIS_COLUMNS ) {
-              columnHeaders[ index ][ positionOrdinal ] = caption;
-            } else if ( axisOrdinal == XMLABaseComponent.AXIS_ROWS ) {
-              rowHeaders[ positionOrdinal ][ index ] = caption;
-            }
-            ++index;
-          } // MemberLoop
-
-          ++positionOrdinal;
-        } // TupleLoop
-      } // AxisLoop
-
-      data = new Object[ rowCount ][ columnCount ];
-      // loop over cells in result set
-      name = envelope.createName( "CellData", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-      SOAPElement eCellData = selectSingleNode( eRoot, name );
-      name = envelope.createName( "Cell", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-      Iterator itSoapCell = eCellData.getChildElements( name );
-      while ( itSoapCell.hasNext() ) { // CellLoop
-        SOAPElement eCell = (SOAPElement) itSoapCell.next();
-        name = envelope.createName( "CellOrdinal", "", "" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-        String cellOrdinal = eCell.getAttributeValue( name );
-        int ordinal = Integer.parseInt( cellOrdinal );
-        name = envelope.createName( "Value", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-        Object value = selectSingleNode( eCell, name ).getValue();
-
-        int rowLoc = ordinal / columnCount;
-        int columnLoc = ordinal % columnCount;
-
-        data[ rowLoc ][ columnLoc ] = value;
-      } // CellLoop
-
-      MemoryResultSet resultSet = new MemoryResultSet();
-      MemoryMetaData metaData = new MemoryMetaData( columnHeaders, rowHeaders );
-      resultSet.setMetaData( metaData );
-      for ( Object[] element : data ) {
-        resultSet.addRow( element );
-      }
-      rSet = resultSet;
-      if ( resultSet != null ) {
-        if ( getResultOutputName() != null ) {
-          setOutputValue( getResultOutputName(), resultSet );
         }
-        return true;
+        captions.add( caption );
       }
-      return false;
+      tuples.add( captions.toArray() );
+    }
+    // leave the Axis
+    skipElement( reader );
+  }
 
-    } catch ( SOAPException se ) {
-      throw new XMLAException( se );
-    } finally {
-      if ( connection != null ) {
-        try {
-          connection.close();
-        } catch ( SOAPException e ) {
-          // log and ignore
-          error( "?", e ); //$NON-NLS-1$
-        }
+  private MemoryMetaData createMetaData( final List<Object[]> columnTuples, final List<Object[]> rowTuples ) {
+    int columnCount = columnTuples.size();
+    int rowCount = rowTuples.size();
+    Object[][] columnHeaders =
+      new Object[ columnCount > 0 ? columnTuples.get( 0 ).length : 0 ][ columnCount ];
+    for ( int position = 0; position < columnCount; position++ ) {
+      Object[] tuple = columnTuples.get( position );
+      for ( int index = 0; ( index < tuple.length ) && ( index < columnHeaders.length ); index++ ) {
+        columnHeaders[ index ][ position ] = tuple[ index ];
       }
-
     }
-
+    Object[][] rowHeaders = new Object[ rowCount ][];
+    for ( int position = 0; position < rowCount; position++ ) {
+      rowHeaders[ position ] = rowTuples.get( position );
+    }
+    return new MemoryMetaData( columnHeaders, rowHeaders );
   }
 
-  private int getChildCount( final SOAPEnvelope envelope, final SOAPElement element, final String childName )
-    throws SOAPException {
-    Name name = envelope.createName( childName, "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$
-    Iterator iter = element.getChildElements( name );
-    int value = 0;
-    while ( iter.hasNext() ) {
-      value++;
-      iter.next();
+  /**
+   * Adds a row to the result set for each row tuple, filled from the cells of the CellData element the reader is
+   * positioned on. Empty cells are left out of the reply and stay null.
+   *
+   * @param reader the reader, or null if the reply had no cells
+   */
+  private void readCells( final XMLStreamReader reader, final MemoryResultSet resultSet, final int columnCount,
+                          final int rowCount ) throws XMLStreamException {
+    int currentRow = 0;
+    Object[] row = new Object[ columnCount ];
+    while ( ( reader != null ) && nextChild( reader ) ) { // CellLoop
+      String cellOrdinal = reader.getAttributeValue( null, "CellOrdinal" ); //$NON-NLS-1$
+      if ( !"Cell".equals( reader.getLocalName() ) || ( cellOrdinal == null ) || ( columnCount == 0 ) ) { //$NON-NLS-1$
+        skipElement( reader );
+        continue;
+      }
+      int ordinal = Integer.parseInt( cellOrdinal.trim() );
+      int rowLoc = ordinal / columnCount;
+      int columnLoc = ordinal % columnCount;
+
+      Object value = null;
+      while ( nextChild( reader ) ) {
+        if ( "Value".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+          value = readText( reader );
+        } else {
+          skipElement( reader );
+        }
+      }
+      if ( ( rowLoc < currentRow ) || ( rowLoc >= rowCount ) ) {
+        continue; // out of order or outside the row axis
+      }
+      while ( currentRow < rowLoc ) {
+        resultSet.addRow( row );
+        row = new Object[ columnCount ];
+        currentRow++;
+      }
+      row[ columnLoc ] = value;
+    } // CellLoop
+    while ( currentRow < rowCount ) {
+      resultSet.addRow( row );
+      row = new Object[ columnCount ];
+      currentRow++;
     }
-    return value;
   }
 
   private void setProviderAndDataSource( final Map resMap ) throws XMLAException {
@@ -502,7 +567,7 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
     final Map resultMap = new HashMap();
     Rowhandler rh = new Rowhandler() {
 
-      public void handleRow( SOAPElement eRow, SOAPEnvelope envelope ) {
+      public void handleRow( Map<String, String> row ) {
 
         /*
          * <row><DataSourceName>SAP_BW</DataSourceName> <DataSourceDescription>SAP BW Release 3.0A XML f. Analysis
@@ -510,21 +575,11 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
          * <DataSourceInfo>default</DataSourceInfo> <ProviderName>SAP BW</ProviderName> <ProviderType>MDP</ProviderType>
          * <AuthenticationMode>Integrated</AuthenticationMode></row>
          */
-        Iterator it = eRow.getChildElements();
-        while ( it.hasNext() ) {
-          Object o = it.next();
-          if ( !( o instanceof SOAPElement ) ) {
-            continue; // bypass text nodes
-          }
-          SOAPElement e = (SOAPElement) o;
-          String name = e.getElementName().getLocalName();
-          String value = e.getValue();
-          resultMap.put( name, value );
-        }
+        resultMap.putAll( row );
       }
     };
 
-    discover( "DISCOVER_DATASOURCES", url, rHash, pHash, rh ); //$NON-NLS-1$
+    discover( "DISCOVER_DATASOURCES", rHash, pHash, rh ); //$NON-NLS-1$
     debug( Messages.getInstance().getString( "XMLABaseComponent.DEBUG_0005_DISCOVER_DATASOURCE_FOUND" ) + resultMap
       .size() ); //$NON-NLS-1$
     return resultMap;
@@ -535,22 +590,16 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
    * discover
    *
    * @param request
-   * @param discoverUrl
    * @param restrictions
    * @param properties
    * @param rh
    * @throws XMLAException
    */
-  private void discover( final String request, final URL discoverUrl, final Map restrictions, final Map properties,
-                         final Rowhandler rh ) throws XMLAException {
+  private void discover( final String request, final Map restrictions, final Map properties, final Rowhandler rh )
+    throws XMLAException {
 
     try {
-      SOAPConnection connection = scf.createConnection();
-
-      SOAPMessage msg = mf.createMessage();
-
-      MimeHeaders mh = msg.getMimeHeaders();
-      mh.setHeader( "SOAPAction", "\"urn:schemas-microsoft-com:xml-analysis:Discover\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+      SOAPMessage msg = getMessageFactory().createMessage();
 
       SOAPPart soapPart = msg.getSOAPPart();
       SOAPEnvelope envelope = soapPart.getEnvelope();
@@ -579,27 +628,39 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
         Messages.getInstance().getString( "XMLABaseComponent.DEBUG_0006_DISCOVER_REQUEST" ) + request ); //$NON-NLS-1$
       logSoapMsg( msg );
 
-      // run the call
-      SOAPMessage reply = connection.call( msg, discoverUrl );
+      // run the call, the response element is matched by its local name as providers differ in its prefix
+      call( msg, XMLABaseComponent.DISCOVER_ACTION, new ReplyHandler() {
+        public void handleReply( XMLStreamReader reader ) throws XMLStreamException, XMLAException {
+          if ( !"DiscoverResponse".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+            throw new XMLAException(
+              Messages.getInstance().getString( "XMLABaseComponent.ERROR_0013_NO_DISCOVER_RESPONSE" ) ); //$NON-NLS-1$
+          }
+          if ( !findChild( reader, "return" ) ) { //$NON-NLS-1$
+            throw new XMLAException( Messages.getInstance().getString(
+              "XMLABaseComponent.ERROR_0016_NO_RESULT_RETURN_ELEMENT" ) ); //$NON-NLS-1$
+          }
+          if ( !findChild( reader, "root" ) ) { //$NON-NLS-1$
+            throw new XMLAException(
+              Messages.getInstance().getString( "XMLABaseComponent.ERROR_0017_NO_RESULT_ROOT_ELEMENT" ) ); //$NON-NLS-1$
+          }
+          Map<String, String> row = new HashMap<String, String>();
+          while ( nextChild( reader ) ) { // RowLoop
+            if ( !"row".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+              skipElement( reader );
+              continue;
+            }
+            row.clear();
+            while ( nextChild( reader ) ) {
+              String name = reader.getLocalName();
+              row.put( name, readText( reader ) );
+            }
+            rh.handleRow( row );
+          } // RowLoop
+        }
+      } );
 
       debug(
         Messages.getInstance().getString( "XMLABaseComponent.DEBUG_0007_DISCOVER_RESPONSE" ) + request ); //$NON-NLS-1$
-      logSoapMsg( reply );
-
-      errorCheck( reply );
-
-      SOAPElement eRoot = findDiscoverRoot( reply );
-
-      Name nRow = envelope.createName( "row", "", XMLABaseComponent.ROWS_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-      Iterator itRow = eRoot.getChildElements( nRow );
-      while ( itRow.hasNext() ) { // RowLoop
-
-        SOAPElement eRow = (SOAPElement) itRow.next();
-        rh.handleRow( eRow, envelope );
-
-      } // RowLoop
-
-      connection.close();
     } catch ( UnsupportedOperationException e ) {
       throw new XMLAException( e );
     } catch ( SOAPException e ) {
@@ -609,192 +670,193 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
   }
 
   /**
-   * add a list of Restrictions/Properties ...
+   * Posts a request over a pooled connection and hands the body of the reply to <code>handler</code> while it is
+   * read. A SOAP fault in the reply is thrown as an {@link XMLAException}.
    */
-  private void addParameterList( final SOAPEnvelope envelope, final SOAPElement eParent, final String typeName,
-                                 final String listName, final Map params ) throws SOAPException {
-    Name nPara = envelope.createName( typeName, "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$
-    SOAPElement eType = eParent.addChildElement( nPara );
-    nPara = envelope.createName( listName, "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$
-    SOAPElement eList = eType.addChildElement( nPara );
-    if ( params == null ) {
-      return;
-    }
-    Iterator it = params.keySet().iterator();
-    while ( it.hasNext() ) {
-      String tag = (String) it.next();
-      String value = (String) params.get( tag );
-      nPara = envelope.createName( tag, "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$
-      SOAPElement eTag = eList.addChildElement( nPara );
-      eTag.addTextNode( value );
-    }
-  }
+  private void call( final SOAPMessage msg, final String soapAction, final ReplyHandler handler )
+    throws SOAPException, XMLAException {
+    PostMethod post = new PostMethod( url.toExternalForm() );
+    XMLStreamReader reader = null;
+    try {
+      ByteArrayOutputStream request = new ByteArrayOutputStream();
+      msg.writeTo( request );
+      post.setRequestHeader( "SOAPAction", soapAction ); //$NON-NLS-1$
+      if ( authorization != null ) {
+        post.setRequestHeader( "Authorization", authorization ); //$NON-NLS-1$
+      }
+      post.setRequestEntity( new ByteArrayRequestEntity( request.toByteArray(), XMLABaseComponent.CONTENT_TYPE ) );
 
-  /**
-   * locate "root" in ExecuteResponse
-   */
-  private SOAPElement findExecRoot( final SOAPMessage reply ) throws SOAPException, XMLAException {
-    SOAPPart sp = reply.getSOAPPart();
-    SOAPEnvelope envelope = sp.getEnvelope();
-    SOAPBody body = envelope.getBody();
-
-    Name name;
-    name = envelope.createName( "ExecuteResponse", "m", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$//$NON-NLS-2$
-    SOAPElement eResponse = selectSingleNode( body, name );
-    if ( eResponse == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0011_NO_EXECUTE_RESPONSE_ELEMENT" ) ); //$NON-NLS-1$
-    }
-
-    name = envelope.createName( "return", "m", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$//$NON-NLS-2$
-    SOAPElement eReturn = selectSingleNode( eResponse, name );
-
-    name = envelope.createName( "root", "", XMLABaseComponent.MDD_URI ); //$NON-NLS-1$//$NON-NLS-2$
-    SOAPElement eRoot = selectSingleNode( eReturn, name );
-    if ( eRoot == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0012_NO_RESPONSE_ROOT_ELEMENT" ) );
-    } //$NON-NLS-1$
-    return eRoot;
+      // a SOAP fault comes with status 500 and is read from the body like any reply
+      int status = getHttpClient().executeMethod( post );
+      InputStream in = post.getResponseBodyAsStream();
+      if ( ( in == null ) || ( ( status != HttpStatus.SC_OK )
+        && ( status != HttpStatus.SC_INTERNAL_SERVER_ERROR ) ) ) {
+        throw new XMLAException( Messages.getInstance().getString(
+          "XMLABaseComponent.ERROR_0028_HTTP_STATUS", String.valueOf( status ), post.getStatusText() ) ); //$NON-NLS-1$
+      }
+      if ( loggingLevel <= ILogger.DEBUG ) {
+        // only a reply that is logged is read into memory first
+        byte[] reply = IOUtils.toByteArray( in );
+        debug( new String( reply, post.getResponseCharSet() ) );
+        in = new ByteArrayInputStream( reply );
+      }
+
+      reader = inputFactory.createXMLStreamReader( in );
+      reader.nextTag();
+      if ( !findChild( reader, "Body" ) || !nextChild( reader ) ) { //$NON-NLS-1$
+        throw new XMLAException(
+          Messages.getInstance().getString( "XMLABaseComponent.ERROR_0029_NO_SOAP_BODY" ) ); //$NON-NLS-1$
+      }
+      if ( "Fault".equals( reader.getLocalName() ) ) { //$NON-NLS-1$
+        throw new XMLAException( readFault( reader ) );
+      }
+      handler.handleReply( reader );
+    } catch ( IOException e ) {
+      post.abort();
+      throw new XMLAException( e );
+    } catch ( XMLStreamException e ) {
+      post.abort();
+      throw new XMLAException( e );
+    } finally {
+      if ( reader != null ) {
+        try {
+          reader.close();
+        } catch ( XMLStreamException e ) {
+          // the connection is released below
+        }
+      }
+      post.releaseConnection();
+    }
   }
 
   /**
-   * locate "root" in DisoverResponse
+   * @return the code, string, actor and detail of the SOAP fault the reader is positioned on
    */
-  private SOAPElement findDiscoverRoot( final SOAPMessage reply ) throws SOAPException, XMLAException {
-
-    SOAPPart sp = reply.getSOAPPart();
-    SOAPEnvelope envelope = sp.getEnvelope();
-    SOAPBody body = envelope.getBody();
-    Name childName;
-    SOAPElement eResponse = null;
-    if ( provider == 0 ) {
-      // unknown provider - recognize by prefix of DiscoverResponse
-      Iterator itBody = body.getChildElements();
-      while ( itBody.hasNext() ) {
-        Node n = (Node) itBody.next();
-        if ( !( n instanceof SOAPElement ) ) {
-          continue;
-        }
-        Name name = ( (SOAPElement) n ).getElementName();
-        if ( name.getLocalName().equals( "DiscoverResponse" ) ) { //$NON-NLS-1$
-          eResponse = (SOAPElement) n;
-          provider = getProviderFromDiscoverResponse( envelope, eResponse );
-          break;
+  private String readFault( final XMLStreamReader reader ) throws XMLStreamException {
+    String faultCode = null;
+    String faultString = null;
+    String faultActor = null;
+    String detailMsg = null;
+    while ( nextChild( reader ) ) {
+      String name = reader.getLocalName();
+      if ( "faultcode".equals( name ) ) { //$NON-NLS-1$
+        faultCode = readText( reader );
+      } else if ( "faultstring".equals( name ) ) { //$NON-NLS-1$
+        faultString = readText( reader );
+      } else if ( "faultactor".equals( name ) ) { //$NON-NLS-1$
+        faultActor = readText( reader );
+      } else if ( "detail".equals( name ) ) { //$NON-NLS-1$
+        // probably not neccessary with Microsoft;
+        detailMsg = ""; //$NON-NLS-1$
+        while ( nextChild( reader ) ) {
+          for ( int i = 0; i < reader.getAttributeCount(); i++ ) {
+            if ( i > 0 ) {
+              detailMsg += "; "; //$NON-NLS-1$
+            }
+            detailMsg += reader.getAttributeLocalName( i );
+            detailMsg += " = "; //$NON-NLS-1$
+            detailMsg += reader.getAttributeValue( i );
+          }
+          skipElement( reader );
         }
-      }
-      if ( eResponse == null ) {
-        throw new XMLAException(
-          Messages.getInstance().getString( "XMLABaseComponent.ERROR_0013_NO_DISCOVER_RESPONSE" ) ); //$NON-NLS-1$
-      }
-
-    } else {
-      if ( ( provider == XMLABaseComponent.PROVIDER_MICROSOFT ) || ( provider
-        == XMLABaseComponent.PROVIDER_ESSBASE ) ) { // Microsoft
-        // or
-        // Essbase
-        childName =
-          envelope.createName( "DiscoverResponse", "m", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-      } else if ( ( provider == XMLABaseComponent.PROVIDER_SAP ) || ( provider
-        == XMLABaseComponent.PROVIDER_MONDRIAN ) ) { // SAP
-        // or
-        // Mondrian
-        childName =
-          envelope.createName( "DiscoverResponse", "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$ //$NON-NLS-2$
       } else {
-        throw new IllegalArgumentException( Messages.getInstance().getString(
-          "XMLABaseComponent.ERROR_0014_NO_PROVIDER_SPEC" ) ); //$NON-NLS-1$
-      }
-      eResponse = selectSingleNode( body, childName );
-      if ( eResponse == null ) {
-        throw new XMLAException( Messages.getInstance().getString(
-          "XMLABaseComponent.ERROR_0015_NO_DISCOVER_RESPONSE_ELEMENT" ) ); //$NON-NLS-1$
+        skipElement( reader );
       }
     }
-
-    SOAPElement eReturn = getDiscoverReturn( envelope, eResponse );
-    if ( eReturn == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0016_NO_RESULT_RETURN_ELEMENT" ) ); //$NON-NLS-1$
+    String faultMsg =
+      "Soap Fault code=" + faultCode + " fault string=" + faultString + " fault actor="
+        + faultActor; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    if ( detailMsg != null ) {
+      faultMsg += "\ndetail:" + detailMsg; //$NON-NLS-1$
     }
+    return faultMsg;
+  }
 
-    SOAPElement eRoot = getDiscoverRoot( envelope, eReturn );
-    if ( eRoot == null ) {
-      throw new XMLAException(
-        Messages.getInstance().getString( "XMLABaseComponent.ERROR_0017_NO_RESULT_ROOT_ELEMENT" ) ); //$NON-NLS-1$
+  /**
+   * Moves the reader to the next child of the element it is in. Returns false, with the reader on the end of that
+   * element, if there are no more children.
+   */
+  private static boolean nextChild( final XMLStreamReader reader ) throws XMLStreamException {
+    while ( reader.hasNext() ) {
+      int event = reader.next();
+      if ( event == XMLStreamConstants.START_ELEMENT ) {
+        return true;
+      }
+      if ( event == XMLStreamConstants.END_ELEMENT ) {
+        return false;
+      }
     }
-    return eRoot;
+    return false;
   }
 
   /**
-   * Find the Provider type in the DiscoverResponse
-   *
-   * @param n
-   * @return
-   * @throws XMLAException
-   * @throws SOAPException
+   * Moves the reader to the next child of the element it is in with the given local name, skipping other children.
    */
-  private int getProviderFromDiscoverResponse( final SOAPEnvelope envelope, final SOAPElement e ) throws XMLAException,
-    SOAPException {
-    Name name = e.getElementName();
-    if ( !name.getLocalName().equals( "DiscoverResponse" ) ) { //$NON-NLS-1$
-      throw new XMLAException( Messages.getInstance()
-        .getString( "XMLABaseComponent.ERROR_0018_NOT_A_DISCOVER_RESPONSE" ) + name.getLocalName() ); //$NON-NLS-1$
+  private static boolean findChild( final XMLStreamReader reader, final String localName )
+    throws XMLStreamException {
+    while ( nextChild( reader ) ) {
+      if ( localName.equals( reader.getLocalName() ) ) {
+        return true;
+      }
+      skipElement( reader );
     }
+    return false;
+  }
 
-    // Look for return/root/row/ProviderName
-
-    SOAPElement walker = getDiscoverReturn( envelope, e );
-
-    if ( walker == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0019_NO_RESULT_DISCOVER_RESPONSE" ) ); //$NON-NLS-1$
+  /**
+   * @return the text of the element the reader is positioned on, without the text of nested elements. The reader is
+   *         left on the end of the element.
+   */
+  private static String readText( final XMLStreamReader reader ) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    while ( reader.hasNext() ) {
+      int event = reader.next();
+      if ( event == XMLStreamConstants.START_ELEMENT ) {
+        skipElement( reader );
+      } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+        break;
+      } else if ( reader.isCharacters() ) {
+        text.append( reader.getText() );
+      }
     }
+    return text.toString();
+  }
 
-    walker = getDiscoverRoot( envelope, walker );
-
-    if ( walker == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0020_NO_RESULT_DISCOVER_RETURN_ROOT" ) ); //$NON-NLS-1$
+  /**
+   * Moves the reader from the start of an element to its end.
+   */
+  private static void skipElement( final XMLStreamReader reader ) throws XMLStreamException {
+    int depth = 1;
+    while ( ( depth > 0 ) && reader.hasNext() ) {
+      int event = reader.next();
+      if ( event == XMLStreamConstants.START_ELEMENT ) {
+        depth++;
+      } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+        depth--;
+      }
     }
+  }
 
-    walker = getDiscoverRow( envelope, walker );
-
-    if ( walker == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0021_NO_DISCOVER_RESPONSE_ROW" ) ); //$NON-NLS-1$
+  /**
+   * add a list of Restrictions/Properties ...
+   */
+  private void addParameterList( final SOAPEnvelope envelope, final SOAPElement eParent, final String typeName,
+                                 final String listName, final Map params ) throws SOAPException {
+    Name nPara = envelope.createName( typeName, "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$
+    SOAPElement eType = eParent.addChildElement( nPara );
+    nPara = envelope.createName( listName, "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$
+    SOAPElement eList = eType.addChildElement( nPara );
+    if ( params == null ) {
+      return;
     }
-
-    /*
-     * Name nProviderName = envelope.createName("ProviderName", "", ROWS_URI); SOAPElement eProviderName =
-     * selectSingleNode(e, nProviderName);
-     * 
-     * if (eProviderName == null) { throw new OlapException("Discover result has no
-     * DiscoverResponse/return/root/row/ProviderName element"); } value = eProviderName.getValue();
-     */
-    String value = null;
-    Iterator it = walker.getChildElements();
+    Iterator it = params.keySet().iterator();
     while ( it.hasNext() ) {
-      Object o = it.next();
-      if ( !( o instanceof SOAPElement ) ) {
-        continue; // bypass text nodes
-      }
-      SOAPElement e2 = (SOAPElement) o;
-      String nameString = e2.getElementName().getLocalName();
-      if ( nameString.equals( "ProviderName" ) ) { //$NON-NLS-1$
-        value = e2.getValue();
-        debug(
-          Messages.getInstance().getString( "XMLABaseComponent.DEBUG_0008_FOUND_PROVIDER" ) + value ); //$NON-NLS-1$
-        break;
-      }
-    }
-
-    if ( ( value == null ) || ( value.trim().length() == 0 ) ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0022_NO_PROVIDER_NAME_ELEMENT" ) ); //$NON-NLS-1$
+      String tag = (String) it.next();
+      String value = (String) params.get( tag );
+      nPara = envelope.createName( tag, "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$
+      SOAPElement eTag = eList.addChildElement( nPara );
+      eTag.addTextNode( value );
     }
-
-    return determineProvider( "Provider=" + value ); //$NON-NLS-1$
   }
 
   /**
@@ -844,130 +906,13 @@ public abstract class XMLABaseComponent extends ComponentBase implements IDataCo
 
   }
 
-  private SOAPElement getDiscoverReturn( final SOAPEnvelope envelope, final SOAPElement e ) throws XMLAException,
-    SOAPException {
-
-    Name nReturn;
-    if ( ( provider == XMLABaseComponent.PROVIDER_MICROSOFT ) || ( provider == XMLABaseComponent.PROVIDER_ESSBASE ) ) {
-      nReturn = envelope.createName( "return", "m", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-    } else {
-      nReturn = envelope.createName( "return", "", XMLABaseComponent.XMLA_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-    }
-    SOAPElement eReturn = selectSingleNode( e, nReturn );
-    if ( eReturn == null ) {
-      // old Microsoft XMLA SDK 1.0 does not have "m" prefix - try
-      nReturn = envelope.createName( "return", "", "" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-      eReturn = selectSingleNode( e, nReturn );
-      if ( eReturn == null ) {
-        throw new XMLAException( Messages.getInstance().getString(
-          "XMLABaseComponent.ERROR_0025_NO_RETURN_DISCOVER_ELEMENT" ) ); //$NON-NLS-1$
-      }
-    }
-    return eReturn;
-  }
-
-  private SOAPElement getDiscoverRoot( final SOAPEnvelope envelope, final SOAPElement e ) throws XMLAException,
-    SOAPException {
-
-    Name nRoot = envelope.createName( "root", "", XMLABaseComponent.ROWS_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-    SOAPElement eRoot = selectSingleNode( e, nRoot );
-    if ( eRoot == null ) {
-      throw new XMLAException( Messages.getInstance().getString(
-        "XMLABaseComponent.ERROR_0026_NO_ROOT_DISCOVER_ELEMENT" ) );
-    } //$NON-NLS-1$
-    return eRoot;
-
-  }
-
-  private SOAPElement getDiscoverRow( final SOAPEnvelope envelope, final SOAPElement e ) throws XMLAException,
-    SOAPException {
-
-    Name nRow = envelope.createName( "row", "", XMLABaseComponent.ROWS_URI ); //$NON-NLS-1$ //$NON-NLS-2$
-    SOAPElement eRow = selectSingleNode( e, nRow );
-    if ( eRow == null ) {
-      throw new XMLAException( Messages.getInstance()
-        .getString( "XMLABaseComponent.ERROR_0027_NO_DISCOVER_ROW_ELEMENT" ) );
-    } //$NON-NLS-1$
-    return eRow;
-
-  }
-
-  // error check
-  private void errorCheck( final SOAPMessage reply ) throws SOAPException, XMLAException {
-    String[] strings = new String[ 4 ];
-    if ( soapFault( reply, strings ) ) {
-      String faultString =
-        "Soap Fault code=" + strings[ 0 ] + " fault string=" + strings[ 1 ] + " fault actor="
-          + strings[ 2 ]; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-      if ( strings[ 3 ] != null ) {
-        faultString += "\ndetail:" + strings[ 3 ]; //$NON-NLS-1$
-      }
-      throw new XMLAException( faultString );
-    }
-  }
-
   /**
-   * check SOAP reply for Error, return fault Code
-   *
-   * @param reply   the message to check
-   * @param aReturn ArrayList containing faultcode,faultstring,faultactor
-   */
-  private boolean soapFault( final SOAPMessage reply, final String[] faults ) throws SOAPException {
-    SOAPPart sp = reply.getSOAPPart();
-    SOAPEnvelope envelope = sp.getEnvelope();
-    SOAPBody body = envelope.getBody();
-    if ( !body.hasFault() ) {
-      return false;
-    }
-    SOAPFault fault = body.getFault();
-
-    faults[ 0 ] = fault.getFaultCode();
-    faults[ 1 ] = fault.getFaultString();
-    faults[ 2 ] = fault.getFaultActor();
-
-    // probably not neccessary with Microsoft;
-    Detail detail = fault.getDetail();
-    if ( detail == null ) {
-      return true;
-    }
-    String detailMsg = ""; //$NON-NLS-1$
-    Iterator it = detail.getDetailEntries();
-    for ( ; it.hasNext(); ) {
-      DetailEntry det = (DetailEntry) it.next();
-      Iterator ita = det.getAllAttributes();
-      for ( boolean cont = false; ita.hasNext(); cont = true ) {
-        Name name = (Name) ita.next();
-        if ( cont ) {
-          detailMsg += "; "; //$NON-NLS-1$
-        }
-        detailMsg += name.getLocalName();
-        detailMsg += " = "; //$NON-NLS-1$
-        detailMsg += det.getAttributeValue( name );
-      }
-    }
-    faults[ 3 ] = detailMsg;
-
-    return true;
-  }
-
-  /**
-   * @param contextNode
-   * @param childPath
-   * @return
-   */
-  private SOAPElement selectSingleNode( final SOAPElement contextNode, final Name childName ) {
-
-    Iterator it = contextNode.getChildElements( childName );
-    if ( it.hasNext() ) {
-      return (SOAPElement) it.next();
-    }
-    return null;
-  }
-
-  /**
-   * log the reply message
+   * log the request message
    */
   private void logSoapMsg( final SOAPMessage msg ) {
+    if ( loggingLevel > ILogger.DEBUG ) {
+      return;
+    }
     try {
       Writer writer = new StringWriter();
       TransformerFactory tFact = TransformerFactory.newInstance();
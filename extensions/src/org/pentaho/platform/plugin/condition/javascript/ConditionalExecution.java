@@ -19,7 +19,6 @@ package org.pentaho.platform.plugin.condition.javascript;
 
 import org.apache.commons.logging.Log;
 import org.mozilla.javascript.Context;
-import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.pentaho.commons.connection.IPentahoResultSet;
@@ -48,12 +47,13 @@ public class ConditionalExecution implements IConditionalExecution {
 
   public boolean shouldExecute( final Map currentInputs, final Log logger ) throws Exception {
     boolean shouldExecute = true;
-    Context cx = ContextFactory.getGlobal().enterContext();
+    RhinoScriptCache scriptCache = RhinoScriptCache.getInstance();
+    Context cx = scriptCache.enterContext();
     try {
-      ScriptableObject scriptable = new RhinoScriptable();
-      // initialize the standard javascript objects
-      Scriptable scope = cx.initStandardObjects( scriptable );
-      ScriptableObject.defineClass( scope, JavaScriptResultSet.class );
+      // the standard javascript objects live in the shared scope; this execution only sees them through its own
+      // child scope
+      ScriptableObject scriptable = scriptCache.getSharedScope( cx );
+      Scriptable scope = scriptCache.newScope( cx );
       Object inputValue;
       IActionParameter inputParameter;
       String inputName;
@@ -89,8 +89,8 @@ public class ConditionalExecution implements IConditionalExecution {
       ScriptableObject.putProperty( scope, "out", wrappedOut ); //$NON-NLS-1$
       ScriptableObject.putProperty( scope, "rule", wrappedThis ); //$NON-NLS-1$
 
-      // evaluate the script
-      Object resultObject = cx.evaluateString( scope, script, "<cmd>", 1, null ); //$NON-NLS-1$
+      // evaluate the script, reusing the compiled form if it has been run before
+      Object resultObject = scriptCache.exec( cx, scope, script );
 
       Object actualObject = null;
       if ( resultObject instanceof org.mozilla.javascript.NativeJavaObject ) {
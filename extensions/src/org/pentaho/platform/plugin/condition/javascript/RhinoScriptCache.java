@@ -0,0 +1,165 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.condition.javascript;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.connections.javascript.JavaScriptResultSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the Rhino state that can be shared between executions of the javascript rule and the javascript conditional
+ * execution: a sealed scope with the standard objects already initialized, and the compiled form of every script
+ * that has been run recently.
+ * <p>
+ * Each execution gets its own child scope of the shared scope (see {@link #newScope(Context)}), so variables declared
+ * by a script never leak into other executions.
+ * <p>
+ * The optimization level used to compile scripts is read from the <code>javascript/optimization-level</code> system
+ * setting (-1 interprets, 0-9 compiles to bytecode) and the number of compiled scripts kept is read from
+ * <code>javascript/script-cache-size</code>.
+ */
+public class RhinoScriptCache {
+
+  public static final int DEFAULT_OPTIMIZATION_LEVEL = -1;
+
+  public static final int DEFAULT_CACHE_SIZE = 500;
+
+  private static RhinoScriptCache instance;
+
+  private final int optimizationLevel;
+
+  private final Map<String, Script> scripts;
+
+  private ScriptableObject sharedScope;
+
+  public static synchronized RhinoScriptCache getInstance() {
+    if ( instance == null ) {
+      instance =
+          new RhinoScriptCache( PentahoSystem.getSystemSettingAsInt( "javascript/optimization-level", //$NON-NLS-1$
+              DEFAULT_OPTIMIZATION_LEVEL ),
+              PentahoSystem.getSystemSettingAsInt( "javascript/script-cache-size", DEFAULT_CACHE_SIZE ) ); //$NON-NLS-1$
+    }
+    return instance;
+  }
+
+  /**
+   * Discards the shared instance, so the next call to {@link #getInstance()} re-reads the system settings.
+   */
+  public static synchronized void reset() {
+    instance = null;
+  }
+
+  public RhinoScriptCache( final int optimizationLevel, final int cacheSize ) {
+    this.optimizationLevel = Context.isValidOptimizationLevel( optimizationLevel ) ? optimizationLevel
+        : DEFAULT_OPTIMIZATION_LEVEL;
+    final int maxEntries = Math.max( cacheSize, 0 );
+    this.scripts = new LinkedHashMap<String, Script>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 6184736473632918247L;
+
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<String, Script> eldest ) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public int getOptimizationLevel() {
+    return optimizationLevel;
+  }
+
+  /**
+   * Enters a Rhino context configured with this cache's optimization level. Callers must call {@link Context#exit()}
+   * when done, as with {@link ContextFactory#enterContext()}.
+   */
+  public Context enterContext() {
+    Context cx = ContextFactory.getGlobal().enterContext();
+    cx.setOptimizationLevel( optimizationLevel );
+    return cx;
+  }
+
+  /**
+   * Returns the sealed scope holding the standard javascript objects and the <code>JavaScriptResultSet</code> host
+   * object. It must not be written to; use {@link #newScope(Context)} to get a scope for an execution.
+   */
+  public synchronized ScriptableObject getSharedScope( final Context cx ) throws Exception {
+    if ( sharedScope == null ) {
+      ScriptableObject scope = new RhinoScriptable();
+      cx.initStandardObjects( scope, true );
+      ScriptableObject.defineClass( scope, JavaScriptResultSet.class, true );
+      scope.sealObject();
+      sharedScope = scope;
+    }
+    return sharedScope;
+  }
+
+  /**
+   * Creates a new top level scope whose prototype is the shared scope. Lookups of standard objects fall through to
+   * the shared scope while every assignment stays in the new scope.
+   */
+  public Scriptable newScope( final Context cx ) throws Exception {
+    ScriptableObject shared = getSharedScope( cx );
+    Scriptable scope = cx.newObject( shared );
+    scope.setPrototype( shared );
+    scope.setParentScope( null );
+    return scope;
+  }
+
+  /**
+   * Returns the compiled form of <code>source</code>, compiling it on first use.
+   */
+  public Script getScript( final Context cx, final String source ) {
+    Script script;
+    synchronized ( scripts ) {
+      script = scripts.get( source );
+    }
+    if ( script == null ) {
+      // compile outside the lock; two threads racing on the same source just compile it twice
+      script = cx.compileString( source, "<cmd>", 1, null ); //$NON-NLS-1$
+      synchronized ( scripts ) {
+        scripts.put( source, script );
+      }
+    }
+    return script;
+  }
+
+  /**
+   * Compiles (or fetches) <code>source</code> and executes it in <code>scope</code>.
+   */
+  public Object exec( final Context cx, final Scriptable scope, final String source ) {
+    return getScript( cx, source ).exec( cx, scope );
+  }
+
+  public int size() {
+    synchronized ( scripts ) {
+      return scripts.size();
+    }
+  }
+
+  public void clear() {
+    synchronized ( scripts ) {
+      scripts.clear();
+    }
+  }
+}
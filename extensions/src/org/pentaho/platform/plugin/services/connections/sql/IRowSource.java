@@ -0,0 +1,39 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.connections.sql;
+
+import org.pentaho.commons.connection.IPentahoMetaData;
+
+/**
+ * A forward-only source of rows for a {@link SpoolingResultSet}, such as a query or a running transformation that
+ * produces its rows only once.
+ */
+public interface IRowSource {
+
+  IPentahoMetaData getMetaData();
+
+  /**
+   * Returns the next row, or null once all rows were read.
+   */
+  Object[] next();
+
+  /**
+   * Releases the source; called once, after the last row was read or when the spooling result set is closed early.
+   */
+  void close();
+}
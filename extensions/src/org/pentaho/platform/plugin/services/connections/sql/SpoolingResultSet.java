@@ -0,0 +1,549 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.connections.sql;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.commons.connection.IPeekable;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.TempFileManager;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a forward-only result set lazily while still allowing the multiple passes and random access of a scrollable
+ * one.
+ * <p>
+ * Rows are read from the source only when a consumer asks for them, so the first row is available as soon as the
+ * database returns it. Every row read is kept: the first <code>memoryRows</code> rows in memory, and once there are
+ * more, all of them in a temporary file, so {@link #beforeFirst()}, {@link #getValueAt(int, int)} and the other
+ * multi-pass methods replay the kept rows instead of running the query again. A consumer that reads the rows once with
+ * {@link #next()} never holds more than <code>memoryRows</code> of them in memory.
+ * <p>
+ * The source is closed as soon as its last row was read; closing or disposing this result set closes the source if
+ * that did not happen yet and deletes the temporary file. With a session set, the temporary file is a tracked temp
+ * file of that session in system/tmp, so it counts towards the temp file quotas and is deleted with the session.
+ */
+public class SpoolingResultSet implements IPentahoResultSet, IPeekable {
+
+  private static final Log logger = LogFactory.getLog( SpoolingResultSet.class );
+
+  private static final byte TYPE_NULL = 0;
+
+  private static final byte TYPE_STRING = 1;
+
+  private static final byte TYPE_INTEGER = 2;
+
+  private static final byte TYPE_LONG = 3;
+
+  private static final byte TYPE_DOUBLE = 4;
+
+  private static final byte TYPE_BIG_DECIMAL = 5;
+
+  private static final byte TYPE_TIMESTAMP = 6;
+
+  private static final byte TYPE_SQL_DATE = 7;
+
+  private static final byte TYPE_TIME = 8;
+
+  private static final byte TYPE_DATE = 9;
+
+  private static final byte TYPE_BOOLEAN = 10;
+
+  private static final byte TYPE_OTHER = 11;
+
+  private final IPentahoMetaData metaData;
+
+  private final int memoryRows;
+
+  private final File spoolDirectory;
+
+  private IRowSource source;
+
+  /** The source when it was given as a result set */
+  private ResultSetRowSource resultSetSource;
+
+  private IPentahoSession session;
+
+  private List<Object[]> memory = new ArrayList<Object[]>();
+
+  private File spoolFile;
+
+  /** Whether the temp file manager was asked to keep the spool file while it is in use */
+  private boolean spoolFileRetained;
+
+  private DataOutputStream spoolOut;
+
+  private RandomAccessFile spoolIn;
+
+  private long spoolLength;
+
+  private long[] offsets;
+
+  private int rowCount;
+
+  private int cursor;
+
+  private boolean closed;
+
+  /**
+   * @param source
+   *          the result set to read, typically a forward-only {@link SQLResultSet}
+   * @param memoryRows
+   *          the number of rows kept in memory before the rows are spooled to a file
+   * @param spoolDirectory
+   *          where to create the spool file, or null for the default temporary directory
+   */
+  public SpoolingResultSet( final IPentahoResultSet source, final int memoryRows, final File spoolDirectory ) {
+    this( new ResultSetRowSource( source ), memoryRows, spoolDirectory );
+    this.resultSetSource = (ResultSetRowSource) this.source;
+  }
+
+  /**
+   * @param source
+   *          the rows to read
+   * @param memoryRows
+   *          the number of rows kept in memory before the rows are spooled to a file
+   * @param spoolDirectory
+   *          where to create the spool file, or null for the default temporary directory
+   */
+  public SpoolingResultSet( final IRowSource source, final int memoryRows, final File spoolDirectory ) {
+    this.source = source;
+    this.memoryRows = Math.max( memoryRows, 0 );
+    this.spoolDirectory = spoolDirectory;
+    // the source metadata may need the open statement, so take a copy that outlives it
+    this.metaData = new MemoryMetaData( source.getMetaData().getColumnHeaders(), null );
+  }
+
+  /**
+   * Sets whether the connection of the source is closed along with it, for a source that was run on a connection
+   * opened just for it. Only applies to a source given as a result set.
+   */
+  public void setCloseSourceConnection( final boolean closeSourceConnection ) {
+    if ( resultSetSource != null ) {
+      resultSetSource.closeConnection = closeSourceConnection;
+    }
+  }
+
+  /**
+   * Creates the spool file as a temp file of <code>session</code> in system/tmp instead of in the spool directory.
+   */
+  public synchronized void setSession( final IPentahoSession session ) {
+    this.session = session;
+  }
+
+  /**
+   * Returns true once all rows were read from the source, so the row count is known.
+   */
+  public synchronized boolean isSourceExhausted() {
+    return source == null;
+  }
+
+  /**
+   * Returns true if the rows were spooled to a file because there were more than fit in memory.
+   */
+  public synchronized boolean isSpooled() {
+    return spoolFile != null;
+  }
+
+  public IPentahoMetaData getMetaData() {
+    return metaData;
+  }
+
+  public synchronized Object[] peek() {
+    return fetch( cursor );
+  }
+
+  public synchronized Object[] next() {
+    Object[] row = fetch( cursor );
+    if ( row != null ) {
+      cursor++;
+    }
+    return row;
+  }
+
+  public synchronized void beforeFirst() {
+    cursor = 0;
+  }
+
+  public boolean isScrollable() {
+    return true;
+  }
+
+  public int getColumnCount() {
+    return metaData.getColumnCount();
+  }
+
+  /**
+   * Reads all remaining rows from the source to count them.
+   */
+  public synchronized int getRowCount() {
+    readAll();
+    return rowCount;
+  }
+
+  public synchronized Object getValueAt( final int row, final int column ) {
+    Object[] values = fetch( row );
+    return ( values == null ) ? null : values[column];
+  }
+
+  public synchronized Object[] getDataColumn( final int column ) {
+    readAll();
+    Object[] result = new Object[rowCount];
+    for ( int row = 0; row < rowCount; row++ ) {
+      result[row] = fetch( row )[column];
+    }
+    return result;
+  }
+
+  public synchronized Object[] getDataRow( final int row ) {
+    Object[] values = fetch( row );
+    return ( values == null ) ? null : values.clone();
+  }
+
+  /**
+   * Copies all rows, from the first one, into a {@link MemoryResultSet} and closes this result set.
+   */
+  public synchronized IPentahoResultSet memoryCopy() {
+    try {
+      MemoryResultSet cachedResultSet = new MemoryResultSet( new MemoryMetaData( metaData.getColumnHeaders(), null ) );
+      for ( Object[] row = fetch( 0 ); row != null; row = fetch( cachedResultSet.getRowCount() ) ) {
+        cachedResultSet.addRow( row );
+      }
+      return cachedResultSet;
+    } finally {
+      close();
+    }
+  }
+
+  public synchronized void close() {
+    if ( closed ) {
+      return;
+    }
+    closed = true;
+    closeSource();
+    memory = null;
+    offsets = null;
+    closeQuietly();
+    if ( spoolFile != null ) {
+      if ( spoolFileRetained ) {
+        TempFileManager.getInstance().release( spoolFile );
+      }
+      if ( !spoolFile.delete() ) {
+        spoolFile.deleteOnExit();
+      }
+    }
+  }
+
+  public void closeConnection() {
+    close();
+  }
+
+  public void dispose() {
+    close();
+  }
+
+  /**
+   * Returns row <code>index</code>, reading rows from the source up to it if needed, or null if there are fewer rows.
+   */
+  private Object[] fetch( final int index ) {
+    if ( closed || index < 0 ) {
+      return null;
+    }
+    while ( index >= rowCount && source != null ) {
+      Object[] row = source.next();
+      if ( row == null ) {
+        closeSource();
+      } else {
+        keep( row );
+      }
+    }
+    if ( index >= rowCount ) {
+      return null;
+    }
+    return ( spoolFile == null ) ? memory.get( index ) : readSpooled( index );
+  }
+
+  private void readAll() {
+    fetch( Integer.MAX_VALUE - 1 );
+  }
+
+  private void keep( final Object[] row ) {
+    if ( spoolFile == null && rowCount < memoryRows ) {
+      memory.add( row );
+      rowCount++;
+      return;
+    }
+    try {
+      if ( spoolFile == null ) {
+        startSpool();
+      }
+      spool( row );
+    } catch ( IOException e ) {
+      close();
+      throw new SQLResultSetException( Messages.getInstance().getErrorString(
+          "SpoolingResultSet.ERROR_0001_SPOOL_FAILED", String.valueOf( spoolFile ) ), e ); //$NON-NLS-1$
+    }
+  }
+
+  private void startSpool() throws IOException {
+    IApplicationContext applicationContext = PentahoSystem.getApplicationContext();
+    if ( ( session != null ) && ( applicationContext != null ) ) {
+      spoolFile = applicationContext.createTempFile( session, "resultset", ".spool", true ); //$NON-NLS-1$ //$NON-NLS-2$
+      // the quotas must not reclaim the file while its rows are read
+      spoolFileRetained = TempFileManager.getInstance().retain( spoolFile );
+    } else {
+      if ( spoolDirectory != null ) {
+        spoolDirectory.mkdirs();
+      }
+      spoolFile = File.createTempFile( "resultset", ".spool", spoolDirectory ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    spoolOut = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( spoolFile ), 65536 ) );
+    offsets = new long[Math.max( memoryRows * 2, 1024 )];
+    List<Object[]> inMemory = memory;
+    memory = null;
+    rowCount = 0;
+    for ( Object[] row : inMemory ) {
+      spool( row );
+    }
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Spooling result set rows to " + spoolFile ); //$NON-NLS-1$
+    }
+  }
+
+  private void spool( final Object[] row ) throws IOException {
+    byte[] bytes = encode( row );
+    if ( rowCount == offsets.length ) {
+      offsets = Arrays.copyOf( offsets, rowCount * 2 );
+    }
+    offsets[rowCount++] = spoolLength;
+    spoolOut.writeInt( bytes.length );
+    spoolOut.write( bytes );
+    spoolLength += 4 + bytes.length;
+  }
+
+  private Object[] readSpooled( final int index ) {
+    try {
+      spoolOut.flush();
+      if ( spoolIn == null ) {
+        spoolIn = new RandomAccessFile( spoolFile, "r" ); //$NON-NLS-1$
+      }
+      spoolIn.seek( offsets[index] );
+      byte[] bytes = new byte[spoolIn.readInt()];
+      spoolIn.readFully( bytes );
+      return decode( bytes );
+    } catch ( Exception e ) {
+      throw new SQLResultSetException( Messages.getInstance().getErrorString(
+          "SpoolingResultSet.ERROR_0001_SPOOL_FAILED", String.valueOf( spoolFile ) ), e ); //$NON-NLS-1$
+    }
+  }
+
+  private void closeSource() {
+    if ( source != null ) {
+      source.close();
+      source = null;
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      if ( spoolOut != null ) {
+        spoolOut.close();
+      }
+    } catch ( IOException ignored ) {
+      // the file is deleted next
+    }
+    try {
+      if ( spoolIn != null ) {
+        spoolIn.close();
+      }
+    } catch ( IOException ignored ) {
+      // the file is deleted next
+    }
+    spoolOut = null;
+    spoolIn = null;
+  }
+
+  /**
+   * Reads the rows of a result set, typically a forward-only {@link SQLResultSet}.
+   */
+  private static class ResultSetRowSource implements IRowSource {
+    private final IPentahoResultSet resultSet;
+
+    private boolean closeConnection;
+
+    ResultSetRowSource( final IPentahoResultSet resultSet ) {
+      this.resultSet = resultSet;
+    }
+
+    public IPentahoMetaData getMetaData() {
+      return resultSet.getMetaData();
+    }
+
+    public Object[] next() {
+      return resultSet.next();
+    }
+
+    public void close() {
+      if ( closeConnection ) {
+        resultSet.closeConnection();
+      } else {
+        resultSet.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the common JDBC value types compactly and everything else with Java serialization.
+   */
+  private static byte[] encode( final Object[] row ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 * ( row.length + 1 ) );
+    DataOutputStream out = new DataOutputStream( bytes );
+    out.writeInt( row.length );
+    for ( Object value : row ) {
+      if ( value == null ) {
+        out.writeByte( TYPE_NULL );
+      } else if ( value instanceof String ) {
+        out.writeByte( TYPE_STRING );
+        byte[] chars = ( (String) value ).getBytes( "UTF-8" ); //$NON-NLS-1$
+        out.writeInt( chars.length );
+        out.write( chars );
+      } else if ( value instanceof Integer ) {
+        out.writeByte( TYPE_INTEGER );
+        out.writeInt( (Integer) value );
+      } else if ( value instanceof Long ) {
+        out.writeByte( TYPE_LONG );
+        out.writeLong( (Long) value );
+      } else if ( value instanceof Double ) {
+        out.writeByte( TYPE_DOUBLE );
+        out.writeDouble( (Double) value );
+      } else if ( value instanceof BigDecimal ) {
+        BigDecimal decimal = (BigDecimal) value;
+        byte[] unscaled = decimal.unscaledValue().toByteArray();
+        out.writeByte( TYPE_BIG_DECIMAL );
+        out.writeInt( decimal.scale() );
+        out.writeInt( unscaled.length );
+        out.write( unscaled );
+      } else if ( value instanceof java.sql.Timestamp ) {
+        out.writeByte( TYPE_TIMESTAMP );
+        out.writeLong( ( (java.sql.Timestamp) value ).getTime() );
+        out.writeInt( ( (java.sql.Timestamp) value ).getNanos() );
+      } else if ( value instanceof java.sql.Date ) {
+        out.writeByte( TYPE_SQL_DATE );
+        out.writeLong( ( (java.sql.Date) value ).getTime() );
+      } else if ( value instanceof java.sql.Time ) {
+        out.writeByte( TYPE_TIME );
+        out.writeLong( ( (java.sql.Time) value ).getTime() );
+      } else if ( value.getClass() == java.util.Date.class ) {
+        out.writeByte( TYPE_DATE );
+        out.writeLong( ( (java.util.Date) value ).getTime() );
+      } else if ( value instanceof Boolean ) {
+        out.writeByte( TYPE_BOOLEAN );
+        out.writeBoolean( (Boolean) value );
+      } else {
+        out.writeByte( TYPE_OTHER );
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream( serialized );
+        objectOut.writeObject( value );
+        objectOut.close();
+        out.writeInt( serialized.size() );
+        serialized.writeTo( out );
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static Object[] decode( final byte[] bytes ) throws IOException, ClassNotFoundException {
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+    Object[] row = new Object[in.readInt()];
+    for ( int column = 0; column < row.length; column++ ) {
+      byte type = in.readByte();
+      switch ( type ) {
+        case TYPE_NULL:
+          break;
+        case TYPE_STRING:
+          row[column] = new String( readBytes( in ), "UTF-8" ); //$NON-NLS-1$
+          break;
+        case TYPE_INTEGER:
+          row[column] = Integer.valueOf( in.readInt() );
+          break;
+        case TYPE_LONG:
+          row[column] = Long.valueOf( in.readLong() );
+          break;
+        case TYPE_DOUBLE:
+          row[column] = Double.valueOf( in.readDouble() );
+          break;
+        case TYPE_BIG_DECIMAL:
+          int scale = in.readInt();
+          row[column] = new BigDecimal( new BigInteger( readBytes( in ) ), scale );
+          break;
+        case TYPE_TIMESTAMP:
+          java.sql.Timestamp timestamp = new java.sql.Timestamp( in.readLong() );
+          timestamp.setNanos( in.readInt() );
+          row[column] = timestamp;
+          break;
+        case TYPE_SQL_DATE:
+          row[column] = new java.sql.Date( in.readLong() );
+          break;
+        case TYPE_TIME:
+          row[column] = new java.sql.Time( in.readLong() );
+          break;
+        case TYPE_DATE:
+          row[column] = new java.util.Date( in.readLong() );
+          break;
+        case TYPE_BOOLEAN:
+          row[column] = Boolean.valueOf( in.readBoolean() );
+          break;
+        default:
+          ObjectInputStream objectIn = new ObjectInputStream( new ByteArrayInputStream( readBytes( in ) ) );
+          row[column] = objectIn.readObject();
+          break;
+      }
+    }
+    return row;
+  }
+
+  private static byte[] readBytes( final DataInputStream in ) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully( bytes );
+    return bytes;
+  }
+}
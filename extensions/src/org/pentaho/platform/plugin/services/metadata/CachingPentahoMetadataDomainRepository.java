@@ -18,6 +18,9 @@
 
 package org.pentaho.platform.plugin.services.metadata;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.metadata.model.Domain;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
@@ -25,26 +28,82 @@ import org.pentaho.metadata.repository.DomainStorageException;
 import org.pentaho.metadata.util.LocalizationUtil;
 import org.pentaho.metadata.util.XmiParser;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StatisticsMBeans;
 import org.pentaho.platform.repository2.unified.RepositoryUtils;
 
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Class Description
+ * Keeps parsed domains in memory. The cache is bounded by the number of domains and by their estimated size (the size
+ * of their XMI files); when either bound is exceeded the least recently used domains are dropped. The bounds come
+ * from the <code>metadata-cache/max-domains</code> and <code>metadata-cache/max-size</code> (megabytes) system
+ * settings.
+ * <p>
+ * Reads do not lock. A domain requested by several threads at once is read from the repository once. Storing or
+ * removing a domain only drops that domain from the cache. Hit, miss and eviction counts are published over JMX by
+ * {@link #registerMBean()}.
  * 
  * @author <a href="mailto:dkincade@pentaho.com">David M. Kincade</a>
  */
-public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomainRepository {
-  private Map<String, Domain> cache;
+public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomainRepository implements
+    IMetadataDomainCacheStatistics {
+
+  public static final int DEFAULT_MAX_DOMAINS = 500;
+
+  public static final int DEFAULT_MAX_SIZE_MB = 256;
+
+  /**
+   * The weight of a domain whose file size is unknown.
+   */
+  public static final long DEFAULT_DOMAIN_SIZE = 64 * 1024;
+
+  public static final String MBEAN_NAME = "org.pentaho.platform:type=MetadataDomainCache"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( CachingPentahoMetadataDomainRepository.class );
+
+  private final ConcurrentMap<String, CachedDomain> cache = new ConcurrentHashMap<String, CachedDomain>();
+
+  private final ConcurrentMap<String, FutureTask<Domain>> loads = new ConcurrentHashMap<String, FutureTask<Domain>>();
+
+  /**
+   * Guards changes of the cache, so a load finishing after its domain was invalidated does not put it back.
+   */
+  private final Object writeLock = new Object();
+
+  private volatile Set<String> domainIds;
+
+  private long domainIdsVersion;
+
+  private final AtomicLong weight = new AtomicLong();
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private volatile int maxDomains;
+
+  private volatile long maxSize;
 
   /**
    * @param repository
    */
   public CachingPentahoMetadataDomainRepository( final IUnifiedRepository repository ) {
     super( repository );
-    cache = new HashMap<String, Domain>();
+    init();
   }
 
   /**
@@ -56,7 +115,26 @@ public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomai
   public CachingPentahoMetadataDomainRepository( final IUnifiedRepository repository,
       final RepositoryUtils repositoryUtils, final XmiParser xmiParser, final LocalizationUtil localizationUtil ) {
     super( repository, repositoryUtils, xmiParser, localizationUtil );
-    cache = new HashMap<String, Domain>();
+    init();
+  }
+
+  private void init() {
+    maxDomains =
+        Math.max( PentahoSystem.getSystemSettingAsInt( "metadata-cache/max-domains", DEFAULT_MAX_DOMAINS ), 0 ); //$NON-NLS-1$
+    maxSize =
+        Math.max( PentahoSystem.getSystemSettingAsInt( "metadata-cache/max-size", DEFAULT_MAX_SIZE_MB ), 0 ) //$NON-NLS-1$
+            * 1024L * 1024L;
+  }
+
+  /**
+   * Publishes the cache statistics as {@link #MBEAN_NAME}; called by the container once the repository is set up.
+   */
+  public void registerMBean() {
+    StatisticsMBeans.register( MBEAN_NAME, this, IMetadataDomainCacheStatistics.class );
+  }
+
+  public void unregisterMBean() {
+    StatisticsMBeans.unregister( MBEAN_NAME, this );
   }
 
   /**
@@ -77,7 +155,10 @@ public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomai
   public void storeDomain( final Domain domain, final boolean overwrite ) throws DomainIdNullException,
     DomainAlreadyExistsException, DomainStorageException {
     super.storeDomain( domain, overwrite );
-    cache.put( domain.getId(), domain );
+    long size = estimateSize( domain.getId() );
+    synchronized ( writeLock ) {
+      put( domain.getId(), domain, size );
+    }
   }
 
   /**
@@ -90,14 +171,44 @@ public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomai
    */
   @Override
   public Domain getDomain( final String domainId ) {
-    Domain domain = cache.get( domainId );
-    if ( null == domain ) {
-      domain = super.getDomain( domainId );
-      if ( null != domain ) {
-        cache.put( domainId, domain );
+    if ( StringUtils.isEmpty( domainId ) ) {
+      return super.getDomain( domainId );
+    }
+    CachedDomain cached = cache.get( domainId );
+    if ( cached != null ) {
+      hits.incrementAndGet();
+      cached.lastAccess = clock.incrementAndGet();
+      return cached.domain;
+    }
+    misses.incrementAndGet();
+
+    FutureTask<Domain> load = new FutureTask<Domain>( new Callable<Domain>() {
+      public Domain call() throws Exception {
+        return CachingPentahoMetadataDomainRepository.super.getDomain( domainId );
+      }
+    } );
+    FutureTask<Domain> running = loads.putIfAbsent( domainId, load );
+    if ( running == null ) {
+      try {
+        load.run();
+        Domain domain = await( load );
+        if ( domain != null ) {
+          long size = estimateSize( domainId );
+          synchronized ( writeLock ) {
+            if ( loads.remove( domainId, load ) ) {
+              put( domainId, domain, size );
+            }
+          }
+        }
+        return domain;
+      } finally {
+        loads.remove( domainId, load );
       }
     }
-    return domain;
+
+    Domain domain = await( running );
+    // the thread loading it may not have had access to the domain
+    return ( domain != null ) ? domain : super.getDomain( domainId );
   }
 
   /**
@@ -107,13 +218,20 @@ public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomai
    */
   @Override
   public Set<String> getDomainIds() {
-    if ( cache.isEmpty() ) {
-      Set<String> domainIds = super.getDomainIds();
-      for ( final String domainId : domainIds ) {
-        cache.put( domainId, null );
+    Set<String> ids = domainIds;
+    if ( ids == null ) {
+      long version;
+      synchronized ( writeLock ) {
+        version = domainIdsVersion;
+      }
+      ids = new HashSet<String>( super.getDomainIds() );
+      synchronized ( writeLock ) {
+        if ( version == domainIdsVersion ) {
+          domainIds = ids;
+        }
       }
     }
-    return cache.keySet();
+    return new HashSet<String>( ids );
   }
 
   /**
@@ -132,6 +250,147 @@ public class CachingPentahoMetadataDomainRepository extends PentahoMetadataDomai
   @Override
   public void flushDomains() {
     super.flushDomains();
-    cache.clear();
+    synchronized ( writeLock ) {
+      loads.clear();
+      cache.clear();
+      weight.set( 0 );
+      domainIds = null;
+      domainIdsVersion++;
+    }
+  }
+
+  /**
+   * Reloads the mapping of domains to files and drops only <code>domainId</code> from the cache.
+   */
+  @Override
+  protected void flushDomain( final String domainId ) {
+    super.flushDomains();
+    synchronized ( writeLock ) {
+      loads.remove( domainId );
+      CachedDomain removed = cache.remove( domainId );
+      if ( removed != null ) {
+        weight.addAndGet( -removed.weight );
+      }
+      domainIds = null;
+      domainIdsVersion++;
+    }
+  }
+
+  public void setMaxDomains( final int maxDomains ) {
+    this.maxDomains = maxDomains;
+    synchronized ( writeLock ) {
+      evict();
+    }
+  }
+
+  /**
+   * @param maxSize
+   *          the maximum estimated size of the cached domains, in bytes of XMI
+   */
+  public void setMaxSize( final long maxSize ) {
+    this.maxSize = maxSize;
+    synchronized ( writeLock ) {
+      evict();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  public int getSize() {
+    return cache.size();
+  }
+
+  public long getWeight() {
+    return weight.get();
+  }
+
+  public int getMaxDomains() {
+    return maxDomains;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Estimates the memory a domain takes by the size of its XMI file.
+   */
+  protected long estimateSize( final String domainId ) {
+    RepositoryFile file = getMetadataRepositoryFile( domainId );
+    Long fileSize = ( file != null ) ? file.getFileSize() : null;
+    return ( fileSize != null && fileSize > 0 ) ? fileSize : DEFAULT_DOMAIN_SIZE;
+  }
+
+  /**
+   * Must hold the write lock.
+   */
+  private void put( final String domainId, final Domain domain, final long size ) {
+    CachedDomain entry = new CachedDomain( domain, size, clock.incrementAndGet() );
+    CachedDomain previous = cache.put( domainId, entry );
+    weight.addAndGet( entry.weight - ( ( previous != null ) ? previous.weight : 0 ) );
+    evict();
+  }
+
+  /**
+   * Drops the least recently used domains until the cache is within its bounds. Must hold the write lock.
+   */
+  private void evict() {
+    while ( !cache.isEmpty() && ( cache.size() > maxDomains || weight.get() > maxSize ) ) {
+      Map.Entry<String, CachedDomain> oldest = null;
+      for ( Map.Entry<String, CachedDomain> entry : cache.entrySet() ) {
+        if ( oldest == null || entry.getValue().lastAccess < oldest.getValue().lastAccess ) {
+          oldest = entry;
+        }
+      }
+      if ( cache.remove( oldest.getKey(), oldest.getValue() ) ) {
+        weight.addAndGet( -oldest.getValue().weight );
+        evictions.incrementAndGet();
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Evicted metadata domain " + oldest.getKey() ); //$NON-NLS-1$
+        }
+      }
+    }
+  }
+
+  private static Domain await( final FutureTask<Domain> load ) {
+    try {
+      return load.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( e );
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException( cause );
+    }
+  }
+
+  private static class CachedDomain {
+    private final Domain domain;
+
+    private final long weight;
+
+    private volatile long lastAccess;
+
+    CachedDomain( final Domain domain, final long weight, final long lastAccess ) {
+      this.domain = domain;
+      this.weight = weight;
+      this.lastAccess = lastAccess;
+    }
   }
 }
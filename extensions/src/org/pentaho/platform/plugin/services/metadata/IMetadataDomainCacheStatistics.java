@@ -0,0 +1,55 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.metadata;
+
+/**
+ * Usage of the metadata domain cache, published over JMX as
+ * {@link CachingPentahoMetadataDomainRepository#MBEAN_NAME}.
+ */
+public interface IMetadataDomainCacheStatistics {
+
+  /**
+   * @return the number of domains served from the cache
+   */
+  long getHitCount();
+
+  /**
+   * @return the number of domains that had to be read from the repository
+   */
+  long getMissCount();
+
+  /**
+   * @return the number of domains dropped to stay within the bounds of the cache
+   */
+  long getEvictionCount();
+
+  /**
+   * @return the number of domains in the cache
+   */
+  int getSize();
+
+  /**
+   * @return the estimated size of the domains in the cache, in bytes of XMI
+   */
+  long getWeight();
+
+  int getMaxDomains();
+
+  long getMaxSize();
+}
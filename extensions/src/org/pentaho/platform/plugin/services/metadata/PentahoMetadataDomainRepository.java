@@ -275,7 +275,7 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
     }
 
     // This invalidates any caching
-    flushDomains();
+    flushDomain( domainId );
 
     getAclHelper().setAclFor( newDomainFile, acl );
   }
@@ -429,7 +429,7 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
 
     // This invalidates any caching
     if ( !domainFiles.isEmpty() ) {
-      flushDomains();
+      flushDomain( domainId );
     }
   }
 
@@ -470,7 +470,7 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       if ( found ) {
         try {
           storeDomain( domain, true );
-          flushDomains();
+          flushDomain( domainId );
         } catch ( DomainAlreadyExistsException ignored ) {
           // This can't happen since we have setup overwrite to true
         }
@@ -533,6 +533,17 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
     internalReloadDomains();
   }
 
+  /**
+   * Called after the files of one domain were stored or removed. Subclasses caching domains only need to drop that
+   * domain; by default everything is flushed.
+   *
+   * @param domainId
+   *          the domain that changed
+   */
+  protected void flushDomain( final String domainId ) {
+    flushDomains();
+  }
+
   @Override
   public String generateRowLevelSecurityConstraint( final LogicalModel model ) {
     // We will let subclasses handle this issue
@@ -602,7 +613,7 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       }
 
       // This invalidates any cached information
-      flushDomains();
+      flushDomain( domainId );
     }
   }
 
@@ -723,12 +734,13 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
   }
 
   /**
-   * Accesses the metadata mapping (with 1 retry) to find the metadata file for the specified domainId
+   * Accesses the metadata mapping (with 1 retry) to find the metadata file for the specified domainId. The retry only
+   * reloads the mapping, so looking up an unknown domain does not flush the domains cached by subclasses.
    */
   protected RepositoryFile getMetadataRepositoryFile( final String domainId ) {
     RepositoryFile domainFile = metadataMapping.getDomainFile( domainId );
     if ( null == domainFile ) {
-      reloadDomains();
+      internalReloadDomains();
       domainFile = metadataMapping.getDomainFile( domainId );
     }
     return domainFile;
@@ -69,6 +69,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -94,6 +95,12 @@ public class DefaultPluginManager implements IPluginManager {
 
   protected List<XulOverlay> overlaysCache = Collections.synchronizedList( new ArrayList<XulOverlay>() );
 
+  /**
+   * Lookup tables over the plugins, built at the end of {@link #reload()} and replaced as a whole. It is
+   * <code>null</code> while plugins are being loaded or unloaded, and the lookups then walk the plugins instead.
+   */
+  private volatile PluginIndex index;
+
   @Override
   public Set<String> getContentTypes() {
     // map.keySet returns a set backed by the map, so we cannot allow modification of the set
@@ -115,6 +122,7 @@ public class DefaultPluginManager implements IPluginManager {
    * unloaded event for each known plugin.
    */
   private void unloadPlugins() {
+    index = null;
     overlaysCache.clear();
     classLoaderMap.clear();
 
@@ -217,6 +225,8 @@ public class DefaultPluginManager implements IPluginManager {
           PluginMessageLogger.add( msg );
         }
       }
+
+      index = buildIndex( providedPlugins );
     }
 
     IServiceManager svcManager = PentahoSystem.get( IServiceManager.class, null );
@@ -234,6 +244,62 @@ public class DefaultPluginManager implements IPluginManager {
     return !anyErrors;
   }
 
+  /**
+   * Indexes the static resources, content generators, content types and beans of the registered plugins. Plugins are
+   * indexed in the order the provider returned them, so the first plugin claiming a path, type or bean id keeps it.
+   */
+  private PluginIndex buildIndex( List<IPlatformPlugin> plugins ) {
+    PluginIndex newIndex = new PluginIndex();
+    Map<String, GenericApplicationContext> beanFactories = new LinkedHashMap<String, GenericApplicationContext>();
+    for ( IPlatformPlugin plugin : plugins ) {
+      if ( registeredPlugins.get( plugin.getId() ) != plugin ) {
+        continue;
+      }
+      Map<String, String> resourceMap = plugin.getStaticResourceMap();
+      for ( String url : resourceMap.keySet() ) {
+        newIndex.addStaticResource( url, plugin.getId(), resourceMap.get( url ) );
+      }
+      for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
+        newIndex.addContentGenerator( contentGenerator.getId(), plugin.getId() );
+      }
+      GenericApplicationContext beanFactory = beanFactoryMap.get( plugin.getId() );
+      if ( beanFactory != null ) {
+        beanFactories.put( plugin.getId(), beanFactory );
+      }
+    }
+    // factories of plugins that failed to register still serve their beans
+    synchronized ( beanFactoryMap ) {
+      for ( Map.Entry<String, GenericApplicationContext> entry : beanFactoryMap.entrySet() ) {
+        if ( !beanFactories.containsKey( entry.getKey() ) ) {
+          beanFactories.put( entry.getKey(), entry.getValue() );
+        }
+      }
+    }
+
+    for ( Map.Entry<String, GenericApplicationContext> entry : beanFactories.entrySet() ) {
+      String pluginId = entry.getKey();
+      GenericApplicationContext beanFactory = entry.getValue();
+      try {
+        if ( registeredPlugins.containsKey( pluginId ) ) {
+          for ( String beanId : getBeanIdsForType( pluginId, IContentGenerator.class ) ) {
+            newIndex.addContentType( getServiceContentType( beanId ), pluginId );
+          }
+        }
+        for ( String beanName : BeanFactoryUtils.beanNamesIncludingAncestors( beanFactory.getBeanFactory() ) ) {
+          newIndex.addBean( beanName, beanFactory );
+          for ( String beanAlias : beanFactory.getAliases( beanName ) ) {
+            newIndex.addBean( beanAlias, beanFactory );
+          }
+        }
+      } catch ( Throwable t ) {
+        // lookups that miss the index fall back to asking every bean factory
+        Logger.warn( getClass().toString(), Messages.getInstance().getErrorString(
+          "PluginManager.ERROR_0028_PLUGIN_INDEX_INCOMPLETE", pluginId ), t ); //$NON-NLS-1$
+      }
+    }
+    return newIndex;
+  }
+
   /**
    * Gets the plugin ready to handle lifecycle events.
    */
@@ -643,19 +709,38 @@ public class DefaultPluginManager implements IPluginManager {
     }
   }
 
+  /**
+   * Returns the bean factory defining <code>beanId</code>, or <code>null</code> if no plugin defines it. The index
+   * answers for the beans known when the plugins were loaded, any other id is looked up in every bean factory.
+   */
+  private GenericApplicationContext getBeanFactoryFor( String beanId ) {
+    PluginIndex currentIndex = index;
+    if ( currentIndex != null ) {
+      GenericApplicationContext beanFactory = currentIndex.getBeanFactory( beanId );
+      if ( beanFactory != null && beanFactory.containsBean( beanId ) ) {
+        return beanFactory;
+      }
+    }
+    for ( GenericApplicationContext beanFactory : new ArrayList<GenericApplicationContext>( beanFactoryMap.values() ) ) {
+      if ( beanFactory.containsBean( beanId ) ) {
+        return beanFactory;
+      }
+    }
+    return null;
+  }
+
   public Object getBean( String beanId, Class<?> requiredType ) {
     if ( beanId == null ) {
       throw new IllegalArgumentException( "beanId cannot be null" ); //$NON-NLS-1$
     }
 
     Object bean = null;
-    for ( GenericApplicationContext beanFactory : beanFactoryMap.values() ) {
-      if ( beanFactory.containsBean( beanId ) ) {
-        if ( requiredType == null ) {
-          bean = beanFactory.getBean( beanId );
-        } else {
-          bean = beanFactory.getBean( beanId, requiredType );
-        }
+    GenericApplicationContext beanFactory = getBeanFactoryFor( beanId );
+    if ( beanFactory != null ) {
+      if ( requiredType == null ) {
+        bean = beanFactory.getBean( beanId );
+      } else {
+        bean = beanFactory.getBean( beanId, requiredType );
       }
     }
     if ( bean == null ) {
@@ -671,13 +756,12 @@ public class DefaultPluginManager implements IPluginManager {
     }
 
     Object bean = null;
-    for ( GenericApplicationContext beanFactory : beanFactoryMap.values() ) {
-      if ( beanFactory.containsBean( beanId ) ) {
-        try {
-          bean = beanFactory.getBean( beanId );
-        } catch ( Throwable ex ) { // Catching throwable on purpose
-          throw new PluginBeanException( ex );
-        }
+    GenericApplicationContext beanFactory = getBeanFactoryFor( beanId );
+    if ( beanFactory != null ) {
+      try {
+        bean = beanFactory.getBean( beanId );
+      } catch ( Throwable ex ) { // Catching throwable on purpose
+        throw new PluginBeanException( ex );
       }
     }
     if ( bean == null ) {
@@ -730,14 +814,12 @@ public class DefaultPluginManager implements IPluginManager {
       throw new IllegalArgumentException( "beanId cannot be null" ); //$NON-NLS-1$
     }
     Class<?> type = null;
-    for ( GenericApplicationContext beanFactory : beanFactoryMap.values() ) {
-      if ( beanFactory.containsBean( beanId ) ) {
-        try {
-          type = beanFactory.getType( beanId );
-          break;
-        } catch ( Throwable ex ) { // Catching throwable on purpose
-          throw new PluginBeanException( ex );
-        }
+    GenericApplicationContext beanFactory = getBeanFactoryFor( beanId );
+    if ( beanFactory != null ) {
+      try {
+        type = beanFactory.getType( beanId );
+      } catch ( Throwable ex ) { // Catching throwable on purpose
+        throw new PluginBeanException( ex );
       }
     }
 
@@ -754,14 +836,7 @@ public class DefaultPluginManager implements IPluginManager {
       throw new IllegalArgumentException( "beanId cannot be null" ); //$NON-NLS-1$
     }
 
-    boolean registered = false;
-    for ( GenericApplicationContext beanFactory : beanFactoryMap.values() ) {
-      if ( beanFactory.containsBean( beanId ) ) {
-        registered = true;
-      }
-    }
-
-    return registered;
+    return getBeanFactoryFor( beanId ) != null;
   }
 
   @Override
@@ -797,15 +872,22 @@ public class DefaultPluginManager implements IPluginManager {
     return ids;
   }
 
+  /**
+   * Content generator beans are registered under ids like <code>type</code> or <code>type.perspective</code>.
+   */
+  private static String getServiceContentType( String beanId ) {
+    return beanId.contains( "." ) ? beanId.substring( 0, beanId.indexOf( '.' ) ) : beanId; //$NON-NLS-1$
+  }
+
   @Override
   public String getPluginIdForType( String contentType ) {
+    PluginIndex currentIndex = index;
+    if ( currentIndex != null ) {
+      return currentIndex.getPluginIdForType( contentType );
+    }
     for ( String pluginId : getRegisteredPlugins() ) {
       for ( String beanId : getBeanIdsForType( pluginId, IContentGenerator.class ) ) {
-        String serviceContentType = beanId;
-        if ( beanId.contains( "." ) ) { //$NON-NLS-1$
-          serviceContentType = beanId.substring( 0, beanId.indexOf( '.' ) );
-        }
-        if ( contentType.equals( serviceContentType ) ) {
+        if ( contentType.equals( getServiceContentType( beanId ) ) ) {
           return pluginId;
         }
       }
@@ -871,6 +953,11 @@ public class DefaultPluginManager implements IPluginManager {
 
   @Deprecated
   public String getServicePlugin( String path ) {
+    PluginIndex currentIndex = index;
+    if ( currentIndex != null ) {
+      PluginIndex.StaticResource resource = currentIndex.getStaticResource( path );
+      return ( resource != null ) ? resource.getPluginId() : currentIndex.getContentGeneratorPluginId( path );
+    }
     for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
       String pluginId = getStaticResourcePluginId( plugin, path );
       if ( pluginId != null ) {
@@ -900,6 +987,10 @@ public class DefaultPluginManager implements IPluginManager {
 
   @Deprecated
   public boolean isStaticResource( String path ) {
+    PluginIndex currentIndex = index;
+    if ( currentIndex != null ) {
+      return currentIndex.getStaticResource( path ) != null;
+    }
     for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
       String pluginId = getStaticResourcePluginId( plugin, path );
       if ( pluginId != null ) {
@@ -928,6 +1019,17 @@ public class DefaultPluginManager implements IPluginManager {
 
   @Deprecated
   public InputStream getStaticResource( String path ) {
+    PluginIndex currentIndex = index;
+    if ( currentIndex != null ) {
+      PluginIndex.StaticResource resource = currentIndex.getStaticResource( path );
+      if ( resource == null ) {
+        return null;
+      }
+      IPluginResourceLoader resLoader = PentahoSystem.get( IPluginResourceLoader.class, null );
+      ClassLoader classLoader = classLoaderMap.get( resource.getPluginId() );
+      String resourcePath = path.replace( resource.getUrl(), resource.getPluginDir() );
+      return resLoader.getResourceAsStream( classLoader, resourcePath );
+    }
     for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
       Map<String, String> resourceMap = plugin.getStaticResourceMap();
       for ( String url : resourceMap.keySet() ) {
@@ -0,0 +1,164 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookup tables over the registered plugins, so that routing a request or finding a bean does not walk every plugin.
+ * Static resource urls and content generator ids are kept in tries of path elements, which find the plugin serving a
+ * path in time proportional to the number of elements of the path. Where two plugins claim the same key, the first
+ * one added keeps it.
+ * <p>
+ * The {@link DefaultPluginManager} fills a new index at the end of a reload and then publishes it; it is not changed
+ * after that.
+ */
+class PluginIndex {
+
+  private final PathTrie<StaticResource> staticResources = new PathTrie<StaticResource>();
+
+  private final PathTrie<String> contentGenerators = new PathTrie<String>();
+
+  private final Map<String, String> pluginIdByContentType = new HashMap<String, String>();
+
+  private final Map<String, GenericApplicationContext> beanFactoryById =
+    new HashMap<String, GenericApplicationContext>();
+
+  void addStaticResource( final String url, final String pluginId, final String pluginDir ) {
+    staticResources.put( url, new StaticResource( pluginId, url, pluginDir ) );
+  }
+
+  void addContentGenerator( final String contentGeneratorId, final String pluginId ) {
+    contentGenerators.put( contentGeneratorId, pluginId );
+  }
+
+  void addContentType( final String contentType, final String pluginId ) {
+    if ( !pluginIdByContentType.containsKey( contentType ) ) {
+      pluginIdByContentType.put( contentType, pluginId );
+    }
+  }
+
+  void addBean( final String beanId, final GenericApplicationContext beanFactory ) {
+    if ( !beanFactoryById.containsKey( beanId ) ) {
+      beanFactoryById.put( beanId, beanFactory );
+    }
+  }
+
+  /**
+   * @return the static resource mapping with the longest url requested by <code>path</code>, or <code>null</code>
+   */
+  StaticResource getStaticResource( final String path ) {
+    return staticResources.get( path );
+  }
+
+  /**
+   * @return the id of the plugin with the content generator requested by <code>path</code>, or <code>null</code>
+   */
+  String getContentGeneratorPluginId( final String path ) {
+    return contentGenerators.get( path );
+  }
+
+  String getPluginIdForType( final String contentType ) {
+    return pluginIdByContentType.get( contentType );
+  }
+
+  GenericApplicationContext getBeanFactory( final String beanId ) {
+    return beanFactoryById.get( beanId );
+  }
+
+  /**
+   * A url of a plugin mapped to a directory of the plugin.
+   */
+  static class StaticResource {
+    private final String pluginId;
+
+    private final String url;
+
+    private final String pluginDir;
+
+    StaticResource( final String pluginId, final String url, final String pluginDir ) {
+      this.pluginId = pluginId;
+      this.url = url;
+      this.pluginDir = pluginDir;
+    }
+
+    String getPluginId() {
+      return pluginId;
+    }
+
+    String getUrl() {
+      return url;
+    }
+
+    String getPluginDir() {
+      return pluginDir;
+    }
+  }
+
+  /**
+   * A trie keyed by the elements of a path. A path is split the same way
+   * {@link DefaultPluginManager#isRequested(String, String)} splits it, so a key is found for every path it requests.
+   */
+  private static class PathTrie<T> {
+
+    private final Node<T> root = new Node<T>();
+
+    void put( final String key, final T value ) {
+      Node<T> node = root;
+      for ( String element : split( key ) ) {
+        Node<T> child = node.children.get( element );
+        if ( child == null ) {
+          child = new Node<T>();
+          node.children.put( element, child );
+        }
+        node = child;
+      }
+      if ( node.value == null ) {
+        node.value = value;
+      }
+    }
+
+    T get( final String path ) {
+      T found = null;
+      Node<T> node = root;
+      for ( String element : split( path ) ) {
+        node = node.children.get( element );
+        if ( node == null ) {
+          break;
+        }
+        if ( node.value != null ) {
+          found = node.value;
+        }
+      }
+      return found;
+    }
+
+    private static String[] split( final String path ) {
+      return ( path.startsWith( "/" ) ? path.substring( 1 ) : path ).split( "/" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  private static class Node<T> {
+    private final Map<String, Node<T>> children = new HashMap<String, Node<T>>( 4 );
+
+    private T value;
+  }
+}
@@ -0,0 +1,47 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.security.userrole.jdbc;
+
+/**
+ * Usage of the security database by a {@link JdbcUserRoleListService}, published over JMX as
+ * {@link JdbcUserRoleListService#MBEAN_NAME}.
+ */
+public interface IJdbcUserRoleListStatistics {
+
+  /**
+   * @return the number of queries run against the security database
+   */
+  long getQueryCount();
+
+  /**
+   * @return milliseconds since the users and roles served were read, or -1 if none were read yet
+   */
+  long getSnapshotAge();
+
+  /**
+   * @return seconds the users and roles are served before they are read again, 0 if they are not cached
+   */
+  long getRefreshInterval();
+
+  int getMaxCachedUsers();
+
+  /**
+   * Drops the users and roles read, so the next calls read the database.
+   */
+  void invalidate();
+}
@@ -17,9 +17,12 @@
 
 package org.pentaho.platform.plugin.services.security.userrole.jdbc;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.engine.security.IAuthenticationRoleMapper;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.StatisticsMBeans;
 import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
 import org.springframework.context.ApplicationContextException;
 import org.springframework.dao.DataAccessException;
@@ -37,9 +40,26 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRoleListService {
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lists the users and roles of a security database.
+ * <p>
+ * With a positive {@link #setRefreshInterval(long) refresh interval} the lists are served from a snapshot that is
+ * read again once it is older than the interval. One caller reads the new snapshot while the others keep getting the
+ * previous one, and if the database cannot be read the previous snapshot is served for another interval. The roles
+ * of the most recently used users are cached for the same interval, up to {@link #setMaxCachedUsers(int)} users.
+ * {@link #invalidate()} drops everything, e.g. after the users were changed.
+ */
+public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRoleListService,
+    IJdbcUserRoleListStatistics {
 
   // ~ Static fields/initializers
   // =============================================
@@ -50,6 +70,12 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
   public static final String DEF_ALL_USERNAMES_IN_ROLE_QUERY =
       "SELECT distinct(username) as username FROM authorities WHERE authority = ?"; //$NON-NLS-1$
 
+  public static final int DEFAULT_MAX_CACHED_USERS = 1000;
+
+  public static final String MBEAN_NAME = "org.pentaho.platform:type=JdbcUserRoleListService"; //$NON-NLS-1$
+
+  private static final Log logger = LogFactory.getLog( JdbcUserRoleListService.class );
+
   // ~ Instance fields
   // ========================================================
 
@@ -73,6 +99,25 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
 
   private IAuthenticationRoleMapper roleMapper;
 
+  private volatile long refreshInterval;
+
+  private volatile int maxCachedUsers = DEFAULT_MAX_CACHED_USERS;
+
+  private volatile Snapshot snapshot;
+
+  private final ReentrantLock refreshLock = new ReentrantLock();
+
+  private final Map<String, CachedRoles> rolesByUser = new LinkedHashMap<String, CachedRoles>( 16, 0.75f, true ) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, CachedRoles> eldest ) {
+      return size() > maxCachedUsers;
+    }
+  };
+
+  private final AtomicLong queryCount = new AtomicLong();
+
   // ~ Constructors
   // ===========================================================
 
@@ -135,7 +180,92 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
     return allUsernamesQuery;
   }
 
+  /**
+   * @param refreshInterval
+   *          seconds the users and roles read from the database are served before they are read again, 0 to read
+   *          them on every call
+   */
+  public void setRefreshInterval( final long refreshInterval ) {
+    this.refreshInterval = Math.max( refreshInterval, 0 ) * 1000L;
+    invalidate();
+  }
+
+  public long getRefreshInterval() {
+    return refreshInterval / 1000L;
+  }
+
+  /**
+   * @param maxCachedUsers
+   *          the number of users whose roles are cached
+   */
+  public void setMaxCachedUsers( final int maxCachedUsers ) {
+    this.maxCachedUsers = Math.max( maxCachedUsers, 0 );
+    synchronized ( rolesByUser ) {
+      rolesByUser.clear();
+    }
+  }
+
+  public int getMaxCachedUsers() {
+    return maxCachedUsers;
+  }
+
+  /**
+   * Drops the snapshot and the cached roles of users, so the next calls read the database.
+   */
+  public void invalidate() {
+    snapshot = null;
+    synchronized ( rolesByUser ) {
+      rolesByUser.clear();
+    }
+  }
+
+  /**
+   * Drops the cached roles of one user.
+   */
+  public void invalidateUser( final String username ) {
+    synchronized ( rolesByUser ) {
+      rolesByUser.remove( username );
+    }
+  }
+
+  public long getQueryCount() {
+    return queryCount.get();
+  }
+
+  public long getSnapshotAge() {
+    Snapshot current = snapshot;
+    return current != null ? System.currentTimeMillis() - current.loaded : -1;
+  }
+
   public List<String> getAllRoles() throws DataAccessException {
+    if ( refreshInterval <= 0 ) {
+      return queryAllRoles();
+    }
+    return new ArrayList<String>( getSnapshot().roles );
+  }
+
+  public List<String> getAllUsers() throws DataAccessException {
+    if ( refreshInterval <= 0 ) {
+      return queryAllUsers();
+    }
+    return new ArrayList<String>( getSnapshot().users );
+  }
+
+  public List<String> getUsersInRole( final String role ) {
+    if ( refreshInterval <= 0 ) {
+      return queryUsersInRole( role );
+    }
+    Snapshot current = getSnapshot();
+    List<String> users = current.usersInRole.get( role );
+    if ( users == null ) {
+      users = Collections.unmodifiableList( queryUsersInRole( role ) );
+      current.usersInRole.putIfAbsent( role, users );
+    }
+    return new ArrayList<String>( users );
+  }
+
+  protected List<String> queryAllRoles() throws DataAccessException {
+    queryCount.incrementAndGet();
     List<GrantedAuthority> allAuths = allAuthoritiesMapping.execute();
     List<String> roles = new ArrayList<String>( allAuths.size() );
     for ( GrantedAuthority role : allAuths ) {
@@ -149,12 +279,13 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
     return roles;
   }
 
-  public List<String> getAllUsers() throws DataAccessException {
+  protected List<String> queryAllUsers() throws DataAccessException {
+    queryCount.incrementAndGet();
     List<String> allUserNames = allUsernamesMapping.execute();
     return allUserNames;
   }
 
-  public List<String> getUsersInRole( final String role ) {
+  protected List<String> queryUsersInRole( final String role ) {
 
     String roleToTest = role;
 
@@ -162,16 +293,66 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
       roleToTest = roleMapper.fromPentahoRole( role );
     }
 
+    queryCount.incrementAndGet();
     List<String> allUserNamesInRole = allUsernamesInRoleMapping.execute( roleToTest );
 
     return allUserNamesInRole;
   }
 
+  /**
+   * Returns the current snapshot, reading a new one when it is older than the refresh interval. While one caller reads
+   * it the others get the previous snapshot; only the first snapshot is waited for.
+   */
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if ( current != null && System.currentTimeMillis() < current.expires ) {
+      return current;
+    }
+    if ( current != null ) {
+      if ( !refreshLock.tryLock() ) {
+        return current;
+      }
+    } else {
+      refreshLock.lock();
+    }
+    try {
+      current = snapshot;
+      long now = System.currentTimeMillis();
+      if ( current != null && now < current.expires ) {
+        return current;
+      }
+      try {
+        snapshot = new Snapshot( queryAllRoles(), queryAllUsers(), now, now + refreshInterval );
+      } catch ( DataAccessException e ) {
+        if ( current == null ) {
+          throw e;
+        }
+        logger.warn( "Could not refresh the users and roles, serving the ones read "
+            + ( now - current.loaded ) / 1000L + " seconds ago", e ); //$NON-NLS-1$ //$NON-NLS-2$
+        snapshot = new Snapshot( current, now + refreshInterval );
+      }
+      return snapshot;
+    } finally {
+      refreshLock.unlock();
+    }
+  }
+
   @Override
   protected void initDao() throws ApplicationContextException {
     initMappingSqlQueries();
   }
 
+  /**
+   * Publishes the statistics as {@link #MBEAN_NAME}; called by the container once the service is set up.
+   */
+  public void registerMBean() {
+    StatisticsMBeans.register( MBEAN_NAME, this, IJdbcUserRoleListStatistics.class );
+  }
+
+  public void unregisterMBean() {
+    StatisticsMBeans.unregister( MBEAN_NAME, this );
+  }
+
   /**
    * Extension point to allow other MappingSqlQuery objects to be substituted in a subclass
    */
@@ -231,6 +412,18 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
   }
 
   public List<String> getRolesForUser( final String username ) throws UsernameNotFoundException, DataAccessException {
+    long interval = refreshInterval;
+    if ( interval > 0 ) {
+      CachedRoles cached;
+      synchronized ( rolesByUser ) {
+        cached = rolesByUser.get( username );
+      }
+      if ( cached != null && System.currentTimeMillis() < cached.expires ) {
+        return new ArrayList<String>( cached.roles );
+      }
+    }
+
+    queryCount.incrementAndGet();
     UserDetails user = userDetailsService.loadUserByUsername( username );
     List<String> roles = new ArrayList<String>( user.getAuthorities().length );
     for ( GrantedAuthority role : user.getAuthorities() ) {
@@ -241,6 +434,12 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
       }
     }
 
+    if ( interval > 0 ) {
+      CachedRoles cached = new CachedRoles( new ArrayList<String>( roles ), System.currentTimeMillis() + interval );
+      synchronized ( rolesByUser ) {
+        rolesByUser.put( username, cached );
+      }
+    }
     return roles;
   }
 
@@ -292,4 +491,46 @@ public class JdbcUserRoleListService extends JdbcDaoSupport implements IUserRole
   public void setRoleMapper( IAuthenticationRoleMapper roleMapper ) {
     this.roleMapper = roleMapper;
   }
+
+  /**
+   * Users and roles read at one time. The members of a role are read when first asked for.
+   */
+  private static class Snapshot {
+    private final List<String> roles;
+
+    private final List<String> users;
+
+    private final ConcurrentMap<String, List<String>> usersInRole;
+
+    private final long loaded;
+
+    private final long expires;
+
+    Snapshot( final List<String> roles, final List<String> users, final long loaded, final long expires ) {
+      this.roles = Collections.unmodifiableList( roles );
+      this.users = Collections.unmodifiableList( users );
+      this.usersInRole = new ConcurrentHashMap<String, List<String>>();
+      this.loaded = loaded;
+      this.expires = expires;
+    }
+
+    Snapshot( final Snapshot stale, final long expires ) {
+      this.roles = stale.roles;
+      this.users = stale.users;
+      this.usersInRole = stale.usersInRole;
+      this.loaded = stale.loaded;
+      this.expires = expires;
+    }
+  }
+
+  private static class CachedRoles {
+    private final List<String> roles;
+
+    private final long expires;
+
+    CachedRoles( final List<String> roles, final long expires ) {
+      this.roles = roles;
+      this.expires = expires;
+    }
+  }
 }
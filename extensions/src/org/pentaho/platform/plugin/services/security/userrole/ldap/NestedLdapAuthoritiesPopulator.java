@@ -23,8 +23,11 @@ import org.springframework.security.GrantedAuthorityImpl;
 import org.springframework.security.ldap.populator.DefaultLdapAuthoritiesPopulator;
 import org.springframework.util.Assert;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -55,6 +58,17 @@ import java.util.Set;
  * </pre>
  * 
  * <p>
+ * The transitive closure of the map (every ancestor of every child role) is computed once when the map is set, so
+ * resolving the parents of a user's roles at login is a single lookup per role regardless of the depth of the
+ * hierarchy.
+ * </p>
+ * 
+ * <p>
+ * Optionally, the roles found in the directory for a user can be cached for <code>groupMembershipCacheTimeout</code>
+ * milliseconds (disabled by default), so repeated logins of the same user don't search the directory each time.
+ * </p>
+ * 
+ * <p>
  * Based on http://forum.springframework.org/showthread.php?t=28007
  * </p>
  * 
@@ -69,6 +83,40 @@ public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopula
    */
   private Map extraRolesMapping;
 
+  /**
+   * Map where keys are child roles and values are the sets of all their ancestor roles. Replaced as a whole when the
+   * mapping changes.
+   */
+  private volatile Map<Object, Set> roleAncestors = Collections.emptyMap();
+
+  /**
+   * How long, in milliseconds, the directory roles of a user are reused. Zero or less disables the cache.
+   */
+  private long groupMembershipCacheTimeout;
+
+  private int groupMembershipCacheSize = 1000;
+
+  private final Map<String, CachedRoles> groupMembershipCache = new LinkedHashMap<String, CachedRoles>( 16, 0.75f,
+      true ) {
+    private static final long serialVersionUID = 2393734623577153734L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, CachedRoles> eldest ) {
+      return size() > groupMembershipCacheSize;
+    }
+  };
+
+  private static final class CachedRoles {
+    private final Set roles;
+
+    private final long expires;
+
+    private CachedRoles( final Set roles, final long expires ) {
+      this.roles = roles;
+      this.expires = expires;
+    }
+  }
+
   // ~ Constructors ==========================================================
 
   public NestedLdapAuthoritiesPopulator( final ContextSource contextSource, final String groupSearchBase ) {
@@ -81,18 +129,54 @@ public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopula
    * Calls super's implementation then adds extra roles.
    */
   public Set getGroupMembershipRoles( String userDn, String username ) {
-    Set roles = super.getGroupMembershipRoles( userDn, username );
-    Set newRolesFromPreviousPass = new HashSet( roles );
-    Set allNewRoles = new HashSet();
-    // keep going until no new roles are found
-    while ( !newRolesFromPreviousPass.isEmpty() ) {
-      newRolesFromPreviousPass = getParentRoles( newRolesFromPreviousPass );
-      allNewRoles.addAll( newRolesFromPreviousPass );
-    }
+    Set roles = getDirectoryRoles( userDn, username );
+    Set allNewRoles = getAncestorRoles( roles );
     roles.addAll( toGrantedAuthorities( allNewRoles ) );
     return roles;
   }
 
+  /**
+   * Returns a copy of the roles found in the directory for the user, from the cache when enabled.
+   */
+  protected Set getDirectoryRoles( final String userDn, final String username ) {
+    if ( groupMembershipCacheTimeout <= 0 ) {
+      return super.getGroupMembershipRoles( userDn, username );
+    }
+    long now = System.currentTimeMillis();
+    CachedRoles cached;
+    synchronized ( groupMembershipCache ) {
+      cached = groupMembershipCache.get( userDn );
+    }
+    if ( cached == null || cached.expires < now ) {
+      cached = new CachedRoles( super.getGroupMembershipRoles( userDn, username ), now + groupMembershipCacheTimeout );
+      synchronized ( groupMembershipCache ) {
+        groupMembershipCache.put( userDn, cached );
+      }
+    }
+    return new HashSet( cached.roles );
+  }
+
+  /**
+   * Returns every ancestor of the given roles according to the extraRolesMapping.
+   * 
+   * @param children
+   *          <code>Set</code> of keys
+   * @return <code>Set</code> of all roles reachable from the keys, not including the keys themselves unless the
+   *         mapping contains a cycle
+   */
+  protected Set getAncestorRoles( final Set children ) {
+    Map<Object, Set> ancestors = roleAncestors;
+    Set allParents = new HashSet();
+    Iterator iter = children.iterator();
+    while ( iter.hasNext() ) {
+      Set parents = ancestors.get( iter.next() );
+      if ( null != parents ) {
+        allParents.addAll( parents );
+      }
+    }
+    return allParents;
+  }
+
   /**
    * Iterates over the set, using the items as keys into the extraRolesMapping.
    * 
@@ -112,6 +196,37 @@ public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopula
     return parents;
   }
 
+  /**
+   * Walks the mapping from every child role to compute the set of all its ancestors.
+   */
+  protected Map<Object, Set> computeRoleAncestors( final Map mapping ) {
+    Map<Object, Set> ancestors = new HashMap<Object, Set>();
+    if ( mapping == null ) {
+      return ancestors;
+    }
+    Iterator iter = mapping.keySet().iterator();
+    while ( iter.hasNext() ) {
+      Object child = iter.next();
+      Set parents = new HashSet();
+      Object parent = mapping.get( child );
+      // parents.add returns false once a cycle brings us back to a role already seen
+      while ( null != parent && parents.add( parent ) ) {
+        parent = mapping.get( parent );
+      }
+      ancestors.put( child, Collections.unmodifiableSet( parents ) );
+    }
+    return ancestors;
+  }
+
+  /**
+   * Drops the cached directory roles of every user.
+   */
+  public void clearGroupMembershipCache() {
+    synchronized ( groupMembershipCache ) {
+      groupMembershipCache.clear();
+    }
+  }
+
   /**
    * Converts a set of strings into a set of granted authorities.
    * 
@@ -135,6 +250,23 @@ public class NestedLdapAuthoritiesPopulator extends DefaultLdapAuthoritiesPopula
 
   public void setExtraRolesMapping( final Map extraRolesMapping ) {
     this.extraRolesMapping = extraRolesMapping;
+    this.roleAncestors = computeRoleAncestors( extraRolesMapping );
+  }
+
+  public long getGroupMembershipCacheTimeout() {
+    return groupMembershipCacheTimeout;
+  }
+
+  public void setGroupMembershipCacheTimeout( final long groupMembershipCacheTimeout ) {
+    this.groupMembershipCacheTimeout = groupMembershipCacheTimeout;
+  }
+
+  public int getGroupMembershipCacheSize() {
+    return groupMembershipCacheSize;
+  }
+
+  public void setGroupMembershipCacheSize( final int groupMembershipCacheSize ) {
+    this.groupMembershipCacheSize = groupMembershipCacheSize;
   }
 
   public void afterPropertiesSet() throws Exception {
@@ -26,7 +26,13 @@ import org.springframework.util.Assert;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.util.*;
 
 public class GenericLdapSearch implements LdapSearch, InitializingBean {
@@ -63,6 +69,13 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
 
   private ContextSource contextSource;
 
+  /**
+   * When greater than zero, results are requested in pages of this size using the simple paged results control (RFC
+   * 2696), so large directories can be listed without hitting the server's size limit and without the server building
+   * the whole result at once. Servers that don't support the control return all results in one go.
+   */
+  private int pageSize;
+
   // ~ Constructors ==========================================================
 
   public GenericLdapSearch( final ContextSource contextSource, final LdapSearchParamsFactory paramsFactory ) {
@@ -94,18 +107,68 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
     LdapSearchParams params = paramsFactory.createParams( transformedArgs );
     // use a set internally to store intermediate results
     Set results = new HashSet();
-    NamingEnumeration matches = null;
+    DirContext ctx = null;
     try {
-      matches =
-          contextSource.getReadOnlyContext().search( params.getBase(), params.getFilter(), params.getFilterArgs(),
-              params.getSearchControls() );
-    } catch ( NamingException e1 ) {
+      ctx = contextSource.getReadOnlyContext();
+      if ( pageSize > 0 && ctx instanceof LdapContext ) {
+        searchPaged( (LdapContext) ctx, params, results );
+      } else {
+        NamingEnumeration matches = null;
+        try {
+          matches =
+              ctx.search( params.getBase(), params.getFilter(), params.getFilterArgs(), params.getSearchControls() );
+        } catch ( NamingException e1 ) {
+          if ( GenericLdapSearch.logger.isErrorEnabled() ) {
+            // TODO: Throw an exception here
+            GenericLdapSearch.logger.error( "Directory search failed", e1 ); //$NON-NLS-1$
+          }
+          return new ArrayList( results );
+        }
+        addResults( matches, results );
+      }
+    } catch ( NamingException e ) {
       if ( GenericLdapSearch.logger.isErrorEnabled() ) {
         // TODO: Throw an exception here
-        GenericLdapSearch.logger.error( "Directory search failed", e1 ); //$NON-NLS-1$
+        GenericLdapSearch.logger.error( "Enumerating directory search results failed", e ); //$NON-NLS-1$
       }
-      return new ArrayList( results );
+    } finally {
+      closeContext( ctx );
     }
+    return new ArrayList( results );
+  }
+
+  /**
+   * Runs the search one page at a time, passing the cookie returned by the server back until it signals the last page.
+   * Each page is transformed as it arrives, so only one page of raw search results is held at a time.
+   */
+  protected void searchPaged( final LdapContext ctx, final LdapSearchParams params, final Set results )
+    throws NamingException {
+    byte[] cookie = null;
+    try {
+      do {
+        ctx.setRequestControls( new Control[] { new PagedResultsControl( pageSize, cookie, Control.NONCRITICAL ) } );
+        NamingEnumeration matches =
+            ctx.search( params.getBase(), params.getFilter(), params.getFilterArgs(), params.getSearchControls() );
+        addResults( matches, results );
+        cookie = null;
+        Control[] responseControls = ctx.getResponseControls();
+        if ( responseControls != null ) {
+          for ( Control control : responseControls ) {
+            if ( control instanceof PagedResultsResponseControl ) {
+              cookie = ( (PagedResultsResponseControl) control ).getCookie();
+            }
+          }
+        }
+      } while ( cookie != null && cookie.length > 0 );
+    } catch ( IOException e ) {
+      throw (NamingException) new NamingException( e.getMessage() ).initCause( e );
+    } finally {
+      // the context may be pooled; don't leave the paging control on it
+      ctx.setRequestControls( null );
+    }
+  }
+
+  private void addResults( final NamingEnumeration matches, final Set results ) throws NamingException {
     try {
       while ( matches.hasMore() ) {
         SearchResult result = (SearchResult) matches.next();
@@ -115,13 +178,27 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
           results.add( result );
         }
       }
-    } catch ( NamingException e ) {
-      if ( GenericLdapSearch.logger.isErrorEnabled() ) {
-        // TODO: Throw an exception here
-        GenericLdapSearch.logger.error( "Enumerating directory search results failed", e ); //$NON-NLS-1$
+    } finally {
+      matches.close();
+    }
+  }
+
+  private void closeContext( final DirContext ctx ) {
+    if ( ctx != null ) {
+      try {
+        ctx.close();
+      } catch ( NamingException e ) {
+        GenericLdapSearch.logger.debug( "Failed to close directory context", e ); //$NON-NLS-1$
       }
     }
-    return new ArrayList( results );
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public void setPageSize( final int pageSize ) {
+    this.pageSize = pageSize;
   }
 
   public void afterPropertiesSet() throws Exception {
@@ -0,0 +1,386 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The bytes of a static file (javascript, css, image...) together with what is needed to serve it efficiently over
+ * HTTP: a strong <code>ETag</code> computed from the content, the time it was loaded, and a gzip compressed variant made
+ * the first time a client accepts it. Keep an instance in a cache to compute these once per file.
+ * <p>
+ * {@link #reply(HttpServletRequest)} answers a request with <code>304 Not Modified</code> when the client copy is
+ * current (<code>If-None-Match</code>, <code>If-Modified-Since</code>), picks the gzip variant when
+ * <code>Accept-Encoding</code> allows it and serves a single byte range (<code>Range</code>, <code>If-Range</code>) of
+ * the uncompressed content.
+ */
+public class StaticContent implements Serializable {
+
+  private static final long serialVersionUID = -2410376012783364573L;
+
+  /**
+   * Smaller files are not worth compressing.
+   */
+  public static final int MIN_GZIP_SIZE = 256;
+
+  private static final String[] HTTP_DATE_FORMATS = {
+    "EEE, dd MMM yyyy HH:mm:ss zzz", "EEEE, dd-MMM-yy HH:mm:ss zzz", "EEE MMM d HH:mm:ss yyyy" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+  private static final TimeZone GMT = TimeZone.getTimeZone( "GMT" ); //$NON-NLS-1$
+
+  private final byte[] bytes;
+
+  private final String mimeType;
+
+  private final String etag;
+
+  private final long lastModified;
+
+  private transient volatile byte[] gzipped;
+
+  /**
+   * @param lastModified the time the content last changed, or -1 if unknown, in which case clients revalidate with
+   *                     the <code>ETag</code> only
+   */
+  public StaticContent( final byte[] bytes, final String mimeType, final long lastModified ) {
+    this.bytes = bytes;
+    this.mimeType = mimeType;
+    this.etag = "\"" + DigestUtils.md5Hex( bytes ) + "\""; //$NON-NLS-1$ //$NON-NLS-2$
+    // HTTP dates have a precision of one second
+    this.lastModified = ( lastModified < 0 ) ? -1 : lastModified / 1000 * 1000;
+  }
+
+  /**
+   * Reads and closes <code>in</code>.
+   */
+  public static StaticContent read( final InputStream in, final String mimeType, final long lastModified )
+    throws IOException {
+    try {
+      return new StaticContent( IOUtils.toByteArray( in ), mimeType, lastModified );
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public String getETag() {
+    return etag;
+  }
+
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * @return whether the content is text that shrinks when compressed
+   */
+  public boolean isCompressible() {
+    if ( mimeType == null || bytes.length < MIN_GZIP_SIZE ) {
+      return false;
+    }
+    String type = mimeType.toLowerCase();
+    return type.startsWith( "text/" ) || type.contains( "javascript" ) || type.contains( "json" ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        || type.contains( "xml" ); //$NON-NLS-1$
+  }
+
+  /**
+   * Compresses the content the first time it is asked for.
+   */
+  public byte[] getGzipped() throws IOException {
+    byte[] result = gzipped;
+    if ( result == null ) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream( bytes.length / 3 + 64 );
+      GZIPOutputStream gzip = new GZIPOutputStream( bos );
+      gzip.write( bytes );
+      gzip.close();
+      result = bos.toByteArray();
+      gzipped = result;
+    }
+    return result;
+  }
+
+  String getGzipETag() {
+    return etag.substring( 0, etag.length() - 1 ) + "-gz\""; //$NON-NLS-1$
+  }
+
+  /**
+   * Decides how to answer <code>request</code>.
+   */
+  public Reply reply( final HttpServletRequest request ) throws IOException {
+    boolean gzip = isCompressible() && request.getHeader( "Range" ) == null //$NON-NLS-1$
+        && acceptsGzip( request.getHeader( "Accept-Encoding" ) ); //$NON-NLS-1$
+    Reply reply = new Reply();
+    reply.headers.put( "ETag", gzip ? getGzipETag() : etag ); //$NON-NLS-1$
+    if ( lastModified >= 0 ) {
+      reply.headers.put( "Last-Modified", formatDate( lastModified ) ); //$NON-NLS-1$
+    }
+    if ( isCompressible() ) {
+      reply.headers.put( "Vary", "Accept-Encoding" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    reply.headers.put( "Accept-Ranges", "bytes" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    if ( isNotModified( request ) ) {
+      reply.status = HttpServletResponse.SC_NOT_MODIFIED;
+      return reply;
+    }
+
+    if ( gzip ) {
+      reply.headers.put( "Content-Encoding", "gzip" ); //$NON-NLS-1$ //$NON-NLS-2$
+      reply.body = getGzipped();
+      reply.length = reply.body.length;
+      return reply;
+    }
+
+    reply.body = bytes;
+    reply.length = bytes.length;
+    String range = request.getHeader( "Range" ); //$NON-NLS-1$
+    if ( range != null && isRangeCurrent( request.getHeader( "If-Range" ) ) ) { //$NON-NLS-1$
+      long[] bounds = parseRange( range, bytes.length );
+      if ( bounds == null ) {
+        // not a single byte range we understand, serve the whole content
+        return reply;
+      }
+      if ( bounds.length == 0 ) {
+        reply.status = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+        reply.headers.put( "Content-Range", "bytes */" + bytes.length ); //$NON-NLS-1$ //$NON-NLS-2$
+        reply.body = null;
+        reply.length = 0;
+        return reply;
+      }
+      reply.status = HttpServletResponse.SC_PARTIAL_CONTENT;
+      reply.headers.put( "Content-Range", //$NON-NLS-1$
+          "bytes " + bounds[0] + "-" + bounds[1] + "/" + bytes.length ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      reply.offset = (int) bounds[0];
+      reply.length = (int) ( bounds[1] - bounds[0] + 1 );
+    }
+    return reply;
+  }
+
+  /**
+   * <code>If-None-Match</code> wins over <code>If-Modified-Since</code>. Either variant's tag matches, they stand for
+   * the same content.
+   */
+  private boolean isNotModified( final HttpServletRequest request ) {
+    String ifNoneMatch = request.getHeader( "If-None-Match" ); //$NON-NLS-1$
+    if ( ifNoneMatch != null ) {
+      for ( String tag : ifNoneMatch.split( "," ) ) { //$NON-NLS-1$
+        tag = tag.trim();
+        if ( tag.startsWith( "W/" ) ) { //$NON-NLS-1$
+          tag = tag.substring( 2 );
+        }
+        if ( "*".equals( tag ) || etag.equals( tag ) || getGzipETag().equals( tag ) ) { //$NON-NLS-1$
+          return true;
+        }
+      }
+      return false;
+    }
+    if ( lastModified >= 0 ) {
+      long ifModifiedSince = parseDate( request.getHeader( "If-Modified-Since" ) ); //$NON-NLS-1$
+      return ifModifiedSince >= lastModified;
+    }
+    return false;
+  }
+
+  /**
+   * A range is only served if the client's copy, named by <code>If-Range</code>, is still the current content.
+   */
+  private boolean isRangeCurrent( final String ifRange ) {
+    if ( ifRange == null ) {
+      return true;
+    }
+    if ( ifRange.startsWith( "\"" ) ) { //$NON-NLS-1$
+      return etag.equals( ifRange.trim() );
+    }
+    return lastModified >= 0 && parseDate( ifRange ) == lastModified;
+  }
+
+  static boolean acceptsGzip( final String acceptEncoding ) {
+    if ( acceptEncoding == null ) {
+      return false;
+    }
+    for ( String coding : acceptEncoding.toLowerCase().split( "," ) ) { //$NON-NLS-1$
+      String[] parts = coding.split( ";" ); //$NON-NLS-1$
+      String name = parts[0].trim();
+      if ( "gzip".equals( name ) || "x-gzip".equals( name ) || "*".equals( name ) ) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        for ( int i = 1; i < parts.length; i++ ) {
+          String param = parts[i].trim();
+          if ( param.startsWith( "q=" ) ) { //$NON-NLS-1$
+            try {
+              return Double.parseDouble( param.substring( 2 ) ) > 0;
+            } catch ( NumberFormatException e ) {
+              return false;
+            }
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses a single <code>bytes=first-last</code>, <code>bytes=first-</code> or <code>bytes=-suffixLength</code> range.
+   *
+   * @return the first and last byte, an empty array if the range is not satisfiable or <code>null</code> if the
+   *         header is not a single byte range
+   */
+  static long[] parseRange( final String range, final long length ) {
+    String value = range.trim();
+    if ( !value.startsWith( "bytes=" ) || value.indexOf( ',' ) >= 0 ) { //$NON-NLS-1$
+      return null;
+    }
+    value = value.substring( 6 ).trim();
+    int dash = value.indexOf( '-' );
+    if ( dash < 0 ) {
+      return null;
+    }
+    try {
+      String first = value.substring( 0, dash ).trim();
+      String last = value.substring( dash + 1 ).trim();
+      long start;
+      long end;
+      if ( first.length() == 0 ) {
+        long suffix = Long.parseLong( last );
+        if ( suffix <= 0 ) {
+          return new long[0];
+        }
+        start = Math.max( length - suffix, 0 );
+        end = length - 1;
+      } else {
+        start = Long.parseLong( first );
+        end = ( last.length() == 0 ) ? length - 1 : Math.min( Long.parseLong( last ), length - 1 );
+        if ( end < start && start < length ) {
+          return null;
+        }
+      }
+      if ( start >= length || start < 0 ) {
+        return new long[0];
+      }
+      return new long[] { start, end };
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  static String formatDate( final long time ) {
+    SimpleDateFormat format = new SimpleDateFormat( HTTP_DATE_FORMATS[0], Locale.US );
+    format.setTimeZone( GMT );
+    return format.format( new Date( time ) );
+  }
+
+  /**
+   * @return the time of an HTTP date in any of the formats clients send, or -1
+   */
+  static long parseDate( final String value ) {
+    if ( value == null ) {
+      return -1;
+    }
+    for ( String pattern : HTTP_DATE_FORMATS ) {
+      SimpleDateFormat format = new SimpleDateFormat( pattern, Locale.US );
+      format.setTimeZone( GMT );
+      try {
+        return format.parse( value.trim() ).getTime();
+      } catch ( ParseException e ) {
+        // try the next format
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The status, headers and body chosen for one request.
+   */
+  public static class Reply {
+
+    private int status = HttpServletResponse.SC_OK;
+
+    private final Map<String, String> headers = new LinkedHashMap<String, String>();
+
+    private byte[] body;
+
+    private int offset;
+
+    private int length;
+
+    public int getStatus() {
+      return status;
+    }
+
+    public Map<String, String> getHeaders() {
+      return headers;
+    }
+
+    public boolean hasBody() {
+      return body != null;
+    }
+
+    public int getContentLength() {
+      return length;
+    }
+
+    public void writeBody( final OutputStream out ) throws IOException {
+      if ( body != null ) {
+        out.write( body, offset, length );
+      }
+    }
+
+    /**
+     * Sets the status and headers on <code>response</code>, leaving the body to the caller.
+     */
+    public void applyHeaders( final HttpServletResponse response ) {
+      response.setStatus( status );
+      for ( Map.Entry<String, String> header : headers.entrySet() ) {
+        response.setHeader( header.getKey(), header.getValue() );
+      }
+      if ( body != null ) {
+        response.setContentLength( length );
+      }
+    }
+
+    public void writeTo( final HttpServletResponse response ) throws IOException {
+      applyHeaders( response );
+      if ( body != null ) {
+        writeBody( response.getOutputStream() );
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Progress of a delete, move, restore or copy of files running in the background. Each failure is a {@link Setting}
+ * holding the id of the file and the reason it failed.
+ */
+@XmlRootElement
+public class FileBatchJobStatus {
+
+  private String id;
+
+  private String operation;
+
+  private int total;
+
+  private int processed;
+
+  private boolean done;
+
+  private List<Setting> failures = new ArrayList<Setting>();
+
+  public FileBatchJobStatus() {
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId( String id ) {
+    this.id = id;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public void setOperation( String operation ) {
+    this.operation = operation;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public void setTotal( int total ) {
+    this.total = total;
+  }
+
+  public int getProcessed() {
+    return processed;
+  }
+
+  public void setProcessed( int processed ) {
+    this.processed = processed;
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+
+  public void setDone( boolean done ) {
+    this.done = done;
+  }
+
+  public List<Setting> getFailures() {
+    return failures;
+  }
+
+  public void setFailures( List<Setting> failures ) {
+    this.failures = failures;
+  }
+
+}
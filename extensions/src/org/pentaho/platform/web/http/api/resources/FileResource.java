@@ -21,6 +21,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_XML;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 import static javax.ws.rs.core.MediaType.WILDCARD;
+import static javax.ws.rs.core.Response.Status.ACCEPTED;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
@@ -259,6 +260,72 @@ public class FileResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Starts deleting, moving, restoring or copying a list of files in the background, for selections too large to
+   * wait for. The progress is read from {@link #doGetBatchJob(String)}.
+   *
+   * <p><b>Example Request:</b><br />
+   *    PUT pentaho/api/repo/files/batch/move?destPathId=:home:admin:archive
+   * </p>
+   *
+   * @param operation  One of delete, deletepermanent, move, restore or copy.
+   * @param destPathId Colon separated path of the destination folder of a move or a copy.
+   * @param mode       How a copy treats existing files, as in {@link #doCopyFiles(String, Integer, String)}.
+   * @param params     Comma separated list of file ids.
+   *
+   * @return A jax-rs Response object whose body is the id of the job.
+   */
+  @PUT
+  @Path ( "/batch/{operation}" )
+  @Consumes ( { WILDCARD } )
+  @Produces ( { TEXT_PLAIN } )
+  @Facet ( name = "Unsupported" )
+  @StatusCodes ( {
+      @ResponseCode ( code = 202, condition = "Successfully started processing the files." ),
+      @ResponseCode ( code = 400, condition = "Unknown operation or missing destination." ),
+      @ResponseCode ( code = 404, condition = "Destination path not found." )
+  } )
+  public Response doStartBatchJob( @PathParam ( "operation" ) String operation,
+                                   @QueryParam ( "destPathId" ) String destPathId,
+                                   @QueryParam ( "mode" ) Integer mode, String params ) {
+    try {
+      return Response.status( ACCEPTED ).entity( fileService.doStartBatchJob( operation, destPathId, mode, params ) )
+          .build();
+    } catch ( FileNotFoundException e ) {
+      logger.error( Messages.getInstance().getErrorString( "FileResource.DESTINATION_PATH_UNKNOWN", destPathId ), e );
+      return buildStatusResponse( NOT_FOUND );
+    } catch ( IllegalArgumentException e ) {
+      return buildStatusResponse( BAD_REQUEST );
+    }
+  }
+
+  /**
+   * Gets the progress of a job started with {@link #doStartBatchJob(String, String, Integer, String)}.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/batch/6b1e6a1c-52a8-4d5b-9a4e-0c3f3b3e0f11
+   * </p>
+   *
+   * @param jobId Id of the job.
+   *
+   * @return The number of files processed so far and the files that failed.
+   */
+  @GET
+  @Path ( "/batch/{jobId}" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Successfully returned the progress of the job." ),
+      @ResponseCode ( code = 404, condition = "The current user has no such job." )
+  } )
+  public Response doGetBatchJob( @PathParam ( "jobId" ) String jobId ) {
+    FileBatchJobStatus status = fileService.doGetBatchJob( jobId );
+    if ( status == null ) {
+      return buildStatusResponse( NOT_FOUND );
+    }
+    return Response.ok( status ).build();
+  }
+
   /**
    * Creates a new file with the provided contents at a given path.
    *
@@ -26,8 +26,10 @@ import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.engine.IPluginResourceLoader;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.web.MimeHelper;
+import org.pentaho.platform.web.http.StaticContent;
 import org.pentaho.platform.web.http.messages.Messages;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -36,10 +38,10 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -47,6 +49,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.List;
+import java.util.Map;
 
 import static javax.ws.rs.core.MediaType.WILDCARD;
 
@@ -80,6 +83,9 @@ public class PluginResource {
   @Context
   protected HttpServletResponse httpServletResponse;
 
+  @Context
+  protected HttpServletRequest httpServletRequest;
+
   public PluginResource() {
     systemFolder = new File( PentahoSystem.getApplicationContext().getSolutionRootPath(), "system" ); //$NON-NLS-1$
   }
@@ -90,46 +96,48 @@ public class PluginResource {
   }
 
   protected InputStream getCacheBackedStream( String pluginId, String path, boolean useCache ) throws IOException {
-    InputStream inputStream = null;
+    if ( useCache ) {
+      return new ByteArrayInputStream( getStaticContent( pluginId, path ).getBytes() );
+    }
+    return getResourceStream( pluginId, path );
+  }
 
+  /**
+   * Reads a file of a plugin that caches its files. The content is kept together with its ETag and compressed
+   * variant, and the time it was read serves as its last modification time.
+   */
+  protected StaticContent getStaticContent( String pluginId, String path ) throws IOException {
     final String canonicalPath = pluginId + "/" + path; //$NON-NLS-1$
 
-    if ( useCache ) {
-      byte[] bytes = (byte[]) cache.getFromRegionCache( CACHE_FILE, canonicalPath );
-      if ( bytes != null ) {
-        return new ByteArrayInputStream( bytes );
-      }
+    Object cached = cache.getFromRegionCache( CACHE_FILE, canonicalPath );
+    if ( cached instanceof StaticContent ) {
+      return (StaticContent) cached;
     }
 
+    StaticContent content =
+        StaticContent.read( getResourceStream( pluginId, path ), MimeHelper.getMimeTypeFromFileName( path ),
+            System.currentTimeMillis() );
+    // store the content for next time
+    cache.putInRegionCache( CACHE_FILE, canonicalPath, content );
+    return content;
+  }
+
+  private InputStream getResourceStream( String pluginId, String path ) throws IOException {
     ClassLoader loader = pluginManager.getClassLoader( pluginId );
     IPluginResourceLoader resLoader = PentahoSystem.get( IPluginResourceLoader.class );
-    inputStream = resLoader.getResourceAsStream( loader, path );
+    InputStream inputStream = resLoader.getResourceAsStream( loader, path );
 
     if ( inputStream == null ) {
       throw new FileNotFoundException( Messages.getInstance()
           .getString( "PluginFileResource.COULD_NOT_READ_FILE", path ) ); //$NON-NLS-1$
     }
-
-    if ( useCache ) {
-      // store bytes for next time
-      ByteArrayOutputStream bos = null;
-      try {
-        bos = new ByteArrayOutputStream();
-        IOUtils.copy( inputStream, bos );
-        byte[] bytes = bos.toByteArray();
-        cache.putInRegionCache( CACHE_FILE, canonicalPath, bytes );
-        // new InputStream for caller since we just read it (can't call reset() as it's a generic InputStream)
-        inputStream = new ByteArrayInputStream( bytes );
-      } finally {
-        IOUtils.closeQuietly( bos );
-      }
-    }
-
     return inputStream;
   }
 
   /**
-   * Retrieve the file from the selected plugin. This file is a static file (i.e javascript, html, css etc)
+   * Retrieve the file from the selected plugin. This file is a static file (i.e javascript, html, css etc). When the
+   * plugin caches its files, the response carries an ETag, answers conditional requests with 304, is gzip compressed
+   * when the client accepts it and honors single byte ranges; otherwise the file is streamed as it is read.
    * 
    * @param pluginId (Plugin ID of the selected Plugin)
    * @param path (Path of the file being retrieved. This is a colon separated path to the plugin file. This
@@ -161,25 +169,6 @@ public class PluginResource {
       return Response.status( Status.FORBIDDEN ).build();
     }
 
-    InputStream isTmp;
-    try {
-      isTmp = getCacheBackedStream( pluginId, path, useCache );
-    } catch ( FileNotFoundException e ) {
-      return Response.status( Status.NOT_FOUND ).build();
-    }
-
-    final InputStream is = isTmp;
-
-    StreamingOutput streamingOutput = new StreamingOutput() {
-      public void write( OutputStream output ) throws IOException {
-        try {
-          IOUtils.copy( is, output );
-        } finally {
-          IOUtils.closeQuietly( is );
-        }
-      }
-    };
-
     MediaType mediaType = MediaType.WILDCARD_TYPE;
     String mimeType = MimeHelper.getMimeTypeFromFileName( path );
     if ( mimeType != null ) {
@@ -190,6 +179,47 @@ public class PluginResource {
       }
     }
 
-    return Response.ok( streamingOutput, mediaType ).build();
+    if ( !useCache || httpServletRequest == null ) {
+      final InputStream is;
+      try {
+        is = getCacheBackedStream( pluginId, path, useCache );
+      } catch ( FileNotFoundException e ) {
+        return Response.status( Status.NOT_FOUND ).build();
+      }
+
+      StreamingOutput streamingOutput = new StreamingOutput() {
+        public void write( OutputStream output ) throws IOException {
+          try {
+            IOUtils.copy( is, output );
+          } finally {
+            IOUtils.closeQuietly( is );
+          }
+        }
+      };
+      return Response.ok( streamingOutput, mediaType ).build();
+    }
+
+    StaticContent content;
+    try {
+      content = getStaticContent( pluginId, path );
+    } catch ( FileNotFoundException e ) {
+      return Response.status( Status.NOT_FOUND ).build();
+    }
+
+    final StaticContent.Reply reply = content.reply( httpServletRequest );
+    ResponseBuilder builder = Response.status( reply.getStatus() );
+    for ( Map.Entry<String, String> header : reply.getHeaders().entrySet() ) {
+      builder.header( header.getKey(), header.getValue() );
+    }
+    if ( reply.hasBody() ) {
+      StreamingOutput streamingOutput = new StreamingOutput() {
+        public void write( OutputStream output ) throws IOException {
+          reply.writeBody( output );
+        }
+      };
+      builder.entity( streamingOutput ).type( mediaType ).header( "Content-Length", //$NON-NLS-1$
+          String.valueOf( reply.getContentLength() ) );
+    }
+    return builder.build();
   }
 }
@@ -27,9 +27,7 @@ import org.codehaus.enunciate.Facet;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.PentahoAccessControlException;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
-import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
-import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
 import org.pentaho.platform.plugin.services.importer.IPlatformImportBundle;
 import org.pentaho.platform.plugin.services.importer.IPlatformImportMimeResolver;
 import org.pentaho.platform.plugin.services.importer.IPlatformImporter;
@@ -224,13 +222,8 @@ public class RepositoryImportResource {
 
       logJobStarted = true;
       importLogger.startJob( importLoggerStream, importDir, level );
+      // Imported Mondrian schemas refresh their own catalogs, see MondrianCatalogHelper.addCatalog().
       importer.importFile( bundle );
-
-      // Flush the Mondrian cache to show imported data-sources.
-      IMondrianCatalogService mondrianCatalogService =
-          PentahoSystem.get( IMondrianCatalogService.class, "IMondrianCatalogService", PentahoSessionHolder
-              .getSession() );
-      mondrianCatalogService.reInit( PentahoSessionHolder.getSession() );
     } catch ( PentahoAccessControlException e ) {
       return Response.serverError().entity( e.toString() ).build();
     } catch( UnifiedRepositoryAccessDeniedException e ) {
@@ -0,0 +1,110 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.ILockRegistry;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAdapter;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Lists the locked files of the repository and expires stale locks, for administrators. Locks are selected by owner,
+ * given with or without tenant, and by the time they were taken, in milliseconds since the epoch.
+ */
+@Path( "/repo/locks" )
+@Facet( name = "Unsupported" )
+public class RepositoryLockResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the locked files, with their lock owner, date and message.
+   *
+   * @param owner
+   *          only files locked by this user; all owners without it
+   * @param lockedBefore
+   *          only files locked before this time; any time without it
+   */
+  @GET
+  @Produces( { APPLICATION_XML, APPLICATION_JSON } )
+  public Response getLockedFiles( @QueryParam( "owner" ) String owner,
+      @QueryParam( "lockedBefore" ) Long lockedBefore ) {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    List<RepositoryFileDto> files = new ArrayList<RepositoryFileDto>();
+    for ( RepositoryFile file : getLockRegistry().getLockedFiles( owner, toDate( lockedBefore ) ) ) {
+      files.add( RepositoryFileAdapter.toFileDto( file, null, false ) );
+    }
+    final GenericEntity<List<RepositoryFileDto>> entity = new GenericEntity<List<RepositoryFileDto>>( files ) {
+    };
+    return Response.ok( entity ).build();
+  }
+
+  /**
+   * Unlocks the locked files, a file that cannot be unlocked is skipped.
+   *
+   * @param owner
+   *          only files locked by this user; all owners without it
+   * @param lockedBefore
+   *          only files locked before this time; any time without it
+   * @return the number of files unlocked
+   */
+  @POST
+  @Path( "/expire" )
+  @Produces( TEXT_PLAIN )
+  public Response expireLocks( @QueryParam( "owner" ) String owner, @QueryParam( "lockedBefore" ) Long lockedBefore ) {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    int expired = getLockRegistry().expireLocks( owner, toDate( lockedBefore ) );
+    return Response.ok( String.valueOf( expired ) ).type( MediaType.TEXT_PLAIN ).build();
+  }
+
+  private Date toDate( Long time ) {
+    return ( time != null ) ? new Date( time ) : null;
+  }
+
+  protected ILockRegistry getLockRegistry() {
+    return PentahoSystem.get( ILockRegistry.class );
+  }
+
+  protected boolean canAdminister() {
+    IAuthorizationPolicy policy = PentahoSystem.get( IAuthorizationPolicy.class );
+    return policy.isAllowed( AdministerSecurityAction.NAME );
+  }
+}
@@ -36,6 +36,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -359,9 +360,13 @@ public class SchedulerResource extends AbstractJaxRSResource {
    * Retrieve the all the scheduled job(s) visible to the current users.
    *
    * <p><b>Example Request:</b><br />
-   *    GET pentaho/api/scheduler/getJobs
+   *    GET pentaho/api/scheduler/getJobs?sortBy=nextRun&offset=0&limit=50
    * </p>
    *
+   * @param sortBy    (optional) Order of the jobs: jobName, userName, state, nextRun or lastRun.
+   * @param offset    (optional) Number of jobs to skip, for paging through the jobs.
+   * @param limit     (optional) Maximum number of jobs to return. All jobs are returned when not given.
+   *
    * @return A list of jobs that are visible to the current users.
    *
    * <p><b>Example Response:</b></p>
@@ -454,11 +459,16 @@ public class SchedulerResource extends AbstractJaxRSResource {
   @Produces ( { APPLICATION_JSON, APPLICATION_XML } )
   @StatusCodes ( {
       @ResponseCode ( code = 200, condition = "Jobs retrieved successfully." ),
+      @ResponseCode ( code = 400, condition = "Unknown sort order." ),
       @ResponseCode ( code = 500, condition = "Error while retrieving jobs." ),
   } )
-  public List<Job> getAllJobs() {
+  public List<Job> getAllJobs( @QueryParam ( "sortBy" ) String sortBy,
+                               @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                               @DefaultValue ( "-1" ) @QueryParam ( "limit" ) int limit ) {
     try {
-      return schedulerService.getJobs();
+      return schedulerService.getJobs( sortBy, offset, limit );
+    } catch ( IllegalArgumentException e ) {
+      throw new WebApplicationException( e, Status.BAD_REQUEST );
     } catch ( SchedulerException e ) {
       throw new RuntimeException( e );
     }
@@ -17,6 +17,7 @@
 
 package org.pentaho.platform.web.http.api.resources;
 
+import org.apache.commons.lang.StringUtils;
 import org.codehaus.enunciate.Facet;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.ICacheManager;
@@ -25,6 +26,7 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
+import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCacheWarmer;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
@@ -32,6 +34,7 @@ import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadActi
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -94,22 +97,34 @@ public class SystemRefreshResource extends AbstractJaxRSResource {
     return Response.ok().type( MediaType.TEXT_PLAIN ).build();
   }
 
+  /**
+   * Flushes the Mondrian schema caches and runs the warmup queries of the schemas in the background.
+   *
+   * @param catalog
+   *          the name of a catalog to flush alone; all catalogs are flushed without it
+   */
   @GET
   @Path( "/mondrianSchemaCache" )
   @Produces( { MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON } )
   @Facet ( name = "Unsupported" )
-  public Response flushMondrianSchemaCache() {
+  public Response flushMondrianSchemaCache( @QueryParam( "catalog" ) String catalog ) {
     if ( canAdminister() ) {
       IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
       if ( SecurityHelper.getInstance().isPentahoAdministrator( pentahoSession ) ) {
-        // Flush the catalog helper (legacy)
         IMondrianCatalogService mondrianCatalogService =
             PentahoSystem.get( IMondrianCatalogService.class, "IMondrianCatalogService", pentahoSession ); //$NON-NLS-1$
-        mondrianCatalogService.reInit( pentahoSession );
-        // Flush the IOlapService
         IOlapService olapService =
           PentahoSystem.get( IOlapService.class, "IOlapService", pentahoSession ); //$NON-NLS-1$
-        olapService.flushAll( pentahoSession );
+        if ( !StringUtils.isEmpty( catalog ) ) {
+          olapService.flush( pentahoSession, catalog );
+          mondrianCatalogService.flushCatalog( catalog, pentahoSession );
+        } else {
+          // Flush the catalog helper (legacy)
+          mondrianCatalogService.reInit( pentahoSession );
+          // Flush the IOlapService
+          olapService.flushAll( pentahoSession );
+          MondrianCacheWarmer.getInstance().warmUpAll( 0 );
+        }
       }
       return Response.ok().type( MediaType.TEXT_PLAIN ).build();
     } else {
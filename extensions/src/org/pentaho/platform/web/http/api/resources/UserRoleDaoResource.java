@@ -37,6 +37,7 @@ import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurity
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadAction;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -141,6 +142,66 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Returns one page of the users of a tenant, sorted by name
+   *
+   * @param tenantPath (tenant path where the users exist, null of empty string assumes default tenant)
+   * @param filter     (returns only the users whose name starts with it)
+   * @param offset     (the number of users to skip)
+   * @param limit      (the maximum number of users to return, -1 for all of them)
+   * @return list of users in the page
+   * @throws Exception
+   */
+  @GET
+  @Path ( "/pagedUsers" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  public UserListWrapper getUsers( @QueryParam ( "tenant" ) String tenantPath, @QueryParam ( "filter" ) String filter,
+                                   @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                                   @DefaultValue ( "-1" ) @QueryParam ( "limit" ) int limit ) throws Exception {
+    if ( canAdminister() ) {
+      try {
+        IUserRoleDao roleDao =
+            PentahoSystem.get( IUserRoleDao.class, "userRoleDaoProxy", PentahoSessionHolder.getSession() );
+        return new UserListWrapper( roleDao.getUsers( getTenant( tenantPath ), filter, offset, limit ) );
+      } catch ( Throwable t ) {
+        throw new WebApplicationException( t );
+      }
+    } else {
+      throw new WebApplicationException( new Throwable() );
+    }
+  }
+
+  /**
+   * Returns one page of the roles of a tenant, sorted by name
+   *
+   * @param tenantPath (tenant path where the roles exist, null of empty string assumes default tenant)
+   * @param filter     (returns only the roles whose name starts with it)
+   * @param offset     (the number of roles to skip)
+   * @param limit      (the maximum number of roles to return, -1 for all of them)
+   * @return list of roles in the page
+   * @throws Exception
+   */
+  @GET
+  @Path ( "/pagedRoles" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  public RoleListWrapper getRoles( @QueryParam ( "tenant" ) String tenantPath, @QueryParam ( "filter" ) String filter,
+                                   @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                                   @DefaultValue ( "-1" ) @QueryParam ( "limit" ) int limit ) throws Exception {
+    if ( canAdminister() ) {
+      try {
+        IUserRoleDao roleDao =
+            PentahoSystem.get( IUserRoleDao.class, "userRoleDaoProxy", PentahoSessionHolder.getSession() );
+        return new RoleListWrapper( roleDao.getRoles( getTenant( tenantPath ), filter, offset, limit ) );
+      } catch ( Throwable t ) {
+        throw new WebApplicationException( t );
+      }
+    } else {
+      throw new WebApplicationException( new Throwable() );
+    }
+  }
+
   /**
    * Retrieves a selected user's roles
    *
@@ -187,6 +248,29 @@ public class UserRoleDaoResource extends AbstractJaxRSResource {
     return new UserListWrapper( roleDao.getRoleMembers( getTenant( tenantPath ), roleName ) );
   }
 
+  /**
+   * Retrieves one page of the users of the selected role, sorted by name
+   *
+   * @param tenantPath (tenant path where the user exist, null of empty string assumes default tenant)
+   * @param roleName   (role name)
+   * @param offset     (the number of users to skip)
+   * @param limit      (the maximum number of users to return, -1 for all of them)
+   * @return list of users in the page
+   * @throws Exception
+   */
+  @GET
+  @Path ( "/pagedRoleMembers" )
+  @Produces ( { APPLICATION_XML, APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  public UserListWrapper getRoleMembers( @QueryParam ( "tenant" ) String tenantPath,
+                                         @QueryParam ( "roleName" ) String roleName,
+                                         @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                                         @DefaultValue ( "-1" ) @QueryParam ( "limit" ) int limit ) throws Exception {
+    IUserRoleDao roleDao =
+        PentahoSystem.get( IUserRoleDao.class, "userRoleDaoProxy", PentahoSessionHolder.getSession() );
+    return new UserListWrapper( roleDao.getRoleMembers( getTenant( tenantPath ), roleName, offset, limit ) );
+  }
+
   /**
    * Associates selected role(s) to a user
    *
@@ -0,0 +1,191 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http.api.resources.services;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.web.http.api.resources.FileBatchJobStatus;
+import org.pentaho.platform.web.http.api.resources.Setting;
+import org.pentaho.platform.web.http.messages.Messages;
+
+/**
+ * A delete, move, restore or copy of files run in the background for the user who asked for it. The files are handed
+ * to {@link FileService#doBatch} in chunks, each chunk in one repository transaction, so the progress can be polled
+ * while a large selection is processed. Finished jobs are kept for a while so their outcome can be read.
+ */
+class FileBatchJob implements Runnable {
+
+  static final int CHUNK_SIZE = 100;
+
+  private static final long KEEP_FINISHED_MILLIS = 10 * 60 * 1000L;
+
+  private static final int THREADS = 2;
+
+  private static final Log logger = LogFactory.getLog( FileBatchJob.class );
+
+  private static final ConcurrentMap<String, FileBatchJob> jobs = new ConcurrentHashMap<String, FileBatchJob>();
+
+  private static ThreadPoolExecutor executor;
+
+  private final String id = UUID.randomUUID().toString();
+
+  private final FileService fileService;
+
+  private final String owner;
+
+  private final String operation;
+
+  private final String destination;
+
+  private final Integer mode;
+
+  private final List<Serializable> fileIds;
+
+  private final AtomicInteger processed = new AtomicInteger();
+
+  private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+  private volatile long finished;
+
+  FileBatchJob( final FileService fileService, final String owner, final String operation,
+      final String destination, final Integer mode, final List<Serializable> fileIds ) {
+    this.fileService = fileService;
+    this.owner = owner;
+    this.operation = operation;
+    this.destination = destination;
+    this.mode = mode;
+    this.fileIds = fileIds;
+  }
+
+  /**
+   * Queues the job and returns its id.
+   */
+  static String start( final FileBatchJob job ) {
+    purgeFinished();
+    jobs.put( job.id, job );
+    getExecutor().execute( job );
+    return job.id;
+  }
+
+  /**
+   * @return the job with the given id if it was started by the given user, otherwise {@code null}
+   */
+  static FileBatchJob get( final String id, final String owner ) {
+    purgeFinished();
+    FileBatchJob job = id != null ? jobs.get( id ) : null;
+    return job != null && job.owner.equals( owner ) ? job : null;
+  }
+
+  private static void purgeFinished() {
+    long oldest = System.currentTimeMillis() - KEEP_FINISHED_MILLIS;
+    for ( Iterator<FileBatchJob> it = jobs.values().iterator(); it.hasNext(); ) {
+      long finished = it.next().finished;
+      if ( finished != 0 && finished < oldest ) {
+        it.remove();
+      }
+    }
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    if ( executor == null ) {
+      final AtomicInteger count = new AtomicInteger();
+      executor =
+        new ThreadPoolExecutor( THREADS, THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+              final Thread thread = new Thread( r, "pentaho-file-batch-" + count.incrementAndGet() ); //$NON-NLS-1$
+              thread.setDaemon( true );
+              return thread;
+            }
+          } );
+      executor.allowCoreThreadTimeOut( true );
+    }
+    return executor;
+  }
+
+  public void run() {
+    try {
+      SecurityHelper.getInstance().runAsUser( owner, new Callable<Void>() {
+        public Void call() throws Exception {
+          process();
+          return null;
+        }
+      } );
+    } catch ( Exception e ) {
+      logger.error( Messages.getInstance().getString( "FileResource.BATCH_JOB_FAILED", operation, id ), e ); //$NON-NLS-1$
+    } finally {
+      finished = System.currentTimeMillis();
+    }
+  }
+
+  void process() {
+    for ( int from = 0; from < fileIds.size(); from += CHUNK_SIZE ) {
+      List<Serializable> chunk =
+          new ArrayList<Serializable>( fileIds.subList( from, Math.min( from + CHUNK_SIZE, fileIds.size() ) ) );
+      Map<Serializable, Exception> chunkFailures;
+      try {
+        chunkFailures = fileService.doBatch( operation, destination, mode, chunk );
+      } catch ( Exception e ) {
+        // the chunk as a whole did not go through, e.g. its transaction could not be committed
+        chunkFailures = new LinkedHashMap<Serializable, Exception>();
+        for ( Serializable fileId : chunk ) {
+          chunkFailures.put( fileId, e );
+        }
+      }
+      synchronized ( failures ) {
+        for ( Map.Entry<Serializable, Exception> failure : chunkFailures.entrySet() ) {
+          failures.put( String.valueOf( failure.getKey() ), ExceptionUtils.getMessage( failure.getValue() ) );
+        }
+      }
+      processed.addAndGet( chunk.size() );
+    }
+  }
+
+  FileBatchJobStatus getStatus() {
+    FileBatchJobStatus status = new FileBatchJobStatus();
+    status.setId( id );
+    status.setOperation( operation );
+    status.setTotal( fileIds.size() );
+    status.setProcessed( processed.get() );
+    status.setDone( finished != 0 );
+    synchronized ( failures ) {
+      for ( Map.Entry<String, String> failure : failures.entrySet() ) {
+        status.getFailures().add( new Setting( failure.getKey(), failure.getValue() ) );
+      }
+    }
+    return status;
+  }
+}
@@ -14,11 +14,13 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +72,7 @@ import org.pentaho.platform.repository2.unified.webservices.StringKeyStringValue
 import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
 import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryCreateAction;
+import org.pentaho.platform.web.http.api.resources.FileBatchJobStatus;
 import org.pentaho.platform.web.http.api.resources.Setting;
 import org.pentaho.platform.web.http.api.resources.StringListWrapper;
 import org.pentaho.platform.security.policy.rolebased.actions.RepositoryReadAction;
@@ -85,6 +88,16 @@ public class FileService {
 
   private static final Integer MODE_NO_OVERWRITE = 3;
 
+  public static final String BATCH_DELETE = "delete"; //$NON-NLS-1$
+
+  public static final String BATCH_DELETE_PERMANENT = "deletepermanent"; //$NON-NLS-1$
+
+  public static final String BATCH_MOVE = "move"; //$NON-NLS-1$
+
+  public static final String BATCH_RESTORE = "restore"; //$NON-NLS-1$
+
+  public static final String BATCH_COPY = "copy"; //$NON-NLS-1$
+
   private static final Log logger = LogFactory.getLog( FileService.class );
 
   protected IAuthorizationPolicy policy;
@@ -106,14 +119,7 @@ public class FileService {
    * @throws Exception containing the string, "SystemResource.GENERAL_ERROR"
    */
   public void doDeleteFiles( String params ) throws Exception {
-    String[] sourceFileIds = params.split( "[,]" );
-    try {
-      for ( int i = 0; i < sourceFileIds.length; i++ ) {
-        getRepoWs().deleteFile( sourceFileIds[i], null );
-      }
-    } catch ( Exception e ) {
-      throw e;
-    }
+    throwFirstFailure( doBatch( BATCH_DELETE, null, null, toFileIds( params ) ) );
   }
 
   /**
@@ -125,11 +131,8 @@ public class FileService {
    * @return Exception containing the string, "SystemResource.GENERAL_ERROR"
    */
   public void doDeleteFilesPermanent( String params ) throws Exception {
-    String[] sourceFileIds = params.split( "[,]" ); //$NON-NLS-1$
     try {
-      for ( int i = 0; i < sourceFileIds.length; i++ ) {
-        getRepoWs().deleteFileWithPermanentFlag( sourceFileIds[ i ], true, null );
-      }
+      throwFirstFailure( doBatch( BATCH_DELETE_PERMANENT, null, null, toFileIds( params ) ) );
     } catch ( Exception e ) {
       logger.error( Messages.getInstance().getString( "SystemResource.GENERAL_ERROR" ), e );
       throw e;
@@ -238,12 +241,8 @@ public class FileService {
     if ( repositoryFileDto == null ) {
       throw new FileNotFoundException( idToPath );
     }
-    String[] sourceFileIds = params.split( "[,]" );
-    int i = 0;
     try {
-      for ( ; i < sourceFileIds.length; i++ ) {
-        getRepoWs().moveFile( sourceFileIds[ i ], repositoryFileDto.getPath(), null );
-      }
+      throwFirstFailure( doBatch( BATCH_MOVE, repositoryFileDto.getPath(), null, toFileIds( params ) ) );
     } catch ( IllegalArgumentException e ) {
       throw e;
     } catch ( Exception e ) {
@@ -261,17 +260,101 @@ public class FileService {
    * @throws Exception containing the string, "SystemResource.GENERAL_ERROR"
    */
   public void doRestoreFiles( String params ) throws InternalError {
-    String[] sourceFileIds = params.split( "[,]" );
     try {
-      for ( int i = 0; i < sourceFileIds.length; i++ ) {
-        getRepoWs().undeleteFile( sourceFileIds[i], null );
-      }
+      throwFirstFailure( doBatch( BATCH_RESTORE, null, null, toFileIds( params ) ) );
     } catch ( Exception e ) {
       logger.error( Messages.getInstance().getString( "SystemResource.FILE_RESTORE_FAILED" ), e );
       throw new InternalError();
     }
   }
 
+  /**
+   * Starts deleting, moving, restoring or copying a list of files in the background
+   * <p/>
+   * The files are processed in chunks, each chunk in one repository transaction. A file that fails does not stop the
+   * others; the progress and the failures are read with {@link #doGetBatchJob(String)}.
+   *
+   * @param operation  one of {@link #BATCH_DELETE}, {@link #BATCH_DELETE_PERMANENT}, {@link #BATCH_MOVE},
+   *                   {@link #BATCH_RESTORE} or {@link #BATCH_COPY}
+   * @param destPathId colon separated path of the destination folder, for a move or a copy
+   * @param mode       how a copy treats existing files, as in {@link #doCopyFiles(String, Integer, String)}
+   * @param params     comma separated list of file ids
+   * @return the id of the job
+   * @throws FileNotFoundException if the destination folder does not exist
+   */
+  public String doStartBatchJob( String operation, String destPathId, Integer mode, String params )
+    throws FileNotFoundException {
+    String destination = null;
+    if ( BATCH_MOVE.equals( operation ) || BATCH_COPY.equals( operation ) ) {
+      if ( destPathId == null ) {
+        throw new IllegalArgumentException( operation );
+      }
+      RepositoryFileDto repositoryFileDto = getRepoWs().getFile( idToPath( destPathId ) );
+      if ( repositoryFileDto == null ) {
+        throw new FileNotFoundException( idToPath( destPathId ) );
+      }
+      // a move takes the path of the folder, a copy its path id
+      destination = BATCH_MOVE.equals( operation ) ? repositoryFileDto.getPath() : destPathId;
+    } else if ( !BATCH_DELETE.equals( operation ) && !BATCH_DELETE_PERMANENT.equals( operation )
+        && !BATCH_RESTORE.equals( operation ) ) {
+      throw new IllegalArgumentException( operation );
+    }
+    return FileBatchJob.start(
+        new FileBatchJob( this, getSession().getName(), operation, destination, mode, toFileIds( params ) ) );
+  }
+
+  /**
+   * Gets the progress of a job started with {@link #doStartBatchJob(String, String, Integer, String)}
+   *
+   * @param jobId id of the job
+   * @return the progress, or <code>null</code> if the current user has no such job
+   */
+  public FileBatchJobStatus doGetBatchJob( String jobId ) {
+    FileBatchJob job = FileBatchJob.get( jobId, getSession().getName() );
+    return job != null ? job.getStatus() : null;
+  }
+
+  /**
+   * Runs an operation on a list of files as a single unit of work
+   *
+   * @param destination path of the destination folder for a move, path id of it for a copy
+   * @return the ids of the files that failed, mapped to the reason
+   */
+  protected Map<Serializable, Exception> doBatch( String operation, String destination, Integer mode,
+                                                  List<Serializable> fileIds ) {
+    if ( BATCH_DELETE.equals( operation ) ) {
+      return getRepository().deleteFilesInBatch( fileIds, false, null );
+    } else if ( BATCH_DELETE_PERMANENT.equals( operation ) ) {
+      return getRepository().deleteFilesInBatch( fileIds, true, null );
+    } else if ( BATCH_MOVE.equals( operation ) ) {
+      return getRepository().moveFilesInBatch( fileIds, destination, null );
+    } else if ( BATCH_RESTORE.equals( operation ) ) {
+      return getRepository().undeleteFilesInBatch( fileIds, null );
+    } else if ( BATCH_COPY.equals( operation ) ) {
+      Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+      for ( Serializable fileId : fileIds ) {
+        try {
+          doCopyFiles( destination, mode, fileId.toString() );
+        } catch ( Exception e ) {
+          failures.put( fileId, e );
+        }
+      }
+      return failures;
+    }
+    throw new IllegalArgumentException( operation );
+  }
+
+  private static List<Serializable> toFileIds( String params ) {
+    String[] sourceFileIds = params.split( "[,]" ); //$NON-NLS-1$
+    return new ArrayList<Serializable>( Arrays.asList( sourceFileIds ) );
+  }
+
+  private static void throwFirstFailure( Map<Serializable, Exception> failures ) throws Exception {
+    if ( !failures.isEmpty() ) {
+      throw failures.values().iterator().next();
+    }
+  }
+
   public class DownloadFileWrapper {
     private StreamingOutput outputStream;
     private String attachment;
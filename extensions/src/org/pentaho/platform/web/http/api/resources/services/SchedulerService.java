@@ -21,6 +21,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -482,12 +484,40 @@ public class SchedulerService {
   }
 
   public List<Job> getJobs() throws SchedulerException {
+    return getJobs( null, 0, -1 );
+  }
+
+  /**
+   * Lists the jobs visible to the current user: every job but the blockout jobs for administrators, otherwise the
+   * user's own jobs.
+   * 
+   * @param sortBy
+   *          jobName, userName, state, nextRun or lastRun; null to keep the scheduler's order
+   * @param offset
+   *          the number of jobs to skip
+   * @param limit
+   *          the maximum number of jobs to return, or a negative number for all of them
+   */
+  public List<Job> getJobs( String sortBy, int offset, int limit ) throws SchedulerException {
     IPentahoSession session = getSession();
     final String principalName = session.getName(); // this authentication wasn't matching with the job user name,
     // changed to get name via the current session
     final Boolean canAdminister = canAdminister( session );
 
-    List<Job> jobs = getScheduler().getJobs( new IJobFilter() {
+    Comparator<Job> order = getJobComparator( sortBy );
+    IScheduler scheduler = getScheduler();
+    if ( scheduler instanceof QuartzScheduler ) {
+      // the quartz scheduler keeps its jobs indexed by owner, so only the visible jobs are looked at
+      IJobFilter filter = canAdminister ? new IJobFilter() {
+        public boolean accept( Job job ) {
+          return !IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
+        }
+      } : null;
+      return ( (QuartzScheduler) scheduler ).getJobs( canAdminister ? null : principalName, filter, order, offset,
+          limit );
+    }
+
+    List<Job> jobs = scheduler.getJobs( new IJobFilter() {
       public boolean accept( Job job ) {
         if ( canAdminister ) {
           return !IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
@@ -495,7 +525,53 @@ public class SchedulerService {
         return principalName.equals( job.getUserName() );
       }
     } );
-    return jobs;
+    if ( order != null ) {
+      Collections.sort( jobs, order );
+    }
+    if ( offset <= 0 && limit < 0 ) {
+      return jobs;
+    }
+    int from = Math.min( Math.max( offset, 0 ), jobs.size() );
+    int to = limit < 0 ? jobs.size() : (int) Math.min( (long) from + limit, jobs.size() );
+    return new ArrayList<Job>( jobs.subList( from, to ) );
+  }
+
+  protected Comparator<Job> getJobComparator( final String sortBy ) {
+    if ( StringUtils.isEmpty( sortBy ) ) {
+      return null;
+    }
+    if ( !"jobName".equals( sortBy ) && !"userName".equals( sortBy ) && !"state".equals( sortBy ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        && !"nextRun".equals( sortBy ) && !"lastRun".equals( sortBy ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      throw new IllegalArgumentException( sortBy );
+    }
+    return new Comparator<Job>() {
+      public int compare( Job job1, Job job2 ) {
+        int result = compareValues( getSortValue( job1 ), getSortValue( job2 ) );
+        return result != 0 ? result : compareValues( job1.getJobId(), job2.getJobId() );
+      }
+
+      private Comparable getSortValue( Job job ) {
+        if ( "jobName".equals( sortBy ) ) { //$NON-NLS-1$
+          return job.getJobName();
+        } else if ( "userName".equals( sortBy ) ) { //$NON-NLS-1$
+          return job.getUserName();
+        } else if ( "state".equals( sortBy ) ) { //$NON-NLS-1$
+          return job.getState() == null ? null : job.getState().name();
+        } else if ( "nextRun".equals( sortBy ) ) { //$NON-NLS-1$
+          return job.getNextRun();
+        }
+        return job.getLastRun();
+      }
+
+      // jobs without a value sort last
+      @SuppressWarnings( "unchecked" )
+      private int compareValues( Comparable value1, Comparable value2 ) {
+        if ( value1 == null ) {
+          return value2 == null ? 0 : 1;
+        }
+        return value2 == null ? -1 : value1.compareTo( value2 );
+      }
+    };
   }
 
   protected Boolean canAdminister( IPentahoSession session ) {
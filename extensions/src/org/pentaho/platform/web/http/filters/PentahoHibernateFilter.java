@@ -52,13 +52,18 @@ public class PentahoHibernateFilter implements Filter {
    */
   public void doFilter( final ServletRequest request, final ServletResponse response, final FilterChain chain )
     throws IOException, ServletException {
+    // Only the outermost filter invocation of a request, forwards and includes run within its scope
+    if ( !HibernateUtil.beginSessionScope() ) {
+      chain.doFilter( request, response );
+      return;
+    }
+    boolean completed = false;
     try {
       chain.doFilter( request, response );
-      // Commit any pending database transaction.
-      HibernateUtil.commitTransaction();
+      completed = true;
     } finally {
-      // No matter what happens, close the Session.
-      HibernateUtil.closeSession();
+      // No matter what happens, close the Session. Commit any pending database transaction if the request completed.
+      HibernateUtil.endSessionScope( completed );
     }
   }
 
@@ -39,6 +39,7 @@ import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.web.MimeHelper;
 import org.pentaho.platform.util.web.SimpleUrlFactory;
 import org.pentaho.platform.web.http.HttpOutputHandler;
+import org.pentaho.platform.web.http.StaticContent;
 import org.pentaho.platform.web.http.request.HttpRequestParameterProvider;
 import org.pentaho.platform.web.http.session.HttpSessionParameterProvider;
 import org.pentaho.platform.web.servlet.messages.Messages;
@@ -46,7 +47,6 @@ import org.pentaho.platform.web.servlet.messages.Messages;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -184,37 +184,41 @@ public class GenericServlet extends ServletBase {
         if ( mimeType != null ) {
           response.setContentType( mimeType );
         }
-        OutputStream out = response.getOutputStream();
 
         // do we have this resource cached?
-        ByteArrayOutputStream byteStream = null;
+        StaticContent content = null;
 
         if ( cacheOn ) {
-          byteStream = (ByteArrayOutputStream) cache.getFromRegionCache( CACHE_FILE, pathInfo );
+          Object cached = cache.getFromRegionCache( CACHE_FILE, pathInfo );
+          if ( cached instanceof StaticContent ) {
+            content = (StaticContent) cached;
+          }
         }
 
-        if ( byteStream != null ) {
-          IOUtils.write( byteStream.toByteArray(), out );
-          return;
-        }
-        InputStream resourceStream = pluginManager.getStaticResource( pathInfo );
-        if ( resourceStream != null ) {
-          try {
-            byteStream = new ByteArrayOutputStream();
-            IOUtils.copy( resourceStream, byteStream );
-
-            // if cache is enabled, drop file in cache
-            if ( cacheOn ) {
-              cache.putInRegionCache( CACHE_FILE, pathInfo, byteStream );
+        if ( content == null ) {
+          InputStream resourceStream = pluginManager.getStaticResource( pathInfo );
+          if ( resourceStream != null ) {
+            if ( !cacheOn ) {
+              // write it out as it is read
+              try {
+                IOUtils.copy( resourceStream, response.getOutputStream() );
+              } finally {
+                IOUtils.closeQuietly( resourceStream );
+              }
+              return;
             }
 
-            // write it out
-            IOUtils.write( byteStream.toByteArray(), out );
-            return;
-          } finally {
-            IOUtils.closeQuietly( resourceStream );
+            // a cached file is taken as modified when it was read
+            content = StaticContent.read( resourceStream, mimeType, System.currentTimeMillis() );
+            cache.putInRegionCache( CACHE_FILE, pathInfo, content );
           }
         }
+
+        if ( content != null ) {
+          // answers with 304, a byte range or the gzip variant when the request allows it
+          content.reply( request ).writeTo( response );
+          return;
+        }
         logger.error( Messages.getInstance().getErrorString(
           "GenericServlet.ERROR_0004_RESOURCE_NOT_FOUND", pluginId, pathInfo ) ); //$NON-NLS-1$
         response.sendError( 404 );
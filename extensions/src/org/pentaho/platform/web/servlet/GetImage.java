@@ -20,6 +20,7 @@ package org.pentaho.platform.web.servlet;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.TempFileManager;
 import org.pentaho.platform.util.StringUtil;
 import org.pentaho.platform.web.servlet.messages.Messages;
 
@@ -112,29 +113,37 @@ public class GetImage extends ServletBase {
         return;
       }
 
-      // Open the file and output streams
-      InputStream in = new FileInputStream( tmpFile );
-
-      String mimeType = getServletContext().getMimeType( image );
-      if ( ( null == mimeType ) || ( mimeType.length() <= 0 ) ) {
-        // Hard coded to PNG because BIRT does not give us a mime type at
-        // all...
-        response.setContentType( "image/png" ); //$NON-NLS-1$
-      } else {
-        response.setContentType( mimeType );
-      }
-      OutputStream out = response.getOutputStream();
+      // a temp file is not reclaimed while it is sent
+      final boolean retained = TempFileManager.getInstance().retain( tmpFile );
       try {
-        byte[] buffer = new byte[2048];
-        int n, length = 0;
-        while ( ( n = in.read( buffer ) ) > 0 ) {
-          out.write( buffer, 0, n );
-          length += n;
+        // Open the file and output streams
+        InputStream in = new FileInputStream( tmpFile );
+
+        String mimeType = getServletContext().getMimeType( image );
+        if ( ( null == mimeType ) || ( mimeType.length() <= 0 ) ) {
+          // Hard coded to PNG because BIRT does not give us a mime type at
+          // all...
+          response.setContentType( "image/png" ); //$NON-NLS-1$
+        } else {
+          response.setContentType( mimeType );
+        }
+        OutputStream out = response.getOutputStream();
+        try {
+          byte[] buffer = new byte[2048];
+          int n, length = 0;
+          while ( ( n = in.read( buffer ) ) > 0 ) {
+            out.write( buffer, 0, n );
+            length += n;
+          }
+          response.setContentLength( length );
+        } finally {
+          in.close();
+          out.close();
         }
-        response.setContentLength( length );
       } finally {
-        in.close();
-        out.close();
+        if ( retained ) {
+          TempFileManager.getInstance().release( tmpFile );
+        }
       }
     } finally {
       PentahoSystem.systemExitPoint();
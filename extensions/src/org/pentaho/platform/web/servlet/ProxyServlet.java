@@ -21,8 +21,13 @@ import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
@@ -37,8 +42,14 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 
@@ -67,9 +78,17 @@ import java.util.Map;
  * 
  * For this to be useful, both Pentaho servers should be using the same database repository.
  * <p>
- * The recieving server should have the ProxyTrustingFilter enabled to handle authicentation.
+ * The recieving server should have the ProxyTrustingFilter enabled to handle authicentation. The trusted user header
+ * of a client is never passed on: <b>_TRUST_USER_</b>, and the <b>HeaderName</b> of that filter when it is set as the
+ * optional init-param <b>TrustUserHeader</b>, in any letter case.
  * <p>
- * This Servlet only works with GET requests. All requests in the Pentaho BI Platform are currently gets.
+ * GET requests are passed on as GET and POST requests as POST. Request and response headers are passed on, except
+ * for the hop-by-hop ones and the cookies and credentials of this server; a compressed response is passed on
+ * compressed.
+ * <p>
+ * The connections to the remote server are pooled and kept alive between requests. The pool and its timeouts can be
+ * tuned with the optional init-params <b>MaxConnectionsPerHost</b> (default 20), <b>MaxTotalConnections</b> (default
+ * 100), <b>ConnectTimeout</b> and <b>ReadTimeout</b> (milliseconds, default 10000 and 60000).
  * 
  * @see com.pentaho.test.servlet.ProxyTrustingFilter
  * @author Doug Moran
@@ -93,6 +112,25 @@ public class ProxyServlet extends ServletBase {
 
   String errorURL = null; // The URL to redirect to if the user is invalid
 
+  static final String TRUST_USER_PARAM = "_TRUST_USER_"; //$NON-NLS-1$
+
+  // the header the trusting server reads the user from; a client must never be able to set it
+  String trustUserHeader = TRUST_USER_PARAM;
+
+  private static final int BUFFER_SIZE = 32 * 1024;
+
+  private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<String>( Arrays.asList(
+      ( "connection,keep-alive,proxy-authenticate,proxy-authorization,proxy-connection," //$NON-NLS-1$
+          + "te,trailer,trailers,transfer-encoding,upgrade" ).split( "," ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+  // the body is sent re-encoded and the user is trusted through _TRUST_USER_, not through this server's session
+  private static final Set<String> NOT_PASSED_ON_REQUEST_HEADERS = new HashSet<String>( Arrays.asList(
+      "host,content-length,content-type,cookie,authorization".split( "," ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+  private MultiThreadedHttpConnectionManager connectionManager;
+
+  private HttpClient client;
+
   /**
    * Base Constructor
    */
@@ -118,9 +156,36 @@ public class ProxyServlet extends ServletBase {
     }
 
     errorURL = servletConfig.getInitParameter( "ErrorURL" );
+
+    String headerName = servletConfig.getInitParameter( "TrustUserHeader" ); //$NON-NLS-1$
+    if ( ( headerName != null ) && ( headerName.trim().length() > 0 ) ) {
+      trustUserHeader = headerName.trim();
+    }
+
+    connectionManager = new MultiThreadedHttpConnectionManager();
+    HttpConnectionManagerParams params = connectionManager.getParams();
+    params.setDefaultMaxConnectionsPerHost( getIntParameter( servletConfig, "MaxConnectionsPerHost", 20 ) ); //$NON-NLS-1$
+    params.setMaxTotalConnections( getIntParameter( servletConfig, "MaxTotalConnections", 100 ) ); //$NON-NLS-1$
+    params.setConnectionTimeout( getIntParameter( servletConfig, "ConnectTimeout", 10000 ) ); //$NON-NLS-1$
+    params.setSoTimeout( getIntParameter( servletConfig, "ReadTimeout", 60000 ) ); //$NON-NLS-1$
+    client = new HttpClient( connectionManager );
+    // waiting for a pooled connection is bounded like connecting is
+    client.getParams().setConnectionManagerTimeout( params.getConnectionTimeout() );
     super.init( servletConfig );
   }
 
+  private static int getIntParameter( final ServletConfig servletConfig, final String name, final int defaultValue ) {
+    String value = servletConfig.getInitParameter( name );
+    if ( value != null ) {
+      try {
+        return Integer.parseInt( value.trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( name + ": " + value, e ); //$NON-NLS-1$
+      }
+    }
+    return defaultValue;
+  }
+
   protected void doProxy( final HttpServletRequest request, final HttpServletResponse response ) throws IOException {
     if ( proxyURL == null ) { // Got nothing from web.xml
       return;
@@ -131,26 +196,23 @@ public class ProxyServlet extends ServletBase {
     PentahoSystem.systemEntryPoint();
     try {
       String theUrl = proxyURL + servletPath;
-      PostMethod method = new PostMethod( theUrl );
 
       // Copy the parameters from the request to the proxy
-      // System .out.print( ">>>>>>>> PARAMS: " ); //$NON-NLS-1$
+      List<NameValuePair> params = new ArrayList<NameValuePair>();
       Map paramMap = request.getParameterMap();
       Map.Entry entry;
       String[] array;
       for ( Iterator it = paramMap.entrySet().iterator(); it.hasNext(); ) {
         entry = (Map.Entry) it.next();
+        // Just in case someone is trying to spoof the proxy
+        if ( TRUST_USER_PARAM.equals( entry.getKey() ) ) {
+          continue;
+        }
         array = (String[]) entry.getValue();
         for ( String element : array ) {
-          method.addParameter( (String) entry.getKey(), element );
-          // System.out.print( (String)entry.getKey() + "=" + array[i]
-          // + "&" ); //$NON-NLS-1$ //$NON-NLS-2$
+          params.add( new NameValuePair( (String) entry.getKey(), element ) );
         }
       }
-      // System.out.println( "" ); //$NON-NLS-1$
-
-      // Just in case someone is trying to spoof the proxy
-      method.removeParameter( "_TRUST_USER_" ); //$NON-NLS-1$
 
       // Get the user from the session
       IPentahoSession userSession = getPentahoSession( request );
@@ -158,47 +220,57 @@ public class ProxyServlet extends ServletBase {
 
       // Add the trusted user from the session
       if ( ( name != null ) && ( name.length() > 0 ) ) {
-        method.addParameter( "_TRUST_USER_", name ); //$NON-NLS-1$
-        // System.out.println( ">>>>>>>> USR: " + name ); //$NON-NLS-1$
+        params.add( new NameValuePair( TRUST_USER_PARAM, name ) );
       } else if ( ( errorURL != null ) && ( errorURL.trim().length() > 0 ) ) {
         response.sendRedirect( errorURL );
-        // System.out.println( ">>>>>>>> REDIR: " + errorURL );
-        // //$NON-NLS-1$
         return;
       }
 
-      // System.out.println( ">>>>>>>> PROXY: " + theUrl ); //$NON-NLS-1$
-      debug( Messages.getInstance().getString( "ProxyServlet.DEBUG_0001_OUTPUT_URL", theUrl ) ); //$NON-NLS-1$
+      HttpMethodBase method;
+      if ( "GET".equals( request.getMethod() ) ) { //$NON-NLS-1$
+        method = new GetMethod( theUrl );
+        method.setQueryString( params.toArray( new NameValuePair[params.size()] ) );
+        // the browser follows redirects itself
+        method.setFollowRedirects( false );
+      } else {
+        PostMethod post = new PostMethod( theUrl );
+        post.addParameters( params.toArray( new NameValuePair[params.size()] ) );
+        method = post;
+      }
+      copyRequestHeaders( request, method );
 
-      // Now do the request
-      HttpClient client = new HttpClient();
+      debug( Messages.getInstance().getString( "ProxyServlet.DEBUG_0001_OUTPUT_URL", theUrl ) ); //$NON-NLS-1$
 
       try {
         // Execute the method.
         int statusCode = client.executeMethod( method );
 
-        if ( statusCode != HttpStatus.SC_OK ) {
+        if ( statusCode >= HttpStatus.SC_BAD_REQUEST ) {
           error( Messages.getInstance().getErrorString(
               "ProxyServlet.ERROR_0003_REMOTE_HTTP_CALL_FAILED", method.getStatusLine().toString() ) ); //$NON-NLS-1$
-          return;
         }
-        setHeader( "Content-Type", method, response ); //$NON-NLS-1$
-        setHeader( "Content-Length", method, response ); //$NON-NLS-1$
+        response.setStatus( statusCode );
+        copyResponseHeaders( method, response );
 
+        // the body is passed on as sent, compressed or not
         InputStream inStr = method.getResponseBodyAsStream();
-        ServletOutputStream outStr = response.getOutputStream();
-
-        int inCnt = 0;
-        byte[] buf = new byte[2048];
-        while ( -1 != ( inCnt = inStr.read( buf ) ) ) {
-          outStr.write( buf, 0, inCnt );
+        if ( inStr != null ) {
+          ServletOutputStream outStr = response.getOutputStream();
+          int inCnt = 0;
+          byte[] buf = new byte[BUFFER_SIZE];
+          while ( -1 != ( inCnt = inStr.read( buf ) ) ) {
+            outStr.write( buf, 0, inCnt );
+          }
         }
       } catch ( HttpException e ) {
         error( Messages.getInstance().getErrorString( "ProxyServlet.ERROR_0004_PROTOCOL_FAILURE" ), e ); //$NON-NLS-1$
-        e.printStackTrace();
+        method.abort();
+        sendBadGateway( response );
       } catch ( IOException e ) {
         error( Messages.getInstance().getErrorString( "ProxyServlet.ERROR_0005_TRANSPORT_FAILURE" ), e ); //$NON-NLS-1$
-        e.printStackTrace();
+        // do not read the rest of the body just to keep the connection
+        method.abort();
+        sendBadGateway( response );
       } finally {
         method.releaseConnection();
       }
@@ -207,6 +279,40 @@ public class ProxyServlet extends ServletBase {
     }
   }
 
+  void copyRequestHeaders( final HttpServletRequest request, final HttpMethod method ) {
+    for ( Enumeration names = request.getHeaderNames(); names.hasMoreElements(); ) {
+      String headerName = (String) names.nextElement();
+      if ( !isPassedOn( headerName ) || NOT_PASSED_ON_REQUEST_HEADERS.contains( headerName.toLowerCase() ) ) {
+        continue;
+      }
+      // Just in case someone is trying to spoof the proxy
+      if ( headerName.equalsIgnoreCase( trustUserHeader ) || headerName.equalsIgnoreCase( TRUST_USER_PARAM ) ) {
+        continue;
+      }
+      for ( Enumeration values = request.getHeaders( headerName ); values.hasMoreElements(); ) {
+        method.addRequestHeader( headerName, (String) values.nextElement() );
+      }
+    }
+  }
+
+  void copyResponseHeaders( final HttpMethod method, final HttpServletResponse response ) {
+    for ( Header header : method.getResponseHeaders() ) {
+      if ( isPassedOn( header.getName() ) && !"set-cookie".equalsIgnoreCase( header.getName() ) ) { //$NON-NLS-1$
+        response.addHeader( header.getName(), header.getValue() );
+      }
+    }
+  }
+
+  private static boolean isPassedOn( final String headerName ) {
+    return !HOP_BY_HOP_HEADERS.contains( headerName.toLowerCase() );
+  }
+
+  private static void sendBadGateway( final HttpServletResponse response ) throws IOException {
+    if ( !response.isCommitted() ) {
+      response.sendError( HttpServletResponse.SC_BAD_GATEWAY );
+    }
+  }
+
   void setHeader( final String headerStr, final HttpMethod method, final HttpServletResponse response ) {
     Header header = method.getResponseHeader( headerStr );
     if ( header != null ) {
@@ -214,6 +320,15 @@ public class ProxyServlet extends ServletBase {
     }
   }
 
+  @Override
+  public void destroy() {
+    if ( connectionManager != null ) {
+      connectionManager.shutdown();
+      connectionManager = null;
+    }
+    super.destroy();
+  }
+
   @Override
   protected void service( final HttpServletRequest arg0, final HttpServletResponse arg1 ) throws ServletException,
     IOException {
@@ -18,9 +18,12 @@
 package org.pentaho.platform.web.servlet;
 
 import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+import org.apache.commons.io.IOUtils;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.util.UUIDUtil;
@@ -33,15 +36,16 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 public class UploadFileServlet extends HttpServlet implements Servlet {
 
   private static final long serialVersionUID = 8305367618713715640L;
 
+  private static final String UPLOAD_FORM_ELEMENT = "uploadFormElement"; //$NON-NLS-1$
+
   protected void doPost( HttpServletRequest request, HttpServletResponse response ) throws ServletException,
     IOException {
     try {
@@ -49,40 +53,40 @@ public class UploadFileServlet extends HttpServlet implements Servlet {
       UploadFileUtils utils = new UploadFileUtils( session );
 
       response.setContentType( "text/plain" ); //$NON-NLS-1$
+      utils.setWriter( response.getWriter() );
 
       // Note - request.getParameter doesn't work on multi-part file data. But just in case,
-      // we get the standardRequestParamaters as well as the parameter map we create from the
+      // we get the standardRequestParamaters as well as the parameters read from the
       // multi-part form data.
       Map standardRequestParameters = request.getParameterMap();
-      Map<String, FileItem> parsedMultiPartRequestParameters = this.getParsedRequestParameters( request, session );
+      Map<String, String> formParameters = new HashMap<String, String>();
+      FileItem uploadItem = null;
+
+      // The file is streamed straight into UploadFileUtils when the parameters that say what to do with it came
+      // before it, either in the URL or as earlier form fields. Otherwise it is spooled to disk like it used to be
+      // and processed once all the form fields have been read.
+      FileItemIterator it = new ServletFileUpload().getItemIterator( request );
+      while ( it.hasNext() ) {
+        FileItemStream item = it.next();
+        if ( item.isFormField() ) {
+          formParameters.put( item.getFieldName(), Streams.asString( item.openStream() ) );
+        } else if ( UPLOAD_FORM_ELEMENT.equals( item.getFieldName() ) && ( uploadItem == null ) ) {
+          if ( configure( utils, standardRequestParameters, formParameters, false ) ) {
+            utils.setUploadedFileItemStream( item );
+            utils.process();
+            // Do nothing with success value - the output should already have been written to the servlet response.
+            return;
+          }
+          uploadItem = spool( item );
+        }
+      }
 
-      FileItem uploadItem = parsedMultiPartRequestParameters.get( "uploadFormElement" ); //$NON-NLS-1$
       if ( uploadItem == null ) {
         String error = Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0001_NO_FILE_TO_UPLOAD" ); //$NON-NLS-1$
         response.getWriter().write( error );
         return;
       }
-
-      String unzip = getRequestParameter( standardRequestParameters, parsedMultiPartRequestParameters, "unzip" ); //$NON-NLS-1$
-      String temporary =
-          getRequestParameter( standardRequestParameters, parsedMultiPartRequestParameters, "mark_temporary" ); //$NON-NLS-1$
-      String fileName = getRequestParameter( standardRequestParameters, parsedMultiPartRequestParameters, "file_name" ); //$NON-NLS-1$
-
-      if ( StringUtils.isEmpty( fileName ) ) {
-        fileName = UUIDUtil.getUUID().toString();
-      }
-      boolean isTemporary = false;
-      if ( temporary != null ) {
-        isTemporary = Boolean.valueOf( temporary );
-      }
-      boolean shouldUnzip = false;
-      if ( unzip != null ) {
-        shouldUnzip = Boolean.valueOf( unzip );
-      }
-      utils.setShouldUnzip( shouldUnzip );
-      utils.setTemporary( isTemporary );
-      utils.setFileName( fileName );
-      utils.setWriter( response.getWriter() );
+      configure( utils, standardRequestParameters, formParameters, true );
       utils.setUploadedFileItem( uploadItem );
       boolean success = utils.process();
       // Do nothing with success value - the output should already have been written to the servlet response.
@@ -95,6 +99,55 @@ public class UploadFileServlet extends HttpServlet implements Servlet {
     }
   }
 
+  /**
+   * Sets the upload options on <code>utils</code>.
+   * 
+   * @param complete
+   *          true once all of the request has been read, the options not given take their defaults
+   * @return false when an option that changes where the file goes was not given yet
+   */
+  private boolean configure( UploadFileUtils utils, Map standardRequestParameters, Map formParameters,
+      boolean complete ) {
+    String unzip = getRequestParameter( standardRequestParameters, formParameters, "unzip" ); //$NON-NLS-1$
+    String temporary = getRequestParameter( standardRequestParameters, formParameters, "mark_temporary" ); //$NON-NLS-1$
+    String fileName = getRequestParameter( standardRequestParameters, formParameters, "file_name" ); //$NON-NLS-1$
+
+    boolean isTemporary = false;
+    if ( temporary != null ) {
+      isTemporary = Boolean.valueOf( temporary );
+    }
+    boolean shouldUnzip = false;
+    if ( unzip != null ) {
+      shouldUnzip = Boolean.valueOf( unzip );
+    }
+    if ( !complete && ( ( unzip == null ) || ( temporary == null ) || ( !isTemporary && ( fileName == null ) ) ) ) {
+      return false;
+    }
+
+    if ( StringUtils.isEmpty( fileName ) ) {
+      fileName = UUIDUtil.getUUID().toString();
+    }
+    utils.setShouldUnzip( shouldUnzip );
+    utils.setTemporary( isTemporary );
+    utils.setFileName( fileName );
+    return true;
+  }
+
+  /**
+   * Copies the file of the upload to a {@link FileItem}, for when it has to wait for form fields that follow it.
+   */
+  private FileItem spool( FileItemStream item ) throws IOException {
+    FileItem fileItem =
+        new DiskFileItemFactory().createItem( item.getFieldName(), item.getContentType(), false, item.getName() );
+    OutputStream out = fileItem.getOutputStream();
+    try {
+      Streams.copy( item.openStream(), out, false );
+    } finally {
+      IOUtils.closeQuietly( out );
+    }
+    return fileItem;
+  }
+
   protected String getRequestParameter( Map primary, Map secondary, String parameterName ) {
     String rtn = getRequestParameter( primary, parameterName );
     return ( rtn != null ) ? rtn : getRequestParameter( secondary, parameterName );
@@ -117,31 +170,4 @@ public class UploadFileServlet extends HttpServlet implements Servlet {
     return null;
   }
 
-  /**
-   * Parses the multi-part request to get all the parameters out.
-   * 
-   * @param request
-   * @param session
-   * @return Map of the request parameters
-   */
-  private Map<String, FileItem> getParsedRequestParameters( HttpServletRequest request, IPentahoSession session ) {
-
-    HashMap<String, FileItem> rtn = new HashMap<String, FileItem>();
-    DiskFileItemFactory factory = new DiskFileItemFactory();
-
-    ServletFileUpload upload = new ServletFileUpload( factory );
-    try {
-      List items = upload.parseRequest( request );
-      Iterator it = items.iterator();
-      while ( it.hasNext() ) {
-        FileItem item = (FileItem) it.next();
-        String fName = item.getFieldName();
-        rtn.put( fName, item );
-      }
-    } catch ( FileUploadException e ) {
-      return null;
-    }
-    return rtn;
-  }
-
 }
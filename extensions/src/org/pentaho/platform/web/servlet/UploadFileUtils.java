@@ -20,42 +20,64 @@ package org.pentaho.platform.web.servlet;
 import com.ice.tar.TarEntry;
 import com.ice.tar.TarInputStream;
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.LimitedInputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
-import org.pentaho.platform.api.util.ITempFileDeleter;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.web.servlet.messages.Messages;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.Writer;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+/**
+ * Stores an uploaded file, or the files of an uploaded .zip, .tgz, .gz or .tar, in the upload folder or as session
+ * temp files.
+ * <p>
+ * Archives are expanded straight from the upload stream in a single pass. The limits are checked against the bytes
+ * actually expanded, so an archive that claims to be small but is not is stopped as soon as it goes over a limit.
+ * Files for the upload folder are written next to their final location and only moved in place once the whole upload
+ * passed the limits, a rejected upload leaves nothing behind.
+ */
 public class UploadFileUtils {
 
+  private static final Log logger = LogFactory.getLog( UploadFileUtils.class );
+
   private static final long MAX_FILE_SIZE = 300000;
   private static final long MAX_FOLDER_SIZE = 3000000;
+  private static final long MAX_ARCHIVE_ENTRIES = 1000;
+  private static final int BUFFER_SIZE = 8192;
   public static final String DEFAULT_RELATIVE_UPLOAD_FILE_PATH = File.separatorChar
-      + "system" + File.separatorChar + "metadata" + File.separatorChar + "csvfiles" + File.separatorChar; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$  
+      + "system" + File.separatorChar + "metadata" + File.separatorChar + "csvfiles" + File.separatorChar; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+  private enum ArchiveType {
+    NONE, ZIP, TAR_GZ, GZIP, TAR
+  }
+
   private String fileName;
   private boolean shouldUnzip;
   private boolean temporary;
   private Writer writer;
   private FileItem uploadedItem;
+  private FileItemStream uploadedStream;
   private IPentahoSession session;
   private long maxFileSize;
   private long maxFolderSize;
+  private long maxEntrySize;
+  private long maxArchiveEntries;
   private String relativePath;
   private String path;
   private File pathDir;
@@ -64,13 +86,20 @@ public class UploadFileUtils {
     this.session = sessionValue;
     relativePath =
         PentahoSystem.getSystemSetting(
-            "file-upload-defaults/relative-path", String.valueOf( DEFAULT_RELATIVE_UPLOAD_FILE_PATH ) ); //$NON-NLS-1$ 
+            "file-upload-defaults/relative-path", String.valueOf( DEFAULT_RELATIVE_UPLOAD_FILE_PATH ) ); //$NON-NLS-1$
     String maxFileLimit =
-        PentahoSystem.getSystemSetting( "file-upload-defaults/max-file-limit", String.valueOf( MAX_FILE_SIZE ) ); //$NON-NLS-1$    
+        PentahoSystem.getSystemSetting( "file-upload-defaults/max-file-limit", String.valueOf( MAX_FILE_SIZE ) ); //$NON-NLS-1$
     String maxFolderLimit =
         PentahoSystem.getSystemSetting( "file-upload-defaults/max-folder-limit", String.valueOf( MAX_FOLDER_SIZE ) ); //$NON-NLS-1$
     this.maxFileSize = Long.parseLong( maxFileLimit );
     this.maxFolderSize = Long.parseLong( maxFolderLimit );
+    String maxEntryLimit =
+        PentahoSystem.getSystemSetting( "file-upload-defaults/max-entry-limit", String.valueOf( maxFileSize ) ); //$NON-NLS-1$
+    String maxEntries =
+        PentahoSystem.getSystemSetting(
+            "file-upload-defaults/max-archive-entries", String.valueOf( MAX_ARCHIVE_ENTRIES ) ); //$NON-NLS-1$
+    this.maxEntrySize = Long.parseLong( maxEntryLimit );
+    this.maxArchiveEntries = Long.parseLong( maxEntries );
     path = PentahoSystem.getApplicationContext().getSolutionPath( relativePath );
     pathDir = new File( path );
     // create the path if it doesn't exist yet
@@ -80,341 +109,166 @@ public class UploadFileUtils {
   }
 
   public boolean process() throws Exception {
-    if ( !checkLimits( getUploadedFileItem().getSize() ) ) {
+    // the size of a streamed upload is only known once it has been read, the stream is limited below instead
+    if ( ( uploadedItem != null ) && !checkLimits( uploadedItem.getSize() ) ) {
       return false;
     }
 
-    File file = null;
-    if ( isTemporary() ) {
-      file = PentahoSystem.getApplicationContext().createTempFile( session, "", ".tmp", true ); //$NON-NLS-1$ //$NON-NLS-2$
-    } else {
-      file = new File( getPath() + File.separatorChar + fileName );
-      // Check that it's where it belongs - prevent ../../.. attacks.
-      String cp = file.getCanonicalPath();
-      String relPath = getPathDir().getCanonicalPath();
-      if ( !cp.startsWith( relPath ) ) {
-        // Trying to upload outside of folder.
-        getWriter()
-            .write( Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0008_FILE_LOCATION_INVALID" ) ); //$NON-NLS-1$
-        return false;
+    ArchiveType type = shouldUnzip ? getArchiveType() : ArchiveType.NONE;
+    Extraction extraction = new Extraction();
+    boolean committed = false;
+    InputStream uploadStream = new LimitedInputStream( openUploadedStream(), maxFileSize ) {
+      protected void raiseError( long sizeMax, long count ) throws IOException {
+        throw new UploadRejectedException( "UploadFileServlet.ERROR_0003_FILE_TOO_BIG" ); //$NON-NLS-1$
       }
-    }
-
-    InputStream itemInputStream = getUploadedFileItem().getInputStream();
+    };
     try {
-      OutputStream outputStream = new BufferedOutputStream( new FileOutputStream( file ) );
-      try {
-        IOUtils.copy( itemInputStream, outputStream );
-      } finally {
-        IOUtils.closeQuietly( outputStream ); // note - close calls flush.
+      InputStream in = new BufferedInputStream( uploadStream, BUFFER_SIZE );
+      switch ( type ) {
+        case ZIP:
+          extractZip( in, extraction );
+          break;
+        case TAR_GZ:
+          extractTar( new GZIPInputStream( in, BUFFER_SIZE ), extraction );
+          break;
+        case GZIP:
+          extractGZip( new GZIPInputStream( in, BUFFER_SIZE ), extraction );
+          break;
+        case TAR:
+          extractTar( in, extraction );
+          break;
+        default:
+          storeFile( in, extraction );
       }
+      extraction.commit();
+      committed = true;
+    } catch ( UploadRejectedException e ) {
+      writer.write( e.getMessage() );
+      return false;
     } finally {
-      IOUtils.closeQuietly( itemInputStream );
+      if ( !committed ) {
+        extraction.rollback(); // delete immediately (see requirements on BISERVER-4321)
+      }
+      IOUtils.closeQuietly( uploadStream );
+      if ( uploadedItem != null ) {
+        uploadedItem.delete(); // Forcibly deletes temp file of the upload
+      }
     }
-    getUploadedFileItem().delete(); // Forcibly deletes temp file - now WE track it.
 
-    if ( shouldUnzip ) {
-      return handleUnzip( file );
-    } else {
-      writer.write( file.getName() );
-    }
+    writer.write( extraction.getFileNames() );
     return true;
   }
 
-  protected boolean handleUnzip( File file ) throws IOException {
-    String fileNames = file.getName();
-
-    // .zip/.tar/.gz/.tgz files are always considered temporary and deleted on session expire
-
-    ITempFileDeleter fileDeleter = null;
-    if ( ( session != null ) ) {
-      fileDeleter = (ITempFileDeleter) session.getAttribute( ITempFileDeleter.DELETER_SESSION_VARIABLE );
-      if ( fileDeleter != null ) {
-        fileDeleter.trackTempFile( file ); // make sure the deleter knows to clean this puppy up...
-      }
-    }
-
-    if ( ( getUploadedFileItem().getName().toLowerCase().endsWith( ".zip" ) || getUploadedFileItem().getContentType()
-        .equals( "application/zip" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$
-      // handle a zip
-      if ( checkLimits( getUncompressedZipFileSize( file ), true ) ) {
-        fileNames = handleZip( file );
-      } else {
-        file.delete(); // delete immediately (see requirements on BISERVER-4321)
-        return false;
-      }
-    } else if ( ( getUploadedFileItem().getName().toLowerCase().endsWith( ".tgz" ) || //$NON-NLS-1$
-        getUploadedFileItem().getName().toLowerCase().endsWith( ".tar.gz" ) || //$NON-NLS-1$
-        getUploadedFileItem().getContentType().equals( "application/x-compressed" ) || getUploadedFileItem().getContentType().equals( "application/tgz" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-      // handle a tgz
-      long tarSize = getUncompressedGZipFileSize( file );
-      if ( checkLimits( tarSize, true ) ) {
-        if ( isTemporary() || checkLimits( tarSize * 2, true ) ) {
-          fileNames = handleTarGZ( file );
-        } else {
-          return false;
-        }
-      } else {
-        file.delete(); // delete immediately (see requirements on BISERVER-4321)
-        return false;
-      }
-    } else if ( ( getUploadedFileItem().getName().toLowerCase().endsWith( ".gzip" ) || getUploadedFileItem().getName().toLowerCase().endsWith( ".gz" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-      // handle a gzip
-      if ( checkLimits( getUncompressedGZipFileSize( file ), true ) ) {
-        fileNames = handleGZip( file, false );
-      } else {
-        file.delete(); // delete immediately (see requirements on BISERVER-4321)
-        return false;
-      }
-    } else if ( ( getUploadedFileItem().getName().toLowerCase().endsWith( ".tar" ) || getUploadedFileItem().getContentType().equals( "application/x-tar" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-      // handle a tar
-      //
-      // Note - after the .tar file lands on the file system, you have to
-      // unpack it which means it is again the size of the file. So, we check
-      // disk space before putting the .tar onto the disk. Then, after the .tar
-      // hits disk, we check the size AGAIN because untarring the file will
-      // amount to double the size of the file. If isTemporary is checked, then
-      // we don't need to worry about this since the .tar file will be deleted.
-      // Marc
-      if ( isTemporary() || checkLimits( getUploadedFileItem().getSize(), true ) ) {
-        fileNames = handleTar( file );
-      } else {
-        file.delete(); // delete immediately (see requirements on BISERVER-4321)
-        return false;
-      }
+  private ArchiveType getArchiveType() {
+    String name = getUploadedName().toLowerCase();
+    String contentType = getUploadedContentType();
+    if ( name.endsWith( ".zip" ) || contentType.equals( "application/zip" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return ArchiveType.ZIP;
+    } else if ( name.endsWith( ".tgz" ) || name.endsWith( ".tar.gz" ) //$NON-NLS-1$ //$NON-NLS-2$
+        || contentType.equals( "application/x-compressed" ) || contentType.equals( "application/tgz" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return ArchiveType.TAR_GZ;
+    } else if ( name.endsWith( ".gzip" ) || name.endsWith( ".gz" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return ArchiveType.GZIP;
+    } else if ( name.endsWith( ".tar" ) || contentType.equals( "application/x-tar" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return ArchiveType.TAR;
     }
-    // else - just outputs the file name.
-    writer.write( fileNames );
-    return true;
+    // else - just store the file as it is.
+    return ArchiveType.NONE;
   }
 
-  /**
-   * Gets the uncompressed file size of a .zip file.
-   * 
-   * @param theFile
-   * @return long uncompressed file size.
-   * @throws IOException
-   *           mbatchelor
-   */
-  private long getUncompressedZipFileSize( File theFile ) throws IOException {
-    long rtn = 0;
-    ZipFile zf = new ZipFile( theFile );
-    try {
-      Enumeration<? extends ZipEntry> zfEntries = zf.entries();
-      ZipEntry ze = null;
-      while ( zfEntries.hasMoreElements() ) {
-        ze = zfEntries.nextElement();
-        rtn += ze.getSize();
-      }
-    } finally {
-      try {
-        zf.close();
-      } catch ( Exception ignored ) {
-        //ignored
-      }
+  private void storeFile( InputStream in, Extraction extraction ) throws IOException {
+    if ( isTemporary() ) {
+      File file = PentahoSystem.getApplicationContext().createTempFile( session, "", ".tmp", true ); //$NON-NLS-1$ //$NON-NLS-2$
+      extraction.write( in, file, true, false );
+    } else {
+      extraction.write( in, resolve( fileName ), false, false );
     }
-    return rtn;
   }
 
   /**
-   * Gets the uncompressed file size of a .gz file by reading the last four bytes of the file
-   * 
-   * @param file
-   * @return long uncompressed original file size
-   * @throws IOException
-   *           mbatchelor
+   * Expands the files of a zip, ignoring hidden directories and files.
    */
-  private long getUncompressedGZipFileSize( File file ) throws IOException {
-    long rtn = 0;
-    RandomAccessFile gzipFile = new RandomAccessFile( file, "r" );
-    try {
-      // go 4 bytes from end of file - the original uncompressed file size is there
-      gzipFile.seek( gzipFile.length() - 4 );
-      byte[] intelSize = new byte[4];
-      gzipFile.read( intelSize ); // read the size ....
-      // rfc1952; ISIZE is the input size modulo 2^32
-      // 00F01E69 is really 691EF000
-      // The &0xFF turns signed byte into unsigned.
-      rtn =
-          ( ( ( intelSize[3] & 0xFF ) << 24 ) | ( ( intelSize[2] & 0xFF ) << 16 ) + ( ( intelSize[1] & 0xFF ) << 8 )
-              + ( intelSize[0] & 0xFF ) ) & 0xffffffffL;
-    } finally {
-      try {
-        gzipFile.close();
-      } catch ( Exception ignored ) {
-        //ignored
+  private void extractZip( InputStream in, Extraction extraction ) throws IOException {
+    ZipInputStream zipStream = new ZipInputStream( in );
+    ZipEntry entry = zipStream.getNextEntry();
+    while ( entry != null ) {
+      extraction.countEntry();
+      if ( !entry.isDirectory() && !isHidden( entry.getName() ) ) {
+        extractEntry( zipStream, entry.getName(), extraction );
       }
+      entry = zipStream.getNextEntry();
     }
-    return rtn;
   }
 
   /**
-   * Decompress a zip file and return a list of the file names that were unpacked
-   * 
-   * @param file
-   * @param session
-   * @return
-   * @throws IOException
+   * Expands the files of a tar, ignoring hidden directories and files.
    */
-  protected String handleZip( File file ) throws IOException {
-    StringBuilder sb = new StringBuilder();
-    FileInputStream fileStream = new FileInputStream( file.getAbsolutePath() );
-    try {
-      // create a zip input stream from the tmp file that was uploaded
-      ZipInputStream zipStream = new ZipInputStream( new BufferedInputStream( fileStream ) );
-      try {
-        ZipEntry entry = zipStream.getNextEntry();
-        // iterate thru the entries in the zip file
-        while ( entry != null ) {
-
-          // ignore hidden directories and files, extract the rest
-          if ( !entry.isDirectory() && !entry.getName().startsWith( "." ) && !entry.getName().startsWith( "__MACOSX/" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
-
-            File entryFile = null;
-            if ( isTemporary() ) {
-              String extension = ".tmp"; //$NON-NLS-1$
-              int idx = entry.getName().lastIndexOf( '.' );
-              if ( idx != -1 ) {
-                extension = entry.getName().substring( idx ) + extension;
-              }
-              entryFile = PentahoSystem.getApplicationContext().createTempFile( session, "", extension, true ); //$NON-NLS-1$
-            } else {
-              entryFile = new File( getPath() + File.separatorChar + entry.getName() );
-            }
-
-            if ( sb.length() > 0 ) {
-              sb.append( "\n" ); //$NON-NLS-1$
-            }
-            sb.append( entryFile.getName() );
-            FileOutputStream entryOutputStream = new FileOutputStream( entryFile );
-            try {
-              IOUtils.copy( zipStream, entryOutputStream );
-            } finally {
-              IOUtils.closeQuietly( entryOutputStream );
-            }
-          }
-          // go on to the next entry
-          entry = zipStream.getNextEntry();
-        }
-      } finally {
-        IOUtils.closeQuietly( zipStream );
+  private void extractTar( InputStream in, Extraction extraction ) throws IOException {
+    TarInputStream tarStream = new TarInputStream( in );
+    TarEntry entry = tarStream.getNextEntry();
+    while ( entry != null ) {
+      extraction.countEntry();
+      if ( !entry.isDirectory() && !isHidden( entry.getName() ) ) {
+        extractEntry( tarStream, entry.getName(), extraction );
       }
-    } finally {
-      IOUtils.closeQuietly( fileStream );
+      entry = tarStream.getNextEntry();
     }
-    return sb.toString();
-
   }
 
-  protected String handleGZip( File file, boolean fullPath ) throws IOException {
-    FileInputStream fileStream = new FileInputStream( file.getAbsolutePath() );
-
-    try {
-      // create a gzip input stream from the tmp file that was uploaded
-      GZIPInputStream zipStream = new GZIPInputStream( new BufferedInputStream( fileStream ) );
-
-      File entryFile = null;
-      if ( isTemporary() || fullPath ) {
-        entryFile = PentahoSystem.getApplicationContext().createTempFile( session, "", ".tmp", true ); //$NON-NLS-1$ //$NON-NLS-2$
-      } else {
-        String gzFile = file.getCanonicalPath();
-        int idx = gzFile.lastIndexOf( '.' );
-        if ( idx > 0 ) {
-          entryFile = new File( gzFile.substring( 0, idx ) ); // Cut off the .gz/.gzip part.
-        } else {
-          // Odd - someone specified the name as .gz or .gzip... create a temp file (for naming)
-          // Note - not added to deleter because it's a file that should stay around - it's CSV data
-          File parentFolder = file.getParentFile();
-          entryFile = File.createTempFile( "upload_gzip", ".tmp", parentFolder ); //$NON-NLS-1$ //$NON-NLS-2$
-        }
-      }
-      try {
-        FileOutputStream entryOutputStream = new FileOutputStream( entryFile );
-        try {
-          IOUtils.copy( zipStream, entryOutputStream );
-        } finally {
-          IOUtils.closeQuietly( entryOutputStream );
-        }
-      } finally {
-        IOUtils.closeQuietly( zipStream );
-      }
-
-      if ( fullPath ) {
-        return entryFile.getCanonicalPath();
-      } else {
-        return entryFile.getName();
-      }
-    } finally {
-      IOUtils.closeQuietly( fileStream );
+  private void extractGZip( InputStream in, Extraction extraction ) throws IOException {
+    extraction.countEntry();
+    if ( isTemporary() ) {
+      File file = PentahoSystem.getApplicationContext().createTempFile( session, "", ".tmp", true ); //$NON-NLS-1$ //$NON-NLS-2$
+      extraction.write( in, file, true, true );
+      return;
+    }
+    int idx = fileName.lastIndexOf( '.' );
+    if ( idx > 0 ) {
+      extraction.write( in, resolve( fileName.substring( 0, idx ) ), false, true ); // Cut off the .gz/.gzip part.
+    } else {
+      // Odd - someone specified the name as .gz or .gzip... create a temp file (for naming)
+      // Note - not added to deleter because it's a file that should stay around - it's CSV data
+      File file = File.createTempFile( "upload_gzip", ".tmp", getPathDir() ); //$NON-NLS-1$ //$NON-NLS-2$
+      extraction.write( in, file, true, true );
     }
   }
 
-  protected String handleTar( File file ) throws IOException {
-
-    // now extract the tar files
-    StringBuilder sb = new StringBuilder();
-    FileInputStream fileStream = new FileInputStream( file );
-    try {
-      // create a zip input stream from the tmp file that was uploaded
-      TarInputStream zipStream = new TarInputStream( new BufferedInputStream( fileStream ) );
-      try {
-        TarEntry entry = zipStream.getNextEntry();
-        // iterate thru the entries in the zip file
-        while ( entry != null ) {
-          // ignore hidden directories and files, extract the rest
-          if ( !entry.isDirectory() && !entry.getName().startsWith( "." ) && !entry.getName().startsWith( "__MACOSX/" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
-            File entryFile = null;
-            if ( isTemporary() ) {
-              String extension = ".tmp"; //$NON-NLS-1$
-              int idx = entry.getName().lastIndexOf( '.' );
-              if ( idx != -1 ) {
-                extension = entry.getName().substring( idx ) + extension;
-              }
-              entryFile = PentahoSystem.getApplicationContext().createTempFile( session, "", extension, true ); //$NON-NLS-1$ 
-            } else {
-              entryFile = new File( getPath() + File.separatorChar + entry.getName() );
-            }
-
-            if ( sb.length() > 0 ) {
-              sb.append( "\n" ); //$NON-NLS-1$
-            }
-            sb.append( entryFile.getName() );
-            FileOutputStream entryOutputStream = new FileOutputStream( entryFile );
-            try {
-              IOUtils.copy( zipStream, entryOutputStream );
-            } finally {
-              IOUtils.closeQuietly( entryOutputStream );
-            }
-          }
-          // go on to the next entry
-          entry = zipStream.getNextEntry();
-        }
-      } finally {
-        IOUtils.closeQuietly( zipStream );
+  private void extractEntry( InputStream in, String entryName, Extraction extraction ) throws IOException {
+    if ( isTemporary() ) {
+      // only the extension of the base name is kept, the folders of the entry must not end up in the suffix
+      String baseName =
+          entryName.substring( Math.max( entryName.lastIndexOf( '/' ), entryName.lastIndexOf( '\\' ) ) + 1 );
+      String extension = ".tmp"; //$NON-NLS-1$
+      int idx = baseName.lastIndexOf( '.' );
+      if ( idx != -1 ) {
+        extension = baseName.substring( idx ) + extension;
       }
-
-    } finally {
-      IOUtils.closeQuietly( fileStream );
+      File file = PentahoSystem.getApplicationContext().createTempFile( session, "", extension, true ); //$NON-NLS-1$
+      extraction.write( in, file, true, true );
+    } else {
+      File file = resolve( entryName );
+      extraction.createParentDirs( file );
+      extraction.write( in, file, false, true );
     }
-    return sb.toString();
   }
 
-  protected String handleTarGZ( File file ) throws IOException {
-
-    // first extract the gz
-    String filename = handleGZip( file, true );
-
-    File tarFile = new File( filename );
+  private boolean isHidden( String entryName ) {
+    return entryName.startsWith( "." ) || entryName.startsWith( "__MACOSX/" ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
 
-    ITempFileDeleter fileDeleter;
-    if ( ( session != null ) ) {
-      fileDeleter = (ITempFileDeleter) session.getAttribute( ITempFileDeleter.DELETER_SESSION_VARIABLE );
-      if ( fileDeleter != null ) {
-        fileDeleter.trackTempFile( tarFile ); // make sure the deleter knows to clean this puppy up...
-      }
+  /**
+   * Gets the file for a name in the upload folder, rejecting names that point outside of it.
+   */
+  private File resolve( String name ) throws IOException {
+    File file = new File( getPath() + File.separatorChar + name );
+    // Check that it's where it belongs - prevent ../../.. attacks.
+    String cp = file.getCanonicalPath();
+    String relPath = getPathDir().getCanonicalPath();
+    if ( !cp.startsWith( relPath + File.separatorChar ) ) {
+      // Trying to upload outside of folder.
+      throw new UploadRejectedException( "UploadFileServlet.ERROR_0008_FILE_LOCATION_INVALID" ); //$NON-NLS-1$
     }
-
-    return handleTar( tarFile );
+    return file;
   }
 
   public boolean checkLimits( long itemSize ) throws IOException {
@@ -432,7 +286,7 @@ public class UploadFileUtils {
     if ( itemSize + getFolderSize( pathDir ) > maxFolderSize ) {
       String error =
           compressed ? Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0007_FOLDER_SIZE_LIMIT_REACHED" ) //$NON-NLS-1$
-              : Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0004_FOLDER_SIZE_LIMIT_REACHED" ); //$NON-NLS-1$ 
+              : Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0004_FOLDER_SIZE_LIMIT_REACHED" ); //$NON-NLS-1$
       writer.write( error );
       return false;
     }
@@ -452,6 +306,187 @@ public class UploadFileUtils {
     return foldersize;
   }
 
+  private String getUploadedName() {
+    String name = ( uploadedItem != null ) ? uploadedItem.getName() : uploadedStream.getName();
+    return ( name != null ) ? name : ""; //$NON-NLS-1$
+  }
+
+  private String getUploadedContentType() {
+    String contentType =
+        ( uploadedItem != null ) ? uploadedItem.getContentType() : uploadedStream.getContentType();
+    return ( contentType != null ) ? contentType : ""; //$NON-NLS-1$
+  }
+
+  private InputStream openUploadedStream() throws IOException {
+    return ( uploadedItem != null ) ? uploadedItem.getInputStream() : uploadedStream.openStream();
+  }
+
+  /**
+   * The files written for one upload, with the limits on the bytes and entries expanded so far.
+   */
+  private class Extraction {
+
+    private final long folderSize = getFolderSize( pathDir );
+
+    private final List<File> written = new ArrayList<File>();
+
+    private final List<File> targets = new ArrayList<File>();
+
+    /**
+     * The folders created for the files of the upload, the outermost first
+     */
+    private final List<File> createdDirs = new ArrayList<File>();
+
+    private final StringBuilder fileNames = new StringBuilder();
+
+    private long expanded;
+
+    private long entries;
+
+    void countEntry() throws IOException {
+      if ( ++entries > maxArchiveEntries ) {
+        throw new UploadRejectedException( "UploadFileServlet.ERROR_0009_TOO_MANY_ENTRIES" ); //$NON-NLS-1$
+      }
+    }
+
+    void createParentDirs( File file ) {
+      List<File> missing = new ArrayList<File>();
+      for ( File dir = file.getParentFile(); ( dir != null ) && !dir.exists(); dir = dir.getParentFile() ) {
+        missing.add( 0, dir );
+      }
+      for ( File dir : missing ) {
+        if ( dir.mkdir() ) {
+          createdDirs.add( dir );
+        }
+      }
+    }
+
+    /**
+     * Copies a file of the upload to the target, or next to it when <code>direct</code> is false, so an existing file
+     * is only replaced on {@link #commit()}.
+     */
+    void write( InputStream in, File target, boolean direct, boolean archived ) throws IOException {
+      long limit = maxFolderSize - folderSize - expanded;
+      String error =
+          archived ? "UploadFileServlet.ERROR_0007_FOLDER_SIZE_LIMIT_REACHED" //$NON-NLS-1$
+              : "UploadFileServlet.ERROR_0004_FOLDER_SIZE_LIMIT_REACHED"; //$NON-NLS-1$
+      if ( archived && ( maxFileSize - expanded < limit ) ) {
+        limit = maxFileSize - expanded;
+        error = "UploadFileServlet.ERROR_0006_FILE_TOO_BIG"; //$NON-NLS-1$
+      }
+      if ( archived && ( maxEntrySize < limit ) ) {
+        limit = maxEntrySize;
+        error = "UploadFileServlet.ERROR_0010_ENTRY_TOO_BIG"; //$NON-NLS-1$
+      }
+
+      File file = direct ? target : File.createTempFile( ".upload", ".tmp", target.getParentFile() ); //$NON-NLS-1$ //$NON-NLS-2$
+      written.add( file );
+      targets.add( target );
+      long size = 0;
+      OutputStream out = new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE );
+      try {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ( ( count = in.read( buffer ) ) != -1 ) {
+          size += count;
+          if ( size > limit ) {
+            throw new UploadRejectedException( error );
+          }
+          out.write( buffer, 0, count );
+        }
+      } finally {
+        IOUtils.closeQuietly( out ); // note - close calls flush.
+      }
+      expanded += size;
+
+      if ( fileNames.length() > 0 ) {
+        fileNames.append( "\n" ); //$NON-NLS-1$
+      }
+      fileNames.append( target.getName() );
+    }
+
+    /**
+     * Moves the files written next to their targets into place. The files replaced are kept aside until all files are
+     * in place, so a failure leaves the folder as it was before the upload.
+     */
+    void commit() throws IOException {
+      List<File> moved = new ArrayList<File>();
+      List<File> backups = new ArrayList<File>();
+      try {
+        for ( int i = 0; i < written.size(); i++ ) {
+          File file = written.get( i );
+          File target = targets.get( i );
+          if ( file != target ) {
+            File backup = null;
+            if ( target.exists() ) {
+              if ( target.isDirectory() ) {
+                throw new IOException( "Could not replace " + target ); //$NON-NLS-1$
+              }
+              backup = File.createTempFile( ".upload", ".bak", target.getParentFile() ); //$NON-NLS-1$ //$NON-NLS-2$
+              if ( !backup.delete() || !target.renameTo( backup ) ) {
+                backup.delete();
+                throw new IOException( "Could not replace " + target ); //$NON-NLS-1$
+              }
+            }
+            moved.add( target );
+            backups.add( backup );
+            if ( !file.renameTo( target ) ) {
+              throw new IOException( "Could not move " + file + " to " + target ); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+          }
+        }
+      } catch ( IOException e ) {
+        restore( moved, backups );
+        throw e;
+      }
+      for ( File backup : backups ) {
+        if ( backup != null ) {
+          backup.delete();
+        }
+      }
+    }
+
+    /**
+     * Puts the replaced files back, the last one first, so a target written twice gets its original content back.
+     */
+    private void restore( List<File> moved, List<File> backups ) {
+      for ( int i = moved.size() - 1; i >= 0; i-- ) {
+        File target = moved.get( i );
+        File backup = backups.get( i );
+        target.delete();
+        if ( ( backup != null ) && !backup.renameTo( target ) ) {
+          logger.error( "Could not restore " + target + " from " + backup ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+      }
+    }
+
+    void rollback() {
+      for ( File file : written ) {
+        file.delete();
+      }
+      // the innermost folders first, a folder is only deleted when it is empty
+      for ( int i = createdDirs.size() - 1; i >= 0; i-- ) {
+        createdDirs.get( i ).delete();
+      }
+    }
+
+    String getFileNames() {
+      return fileNames.toString();
+    }
+  }
+
+  /**
+   * Stops an upload, the message is written to the response.
+   */
+  private static class UploadRejectedException extends IOException {
+
+    private static final long serialVersionUID = -5375286526339406342L;
+
+    UploadRejectedException( String messageKey ) {
+      super( Messages.getInstance().getErrorString( messageKey ) );
+    }
+  }
+
   /******************* Getters and Setters ********************/
 
   public String getFileName() {
@@ -488,12 +523,25 @@ public class UploadFileUtils {
 
   public void setUploadedFileItem( FileItem value ) {
     this.uploadedItem = value;
+    this.uploadedStream = null;
   }
 
   public FileItem getUploadedFileItem() {
     return this.uploadedItem;
   }
 
+  /**
+   * Processes the upload straight from the request, without spooling it to a {@link FileItem} first.
+   */
+  public void setUploadedFileItemStream( FileItemStream value ) {
+    this.uploadedStream = value;
+    this.uploadedItem = null;
+  }
+
+  public FileItemStream getUploadedFileItemStream() {
+    return this.uploadedStream;
+  }
+
   public String getPath() {
     return this.path;
   }
@@ -493,4 +493,69 @@ public class MondrianCatalogHelperTest {
     String result = helperMock.generateInMemoryDatasourcesXml( unifiedRepositoryMock );
     assertNull( result, null );
   }
+
+  @Test
+  public void testMakeSchemaReadsWarmupQueries() throws Exception {
+    MondrianSchema schema = helper.makeSchema( "<Schema name=\"Warm\"><Annotations>"
+        + "<Annotation name=\"pentaho.warmup.sales\"> SELECT FROM [Sales] </Annotation>"
+        + "<Annotation name=\"other\">ignored</Annotation>"
+        + "<Annotation name=\"pentaho.warmup.empty\"> </Annotation>"
+        + "</Annotations></Schema>" );
+
+    assertEquals( asList( "SELECT FROM [Sales]" ), schema.getWarmupQueries() );
+    assertTrue( new MondrianSchema( "NoWarmup", null ).getWarmupQueries().isEmpty() );
+  }
+
+  @Test
+  public void testRefreshCatalogReloadsOnlyThatCatalog() throws Exception {
+    MondrianCatalog steelWheels = new MondrianCatalog( CATALOG_NAME, "Provider=mondrian;DataSource=SteelWheels;",
+        "mondrian:/" + CATALOG_NAME, new MondrianSchema( CATALOG_NAME, null ) );
+    MondrianCatalog sampleData = new MondrianCatalog( "SampleData", "Provider=mondrian;DataSource=SampleData;",
+        "mondrian:/SampleData", new MondrianSchema( "SampleData", null ) );
+    Map<String, MondrianCatalog> catalogs = new HashMap<String, MondrianCatalog>();
+    catalogs.put( steelWheels.getName(), steelWheels );
+    catalogs.put( steelWheels.getDefinition(), steelWheels );
+    catalogs.put( sampleData.getName(), sampleData );
+    catalogs.put( sampleData.getDefinition(), sampleData );
+    initMondrianCatalogsCache( catalogs );
+
+    MondrianCatalogHelper helperSpy = spy( helper );
+    MondrianCatalogRepositoryHelper repositoryHelper = mock( MondrianCatalogRepositoryHelper.class );
+    doReturn( repositoryHelper.new HostedCatalogInfo( CATALOG_NAME, "Provider=mondrian;DataSource=SteelWheels2;",
+        "mondrian:/" + CATALOG_NAME ) ).when( repositoryHelper ).getHostedCatalogInfo( CATALOG_NAME );
+    doReturn( repositoryHelper ).when( helperSpy ).getMondrianCatalogRepositoryHelper();
+    doReturn( "<Schema/>" ).when( helperSpy ).getCatalogAsString( any( IPentahoSession.class ),
+        any( mondrian.xmla.DataSourcesConfig.Catalog.class ) );
+    doReturn( new MondrianSchema( CATALOG_NAME, null ) ).when( helperSpy ).makeSchema( "<Schema/>" );
+
+    IPentahoSession session = new StandaloneSession( "admin" );
+    helperSpy.refreshCatalog( CATALOG_NAME, session );
+
+    MondrianCatalog reloaded = helperSpy.getCatalogFromCache( CATALOG_NAME, session );
+    assertEquals( "Provider=mondrian;DataSource=SteelWheels2;", reloaded.getDataSourceInfo() );
+    assertSame( reloaded, helperSpy.getCatalogFromCache( "mondrian:/" + CATALOG_NAME, session ) );
+    assertSame( sampleData, helperSpy.getCatalogFromCache( "SampleData", session ) );
+    verify( helperSpy, times( 1 ) ).getCatalogAsString( any( IPentahoSession.class ),
+        any( mondrian.xmla.DataSourcesConfig.Catalog.class ) );
+    verify( helperSpy, never() ).reInit( any( IPentahoSession.class ) );
+  }
+
+  @Test
+  public void testRefreshCatalogDropsRemovedCatalog() throws Exception {
+    MondrianCatalog steelWheels = new MondrianCatalog( CATALOG_NAME, "Provider=mondrian;DataSource=SteelWheels;",
+        "mondrian:/" + CATALOG_NAME, new MondrianSchema( CATALOG_NAME, null ) );
+    Map<String, MondrianCatalog> catalogs = new HashMap<String, MondrianCatalog>();
+    catalogs.put( steelWheels.getName(), steelWheels );
+    catalogs.put( steelWheels.getDefinition(), steelWheels );
+    initMondrianCatalogsCache( catalogs );
+
+    MondrianCatalogHelper helperSpy = spy( helper );
+    doReturn( mock( MondrianCatalogRepositoryHelper.class ) ).when( helperSpy ).getMondrianCatalogRepositoryHelper();
+
+    IPentahoSession session = new StandaloneSession( "admin" );
+    helperSpy.refreshCatalog( CATALOG_NAME, session );
+
+    assertNull( helperSpy.getCatalogFromCache( CATALOG_NAME, session ) );
+    assertNull( helperSpy.getCatalogFromCache( "mondrian:/" + CATALOG_NAME, session ) );
+  }
 }
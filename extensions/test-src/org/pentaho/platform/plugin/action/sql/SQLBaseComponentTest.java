@@ -0,0 +1,91 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.action.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.actionsequence.dom.actions.AbstractRelationalDbAction;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
+
+public class SQLBaseComponentTest {
+
+  private static final String QUERY = "select POSITIONTITLE from QUADRANT_ACTUALS where DEPARTMENT = ?"; //$NON-NLS-1$
+
+  @Test
+  public void testPreparedStreamingQueryIsBound() throws Exception {
+    final List<Object> boundParameters = new ArrayList<Object>();
+    final IPentahoResultSet source = mock( IPentahoResultSet.class );
+    when( source.getMetaData() ).thenReturn(
+        new MemoryMetaData( new String[][] { { "POSITIONTITLE" } }, null ) ); //$NON-NLS-1$
+    SQLConnection sqlConnection = mock( SQLConnection.class );
+    when( sqlConnection.initialized() ).thenReturn( true );
+    when( sqlConnection.prepareAndExecuteQuery( anyString(), anyList(), anyInt(), anyInt() ) ).thenAnswer(
+        new Answer<IPentahoResultSet>() {
+          public IPentahoResultSet answer( final InvocationOnMock invocation ) {
+            // the component clears its parameter list afterwards, so take what is bound at execution time
+            boundParameters.addAll( (List<?>) invocation.getArguments()[1] );
+            return source;
+          }
+        } );
+
+    StreamingLookupRule component = new StreamingLookupRule();
+    component.setActionDefinition( mock( AbstractRelationalDbAction.class, RETURNS_DEEP_STUBS ) );
+    component.connection = sqlConnection;
+
+    assertTrue( component.runQuery( "select POSITIONTITLE from QUADRANT_ACTUALS where DEPARTMENT = {PREPARE:dept}", //$NON-NLS-1$
+        false ) );
+    assertEquals( Arrays.<Object> asList( "Product Development" ), boundParameters ); //$NON-NLS-1$
+    assertTrue( component.preparedParameters.isEmpty() );
+  }
+
+  /**
+   * Streams its results and resolves the <code>dept</code> input the way the runtime context would.
+   */
+  private static class StreamingLookupRule extends SQLLookupRule {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean isStreaming() {
+      return true;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Override
+    protected String applyInputsToFormat( final String format ) {
+      preparedParameters.add( "Product Development" ); //$NON-NLS-1$
+      return QUERY;
+    }
+  }
+}
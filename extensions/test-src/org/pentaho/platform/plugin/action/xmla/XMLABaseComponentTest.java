@@ -2,14 +2,118 @@ package org.pentaho.platform.plugin.action.xmla;
 
 import static org.mockito.Mockito.mock;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 public class XMLABaseComponentTest {
 
+  private static final String ENVELOPE_START =
+    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" //$NON-NLS-1$
+      + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Body>"; //$NON-NLS-1$
+
+  private static final String ENVELOPE_END = "</SOAP-ENV:Body></SOAP-ENV:Envelope>"; //$NON-NLS-1$
+
+  private static final String DISCOVER_REPLY = ENVELOPE_START
+    + "<DiscoverResponse xmlns=\"urn:schemas-microsoft-com:xml-analysis\"><return>" //$NON-NLS-1$
+    + "<root xmlns=\"urn:schemas-microsoft-com:xml-analysis:rowset\"><row>" //$NON-NLS-1$
+    + "<DataSourceName>Provider=Mondrian;DataSource=Pentaho</DataSourceName>" //$NON-NLS-1$
+    + "<DataSourceInfo>Provider=Mondrian;DataSource=Pentaho</DataSourceInfo>" //$NON-NLS-1$
+    + "<ProviderName>Mondrian</ProviderName></row></root></return></DiscoverResponse>" + ENVELOPE_END; //$NON-NLS-1$
+
+  // two columns, three rows, the second cell of the second row and the first of the last are empty
+  private static final String EXECUTE_REPLY = ENVELOPE_START
+    + "<m:ExecuteResponse xmlns:m=\"urn:schemas-microsoft-com:xml-analysis\"><m:return>" //$NON-NLS-1$
+    + "<root xmlns=\"urn:schemas-microsoft-com:xml-analysis:mddataset\"><OlapInfo/><Axes>" //$NON-NLS-1$
+    + "<Axis name=\"Axis0\"><Tuples>" //$NON-NLS-1$
+    + "<Tuple><Member><UName>[Measures].[Unit Sales]</UName>" //$NON-NLS-1$
+    + "<Caption>Unit Sales</Caption></Member></Tuple>" //$NON-NLS-1$
+    + "<Tuple><Member><Caption>Store Cost</Caption></Member></Tuple></Tuples></Axis>" //$NON-NLS-1$
+    + "<Axis name=\"Axis1\"><Tuples><Tuple><Member><Caption>CA</Caption></Member></Tuple>" //$NON-NLS-1$
+    + "<Tuple><Member><Caption>OR</Caption></Member></Tuple>" //$NON-NLS-1$
+    + "<Tuple><Member><Caption>WA</Caption></Member></Tuple></Tuples></Axis>" //$NON-NLS-1$
+    + "<Axis name=\"SlicerAxis\"><Tuples><Tuple><Member><Caption>1997</Caption></Member></Tuple></Tuples>" //$NON-NLS-1$
+    + "</Axis>" //$NON-NLS-1$
+    + "</Axes><CellData>" //$NON-NLS-1$
+    + "<Cell CellOrdinal=\"0\"><Value>74748</Value><FmtValue>74,748</FmtValue></Cell>" //$NON-NLS-1$
+    + "<Cell CellOrdinal=\"1\"><Value>63530.43</Value></Cell>" //$NON-NLS-1$
+    + "<Cell CellOrdinal=\"2\"><Value>67659</Value></Cell>" //$NON-NLS-1$
+    + "<Cell CellOrdinal=\"5\"><Value>52896.3</Value></Cell>" //$NON-NLS-1$
+    + "</CellData></root></m:return></m:ExecuteResponse>" + ENVELOPE_END; //$NON-NLS-1$
+
+  private static final String FAULT_REPLY = ENVELOPE_START
+    + "<SOAP-ENV:Fault><faultcode>SOAP-ENV:Server.00HSBE02</faultcode>" //$NON-NLS-1$
+    + "<faultstring>MDX parse failed</faultstring><faultactor>Mondrian</faultactor>" //$NON-NLS-1$
+    + "<detail><XA:error xmlns:XA=\"http://mondrian.sourceforge.net\" code=\"00HSBE02\"/></detail>" //$NON-NLS-1$
+    + "</SOAP-ENV:Fault>" + ENVELOPE_END; //$NON-NLS-1$
+
+  private HttpServer server;
+
+  private List<Integer> clientPorts = new ArrayList<Integer>();
+
+  private Map<String, String> requestHeaders = new HashMap<String, String>();
+
+  private XMLABaseComponent component;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 ); //$NON-NLS-1$
+    server.createContext( "/xmla", new HttpHandler() { //$NON-NLS-1$
+      public void handle( final HttpExchange exchange ) throws IOException {
+        synchronized ( clientPorts ) {
+          clientPorts.add( exchange.getRemoteAddress().getPort() );
+        }
+        requestHeaders.put( "SOAPAction", //$NON-NLS-1$
+          exchange.getRequestHeaders().getFirst( "SOAPAction" ) ); //$NON-NLS-1$
+        requestHeaders.put( "Authorization", //$NON-NLS-1$
+          exchange.getRequestHeaders().getFirst( "Authorization" ) ); //$NON-NLS-1$
+        String request = IOUtils.toString( exchange.getRequestBody(), "UTF-8" ); //$NON-NLS-1$
+        int status = 200;
+        String reply;
+        if ( request.contains( "DISCOVER_DATASOURCES" ) ) { //$NON-NLS-1$
+          reply = DISCOVER_REPLY;
+        } else if ( request.contains( "broken" ) ) { //$NON-NLS-1$
+          status = 500;
+          reply = FAULT_REPLY;
+        } else {
+          reply = EXECUTE_REPLY;
+        }
+        byte[] content = reply.getBytes( "UTF-8" ); //$NON-NLS-1$
+        exchange.getResponseHeaders().add( "Content-Type", "text/xml; charset=utf-8" ); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.sendResponseHeaders( status, content.length );
+        exchange.getResponseBody().write( content );
+        exchange.close();
+      }
+    } );
+    server.start();
+
+    component = new XMLADataComponent();
+    component.buildURl( "http://localhost:" + server.getAddress().getPort() + "/xmla", //$NON-NLS-1$ //$NON-NLS-2$
+      "joe", "password" ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  @After
+  public void tearDown() {
+    server.stop( 0 );
+  }
+
   private boolean runMethodDetermineProvider( String param ) {
     XMLABaseComponent mock = mock( XMLABaseComponent.class );
 
@@ -23,6 +127,13 @@ public class XMLABaseComponentTest {
     return true;
   }
 
+  private void discover() throws Exception {
+    Map dataSource = component.discoverDS();
+    Method method = XMLABaseComponent.class.getDeclaredMethod( "setProviderAndDataSource", Map.class );
+    method.setAccessible( true );
+    method.invoke( component, dataSource );
+  }
+
   @Test
   public void testCase1() throws Exception {
     Assert.assertTrue( "error during method invocation", runMethodDetermineProvider( "PROVIDER=MONDRIAN" ) );
@@ -40,4 +151,65 @@ public class XMLABaseComponentTest {
     Assert.assertTrue( "error during method invocation", runMethodDetermineProvider( "provider=mondrian" ) );
   }
 
+  @Test
+  public void testDiscoverReadsDataSourceRow() throws Exception {
+    Map dataSource = component.discoverDS();
+
+    Assert.assertEquals( "Mondrian", dataSource.get( "ProviderName" ) );
+    Assert.assertEquals( "Provider=Mondrian;DataSource=Pentaho", dataSource.get( "DataSourceInfo" ) );
+    Assert.assertEquals( "\"urn:schemas-microsoft-com:xml-analysis:Discover\"", requestHeaders.get( "SOAPAction" ) );
+    Assert.assertEquals( "Basic am9lOnBhc3N3b3Jk", requestHeaders.get( "Authorization" ) );
+  }
+
+  @Test
+  public void testExecuteQueryFillsRowsFromCells() throws Exception {
+    discover();
+
+    Assert.assertTrue( component.executeQuery( "select from [Sales]", "SampleData" ) );
+
+    IPentahoResultSet resultSet = component.getResultSet();
+    Assert.assertEquals( 3, resultSet.getRowCount() );
+    Assert.assertEquals( 2, resultSet.getColumnCount() );
+    Assert.assertEquals( "74748", resultSet.getValueAt( 0, 0 ) );
+    Assert.assertEquals( "63530.43", resultSet.getValueAt( 0, 1 ) );
+    Assert.assertEquals( "67659", resultSet.getValueAt( 1, 0 ) );
+    Assert.assertNull( resultSet.getValueAt( 1, 1 ) );
+    Assert.assertNull( resultSet.getValueAt( 2, 0 ) );
+    Assert.assertEquals( "52896.3", resultSet.getValueAt( 2, 1 ) );
+
+    Object[][] columnHeaders = resultSet.getMetaData().getColumnHeaders();
+    Assert.assertEquals( "Unit Sales", columnHeaders[0][0] );
+    Assert.assertEquals( "Store Cost", columnHeaders[0][1] );
+    Object[][] rowHeaders = resultSet.getMetaData().getRowHeaders();
+    Assert.assertEquals( 3, rowHeaders.length );
+    Assert.assertEquals( "WA", rowHeaders[2][0] );
+    Assert.assertEquals( "\"urn:schemas-microsoft-com:xml-analysis:Execute\"", requestHeaders.get( "SOAPAction" ) );
+  }
+
+  @Test
+  public void testQueriesReuseConnection() throws Exception {
+    discover();
+    for ( int i = 0; i < 5; i++ ) {
+      Assert.assertTrue( component.executeQuery( "select from [Sales]", "SampleData" ) );
+    }
+
+    Assert.assertEquals( 6, clientPorts.size() );
+    Assert.assertEquals( 1, new HashSet<Integer>( clientPorts ).size() );
+  }
+
+  @Test
+  public void testSoapFaultIsThrown() throws Exception {
+    discover();
+    try {
+      component.executeQuery( "select broken from [Sales]", "SampleData" );
+      Assert.fail();
+    } catch ( XMLAException e ) {
+      Assert.assertTrue( e.getMessage(), e.getMessage().contains( "fault string=MDX parse failed" ) );
+      Assert.assertTrue( e.getMessage(), e.getMessage().contains( "code = 00HSBE02" ) );
+    }
+
+    // the connection is still good for the next query
+    Assert.assertTrue( component.executeQuery( "select from [Sales]", "SampleData" ) );
+  }
+
 }
@@ -0,0 +1,141 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.condition.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+
+import org.apache.commons.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+@SuppressWarnings( "nls" )
+public class RhinoScriptCacheTest {
+
+  private static final Log logger = mock( Log.class );
+
+  private static final String LOOP_SCRIPT =
+      "var total = 0; for ( var i = 0; i < 20; i++ ) { total += Math.max( i, 3 ); } total > 10;";
+
+  @Before
+  public void setUp() {
+    RhinoScriptCache.reset();
+  }
+
+  @After
+  public void tearDown() {
+    RhinoScriptCache.reset();
+  }
+
+  @Test
+  public void getScript_compiles_once() {
+    RhinoScriptCache cache = new RhinoScriptCache( -1, 10 );
+    Context cx = cache.enterContext();
+    try {
+      Script first = cache.getScript( cx, "1 + 1;" );
+      Script second = cache.getScript( cx, "1 + 1;" );
+      assertSame( first, second );
+      assertEquals( 1, cache.size() );
+    } finally {
+      Context.exit();
+    }
+  }
+
+  @Test
+  public void getScript_evicts_least_recently_used() {
+    RhinoScriptCache cache = new RhinoScriptCache( -1, 2 );
+    Context cx = cache.enterContext();
+    try {
+      Script a = cache.getScript( cx, "'a';" );
+      cache.getScript( cx, "'b';" );
+      cache.getScript( cx, "'a';" );
+      cache.getScript( cx, "'c';" );
+      assertEquals( 2, cache.size() );
+      assertSame( a, cache.getScript( cx, "'a';" ) );
+    } finally {
+      Context.exit();
+    }
+  }
+
+  @Test
+  public void invalid_optimization_level_falls_back_to_default() {
+    assertEquals( RhinoScriptCache.DEFAULT_OPTIMIZATION_LEVEL, new RhinoScriptCache( 42, 10 ).getOptimizationLevel() );
+    assertEquals( 9, new RhinoScriptCache( 9, 10 ).getOptimizationLevel() );
+  }
+
+  @Test
+  public void variables_do_not_leak_between_scopes() throws Exception {
+    RhinoScriptCache cache = new RhinoScriptCache( -1, 10 );
+    Context cx = cache.enterContext();
+    try {
+      Scriptable first = cache.newScope( cx );
+      cache.exec( cx, first, "var leaked = 'yes';" );
+      Scriptable second = cache.newScope( cx );
+      Object result = cache.exec( cx, second, "typeof leaked;" );
+      assertEquals( "undefined", result );
+      assertFalse( ScriptableObject.hasProperty( cache.getSharedScope( cx ), "leaked" ) );
+      // standard objects are still reachable through the shared scope
+      assertEquals( 3.0, ( (Number) cache.exec( cx, second, "Math.max( 1, 3 );" ) ).doubleValue(), 0 );
+    } finally {
+      Context.exit();
+    }
+  }
+
+  @Test
+  public void conditional_execution_runs_with_cached_script() throws Exception {
+    ConditionalExecution conditionalExecution = new ConditionalExecution();
+    conditionalExecution.setScript( LOOP_SCRIPT );
+    assertTrue( conditionalExecution.shouldExecute( Collections.EMPTY_MAP, logger ) );
+    assertTrue( conditionalExecution.shouldExecute( Collections.EMPTY_MAP, logger ) );
+    assertEquals( 1, RhinoScriptCache.getInstance().size() );
+  }
+
+  @Test
+  public void cached_script_gives_same_result_as_interpreted_source() throws Exception {
+    Object expected;
+    Context cx = ContextFactory.getGlobal().enterContext();
+    try {
+      Scriptable scope = cx.initStandardObjects( new RhinoScriptable() );
+      expected = cx.evaluateString( scope, LOOP_SCRIPT, "<cmd>", 1, null );
+    } finally {
+      Context.exit();
+    }
+
+    RhinoScriptCache cache = new RhinoScriptCache( -1, 10 );
+    for ( int i = 0; i < 3; i++ ) {
+      cx = cache.enterContext();
+      try {
+        assertEquals( expected, cache.exec( cx, cache.newScope( cx ), LOOP_SCRIPT ) );
+      } finally {
+        Context.exit();
+      }
+    }
+    assertEquals( 1, cache.size() );
+  }
+}
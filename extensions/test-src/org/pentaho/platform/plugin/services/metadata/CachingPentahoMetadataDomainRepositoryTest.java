@@ -18,6 +18,7 @@
 
 package org.pentaho.platform.plugin.services.metadata;
 
+import org.pentaho.metadata.model.Domain;
 import org.pentaho.metadata.util.LocalizationUtil;
 import org.pentaho.metadata.util.XmiParser;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
@@ -25,7 +26,7 @@ import org.pentaho.platform.repository2.unified.RepositoryUtils;
 
 /**
  * Class Description
- * 
+ *
  * @author <a href="mailto:dkincade@pentaho.com">David M. Kincade</a>
  */
 public class CachingPentahoMetadataDomainRepositoryTest extends PentahoMetadataDomainRepositoryTest {
@@ -37,4 +38,55 @@ public class CachingPentahoMetadataDomainRepositoryTest extends PentahoMetadataD
       final RepositoryUtils repositoryUtils, final XmiParser xmiParser, final LocalizationUtil localizationUtil ) {
     return new CachingPentahoMetadataDomainRepository( repository, repositoryUtils, xmiParser, localizationUtil );
   }
+
+  public void testStoringOneDomainKeepsTheOthers() throws Exception {
+    final CachingPentahoMetadataDomainRepository cachingRepository =
+        (CachingPentahoMetadataDomainRepository) domainRepositorySpy;
+    domainRepositorySpy.storeDomain( createDomain( "first" ), true );
+    domainRepositorySpy.storeDomain( createDomain( "second" ), true );
+    assertEquals( 2, cachingRepository.getSize() );
+
+    final Domain first = domainRepositorySpy.getDomain( "first" );
+    domainRepositorySpy.storeDomain( createDomain( "second" ), true );
+    domainRepositorySpy.removeDomain( "third" );
+    assertSame( first, domainRepositorySpy.getDomain( "first" ) );
+
+    domainRepositorySpy.removeDomain( "second" );
+    assertEquals( 1, cachingRepository.getSize() );
+    assertFalse( domainRepositorySpy.getDomainIds().contains( "second" ) );
+    assertNull( domainRepositorySpy.getDomain( "second" ) );
+  }
+
+  public void testLeastRecentlyUsedDomainsAreEvicted() throws Exception {
+    final CachingPentahoMetadataDomainRepository cachingRepository =
+        (CachingPentahoMetadataDomainRepository) domainRepositorySpy;
+    cachingRepository.setMaxDomains( 2 );
+    domainRepositorySpy.storeDomain( createDomain( "first" ), true );
+    domainRepositorySpy.storeDomain( createDomain( "second" ), true );
+    domainRepositorySpy.getDomain( "first" );
+    domainRepositorySpy.storeDomain( createDomain( "third" ), true );
+
+    assertEquals( 2, cachingRepository.getSize() );
+    assertEquals( 1, cachingRepository.getEvictionCount() );
+    assertEquals( 3, domainRepositorySpy.getDomainIds().size() );
+
+    // "second" was used least recently, so it has to be read again
+    final long misses = cachingRepository.getMissCount();
+    final long hits = cachingRepository.getHitCount();
+    domainRepositorySpy.getDomain( "first" );
+    assertEquals( hits + 1, cachingRepository.getHitCount() );
+    assertNotNull( domainRepositorySpy.getDomain( "second" ) );
+    assertEquals( misses + 1, cachingRepository.getMissCount() );
+    assertEquals( 2, cachingRepository.getSize() );
+
+    cachingRepository.setMaxSize( 0 );
+    assertEquals( 0, cachingRepository.getSize() );
+    assertEquals( 0, cachingRepository.getWeight() );
+  }
+
+  private static Domain createDomain( final String domainId ) {
+    final Domain domain = new Domain();
+    domain.setId( domainId );
+    return domain;
+  }
 }
@@ -72,8 +72,8 @@ public class PentahoMetadataDomainRepositoryTest extends TestCase {
 
   IUnifiedRepository repository;
   private PentahoMetadataDomainRepository domainRepository;
-  private PentahoMetadataDomainRepository domainRepositorySpy;
-  private IAclNodeHelper aclNodeHelper;
+  PentahoMetadataDomainRepository domainRepositorySpy;
+  IAclNodeHelper aclNodeHelper;
 
   protected PentahoMetadataDomainRepository createDomainRepository( final IUnifiedRepository repository ) {
     return new PentahoMetadataDomainRepository( repository );
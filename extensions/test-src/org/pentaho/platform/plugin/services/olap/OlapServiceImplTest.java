@@ -18,6 +18,7 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
@@ -31,11 +32,13 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.olap4j.OlapConnection;
+import org.olap4j.metadata.NamedList;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
 import org.pentaho.platform.plugin.action.olap.IOlapServiceException;
@@ -852,6 +855,49 @@ public class OlapServiceImplTest {
     }
   }
 
+  @Test
+  public void testFlushesOneCatalog() throws Exception {
+    stubHostedServer();
+    final Properties properties = new Properties();
+    properties.put(
+      RolapConnectionProperties.Locale.name(),
+      getLocale().toString() );
+    OlapConnection conn = mock( OlapConnection.class );
+    when( server.getConnection( "Pentaho", "myHostedServer", null, properties ) ).thenReturn( conn );
+    olapService.flush( session, "myHostedServer" );
+    verify( mockXmlaExtra ).flushSchemaCache( conn );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testCatalogsServedFromSnapshot() throws Exception {
+    PentahoSystem.getCacheManager( null ).clearRegionCache( OlapServiceImpl.CATALOG_CACHE_REGION );
+    try {
+      stubHostedServer();
+      OlapConnection conn = mock( OlapConnection.class );
+      NamedList<org.olap4j.metadata.Schema> schemas = mock( NamedList.class );
+      when( schemas.iterator() ).thenReturn( Collections.<org.olap4j.metadata.Schema>emptyList().iterator() );
+      when( conn.getOlapSchemas() ).thenReturn( schemas );
+      when( server.getConnection( eq( "Pentaho" ), eq( "myHostedServer" ), any( String.class ),
+        any( Properties.class ) ) ).thenReturn( conn );
+
+      List<IOlapService.Catalog> catalogs = olapService.getCatalogs( session );
+      assertEquals( 1, catalogs.size() );
+      assertEquals( "myHostedServer", catalogs.get( 0 ).name );
+
+      // The second call is served from the snapshot, without connecting again.
+      assertEquals( 1, olapService.getCatalogs( session ).size() );
+      verify( server, times( 1 ) ).getConnection( eq( "Pentaho" ), eq( "myHostedServer" ), any( String.class ),
+        any( Properties.class ) );
+
+      // Removing the catalog takes it out of the snapshot right away.
+      olapService.removeCatalog( "myHostedServer", session );
+      assertTrue( olapService.getCatalogs( session ).isEmpty() );
+    } finally {
+      PentahoSystem.getCacheManager( null ).clearRegionCache( OlapServiceImpl.CATALOG_CACHE_REGION );
+    }
+  }
+
   private static Locale getLocale() {
     final Locale locale = LocaleHelper.getLocale();
     if ( locale != null ) {
@@ -0,0 +1,155 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings( "nls" )
+public class StaticContentTest {
+
+  private static final long LOADED = 1400000000000L;
+
+  private byte[] script;
+
+  private StaticContent content;
+
+  private MockHttpServletRequest request;
+
+  private MockHttpServletResponse response;
+
+  @Before
+  public void setUp() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < 100; i++ ) {
+      sb.append( "var line" ).append( i ).append( " = 'some javascript';\n" );
+    }
+    script = sb.toString().getBytes( "UTF-8" );
+    content = new StaticContent( script, "text/javascript", LOADED );
+    request = new MockHttpServletRequest( "GET", "/plugin/files/script.js" );
+    response = new MockHttpServletResponse();
+  }
+
+  @Test
+  public void testServesContentWithValidators() throws Exception {
+    content.reply( request ).writeTo( response );
+
+    assertEquals( 200, response.getStatus() );
+    assertEquals( content.getETag(), response.getHeader( "ETag" ) );
+    assertEquals( StaticContent.formatDate( LOADED ), response.getHeader( "Last-Modified" ) );
+    assertEquals( "Accept-Encoding", response.getHeader( "Vary" ) );
+    assertNull( response.getHeader( "Content-Encoding" ) );
+    assertTrue( Arrays.equals( script, response.getContentAsByteArray() ) );
+
+    // the same bytes always give the same tag
+    assertEquals( content.getETag(), new StaticContent( script.clone(), "text/javascript", -1 ).getETag() );
+  }
+
+  @Test
+  public void testNotModified() throws Exception {
+    request.addHeader( "If-None-Match", "\"other\", " + content.getETag() );
+    content.reply( request ).writeTo( response );
+    assertEquals( 304, response.getStatus() );
+    assertEquals( 0, response.getContentAsByteArray().length );
+
+    request = new MockHttpServletRequest( "GET", "/plugin/files/script.js" );
+    response = new MockHttpServletResponse();
+    request.addHeader( "If-Modified-Since", StaticContent.formatDate( LOADED + 60000 ) );
+    content.reply( request ).writeTo( response );
+    assertEquals( 304, response.getStatus() );
+
+    // a tag that does not match wins over the date
+    request = new MockHttpServletRequest( "GET", "/plugin/files/script.js" );
+    response = new MockHttpServletResponse();
+    request.addHeader( "If-None-Match", "\"other\"" );
+    request.addHeader( "If-Modified-Since", StaticContent.formatDate( LOADED + 60000 ) );
+    content.reply( request ).writeTo( response );
+    assertEquals( 200, response.getStatus() );
+  }
+
+  @Test
+  public void testGzipWhenAccepted() throws Exception {
+    request.addHeader( "Accept-Encoding", "deflate, gzip;q=0.8" );
+    content.reply( request ).writeTo( response );
+
+    assertEquals( "gzip", response.getHeader( "Content-Encoding" ) );
+    assertFalse( content.getETag().equals( response.getHeader( "ETag" ) ) );
+    byte[] body = response.getContentAsByteArray();
+    assertTrue( body.length < script.length );
+    byte[] unzipped = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( body ) ) );
+    assertTrue( Arrays.equals( script, unzipped ) );
+    // compressed once
+    assertSame( content.getGzipped(), content.getGzipped() );
+
+    // the tag of the gzip variant validates too
+    request = new MockHttpServletRequest( "GET", "/plugin/files/script.js" );
+    response = new MockHttpServletResponse();
+    request.addHeader( "If-None-Match", content.getGzipETag() );
+    content.reply( request ).writeTo( response );
+    assertEquals( 304, response.getStatus() );
+
+    assertFalse( StaticContent.acceptsGzip( "gzip;q=0, deflate" ) );
+    assertFalse( StaticContent.acceptsGzip( null ) );
+    assertFalse( new StaticContent( new byte[1024], "image/png", -1 ).isCompressible() );
+    assertFalse( new StaticContent( new byte[10], "text/css", -1 ).isCompressible() );
+  }
+
+  @Test
+  public void testByteRanges() throws Exception {
+    request.addHeader( "Range", "bytes=10-19" );
+    request.addHeader( "Accept-Encoding", "gzip" );
+    content.reply( request ).writeTo( response );
+
+    assertEquals( 206, response.getStatus() );
+    assertEquals( "bytes 10-19/" + script.length, response.getHeader( "Content-Range" ) );
+    assertNull( response.getHeader( "Content-Encoding" ) );
+    assertTrue( Arrays.equals( Arrays.copyOfRange( script, 10, 20 ), response.getContentAsByteArray() ) );
+
+    assertTrue( Arrays.equals( new long[] { script.length - 5, script.length - 1 },
+        StaticContent.parseRange( "bytes=-5", script.length ) ) );
+    assertTrue( Arrays.equals( new long[] { 100, script.length - 1 },
+        StaticContent.parseRange( "bytes=100-", script.length ) ) );
+    assertNull( StaticContent.parseRange( "bytes=1-2,5-6", script.length ) );
+    assertNull( StaticContent.parseRange( "lines=1-2", script.length ) );
+
+    request = new MockHttpServletRequest( "GET", "/plugin/files/script.js" );
+    response = new MockHttpServletResponse();
+    request.addHeader( "Range", "bytes=" + script.length + "-" );
+    content.reply( request ).writeTo( response );
+    assertEquals( 416, response.getStatus() );
+    assertEquals( "bytes */" + script.length, response.getHeader( "Content-Range" ) );
+
+    // a stale If-Range gets the whole content
+    request = new MockHttpServletRequest( "GET", "/plugin/files/script.js" );
+    response = new MockHttpServletResponse();
+    request.addHeader( "Range", "bytes=10-19" );
+    request.addHeader( "If-Range", "\"stale\"" );
+    content.reply( request ).writeTo( response );
+    assertEquals( 200, response.getStatus() );
+    assertTrue( Arrays.equals( script, response.getContentAsByteArray() ) );
+  }
+}
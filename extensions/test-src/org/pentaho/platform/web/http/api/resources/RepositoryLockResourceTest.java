@@ -0,0 +1,94 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.repository2.unified.ILockRegistry;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
+
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RepositoryLockResourceTest {
+
+  RepositoryLockResource lockResource;
+
+  ILockRegistry lockRegistry;
+
+  @Before
+  public void setup() {
+    lockRegistry = mock( ILockRegistry.class );
+    lockResource = spy( new RepositoryLockResource() );
+    doReturn( lockRegistry ).when( lockResource ).getLockRegistry();
+    doReturn( true ).when( lockResource ).canAdminister();
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testGetLockedFiles() {
+    Date lockDate = new Date( 1000L );
+    RepositoryFile file =
+        new RepositoryFile.Builder( "id", "file.prpt" ).path( "/home/suzy/file.prpt" ).locked( true ).lockOwner(
+            "suzy" ).lockDate( lockDate ).build();
+    doReturn( Arrays.asList( file ) ).when( lockRegistry ).getLockedFiles( "suzy", new Date( 2000L ) );
+
+    Response response = lockResource.getLockedFiles( "suzy", 2000L );
+
+    assertEquals( Response.Status.OK.getStatusCode(), response.getStatus() );
+    List<RepositoryFileDto> files = ( (GenericEntity<List<RepositoryFileDto>>) response.getEntity() ).getEntity();
+    assertEquals( 1, files.size() );
+    assertEquals( "/home/suzy/file.prpt", files.get( 0 ).getPath() );
+    assertEquals( "suzy", files.get( 0 ).getLockOwner() );
+    assertEquals( lockDate, files.get( 0 ).getLockDate() );
+  }
+
+  @Test
+  public void testExpireLocks() {
+    doReturn( 3 ).when( lockRegistry ).expireLocks( null, new Date( 2000L ) );
+
+    Response response = lockResource.expireLocks( null, 2000L );
+
+    assertEquals( Response.Status.OK.getStatusCode(), response.getStatus() );
+    assertEquals( "3", response.getEntity() );
+  }
+
+  @Test
+  public void testWithoutFiltersSelectsAllLocks() {
+    lockResource.expireLocks( null, null );
+
+    verify( lockRegistry ).expireLocks( null, null );
+  }
+
+  @Test
+  public void testNonAdministratorIsRejected() {
+    doReturn( false ).when( lockResource ).canAdminister();
+
+    assertEquals( Response.Status.UNAUTHORIZED.getStatusCode(), lockResource.getLockedFiles( null, null )
+        .getStatus() );
+    assertEquals( Response.Status.UNAUTHORIZED.getStatusCode(), lockResource.expireLocks( null, null ).getStatus() );
+    verifyZeroInteractions( lockRegistry );
+  }
+}
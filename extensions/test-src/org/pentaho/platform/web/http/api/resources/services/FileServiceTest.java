@@ -29,6 +29,7 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -68,6 +69,7 @@ import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileTreeDto;
 import org.pentaho.platform.repository2.unified.webservices.StringKeyStringValueDto;
 import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+import org.pentaho.platform.web.http.api.resources.FileBatchJobStatus;
 import org.pentaho.platform.web.http.api.resources.SessionResource;
 import org.pentaho.platform.web.http.api.resources.Setting;
 import org.pentaho.platform.web.http.api.resources.StringListWrapper;
@@ -100,15 +102,14 @@ public class FileServiceTest {
 
     fileService.doDeleteFiles( params );
 
-    verify( fileService.getRepoWs(), times( 1 ) ).deleteFile( "file1", null );
-    verify( fileService.getRepoWs(), times( 1 ) ).deleteFile( "file2", null );
+    verify( fileService.repository, times( 1 ) ).deleteFilesInBatch( fileIds( "file1", "file2" ), false, null );
   }
 
   @Test
   public void testDoDeleteFilesException() {
     String params = "file1,file2";
-    doThrow( new IllegalArgumentException() ).when(
-      fileService.defaultUnifiedRepositoryWebService ).deleteFile( anyString(), anyString() );
+    doReturn( failures( "file1", new IllegalArgumentException() ) ).when( fileService.repository )
+      .deleteFilesInBatch( fileIds( "file1", "file2" ), false, null );
 
     try {
       fileService.doDeleteFiles( params );
@@ -318,8 +319,7 @@ public class FileServiceTest {
 
     fileService.doDeleteFilesPermanent( params );
 
-    verify( fileService.getRepoWs(), times( 1 ) ).deleteFileWithPermanentFlag( "file1", true, null );
-    verify( fileService.getRepoWs(), times( 1 ) ).deleteFileWithPermanentFlag( "file2", true, null );
+    verify( fileService.repository, times( 1 ) ).deleteFilesInBatch( fileIds( "file1", "file2" ), true, null );
   }
 
   @Test
@@ -359,9 +359,8 @@ public class FileServiceTest {
   @Test
   public void testDoDeleteFilesPermanentException() {
     String params = "file1,file2";
-    doThrow( new IllegalArgumentException() ).when(
-      fileService.defaultUnifiedRepositoryWebService ).deleteFileWithPermanentFlag( anyString(), eq( true ),
-      anyString() );
+    doReturn( failures( "file2", new IllegalArgumentException() ) ).when( fileService.repository )
+      .deleteFilesInBatch( fileIds( "file1", "file2" ), true, null );
 
     try {
       fileService.doDeleteFilesPermanent( params );
@@ -383,8 +382,7 @@ public class FileServiceTest {
 
     fileService.doMoveFiles( destPathId, StringUtils.join( params, "," ) );
 
-    verify( fileService.getRepoWs(), times( 1 ) ).moveFile( params[ 0 ], destPathId, null );
-    verify( fileService.getRepoWs(), times( 1 ) ).moveFile( params[ 1 ], destPathId, null );
+    verify( fileService.repository, times( 1 ) ).moveFilesInBatch( fileIds( params ), destPathId, null );
   }
 
   @Test
@@ -398,8 +396,7 @@ public class FileServiceTest {
       fileService.doMoveFiles( destPathId, StringUtils.join( params, "," ) );
       Assert.assertTrue( false );
     } catch ( FileNotFoundException e ) {
-      verify( fileService.getRepoWs(), times( 0 ) ).moveFile( params[ 0 ], destPathId, null );
-      verify( fileService.getRepoWs(), times( 0 ) ).moveFile( params[ 1 ], destPathId, null );
+      verify( fileService.repository, times( 0 ) ).moveFilesInBatch( anyList(), anyString(), anyString() );
     }
   }
 
@@ -412,15 +409,15 @@ public class FileServiceTest {
     doReturn( destPathId ).when( repositoryFileDto ).getPath();
 
     doReturn( repositoryFileDto ).when( fileService.defaultUnifiedRepositoryWebService ).getFile( destPathId );
-    doThrow( new InternalError() ).when( fileService.defaultUnifiedRepositoryWebService ).moveFile(
-      params[ 0 ], destPathId, null );
+    doReturn( failures( params[ 0 ], new RuntimeException() ) ).when( fileService.repository ).moveFilesInBatch(
+      fileIds( params ), destPathId, null );
 
     try {
       fileService.doMoveFiles( destPathId, StringUtils.join( params, "," ) );
       fail(); //This line should never be reached
-    } catch ( Throwable e ) {
-      verify( fileService.getRepoWs(), times( 1 ) ).moveFile( params[ 0 ], destPathId, null );
-      verify( fileService.getRepoWs(), times( 0 ) ).moveFile( params[ 1 ], destPathId, null );
+    } catch ( InternalError e ) {
+      // the files are moved together, the one that failed does not stop the others
+      verify( fileService.repository, times( 1 ) ).moveFilesInBatch( fileIds( params ), destPathId, null );
     }
   }
 
@@ -430,26 +427,76 @@ public class FileServiceTest {
 
     fileService.doRestoreFiles( StringUtils.join( params, "," ) );
 
-    verify( fileService.getRepoWs(), times( 1 ) ).undeleteFile( params[ 0 ], null );
-    verify( fileService.getRepoWs(), times( 1 ) ).undeleteFile( params[ 1 ], null );
+    verify( fileService.repository, times( 1 ) ).undeleteFilesInBatch( fileIds( params ), null );
   }
 
   @Test
   public void testDoRestoreFilesException() throws Exception {
     String[] params = { "file1", "file2" };
 
-    doThrow( new InternalError() ).when( fileService.defaultUnifiedRepositoryWebService ).undeleteFile(
-      params[ 0 ], null );
+    doReturn( failures( params[ 0 ], new RuntimeException() ) ).when( fileService.repository ).undeleteFilesInBatch(
+      fileIds( params ), null );
 
     try {
       fileService.doRestoreFiles( StringUtils.join( params, "," ) );
       fail(); //This line should never be reached
     } catch ( InternalError e ) {
-      verify( fileService.getRepoWs(), times( 1 ) ).undeleteFile( params[ 0 ], null );
-      verify( fileService.getRepoWs(), times( 0 ) ).undeleteFile( params[ 1 ], null );
+      verify( fileService.repository, times( 1 ) ).undeleteFilesInBatch( fileIds( params ), null );
+    }
+  }
+
+  @Test
+  public void testBatchJobProcessesChunks() throws Exception {
+    String[] params = new String[ FileBatchJob.CHUNK_SIZE + 1 ];
+    for ( int i = 0; i < params.length; i++ ) {
+      params[ i ] = "file" + i;
+    }
+    doReturn( failures( "file3", new RuntimeException( "locked" ) ) ).when( fileService.repository )
+      .deleteFilesInBatch( anyList(), eq( false ), anyString() );
+
+    FileBatchJob job =
+      new FileBatchJob( fileService, "admin", FileService.BATCH_DELETE, null, null, fileIds( params ) );
+    assertEquals( 0, job.getStatus().getProcessed() );
+    job.process();
+
+    verify( fileService.repository, times( 2 ) ).deleteFilesInBatch( anyList(), eq( false ), anyString() );
+    FileBatchJobStatus status = job.getStatus();
+    assertEquals( params.length, status.getTotal() );
+    assertEquals( params.length, status.getProcessed() );
+    assertFalse( status.isDone() );
+    assertEquals( 1, status.getFailures().size() );
+    assertEquals( "file3", status.getFailures().get( 0 ).getName() );
+    assertTrue( status.getFailures().get( 0 ).getValue().contains( "locked" ) );
+  }
+
+  @Test
+  public void testDoStartBatchJobValidatesOperation() throws Exception {
+    try {
+      fileService.doStartBatchJob( "rename", null, null, "file1" );
+      fail();
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+
+    doReturn( null ).when( fileService.defaultUnifiedRepositoryWebService ).getFile( "/test" );
+    try {
+      fileService.doStartBatchJob( FileService.BATCH_MOVE, ":test", null, "file1" );
+      fail();
+    } catch ( FileNotFoundException e ) {
+      // expected
     }
   }
 
+  private static List<Serializable> fileIds( String... ids ) {
+    return new ArrayList<Serializable>( Arrays.asList( ids ) );
+  }
+
+  private static Map<Serializable, Exception> failures( String fileId, Exception e ) {
+    Map<Serializable, Exception> failures = new HashMap<Serializable, Exception>();
+    failures.put( fileId, e );
+    return failures;
+  }
+
   @Test
   public void testDoGetFileAsInline() throws FileNotFoundException {
     /*
@@ -626,6 +626,36 @@ public class SchedulerServiceTest {
     verify( schedulerService.scheduler, times( 1 ) ).getJobs( any( IJobFilter.class ) );
   }
 
+  @Test
+  public void testGetJobsSortedAndPaged() throws Exception {
+    IPentahoSession mockPentahoSession = mock( IPentahoSession.class );
+
+    doReturn( mockPentahoSession ).when( schedulerService ).getSession();
+    doReturn( "admin" ).when( mockPentahoSession ).getName();
+    doReturn( true ).when( schedulerService ).canAdminister( mockPentahoSession );
+    List<Job> mockJobs = new ArrayList<Job>();
+    for ( String name : new String[] { "c", "a", "d", "b" } ) {
+      Job job = new Job();
+      job.setJobId( name );
+      job.setJobName( name );
+      mockJobs.add( job );
+    }
+    doReturn( mockJobs ).when( schedulerService.scheduler ).getJobs( any( IJobFilter.class ) );
+
+    List<Job> jobs = schedulerService.getJobs( "jobName", 1, 2 );
+
+    assertEquals( 2, jobs.size() );
+    assertEquals( "b", jobs.get( 0 ).getJobName() );
+    assertEquals( "c", jobs.get( 1 ).getJobName() );
+
+    try {
+      schedulerService.getJobs( "unknown", 0, -1 );
+      fail();
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+  }
+
   @Test
   public void testDoGetGeneratedContentForSchedule() throws Exception {
     String lineageId = "test.prpt";
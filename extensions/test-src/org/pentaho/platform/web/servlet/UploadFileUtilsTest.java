@@ -0,0 +1,240 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneApplicationContext;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.web.servlet.messages.Messages;
+
+@SuppressWarnings( "nls" )
+public class UploadFileUtilsTest {
+
+  private File solutionRoot;
+
+  private File uploadFolder;
+
+  private IApplicationContext applicationContext;
+
+  private ISystemSettings systemSettings;
+
+  private StringWriter writer;
+
+  private UploadFileUtils utils;
+
+  @Before
+  public void setUp() throws Exception {
+    solutionRoot = new File( System.getProperty( "java.io.tmpdir" ), "test-upload-file-utils" );
+    FileUtils.deleteDirectory( solutionRoot );
+    applicationContext = PentahoSystem.getApplicationContext();
+    systemSettings = PentahoSystem.getSystemSettings();
+    PentahoSystem.setApplicationContext( new StandaloneApplicationContext( solutionRoot.getAbsolutePath(), "" ) );
+
+    // the defaults apply: 300000 bytes per file and expanded archive, 3000000 bytes for the folder
+    createUtils();
+  }
+
+  private void createUtils() {
+    writer = new StringWriter();
+    utils = new UploadFileUtils( null );
+    utils.setWriter( writer );
+    utils.setShouldUnzip( true );
+    utils.setFileName( "upload.zip" );
+    uploadFolder = utils.getPathDir();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    PentahoSystem.setApplicationContext( applicationContext );
+    PentahoSystem.setSystemSettingsService( systemSettings );
+    FileUtils.deleteDirectory( solutionRoot );
+  }
+
+  private void setLimit( final String setting, final String value ) {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    when( settings.getSystemSetting( anyString(), anyString() ) ).thenAnswer( new Answer<String>() {
+      public String answer( InvocationOnMock invocation ) {
+        return (String) invocation.getArguments()[1];
+      }
+    } );
+    when( settings.getSystemSetting( eq( "file-upload-defaults/" + setting ), anyString() ) ).thenReturn( value );
+    PentahoSystem.setSystemSettingsService( settings );
+    createUtils();
+  }
+
+  private void upload( final String name, final byte[] content ) throws IOException {
+    FileItemStream item = mock( FileItemStream.class );
+    when( item.getName() ).thenReturn( name );
+    when( item.openStream() ).thenReturn( new ByteArrayInputStream( content ) );
+    utils.setUploadedFileItemStream( item );
+  }
+
+  private byte[] zip( final String[] names, final byte[][] contents ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZipOutputStream out = new ZipOutputStream( bytes );
+    for ( int i = 0; i < names.length; i++ ) {
+      out.putNextEntry( new ZipEntry( names[i] ) );
+      out.write( contents[i] );
+      out.closeEntry();
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void testZipIsExtractedIntoFolder() throws Exception {
+    upload( "data.zip", zip( new String[] { "a.csv", ".hidden", "b.csv" }, new byte[][] { "1,2".getBytes(),
+      "x".getBytes(), "3,4".getBytes() } ) );
+
+    assertTrue( utils.process() );
+
+    assertEquals( "a.csv\nb.csv", writer.toString() );
+    assertEquals( "1,2", FileUtils.readFileToString( new File( uploadFolder, "a.csv" ) ) );
+    assertEquals( "3,4", FileUtils.readFileToString( new File( uploadFolder, "b.csv" ) ) );
+    assertEquals( 2, uploadFolder.list().length );
+  }
+
+  @Test
+  public void testZipBombIsRejected() throws Exception {
+    FileUtils.writeStringToFile( new File( uploadFolder, "a.csv" ), "old" );
+    upload( "bomb.zip", zip( new String[] { "a.csv", "b.csv" }, new byte[][] { "new".getBytes(),
+      new byte[1000000] } ) );
+
+    assertFalse( utils.process() );
+
+    assertEquals( Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0006_FILE_TOO_BIG" ), writer
+        .toString() );
+    // nothing of the upload is left behind and the existing file is not replaced
+    assertEquals( 1, uploadFolder.list().length );
+    assertEquals( "old", FileUtils.readFileToString( new File( uploadFolder, "a.csv" ) ) );
+  }
+
+  @Test
+  public void testEntryOutsideOfFolderIsRejected() throws Exception {
+    upload( "evil.zip", zip( new String[] { "../evil.csv" }, new byte[][] { "1,2".getBytes() } ) );
+
+    assertFalse( utils.process() );
+
+    assertEquals( Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0008_FILE_LOCATION_INVALID" ),
+        writer.toString() );
+    assertFalse( new File( uploadFolder.getParentFile(), "evil.csv" ).exists() );
+  }
+
+  @Test
+  public void testPlainFileIsStoredUnderFileName() throws Exception {
+    utils.setShouldUnzip( false );
+    utils.setFileName( "plain.csv" );
+    upload( "plain.csv", "1,2".getBytes() );
+
+    assertTrue( utils.process() );
+
+    assertEquals( "plain.csv", writer.toString() );
+    assertEquals( "1,2", FileUtils.readFileToString( new File( uploadFolder, "plain.csv" ) ) );
+    assertEquals( 1, uploadFolder.list().length );
+  }
+
+  @Test
+  public void testTooManyEntriesAreRejected() throws Exception {
+    setLimit( "max-archive-entries", "2" );
+    upload( "many.zip", zip( new String[] { "sub/dir/a.csv", "b.csv", "c.csv" }, new byte[][] { "1".getBytes(),
+      "2".getBytes(), "3".getBytes() } ) );
+
+    assertFalse( utils.process() );
+
+    assertEquals( Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0009_TOO_MANY_ENTRIES" ), writer
+        .toString() );
+    // the files and the folders created for them are removed
+    assertEquals( 0, uploadFolder.list().length );
+  }
+
+  @Test
+  public void testTooBigEntryIsRejected() throws Exception {
+    setLimit( "max-entry-limit", "100" );
+    upload( "big.zip", zip( new String[] { "sub/a.csv", "sub/dir/b.csv" }, new byte[][] { "1,2".getBytes(),
+      new byte[1000] } ) );
+
+    assertFalse( utils.process() );
+
+    assertEquals( Messages.getInstance().getErrorString( "UploadFileServlet.ERROR_0010_ENTRY_TOO_BIG" ), writer
+        .toString() );
+    assertEquals( 0, uploadFolder.list().length );
+  }
+
+  @Test
+  public void testFailedCommitRestoresReplacedFiles() throws Exception {
+    FileUtils.writeStringToFile( new File( uploadFolder, "a.csv" ), "old" );
+    FileUtils.writeStringToFile( new File( uploadFolder, "sub/b.csv" ), "kept" );
+    // the second entry cannot replace the folder of the same name, after the first one was moved in place
+    upload( "clash.zip", zip( new String[] { "a.csv", "sub" }, new byte[][] { "new".getBytes(), "1".getBytes() } ) );
+
+    try {
+      utils.process();
+      fail();
+    } catch ( IOException e ) {
+      // expected
+    }
+
+    assertEquals( "old", FileUtils.readFileToString( new File( uploadFolder, "a.csv" ) ) );
+    assertEquals( "kept", FileUtils.readFileToString( new File( uploadFolder, "sub/b.csv" ) ) );
+    String[] names = uploadFolder.list();
+    Arrays.sort( names );
+    assertEquals( Arrays.asList( "a.csv", "sub" ), Arrays.asList( names ) );
+  }
+
+  @Test
+  public void testTemporaryEntryIsNamedAfterItsBaseName() throws Exception {
+    utils = new UploadFileUtils( new StandaloneSession( "tester" ) );
+    utils.setWriter( writer );
+    utils.setShouldUnzip( true );
+    utils.setTemporary( true );
+    upload( "data.zip", zip( new String[] { "v1.0/data" }, new byte[][] { "1,2".getBytes() } ) );
+
+    assertTrue( utils.process() );
+
+    String name = writer.toString();
+    assertTrue( name, name.endsWith( ".tmp" ) && ( name.indexOf( '/' ) == -1 ) && ( name.indexOf( ".0" ) == -1 ) );
+    assertEquals( "1,2", FileUtils.readFileToString( new File( new File( solutionRoot, "system/tmp" ), name ) ) );
+  }
+}
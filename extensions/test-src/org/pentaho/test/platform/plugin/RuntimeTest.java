@@ -100,6 +100,16 @@ public class RuntimeTest extends BaseTest {
     finishTest();
   }
 
+  public void testParallelLooping() {
+    startTest();
+    IRuntimeContext context = run( "/test/platform/ParallelLoopingTest.xaction" ); //$NON-NLS-1$
+    assertEquals(
+        Messages.getInstance().getString( "BaseTest.USER_RUNNING_ACTION_SEQUENCE" ), IRuntimeContext.RUNTIME_STATUS_SUCCESS, context.getStatus() ); //$NON-NLS-1$
+    // the outputs are taken over in the order of the loop, so the last region wins as in a sequential loop
+    assertEquals( "REPORT FOR OVERSEAS", context.getOutputParameter( "region-title" ).getStringValue() ); //$NON-NLS-1$ //$NON-NLS-2$
+    finishTest();
+  }
+
   /*
    * public void testBursting() { startTest(); IRuntimeContext context = run("test", "platform",
    * "BurstingTest.xaction"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ assertEquals(
@@ -120,6 +130,7 @@ public class RuntimeTest extends BaseTest {
       test.testMultiComponent();
       // test.testMultiComponentLoop();
       test.testLooping();
+      test.testParallelLooping();
       // test.testBursting();
       // test.testHTMLBursting();
       test.testForcePrompt();
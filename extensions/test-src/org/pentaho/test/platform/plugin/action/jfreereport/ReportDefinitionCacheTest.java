@@ -0,0 +1,122 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.test.platform.plugin.action.jfreereport;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.platform.plugin.action.jfreereport.helper.ReportDefinitionCache;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.modules.parser.base.ReportGenerator;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+
+public class ReportDefinitionCacheTest {
+
+  private static final File REPORT_DEFINITION = new File( "test-src/solution/test/reporting/JFreeQuadForRegion.xml" );
+
+  private File reportFile;
+
+  @BeforeClass
+  public static void bootReportingEngine() {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    reportFile = File.createTempFile( "report-definition", ".xml" );
+    FileUtils.copyFile( REPORT_DEFINITION, reportFile );
+  }
+
+  @After
+  public void tearDown() {
+    reportFile.delete();
+  }
+
+  @Test
+  public void testEveryRunGetsItsOwnCopy() throws Exception {
+    ReportDefinitionCache cache = new ReportDefinitionCache( 10 );
+    ResourceKey key = ReportDefinitionCache.getResourceManager().createKey( reportFile );
+
+    MasterReport first = cache.getReport( reportFile.getPath(), key, key );
+    MasterReport second = cache.getReport( reportFile.getPath(), key, key );
+    assertNotNull( first );
+    assertNotSame( first, second );
+    assertEquals( 1, cache.size() );
+
+    first.setName( "changed by the first run" );
+    assertEquals( "Quadrant For Region", second.getName() );
+    assertEquals( "Quadrant For Region", cache.getReport( reportFile.getPath(), key, key ).getName() );
+  }
+
+  @Test
+  public void testChangedDefinitionIsParsedAgain() throws Exception {
+    ReportDefinitionCache cache = new ReportDefinitionCache( 10 );
+    ResourceKey key = ReportDefinitionCache.getResourceManager().createKey( reportFile );
+    assertEquals( "Quadrant For Region", cache.getReport( reportFile.getPath(), key, key ).getName() );
+
+    String definition = FileUtils.readFileToString( reportFile, "UTF-8" );
+    FileUtils.writeStringToFile( reportFile, definition.replace( "name=\"Quadrant For Region\"",
+        "name=\"Renamed Quadrant\"" ), "UTF-8" );
+    reportFile.setLastModified( reportFile.lastModified() + 10000 );
+
+    assertEquals( "Renamed Quadrant", cache.getReport( reportFile.getPath(), key, key ).getName() );
+    assertEquals( 1, cache.size() );
+  }
+
+  @Test
+  public void testDisabledCacheStillParses() throws Exception {
+    ReportDefinitionCache cache = new ReportDefinitionCache( 0 );
+    ResourceKey key = ReportDefinitionCache.getResourceManager().createKey( reportFile );
+    assertNotNull( cache.getReport( reportFile.getPath(), key, key ) );
+    assertEquals( 0, cache.size() );
+  }
+
+  /**
+   * Runs the same report repeatedly through the cache and checks every run gets what a fresh parse with a new resource
+   * manager, as the report component used to do, would give it.
+   */
+  @Test
+  public void testRepeatedRunsMatchFreshParse() throws Exception {
+    ResourceManager manager = new ResourceManager();
+    manager.registerDefaults();
+    ResourceKey freshKey = manager.createKey( reportFile );
+    MasterReport parsed = ReportGenerator.getInstance().parseReport( manager, freshKey, freshKey );
+
+    ReportDefinitionCache cache = new ReportDefinitionCache( 10 );
+    MasterReport previous = null;
+    for ( int i = 0; i < 50; i++ ) {
+      ResourceKey key = ReportDefinitionCache.getResourceManager().createKey( reportFile );
+      MasterReport report = cache.getReport( reportFile.getPath(), key, key );
+      assertEquals( parsed.getName(), report.getName() );
+      assertEquals( parsed.getQuery(), report.getQuery() );
+      assertNotSame( previous, report );
+      previous = report;
+    }
+    assertEquals( 1, cache.size() );
+  }
+}
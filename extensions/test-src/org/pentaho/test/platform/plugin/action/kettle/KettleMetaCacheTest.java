@@ -0,0 +1,91 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.test.platform.plugin.action.kettle;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.platform.plugin.action.kettle.KettleMetaCache;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+
+public class KettleMetaCacheTest {
+
+  @BeforeClass
+  public static void initKettle() throws Exception {
+    KettleEnvironment.init( false );
+  }
+
+  @Test
+  public void testCachedTransformationIsCopied() throws Exception {
+    KettleMetaCache cache = new KettleMetaCache( 10 );
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( "cached" );
+    cache.putTransMeta( "trans:a", "v1", transMeta );
+    // changes made by the caller after storing do not reach the cache
+    transMeta.setName( "changed" );
+
+    TransMeta first = cache.getTransMeta( "trans:a", "v1", null );
+    TransMeta second = cache.getTransMeta( "trans:a", "v1", null );
+    assertNotNull( first );
+    assertNotSame( first, second );
+    assertEquals( "cached", first.getName() );
+    first.clear();
+    assertEquals( "cached", second.getName() );
+    assertEquals( "cached", cache.getTransMeta( "trans:a", "v1", null ).getName() );
+  }
+
+  @Test
+  public void testNewVersionMisses() throws Exception {
+    KettleMetaCache cache = new KettleMetaCache( 10 );
+    JobMeta jobMeta = new JobMeta();
+    jobMeta.setName( "job" );
+    cache.putJobMeta( "job:a", "<job>1</job>", jobMeta );
+
+    assertNotNull( cache.getJobMeta( "job:a", "<job>1</job>", null ) );
+    assertNull( cache.getJobMeta( "job:a", "<job>2</job>", null ) );
+    // the outdated entry was dropped
+    assertEquals( 0, cache.size() );
+    assertNull( cache.getJobMeta( "job:a", null, null ) );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws Exception {
+    KettleMetaCache cache = new KettleMetaCache( 2 );
+    cache.putTransMeta( "a", "1", new TransMeta() );
+    cache.putTransMeta( "b", "1", new TransMeta() );
+    cache.getTransMeta( "a", "1", null );
+    cache.putTransMeta( "c", "1", new TransMeta() );
+
+    assertEquals( 2, cache.size() );
+    assertNotNull( cache.getTransMeta( "a", "1", null ) );
+    assertNull( cache.getTransMeta( "b", "1", null ) );
+  }
+
+  @Test
+  public void testDisabledCacheKeepsNothing() throws Exception {
+    KettleMetaCache cache = new KettleMetaCache( 0 );
+    cache.putTransMeta( "a", "1", new TransMeta() );
+    assertEquals( 0, cache.size() );
+  }
+}
@@ -0,0 +1,202 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.test.platform.plugin.action.kettle;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.platform.plugin.action.kettle.KettleStreamingResultSet;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class KettleStreamingResultSetTest {
+
+  private static final MemoryMetaData META_DATA = new MemoryMetaData( new String[][] { { "id", "name" } }, null );
+
+  @Test
+  public void testRowsAreReadInOrder() throws Exception {
+    final KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 10, 0 );
+    Thread producer = startProducer( resultSet, 1000, null );
+
+    assertEquals( 2, resultSet.getColumnCount() );
+    int count = 0;
+    for ( Object[] row = resultSet.next(); row != null; row = resultSet.next() ) {
+      assertEquals( count, row[0] );
+      count++;
+    }
+    producer.join( 5000 );
+    assertEquals( 1000, count );
+    assertNull( resultSet.next() );
+    resultSet.close();
+  }
+
+  @Test
+  public void testRowsCanBeReadAgain() throws Exception {
+    // more rows than the buffer holds, so most of them are spooled to a file
+    final KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 10, 0 );
+    Thread producer = startProducer( resultSet, 1000, null );
+
+    assertTrue( resultSet.isScrollable() );
+    assertEquals( 0, resultSet.next()[0] );
+    assertEquals( 1000, resultSet.getRowCount() );
+    producer.join( 5000 );
+    assertEquals( 1, resultSet.next()[0] );
+    assertEquals( 999, resultSet.getValueAt( 999, 0 ) );
+    assertEquals( "row 500", resultSet.getDataRow( 500 )[1] );
+    assertEquals( 1000, resultSet.getDataColumn( 0 ).length );
+    resultSet.beforeFirst();
+    assertEquals( 0, resultSet.next()[0] );
+    resultSet.close();
+    assertNull( resultSet.next() );
+  }
+
+  @Test
+  public void testProducerWaitsForConsumer() throws Exception {
+    final KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 5, 0 );
+    final AtomicInteger written = new AtomicInteger();
+    Thread producer = new Thread() {
+      public void run() {
+        try {
+          for ( int i = 0; i < 20; i++ ) {
+            resultSet.put( new Object[] { i, "row " + i } );
+            written.incrementAndGet();
+          }
+          resultSet.finish( null );
+        } catch ( InterruptedException e ) {
+          // test failed
+        }
+      }
+    };
+    producer.start();
+    Thread.sleep( 300 );
+    // only as many rows as fit in the buffer were written
+    assertEquals( 5, written.get() );
+
+    assertEquals( 0, resultSet.peek()[0] );
+    assertEquals( 0, resultSet.next()[0] );
+    assertEquals( 1, resultSet.next()[0] );
+    IPentahoResultSet copy = resultSet.memoryCopy();
+    assertEquals( 20, copy.getRowCount() );
+    assertEquals( 0, copy.getValueAt( 0, 0 ) );
+    assertEquals( 19, copy.getValueAt( 19, 0 ) );
+    producer.join( 5000 );
+    assertEquals( 20, written.get() );
+  }
+
+  @Test
+  public void testCloseStopsProducer() throws Exception {
+    final KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 5, 0 );
+    final AtomicBoolean stopped = new AtomicBoolean();
+    resultSet.setCloseHandler( new Runnable() {
+      public void run() {
+        stopped.set( true );
+      }
+    } );
+    final CountDownLatch dropped = new CountDownLatch( 1 );
+    Thread producer = new Thread() {
+      public void run() {
+        try {
+          for ( int i = 0; i < 100; i++ ) {
+            if ( !resultSet.put( new Object[] { i, "row " + i } ) ) {
+              dropped.countDown();
+              return;
+            }
+          }
+        } catch ( InterruptedException e ) {
+          // test failed
+        }
+      }
+    };
+    producer.start();
+    assertEquals( 0, resultSet.next()[0] );
+    resultSet.close();
+    assertTrue( stopped.get() );
+    assertTrue( dropped.await( 5, TimeUnit.SECONDS ) );
+    assertNull( resultSet.next() );
+  }
+
+  @Test
+  public void testAbandonedResultSetIsClosed() throws Exception {
+    KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 1, 300 );
+    assertTrue( resultSet.put( new Object[] { 0, "row 0" } ) );
+    // nobody reads, so the second row is dropped once the wait is over
+    assertFalse( resultSet.put( new Object[] { 1, "row 1" } ) );
+  }
+
+  @Test
+  public void testConsumerStopsWaitingForRows() throws Exception {
+    KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 10, 300 );
+    final AtomicBoolean stopped = new AtomicBoolean();
+    resultSet.setCloseHandler( new Runnable() {
+      public void run() {
+        stopped.set( true );
+      }
+    } );
+    try {
+      resultSet.next();
+      fail( "a transformation that writes no rows should not block the consumer forever" );
+    } catch ( IllegalStateException e ) {
+      // expected
+    }
+    assertTrue( stopped.get() );
+    assertFalse( resultSet.put( new Object[] { 0, "row 0" } ) );
+  }
+
+  @Test
+  public void testFailureIsRethrownAfterRows() throws Exception {
+    KettleStreamingResultSet resultSet = new KettleStreamingResultSet( META_DATA, 10, 0 );
+    startProducer( resultSet, 3, new Exception( "transformation failed" ) ).join( 5000 );
+    assertTrue( resultSet.isFinished() );
+    for ( int i = 0; i < 3; i++ ) {
+      assertEquals( i, resultSet.next()[0] );
+    }
+    try {
+      resultSet.next();
+      fail( "the transformation failure should be reported" );
+    } catch ( IllegalStateException e ) {
+      assertEquals( "transformation failed", e.getMessage() );
+    }
+  }
+
+  private static Thread startProducer( final KettleStreamingResultSet resultSet, final int rows,
+      final Throwable failure ) {
+    Thread producer = new Thread() {
+      public void run() {
+        try {
+          for ( int i = 0; i < rows; i++ ) {
+            resultSet.put( new Object[] { i, "row " + i } );
+          }
+        } catch ( InterruptedException e ) {
+          // test failed
+        }
+        resultSet.finish( failure );
+      }
+    };
+    producer.start();
+    return producer;
+  }
+}
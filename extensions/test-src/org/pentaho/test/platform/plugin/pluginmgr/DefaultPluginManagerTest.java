@@ -538,6 +538,65 @@ public class DefaultPluginManagerTest {
     assertEquals( "testPlugin", pluginManager.getPluginIdForType( "springDefinedCGtype" ) );
   }
 
+  @SuppressWarnings( "deprecation" )
+  @Test
+  public void test18_routingAcrossManyPlugins() throws PlatformInitializationException, PluginBeanException {
+    final int[] pluginCount = { 60 };
+    IPluginProvider provider = new IPluginProvider() {
+      public List<IPlatformPlugin> getPlugins( IPentahoSession session ) throws PlatformPluginRegistrationException {
+        List<IPlatformPlugin> plugins = new ArrayList<IPlatformPlugin>();
+        for ( int i = 0; i < pluginCount[0]; i++ ) {
+          PlatformPlugin p = new PlatformPlugin( new DefaultListableBeanFactory() );
+          p.setId( "test18Plugin" + i );
+          p.addStaticResourcePath( "/test18/" + i + "/resources", "resources" );
+
+          ContentGeneratorInfo cg = new ContentGeneratorInfo();
+          cg.setId( "test18cg" + i );
+          cg.setType( "test18type" + i );
+          cg.setTitle( "Test Generator 18-" + i );
+          cg.setClassname( "org.pentaho.test.platform.plugin.pluginmgr.ContentGenerator1" );
+          p.addContentGenerator( cg );
+
+          p.addBean( new PluginBeanDefinition( "test18bean" + i, "java.lang.String" ) );
+          plugins.add( p );
+        }
+        // a more specific url served by another plugin
+        PlatformPlugin nested = new PlatformPlugin( new DefaultListableBeanFactory() );
+        nested.setId( "test18Nested" );
+        nested.addStaticResourcePath( "/test18/0/resources/nested", "nested" );
+        plugins.add( nested );
+        return plugins;
+      }
+    };
+    microPlatform.defineInstance( IPluginProvider.class, provider ).start();
+
+    pluginManager.reload();
+
+    assertEquals( "test18Plugin42", pluginManager.getServicePlugin( "/test18/42/resources/js/main.js" ) );
+    assertEquals( "test18Plugin42", pluginManager.getServicePlugin( "/test18cg42/report" ) );
+    assertEquals( "test18Nested", pluginManager.getServicePlugin( "/test18/0/resources/nested/style.css" ) );
+    assertEquals( "test18Plugin0", pluginManager.getServicePlugin( "/test18/0/resources/nestedx/style.css" ) );
+    assertTrue( pluginManager.isStaticResource( "test18/59/resources" ) );
+    assertFalse( pluginManager.isStaticResource( "/test18/59" ) );
+    assertFalse( pluginManager.isStaticResource( "/test18/60/resources/main.js" ) );
+    assertNull( pluginManager.getServicePlugin( "/test18/resources" ) );
+    assertEquals( "test18Plugin17", pluginManager.getPluginIdForType( "test18type17" ) );
+    assertNull( pluginManager.getPluginIdForType( "test18type60" ) );
+    assertTrue( pluginManager.getBean( "test18bean33" ) instanceof String );
+    assertTrue( pluginManager.isBeanRegistered( "test18cg33" ) );
+    assertFalse( pluginManager.isBeanRegistered( "test18bean60" ) );
+
+    // a reload replaces the routes of the plugins that went away
+    pluginCount[0] = 10;
+    pluginManager.reload();
+
+    assertEquals( "test18Plugin9", pluginManager.getServicePlugin( "/test18/9/resources/js/main.js" ) );
+    assertFalse( pluginManager.isStaticResource( "/test18/42/resources/js/main.js" ) );
+    assertNull( pluginManager.getServicePlugin( "/test18cg42/report" ) );
+    assertNull( pluginManager.getPluginIdForType( "test18type17" ) );
+    assertEquals( "test18Nested", pluginManager.getServicePlugin( "/test18/0/resources/nested/style.css" ) );
+  }
+
   public String getSolutionPath() {
     return solutionPath;
   }
@@ -0,0 +1,201 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.test.platform.plugin.services.connections.sql;
+
+import junit.framework.TestCase;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.api.util.ITempFileDeleter;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneApplicationContext;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.engine.core.system.StandaloneTempFileDeleter;
+import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
+import org.pentaho.platform.plugin.services.connections.sql.SpoolingResultSet;
+import org.pentaho.platform.util.logging.SimpleLogger;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * Streams forward-only results from an in-memory HSQLDB database.
+ */
+@SuppressWarnings( "nls" )
+public class SpoolingResultSetTest extends TestCase {
+
+  private static final String DRIVER = "org.hsqldb.jdbcDriver";
+
+  private static final String URL = "jdbc:hsqldb:mem:spoolingtest";
+
+  private static final int ROWS = 50;
+
+  private SQLConnection connection;
+
+  private File spoolDirectory;
+
+  @Override
+  protected void setUp() throws Exception {
+    connection = new SQLConnection( DRIVER, URL, "sa", "", new SimpleLogger( this ) );
+    Connection nativeConnection = connection.getNativeConnection();
+    Statement stmt = nativeConnection.createStatement();
+    stmt.execute( "DROP TABLE ORDERS IF EXISTS" );
+    stmt.execute( "CREATE TABLE ORDERS (ID INTEGER, NAME VARCHAR(50), AMOUNT DECIMAL(10,2), CREATED TIMESTAMP)" );
+    stmt.close();
+    PreparedStatement insert = nativeConnection.prepareStatement( "INSERT INTO ORDERS VALUES (?, ?, ?, ?)" );
+    for ( int i = 0; i < ROWS; i++ ) {
+      insert.setInt( 1, i );
+      insert.setString( 2, ( i % 10 == 0 ) ? null : "order " + i );
+      insert.setBigDecimal( 3, new BigDecimal( i + ".25" ) );
+      insert.setTimestamp( 4, new Timestamp( 1000000000000L + i * 1000L ) );
+      insert.executeUpdate();
+    }
+    insert.close();
+
+    spoolDirectory = new File( System.getProperty( "java.io.tmpdir" ), "spooling-result-set-test" );
+    spoolDirectory.mkdirs();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    connection.close();
+    File[] files = spoolDirectory.listFiles();
+    if ( files != null ) {
+      for ( File file : files ) {
+        file.delete();
+      }
+    }
+    spoolDirectory.delete();
+  }
+
+  private SpoolingResultSet query( final int memoryRows ) throws Exception {
+    IPentahoResultSet source =
+        connection.executeQuery( "SELECT ID, NAME, AMOUNT, CREATED FROM ORDERS ORDER BY ID",
+            SQLConnection.RESULTSET_FORWARDONLY, SQLConnection.CONCUR_READONLY );
+    return new SpoolingResultSet( source, memoryRows, spoolDirectory );
+  }
+
+  public void testReadsRowsLazily() throws Exception {
+    SpoolingResultSet resultSet = query( 10 );
+    assertEquals( 4, resultSet.getColumnCount() );
+    assertEquals( "ID", resultSet.getMetaData().getColumnHeaders()[0][0] );
+
+    Object[] first = resultSet.next();
+    assertEquals( 0, ( (Number) first[0] ).intValue() );
+    assertFalse( resultSet.isSourceExhausted() );
+    assertFalse( resultSet.isSpooled() );
+
+    int count = 1;
+    while ( resultSet.next() != null ) {
+      count++;
+    }
+    assertEquals( ROWS, count );
+    assertTrue( resultSet.isSourceExhausted() );
+    resultSet.close();
+  }
+
+  public void testSpillsToFileForMultiplePasses() throws Exception {
+    SpoolingResultSet resultSet = query( 10 );
+    for ( int i = 0; i < 20; i++ ) {
+      resultSet.next();
+    }
+    assertTrue( resultSet.isSpooled() );
+    assertEquals( 1, spoolDirectory.listFiles().length );
+
+    assertEquals( ROWS, resultSet.getRowCount() );
+    assertEquals( 20, ( (Number) resultSet.next()[0] ).intValue() );
+
+    resultSet.beforeFirst();
+    for ( int i = 0; i < ROWS; i++ ) {
+      Object[] row = resultSet.next();
+      assertEquals( i, ( (Number) row[0] ).intValue() );
+      assertEquals( ( i % 10 == 0 ) ? null : "order " + i, row[1] );
+      assertEquals( 0, new BigDecimal( i + ".25" ).compareTo( (BigDecimal) row[2] ) );
+      assertEquals( new Timestamp( 1000000000000L + i * 1000L ), row[3] );
+    }
+    assertNull( resultSet.next() );
+
+    assertEquals( "order 33", resultSet.getValueAt( 33, 1 ) );
+    assertEquals( ROWS, resultSet.getDataColumn( 0 ).length );
+    assertEquals( "order 7", resultSet.getDataRow( 7 )[1] );
+
+    resultSet.close();
+    assertEquals( 0, spoolDirectory.listFiles().length );
+  }
+
+  public void testSpoolsToTempFileOfSession() throws Exception {
+    IApplicationContext previous = PentahoSystem.getApplicationContext();
+    PentahoSystem.setApplicationContext( new StandaloneApplicationContext( spoolDirectory.getAbsolutePath(), "" ) );
+    File tmpDirectory = new File( spoolDirectory, "system/tmp" );
+    try {
+      StandaloneSession session = new StandaloneSession( "spooler" );
+      StandaloneTempFileDeleter deleter = new StandaloneTempFileDeleter();
+      session.setAttribute( ITempFileDeleter.DELETER_SESSION_VARIABLE, deleter );
+      SpoolingResultSet resultSet = query( 10 );
+      resultSet.setSession( session );
+      assertEquals( ROWS, resultSet.getRowCount() );
+      assertTrue( resultSet.isSpooled() );
+
+      File[] spooled = tmpDirectory.listFiles();
+      assertEquals( 1, spooled.length );
+      assertTrue( deleter.hasTempFile( spooled[0].getName() ) );
+      resultSet.close();
+      assertFalse( spooled[0].exists() );
+    } finally {
+      PentahoSystem.setApplicationContext( previous );
+      File[] files = tmpDirectory.listFiles();
+      if ( files != null ) {
+        for ( File file : files ) {
+          file.delete();
+        }
+      }
+      tmpDirectory.delete();
+      tmpDirectory.getParentFile().delete();
+    }
+  }
+
+  public void testSmallResultStaysInMemory() throws Exception {
+    SpoolingResultSet resultSet = query( 1000 );
+    assertEquals( ROWS, resultSet.getRowCount() );
+    assertFalse( resultSet.isSpooled() );
+    assertEquals( 0, spoolDirectory.listFiles().length );
+
+    IPentahoResultSet copy = resultSet.memoryCopy();
+    assertEquals( ROWS, copy.getRowCount() );
+    assertEquals( "order 49", copy.getValueAt( 49, 1 ) );
+  }
+
+  public void testClosesConnectionWhenAllRowsRead() throws Exception {
+    SpoolingResultSet resultSet = query( 0 );
+    resultSet.setCloseSourceConnection( true );
+    resultSet.next();
+    assertTrue( connection.initialized() );
+    while ( resultSet.next() != null ) {
+      // read all rows
+    }
+    assertFalse( connection.initialized() );
+
+    // the rows read stay available after the connection was closed
+    resultSet.beforeFirst();
+    assertEquals( "order 1", resultSet.getDataRow( 1 )[1] );
+    resultSet.dispose();
+  }
+}
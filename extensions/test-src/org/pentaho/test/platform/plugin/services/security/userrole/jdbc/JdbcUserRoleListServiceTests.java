@@ -37,6 +37,7 @@ import org.springframework.security.userdetails.jdbc.JdbcDaoImpl;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -204,6 +205,59 @@ public class JdbcUserRoleListServiceTests {
     }
   }
 
+  @Test
+  public void testServesFromSnapshot() throws Exception {
+    JdbcUserRoleListService dao = makePopulatedJdbcUserRoleListService();
+    dao.setAllAuthoritiesQuery( "SELECT DISTINCT(AUTHORITY) AS AUTHORITY FROM AUTHORITIES ORDER BY 1" ); //$NON-NLS-1$
+    dao.setAllUsernamesQuery( "SELECT DISTINCT(USERNAME) FROM USERS ORDER BY USERNAME" ); //$NON-NLS-1$
+    dao.setAllUsernamesInRoleQuery(
+      "SELECT DISTINCT(USERNAME) AS USERNAME FROM AUTHORITIES WHERE AUTHORITY = ? ORDER BY 1" ); //$NON-NLS-1$
+    dao.setRefreshInterval( 300 );
+    dao.afterPropertiesSet();
+    assertEquals( -1, dao.getSnapshotAge() );
+
+    List<String> roles = dao.getAllRoles();
+    List<String> users = dao.getAllUsers();
+    assertTrue( roles.size() > 0 );
+    long queries = dao.getQueryCount();
+    assertTrue( dao.getSnapshotAge() >= 0 );
+
+    // callers get copies of the snapshot
+    roles.clear();
+    assertEquals( users, dao.getAllUsers() );
+    assertTrue( dao.getAllRoles().size() > 0 );
+    List<String> tellers = dao.getUsersInRole( "ROLE_TELLER" ); //$NON-NLS-1$
+    assertEquals( tellers, dao.getUsersInRole( "ROLE_TELLER" ) ); //$NON-NLS-1$
+    assertEquals( queries + 1, dao.getQueryCount() );
+
+    dao.invalidate();
+    assertEquals( -1, dao.getSnapshotAge() );
+    assertEquals( users, dao.getAllUsers() );
+    assertTrue( dao.getQueryCount() > queries + 1 );
+  }
+
+  @Test
+  public void testCachesRolesOfRecentUsers() throws Exception {
+    JdbcUserRoleListService dao = makePopulatedJdbcUserRoleListService();
+    dao.setUserDetailsService( makePopulatedJdbcDao() );
+    dao.setRefreshInterval( 300 );
+    dao.setMaxCachedUsers( 1 );
+    dao.afterPropertiesSet();
+
+    List<String> roles = dao.getRolesForUser( "rod" ); //$NON-NLS-1$
+    assertEquals( roles, dao.getRolesForUser( "rod" ) ); //$NON-NLS-1$
+    assertEquals( 1, dao.getQueryCount() );
+
+    // only one user is kept
+    dao.getRolesForUser( "dianne" ); //$NON-NLS-1$
+    assertEquals( roles, dao.getRolesForUser( "rod" ) ); //$NON-NLS-1$
+    assertEquals( 3, dao.getQueryCount() );
+
+    dao.invalidateUser( "rod" ); //$NON-NLS-1$
+    dao.getRolesForUser( "rod" ); //$NON-NLS-1$
+    assertEquals( 4, dao.getQueryCount() );
+  }
+
   protected JdbcUserRoleListService makePopulatedJdbcUserRoleListService() throws Exception {
     List<String> systemRoles = new ArrayList<String>();
     systemRoles.add( "Admin" );
@@ -58,6 +58,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -238,6 +239,36 @@ public class DefaultLdapUserRoleListServiceTests extends AbstractPentahoLdapInte
     }
   }
 
+  /**
+   * Same as <code>testGetAllUserNames1</code> but with a page size smaller than the number of groups, so the search
+   * has to follow the paged results cookie (or, if the server ignores the control, return everything at once).
+   */
+  @Test
+  public void testGetAllUserNamesPaged() throws Exception {
+    SearchControls con1 = new SearchControls();
+    con1.setReturningAttributes( new String[] { "uniqueMember" } ); //$NON-NLS-1$
+
+    LdapSearchParamsFactoryImpl paramFactory =
+        new LdapSearchParamsFactoryImpl( "ou=groups", "(objectClass=groupOfUniqueNames)", con1 ); //$NON-NLS-1$//$NON-NLS-2$
+    paramFactory.afterPropertiesSet();
+
+    Transformer transformer1 = new SearchResultToAttrValueList( "uniqueMember", "uid" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    GenericLdapSearch unpagedSearch = new GenericLdapSearch( getContextSource(), paramFactory, transformer1 );
+    unpagedSearch.afterPropertiesSet();
+
+    GenericLdapSearch pagedSearch = new GenericLdapSearch( getContextSource(), paramFactory, transformer1 );
+    pagedSearch.setPageSize( 1 );
+    pagedSearch.afterPropertiesSet();
+
+    List unpaged = unpagedSearch.search( new Object[0] );
+    List paged = pagedSearch.search( new Object[0] );
+
+    assertTrue( paged.contains( "pat" ) ); //$NON-NLS-1$
+    assertTrue( paged.contains( "admin" ) ); //$NON-NLS-1$
+    assertEquals( new HashSet( unpaged ), new HashSet( paged ) );
+  }
+
   @Test
   public void testGetAllUserNames1ForTenant() throws Exception {
     ITenant defaultTenant = new Tenant( "/pentaho/tenant0", true );
@@ -0,0 +1,97 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.test.platform.plugin.services.security.userrole.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.pentaho.platform.plugin.services.security.userrole.ldap.NestedLdapAuthoritiesPopulator;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.security.GrantedAuthorityImpl;
+
+/**
+ * Tests the precomputed role hierarchy of <code>NestedLdapAuthoritiesPopulator</code>.
+ */
+@SuppressWarnings( { "nls", "unchecked" } )
+public class NestedLdapAuthoritiesPopulatorTests {
+
+  private NestedLdapAuthoritiesPopulator createPopulator( final Map mapping ) {
+    NestedLdapAuthoritiesPopulator populator =
+        new NestedLdapAuthoritiesPopulator( mock( ContextSource.class ), "ou=groups" );
+    populator.setExtraRolesMapping( mapping );
+    return populator;
+  }
+
+  @Test
+  public void testAncestorsOfNestedRoles() {
+    Map mapping = new HashMap();
+    mapping.put( "Marketing", "BIReporting" );
+    mapping.put( "BIReporting", "Reporting" );
+    mapping.put( "Reporting", "Everyone" );
+    mapping.put( "Sales", "Everyone" );
+    NestedLdapAuthoritiesPopulator populator = createPopulator( mapping );
+
+    Set children = new HashSet();
+    children.add( new GrantedAuthorityImpl( "Marketing" ) );
+    Set ancestors = populator.getAncestorRoles( children );
+
+    Set expected = new HashSet();
+    expected.add( "BIReporting" );
+    expected.add( "Reporting" );
+    expected.add( "Everyone" );
+    assertEquals( expected, ancestors );
+  }
+
+  @Test
+  public void testCycleTerminates() {
+    Map mapping = new HashMap();
+    mapping.put( "A", "B" );
+    mapping.put( "B", "A" );
+    NestedLdapAuthoritiesPopulator populator = createPopulator( mapping );
+
+    Set children = new HashSet();
+    children.add( "A" );
+    Set ancestors = populator.getAncestorRoles( children );
+    assertEquals( 2, ancestors.size() );
+    assertTrue( ancestors.contains( "B" ) );
+  }
+
+  @Test
+  public void testMappingChangeRecomputesAncestors() {
+    Map mapping = new HashMap();
+    mapping.put( "A", "B" );
+    NestedLdapAuthoritiesPopulator populator = createPopulator( mapping );
+
+    Map newMapping = new HashMap();
+    newMapping.put( "A", "C" );
+    populator.setExtraRolesMapping( newMapping );
+
+    Set children = new HashSet();
+    children.add( "A" );
+    Set ancestors = populator.getAncestorRoles( children );
+    assertEquals( 1, ancestors.size() );
+    assertTrue( ancestors.contains( "C" ) );
+  }
+}
@@ -17,16 +17,25 @@
 
 package org.pentaho.test.platform.web;
 
-import com.mockrunner.mock.web.MockHttpServletRequest;
-import com.mockrunner.mock.web.MockHttpServletResponse;
-import com.mockrunner.mock.web.MockHttpSession;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneApplicationContext;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.web.servlet.ProxyServlet;
 import org.pentaho.test.platform.engine.core.BaseTestCase;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletConfig;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,11 +51,134 @@ public class ProxyServletTest extends BaseTestCase {
     return SOLUTION_PATH;
   }
 
+  private HttpServer upstream;
+
+  private ProxyServlet proxy;
+
+  // what the upstream server received last
+  private String upstreamMethod;
+
+  private String upstreamQuery;
+
+  private String upstreamBody;
+
+  private Map<String, String> upstreamHeaders = new HashMap<String, String>();
+
+  // what the upstream server answers
+  private int upstreamStatus = 200;
+
+  private byte[] upstreamContent = "<html>remote</html>".getBytes(); //$NON-NLS-1$
+
   public void setUp() {
     StandaloneApplicationContext applicationContext = new StandaloneApplicationContext( getSolutionPath(), "" ); //$NON-NLS-1$
     PentahoSystem.init( applicationContext, getRequiredListeners() );
   }
 
+  public void tearDown() {
+    if ( proxy != null ) {
+      proxy.destroy();
+    }
+    if ( upstream != null ) {
+      upstream.stop( 0 );
+    }
+    PentahoSessionHolder.removeSession();
+  }
+
+  private void startUpstream( final String... initParameters ) throws Exception {
+    upstream = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 ); //$NON-NLS-1$
+    upstream.createContext( "/pentaho", new HttpHandler() { //$NON-NLS-1$
+      public void handle( final HttpExchange exchange ) throws IOException {
+        upstreamMethod = exchange.getRequestMethod();
+        upstreamQuery = exchange.getRequestURI().getRawQuery();
+        upstreamBody = IOUtils.toString( exchange.getRequestBody() );
+        for ( String name : Arrays.asList( "Accept-Encoding", "Cookie", "If-None-Match", "_TRUST_USER_", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            "X-Trusted-User" ) ) { //$NON-NLS-1$
+          upstreamHeaders.put( name, exchange.getRequestHeaders().getFirst( name ) );
+        }
+        exchange.getResponseHeaders().add( "Content-Type", "text/html" ); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.getResponseHeaders().add( "Content-Encoding", "gzip" ); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.getResponseHeaders().add( "ETag", "\"v1\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.getResponseHeaders().add( "Set-Cookie", "JSESSIONID=remote" ); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.sendResponseHeaders( upstreamStatus, upstreamContent.length );
+        exchange.getResponseBody().write( upstreamContent );
+        exchange.close();
+      }
+    } );
+    upstream.start();
+
+    MockServletConfig config = new MockServletConfig();
+    config.addInitParameter( "ProxyURL", "http://localhost:" + upstream.getAddress().getPort() + "/pentaho" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    config.addInitParameter( "ReadTimeout", "5000" ); //$NON-NLS-1$ //$NON-NLS-2$
+    for ( int i = 0; i < initParameters.length; i += 2 ) {
+      config.addInitParameter( initParameters[i], initParameters[i + 1] );
+    }
+    proxy = new ProxyServlet();
+    proxy.init( config );
+    PentahoSessionHolder.setSession( new StandaloneSession( "joe" ) ); //$NON-NLS-1$
+  }
+
+  public void testGetIsPassedOnWithHeaders() throws Exception {
+    startUpstream();
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/pentaho/ViewAction" ); //$NON-NLS-1$ //$NON-NLS-2$
+    request.setServletPath( "/ViewAction" ); //$NON-NLS-1$
+    request.addParameter( "solution", "steel-wheels" ); //$NON-NLS-1$ //$NON-NLS-2$
+    request.addHeader( "Accept-Encoding", "gzip" ); //$NON-NLS-1$ //$NON-NLS-2$
+    request.addHeader( "If-None-Match", "\"v0\"" ); //$NON-NLS-1$ //$NON-NLS-2$
+    request.addHeader( "Cookie", "JSESSIONID=local" ); //$NON-NLS-1$ //$NON-NLS-2$
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    proxy.service( request, response );
+
+    assertEquals( "GET", upstreamMethod ); //$NON-NLS-1$
+    assertTrue( upstreamQuery.contains( "solution=steel-wheels" ) ); //$NON-NLS-1$
+    assertTrue( upstreamQuery.contains( "_TRUST_USER_=joe" ) ); //$NON-NLS-1$
+    assertEquals( "gzip", upstreamHeaders.get( "Accept-Encoding" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals( "\"v0\"", upstreamHeaders.get( "If-None-Match" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertNull( upstreamHeaders.get( "Cookie" ) ); //$NON-NLS-1$
+
+    assertEquals( 200, response.getStatus() );
+    // the compressed body is passed on untouched
+    assertEquals( "gzip", response.getHeader( "Content-Encoding" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals( "\"v1\"", response.getHeader( "ETag" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertNull( response.getHeader( "Set-Cookie" ) ); //$NON-NLS-1$
+    assertTrue( Arrays.equals( upstreamContent, response.getContentAsByteArray() ) );
+  }
+
+  public void testPostIsPassedOnWithStatus() throws Exception {
+    startUpstream();
+    upstreamStatus = 404;
+    for ( int i = 0; i < 3; i++ ) {
+      MockHttpServletRequest request = new MockHttpServletRequest( "POST", "/pentaho/ViewAction" ); //$NON-NLS-1$ //$NON-NLS-2$
+      request.setServletPath( "/ViewAction" ); //$NON-NLS-1$
+      request.addParameter( "_TRUST_USER_", "admin" ); //$NON-NLS-1$ //$NON-NLS-2$
+      MockHttpServletResponse response = new MockHttpServletResponse();
+
+      // the pooled connections are released after every request
+      proxy.service( request, response );
+
+      assertEquals( "POST", upstreamMethod ); //$NON-NLS-1$
+      assertEquals( "_TRUST_USER_=joe", upstreamBody ); //$NON-NLS-1$
+      assertEquals( 404, response.getStatus() );
+      assertTrue( Arrays.equals( upstreamContent, response.getContentAsByteArray() ) );
+    }
+  }
+
+  public void testSpoofedTrustUserHeaderIsNotPassedOn() throws Exception {
+    startUpstream( "TrustUserHeader", "X-Trusted-User" ); //$NON-NLS-1$ //$NON-NLS-2$
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/pentaho/ViewAction" ); //$NON-NLS-1$ //$NON-NLS-2$
+    request.setServletPath( "/ViewAction" ); //$NON-NLS-1$
+    request.addHeader( "_trust_user_", "admin" ); //$NON-NLS-1$ //$NON-NLS-2$
+    request.addHeader( "x-trusted-user", "admin" ); //$NON-NLS-1$ //$NON-NLS-2$
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    proxy.service( request, response );
+
+    assertTrue( upstreamQuery.contains( "_TRUST_USER_=joe" ) ); //$NON-NLS-1$
+    assertNull( upstreamHeaders.get( "_TRUST_USER_" ) ); //$NON-NLS-1$
+    assertNull( upstreamHeaders.get( "X-Trusted-User" ) ); //$NON-NLS-1$
+    assertEquals( 200, response.getStatus() );
+  }
+
   protected Map getRequiredListeners() {
     HashMap listeners = new HashMap();
     listeners.put( "globalObjects", "globalObjects" ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -54,10 +186,10 @@ public class ProxyServletTest extends BaseTestCase {
   }
 
   public void testService() throws ServletException, IOException {
-    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/ViewAction" ); //$NON-NLS-1$ //$NON-NLS-2$
     MockHttpSession session = new MockHttpSession();
     request.setSession( session );
-    request.setupAddParameter( "ProxyURL", "http://www.pentaho.org" ); //$NON-NLS-1$//$NON-NLS-2$
+    request.addParameter( "ProxyURL", "http://www.pentaho.org" ); //$NON-NLS-1$//$NON-NLS-2$
 
     MockHttpServletResponse response = new MockHttpServletResponse();
     ProxyServlet servlet = new ProxyServlet();
@@ -24,7 +24,8 @@ import org.pentaho.platform.api.engine.IPentahoSystemListener;
 public class HibernateSystemListener implements IPentahoSystemListener {
 
   public boolean startup( final IPentahoSession session ) {
-    return HibernateUtil.initialize();
+    // loading HibernateUtil already built the session factory, only try again if that failed
+    return HibernateUtil.isInitialized() || HibernateUtil.initialize();
   }
 
   public void shutdown() {
@@ -34,6 +34,7 @@ import org.pentaho.platform.api.data.IDBDatasourceService;
 import org.pentaho.platform.api.engine.IApplicationContext;
 import org.pentaho.platform.api.engine.IPentahoSystemEntryPoint;
 import org.pentaho.platform.api.engine.IPentahoSystemExitPoint;
+import org.pentaho.platform.api.engine.IPersistenceScope;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.repository.ContentException;
 import org.pentaho.platform.api.repository.ISearchable;
@@ -53,23 +54,39 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemExitPoint {
+public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemExitPoint, IPersistenceScope {
 
   private static final Log log = LogFactory.getLog( HibernateUtil.class );
 
   private static final boolean debug = PentahoSystem.debug;
 
-  private static boolean useNewDatasourceService = false;
+  private static volatile boolean useNewDatasourceService = false;
 
-  private static Configuration configuration;
+  // The configuration and session factory are built once and only replaced as a whole by rebuildSessionFactory, so
+  // they are published through volatile fields and read without locking. In a managed environment the factory is the
+  // one hibernate bound to JNDI, looked up on first use.
+  private static volatile Configuration configuration;
 
-  private static SessionFactory sessionFactory;
+  private static volatile SessionFactory sessionFactory;
 
-  private static final byte[] lock = new byte[0];
+  private static volatile boolean initialized;
+
+  private static volatile IApplicationContext registeredContext;
+
+  private static final AtomicLong leakedSessionCount = new AtomicLong();
 
   private static final ThreadLocal<Session> threadSession = new ThreadLocal<Session>();
 
+  // when the session of the thread was opened, and where when debugging, to report sessions that are never closed
+  private static final ThreadLocal<Long> threadSessionOpened = new ThreadLocal<Long>();
+
+  private static final ThreadLocal<Throwable> threadSessionOrigin = new ThreadLocal<Throwable>();
+
+  // set while a request or job that closes the session of the thread when it is done is running
+  private static final ThreadLocal<Boolean> threadSessionScope = new ThreadLocal<Boolean>();
+
   private static final ThreadLocal<Transaction> threadTransaction = new ThreadLocal<Transaction>();
 
   private static final ThreadLocal<Interceptor> threadInterceptor = new ThreadLocal<Interceptor>();
@@ -81,7 +98,7 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
 
   private static String dialect;
 
-  private static Context iniCtx;
+  private static volatile Context iniCtx;
 
   private static final String QUERYWILDCARD = "%{0}%"; //$NON-NLS-1$
 
@@ -96,9 +113,7 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
     // really wants to use the new datasource service features to hook up
     // a core service like Hibernate, this is now toggle-able.
     //
-    synchronized ( HibernateUtil.lock ) {
-      useNewDatasourceService = useNewService;
-    }
+    useNewDatasourceService = useNewService;
   }
 
   //
@@ -107,10 +122,15 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
 
   protected static boolean initialize() {
     IApplicationContext applicationContext = PentahoSystem.getApplicationContext();
-    // Add to entry/exit points list
-    HibernateUtil hUtil = new HibernateUtil();
-    applicationContext.addEntryPointHandler( hUtil );
-    applicationContext.addExitPointHandler( hUtil );
+    // Add to entry/exit points list, once per application context
+    if ( HibernateUtil.registeredContext != applicationContext ) {
+      HibernateUtil hUtil = new HibernateUtil();
+      applicationContext.addEntryPointHandler( hUtil );
+      applicationContext.addExitPointHandler( hUtil );
+      // lets the scheduler bound its jobs like PentahoHibernateFilter bounds requests
+      PentahoSystem.registerObject( hUtil, IPersistenceScope.class );
+      HibernateUtil.registeredContext = applicationContext;
+    }
 
     // Look for some hibernate-specific properties...
 
@@ -127,15 +147,16 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
     }
 
     try {
-      HibernateUtil.configuration = new Configuration();
-      HibernateUtil.configuration.setEntityResolver( new PentahoEntityResolver() );
-      HibernateUtil.configuration.setListener( "load", new HibernateLoadEventListener() ); //$NON-NLS-1$
+      // the configuration is only published once it is complete
+      Configuration configuration = new Configuration();
+      configuration.setEntityResolver( new PentahoEntityResolver() );
+      configuration.setListener( "load", new HibernateLoadEventListener() ); //$NON-NLS-1$
 
       if ( hibernateConfigurationFile != null ) {
         String configPath = applicationContext.getSolutionPath( hibernateConfigurationFile );
         File cfgFile = new File( configPath );
         if ( cfgFile.exists() ) {
-          HibernateUtil.configuration.configure( cfgFile );
+          configuration.configure( cfgFile );
         } else {
           HibernateUtil.log.error( Messages.getInstance().getErrorString(
               "HIBUTIL.ERROR_0012_CONFIG_NOT_FOUND", configPath ) ); //$NON-NLS-1$
@@ -146,17 +167,17 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
         // file in a file named hibernate.cfg.xml
         HibernateUtil.log.error( Messages.getInstance().getErrorString(
             "HIBUTIL.ERROR_0420_CONFIGURATION_ERROR_NO_HIB_CFG_FILE_SETTING" ) ); //$NON-NLS-1$
-        HibernateUtil.configuration.configure();
+        configuration.configure();
       }
-      String dsName = HibernateUtil.configuration.getProperty( "connection.datasource" ); //$NON-NLS-1$
+      String dsName = configuration.getProperty( "connection.datasource" ); //$NON-NLS-1$
       if ( ( dsName != null ) && dsName.toUpperCase().endsWith( "HIBERNATE" ) ) { //$NON-NLS-1$
         // IDBDatasourceService datasourceService =  (IDBDatasourceService) PentahoSystem.getObjectFactory().getObject("IDBDatasourceService",null);     //$NON-NLS-1$
         IDBDatasourceService datasourceService = getDatasourceService();
         String actualDSName = datasourceService.getDSBoundName( "Hibernate" ); //$NON-NLS-1$
-        HibernateUtil.configuration.setProperty( "hibernate.connection.datasource", actualDSName ); //$NON-NLS-1$
+        configuration.setProperty( "hibernate.connection.datasource", actualDSName ); //$NON-NLS-1$
       }
 
-      HibernateUtil.dialect = HibernateUtil.configuration.getProperty( "dialect" ); //$NON-NLS-1$
+      HibernateUtil.dialect = configuration.getProperty( "dialect" ); //$NON-NLS-1$
 
       /*
        * configuration.addResource("org/pentaho/platform/repository/runtime/RuntimeElement.hbm.xml"); //$NON-NLS-1$
@@ -166,15 +187,16 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
        */
       if ( !HibernateUtil.hibernateManaged ) {
         HibernateUtil.log.info( Messages.getInstance().getString( "HIBUTIL.USER_HIBERNATEUNMANAGED" ) ); //$NON-NLS-1$
-        HibernateUtil.sessionFactory = HibernateUtil.configuration.buildSessionFactory();
+        HibernateUtil.sessionFactory = configuration.buildSessionFactory();
       } else {
-        HibernateUtil.factoryJndiName = HibernateUtil.configuration.getProperty( Environment.SESSION_FACTORY_NAME );
+        HibernateUtil.factoryJndiName = configuration.getProperty( Environment.SESSION_FACTORY_NAME );
         if ( HibernateUtil.factoryJndiName == null ) {
           HibernateUtil.log.error( Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0013_NO_SESSION_FACTORY" ) );
           return false;
         }
         HibernateUtil.log.info( Messages.getInstance().getString( "HIBUTIL.USER_HIBERNATEMANAGED" ) ); //$NON-NLS-1$
-        HibernateUtil.configuration.buildSessionFactory(); // Let hibernate Bind it
+        HibernateUtil.sessionFactory = null;
+        configuration.buildSessionFactory(); // Let hibernate Bind it
         // to JNDI...
 
         // BISERVER-2006: Below content is a community contribution see the JIRA case for more info
@@ -192,7 +214,12 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
         // --------- End Contribution ---------
 
       }
-      Dialect.getDialect( HibernateUtil.configuration.getProperties() );
+      Dialect.getDialect( configuration.getProperties() );
+      HibernateUtil.configuration = configuration;
+      HibernateUtil.initialized = true;
+      if ( HibernateUtil.hibernateManaged ) {
+        HibernateUtil.getSessionFactory(); // look up the factory hibernate bound now instead of on first use
+      }
       return true;
     } catch ( Throwable ex ) {
       HibernateUtil.log.error( Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0006_BUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
@@ -220,6 +247,13 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
     }
   }
 
+  /**
+   * @return true once the session factory has been built
+   */
+  static boolean isInitialized() {
+    return HibernateUtil.initialized;
+  }
+
   private static String lookupSetting( IApplicationContext applicationContext, String applicationContextName,
       String hibernateSettingsName, String pentahoXmlName ) {
 
@@ -254,23 +288,25 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
    * @return SessionFactory
    */
   public static SessionFactory getSessionFactory() {
-    if ( !HibernateUtil.hibernateManaged ) {
-      return HibernateUtil.sessionFactory;
+    SessionFactory sf = HibernateUtil.sessionFactory;
+    if ( ( sf != null ) || !HibernateUtil.hibernateManaged ) {
+      return sf;
     }
-    SessionFactory sf = null;
     try {
-      if ( HibernateUtil.iniCtx == null ) {
-        HibernateUtil.iniCtx = new InitialContext();
+      Context ctx = HibernateUtil.iniCtx;
+      if ( ctx == null ) {
+        ctx = new InitialContext();
+        HibernateUtil.iniCtx = ctx;
       }
       String jndiName = HibernateUtil.factoryJndiName;
       try {
-        sf = (SessionFactory) HibernateUtil.iniCtx.lookup( jndiName );
+        sf = (SessionFactory) ctx.lookup( jndiName );
       } catch ( Exception ignored ) {
         // CHECKSTYLES IGNORE
       }
       if ( sf == null ) {
         try {
-          sf = (SessionFactory) HibernateUtil.iniCtx.lookup( "java:" + jndiName ); //$NON-NLS-1$
+          sf = (SessionFactory) ctx.lookup( "java:" + jndiName ); //$NON-NLS-1$
         } catch ( Exception ignored ) {
           ignored.printStackTrace();
         }
@@ -278,6 +314,8 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
     } catch ( NamingException ignored ) {
       // CHECKSTYLES IGNORE
     }
+    // Two threads looking it up at the same time find the same factory, so there is no need to lock here
+    HibernateUtil.sessionFactory = sf;
     return sf;
   }
 
@@ -296,19 +334,18 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
    */
   public static void rebuildSessionFactory() throws RepositoryException {
     if ( !HibernateUtil.hibernateManaged ) {
-      synchronized ( HibernateUtil.lock ) {
-        try {
-          HibernateUtil.sessionFactory = HibernateUtil.getConfiguration().buildSessionFactory();
-        } catch ( Exception ex ) {
-          HibernateUtil.log.error(
-              Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
-          throw new RepositoryException( Messages.getInstance().getErrorString(
-              "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
-        }
+      try {
+        HibernateUtil.sessionFactory = HibernateUtil.getConfiguration().buildSessionFactory();
+      } catch ( Exception ex ) {
+        HibernateUtil.log.error(
+            Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
+        throw new RepositoryException( Messages.getInstance().getErrorString(
+            "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
       }
     } else {
       try {
         HibernateUtil.getConfiguration().buildSessionFactory();
+        HibernateUtil.sessionFactory = null; // look up the new one on next use
       } catch ( Exception ex ) {
         HibernateUtil.log.error(
             Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
@@ -325,21 +362,20 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
    */
   public static void rebuildSessionFactory( final Configuration cfg ) throws RepositoryException {
     if ( !HibernateUtil.hibernateManaged ) {
-      synchronized ( HibernateUtil.lock ) {
-        try {
-          HibernateUtil.sessionFactory = cfg.buildSessionFactory();
-          HibernateUtil.configuration = cfg;
-        } catch ( Exception ex ) {
-          HibernateUtil.log.error(
-              Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
-          throw new RepositoryException( Messages.getInstance().getErrorString(
-              "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
-        }
+      try {
+        HibernateUtil.sessionFactory = cfg.buildSessionFactory();
+        HibernateUtil.configuration = cfg;
+      } catch ( Exception ex ) {
+        HibernateUtil.log.error(
+            Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
+        throw new RepositoryException( Messages.getInstance().getErrorString(
+            "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
       }
     } else {
       try {
         cfg.buildSessionFactory();
         HibernateUtil.configuration = cfg;
+        HibernateUtil.sessionFactory = null; // look up the new one on next use
       } catch ( Exception ex ) {
         HibernateUtil.log.error(
             Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0007_REBUILD_SESSION_FACTORY" ), ex ); //$NON-NLS-1$
@@ -363,16 +399,21 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
         if ( HibernateUtil.debug ) {
           HibernateUtil.log.debug( Messages.getInstance().getString( "HIBUTIL.DEBUG_OPEN_NEW_SESSION" ) ); //$NON-NLS-1$
         }
-        if ( HibernateUtil.getInterceptor() != null ) {
+        Interceptor interceptor = HibernateUtil.getInterceptor();
+        if ( interceptor != null ) {
           if ( HibernateUtil.debug ) {
             HibernateUtil.log
-                .debug( Messages.getInstance().getString( "HIBUTIL.DEBUG_USING_INTERCEPTOR" ) + HibernateUtil.getInterceptor().getClass() ); //$NON-NLS-1$
+                .debug( Messages.getInstance().getString( "HIBUTIL.DEBUG_USING_INTERCEPTOR" ) + interceptor.getClass() ); //$NON-NLS-1$
           }
-          s = HibernateUtil.getSessionFactory().openSession( HibernateUtil.getInterceptor() );
+          s = HibernateUtil.getSessionFactory().openSession( interceptor );
         } else {
           s = HibernateUtil.getSessionFactory().openSession();
         }
         HibernateUtil.threadSession.set( s );
+        HibernateUtil.threadSessionOpened.set( System.currentTimeMillis() );
+        if ( HibernateUtil.log.isDebugEnabled() ) {
+          HibernateUtil.threadSessionOrigin.set( new Throwable( "Session opened here" ) ); //$NON-NLS-1$
+        }
       }
     } catch ( HibernateException ex ) {
       HibernateUtil.log.error( Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0005_GET_SESSION" ), ex ); //$NON-NLS-1$
@@ -396,22 +437,91 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
   public static void closeSession() throws RepositoryException {
     try {
       Session s = (Session) HibernateUtil.threadSession.get();
-      HibernateUtil.threadSession.set( null );
+      HibernateUtil.unbindSession();
       if ( ( s != null ) && s.isOpen() ) {
         if ( HibernateUtil.debug ) {
           HibernateUtil.log.debug( Messages.getInstance().getString( "HIBUTIL.DEBUG_CLOSING_SESSION" ) ); //$NON-NLS-1$
         }
         s.close();
       }
-      HibernateUtil.threadTransaction.set( null );
+      HibernateUtil.threadTransaction.remove();
     } catch ( HibernateException ex ) {
       HibernateUtil.log.error( Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0009_CLOSE_SESSION" ), ex ); //$NON-NLS-1$
-      HibernateUtil.threadTransaction.set( null );
+      HibernateUtil.threadTransaction.remove();
       throw new RepositoryException( Messages.getInstance().getErrorString( "HIBUTIL.ERROR_0009_CLOSE_SESSION" ), ex ); //$NON-NLS-1$
     }
 
   }
 
+  // removes the session from the thread, the ThreadLocals are removed rather than set to null so pooled threads do
+  // not keep an entry for them
+  private static void unbindSession() {
+    HibernateUtil.threadSession.remove();
+    HibernateUtil.threadSessionOpened.remove();
+    HibernateUtil.threadSessionOrigin.remove();
+  }
+
+  /**
+   * Starts a request or job that uses the session of the current thread. A session still bound to the thread at this
+   * point was left open by earlier work on a pooled thread that never called {@link #closeSession()}; it is logged
+   * and closed.
+   * 
+   * @return false if a scope is already open on this thread, the caller then must not end it
+   */
+  public static boolean beginSessionScope() {
+    if ( HibernateUtil.threadSessionScope.get() != null ) {
+      return false;
+    }
+    HibernateUtil.closeLeakedSession();
+    HibernateUtil.threadSessionScope.set( Boolean.TRUE );
+    return true;
+  }
+
+  /**
+   * Ends the scope started by {@link #beginSessionScope()}, closing the session of the thread. Pending changes are
+   * committed first, or rolled back when <code>commit</code> is false.
+   */
+  public static void endSessionScope( final boolean commit ) throws RepositoryException {
+    try {
+      if ( commit ) {
+        HibernateUtil.commitTransaction();
+      } else {
+        HibernateUtil.rollbackTransaction();
+      }
+    } finally {
+      try {
+        HibernateUtil.closeSession();
+      } finally {
+        HibernateUtil.threadSessionScope.remove();
+      }
+    }
+  }
+
+  private static void closeLeakedSession() {
+    Session s = HibernateUtil.threadSession.get();
+    if ( s == null ) {
+      return;
+    }
+    Long opened = HibernateUtil.threadSessionOpened.get();
+    long age = ( opened != null ) ? System.currentTimeMillis() - opened : -1;
+    HibernateUtil.leakedSessionCount.incrementAndGet();
+    HibernateUtil.log.warn( Messages.getInstance().getString( "HIBUTIL.WARN_LEAKED_SESSION", //$NON-NLS-1$
+        Thread.currentThread().getName(), String.valueOf( age ) ), HibernateUtil.threadSessionOrigin.get() );
+    try {
+      HibernateUtil.rollbackTransaction(); // closes the session as well
+    } catch ( Exception e ) {
+      HibernateUtil.unbindSession();
+      HibernateUtil.threadTransaction.remove();
+    }
+  }
+
+  /**
+   * @return the number of sessions found left open on a thread at the start of a request or job
+   */
+  public static long getLeakedSessionCount() {
+    return HibernateUtil.leakedSessionCount.get();
+  }
+
   /**
    * Start a new database transaction.
    */
@@ -460,7 +570,7 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
       // RepositoryException(Messages.getInstance().getErrorString("HIBUTIL.ERROR_0008_COMMIT_TRANS"),
       // ex); //$NON-NLS-1$
     } finally {
-      HibernateUtil.threadTransaction.set( null );
+      HibernateUtil.threadTransaction.remove();
     }
     // }
     // commitNeeded.set(Boolean.FALSE);
@@ -472,7 +582,7 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
   public static void rollbackTransaction() throws RepositoryException {
     Transaction tx = (Transaction) HibernateUtil.threadTransaction.get();
     try {
-      HibernateUtil.threadTransaction.set( null );
+      HibernateUtil.threadTransaction.remove();
       if ( ( tx != null ) && !tx.wasCommitted() && !tx.wasRolledBack() ) {
         if ( HibernateUtil.debug ) {
           HibernateUtil.log.debug( Messages.getInstance().getString( "HIBUTIL.DEBUG_ROLLBACK" ) ); //$NON-NLS-1$
@@ -508,7 +618,7 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
 
     Session session = HibernateUtil.getSession();
     try {
-      HibernateUtil.threadSession.set( null );
+      HibernateUtil.unbindSession();
       if ( session.isConnected() && session.isOpen() ) {
         session.disconnect();
       }
@@ -690,6 +800,14 @@ public class HibernateUtil implements IPentahoSystemEntryPoint, IPentahoSystemEx
     // No need to do anything for Hibernate here.
   }
 
+  public boolean begin() {
+    return HibernateUtil.beginSessionScope();
+  }
+
+  public void end( final boolean completed ) {
+    HibernateUtil.endSessionScope( completed );
+  }
+
   public void systemExitPoint() {
     try {
       HibernateUtil.commitTransaction();
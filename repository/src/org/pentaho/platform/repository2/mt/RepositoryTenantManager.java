@@ -121,7 +121,6 @@ public class RepositoryTenantManager extends AbstractRepositoryTenantManager {
         RepositoryFile systemTenantFolder =
             repositoryFileDao.createFolder( parentFolder != null ? parentFolder.getId() : null,
                 new RepositoryFile.Builder( tenant.getName() ).folder( true ).build(), acl, "" );
-        repositoryFileDao.getFileByAbsolutePath( tenant.getId() );
 
         Map<String, Serializable> fileMeta = repositoryFileDao.getFileMetadata( systemTenantFolder.getId() );
         fileMeta.put( ITenantManager.TENANT_ROOT, true );
@@ -136,37 +135,47 @@ public class RepositoryTenantManager extends AbstractRepositoryTenantManager {
 
   public Node createAuthzFolderNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final ITenant tenant ) throws RepositoryException {
-    Node tenantRootFolderNode = null;
-    try {
-      tenantRootFolderNode = (Node) session.getItem( ServerRepositoryPaths.getTenantRootFolderPath( tenant ) );
-    } catch ( PathNotFoundException e ) {
-      Assert.state( false, Messages.getInstance().getString(
-          "JcrRoleAuthorizationPolicyRoleBindingDao.ERROR_0002_REPO_NOT_INITIALIZED" ) ); //$NON-NLS-1$
-    }
-    Node authzFolderNode =
-        tenantRootFolderNode.addNode( FOLDER_NAME_AUTHZ, pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
+    Node authzFolderNode = addAuthzFolderNode( session, pentahoJcrConstants, tenant );
     session.save();
     return authzFolderNode;
   }
 
   public Node createRoleBasedFolderNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final ITenant tenant ) throws RepositoryException {
-    Node authzFolderNode = createAuthzFolderNode( session, pentahoJcrConstants, tenant );
-    Node node = authzFolderNode.addNode( FOLDER_NAME_ROLEBASED, pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
-    authzFolderNode.save();
+    Node node = addRoleBasedFolderNode( session, pentahoJcrConstants, tenant );
     session.save();
     return node;
   }
 
+  /**
+   * Creates the authz, role based and runtime roles folders of the tenant and saves them at once.
+   */
   public Node createRuntimeRolesFolderNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final ITenant tenant ) throws RepositoryException {
-    Node roleBasedFolderNode = createRoleBasedFolderNode( session, pentahoJcrConstants, tenant );
+    Node roleBasedFolderNode = addRoleBasedFolderNode( session, pentahoJcrConstants, tenant );
     Node node = roleBasedFolderNode.addNode( FOLDER_NAME_RUNTIMEROLES, pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
-    roleBasedFolderNode.save();
     session.save();
     return node;
   }
 
+  private Node addAuthzFolderNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final ITenant tenant ) throws RepositoryException {
+    Node tenantRootFolderNode = null;
+    try {
+      tenantRootFolderNode = (Node) session.getItem( ServerRepositoryPaths.getTenantRootFolderPath( tenant ) );
+    } catch ( PathNotFoundException e ) {
+      Assert.state( false, Messages.getInstance().getString(
+          "JcrRoleAuthorizationPolicyRoleBindingDao.ERROR_0002_REPO_NOT_INITIALIZED" ) ); //$NON-NLS-1$
+    }
+    return tenantRootFolderNode.addNode( FOLDER_NAME_AUTHZ, pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
+  }
+
+  private Node addRoleBasedFolderNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final ITenant tenant ) throws RepositoryException {
+    Node authzFolderNode = addAuthzFolderNode( session, pentahoJcrConstants, tenant );
+    return authzFolderNode.addNode( FOLDER_NAME_ROLEBASED, pentahoJcrConstants.getPHO_NT_INTERNALFOLDER() );
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -0,0 +1,220 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.mt;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.mt.ITenantManager;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.security.Authentication;
+import org.springframework.security.context.SecurityContextHolder;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates and deletes tenants in bulk, e.g. when onboarding customers. Independent tenants are handled in parallel
+ * and each one through the given tenant manager, so a tenant gets its own transaction and the caller's security
+ * checks. The outcome and the time taken is reported per tenant; a failing tenant does not stop the others.
+ * 
+ * <p>
+ * Give the transactional tenant manager (e.g. {@code tenantMgrProxy}); without a surrounding transaction every step
+ * of the tenant creation is saved on its own.
+ * </p>
+ */
+public class TenantProvisioner {
+
+  // ~ Static fields/initializers
+  // ======================================================================================
+
+  private static final Log logger = LogFactory.getLog( TenantProvisioner.class );
+
+  public static final int DEFAULT_THREADS = 4;
+
+  // ~ Instance fields
+  // =================================================================================================
+
+  private ITenantManager tenantManager;
+
+  private int threads;
+
+  // ~ Constructors
+  // ====================================================================================================
+
+  public TenantProvisioner( final ITenantManager tenantManager ) {
+    this( tenantManager, DEFAULT_THREADS );
+  }
+
+  public TenantProvisioner( final ITenantManager tenantManager, final int threads ) {
+    super();
+    Assert.notNull( tenantManager );
+    Assert.isTrue( threads > 0 );
+    this.tenantManager = tenantManager;
+    this.threads = threads;
+  }
+
+  // ~ Methods
+  // =========================================================================================================
+
+  /**
+   * Creates tenants below the same parent. A tenant that already exists is reported without tenant and error.
+   * 
+   * @return one result per tenant name, in the same order
+   */
+  public List<TenantProvisioningResult> createTenants( final ITenant parentTenant, final List<String> tenantNames,
+      final String tenantAdminRoleName, final String authenticatedRoleName, final String anonymousRoleName ) {
+    List<Callable<TenantProvisioningResult>> tasks = new ArrayList<Callable<TenantProvisioningResult>>();
+    for ( final String tenantName : tenantNames ) {
+      tasks.add( new Callable<TenantProvisioningResult>() {
+        public TenantProvisioningResult call() {
+          long start = System.currentTimeMillis();
+          try {
+            ITenant tenant =
+                tenantManager.createTenant( parentTenant, tenantName, tenantAdminRoleName, authenticatedRoleName,
+                    anonymousRoleName );
+            return new TenantProvisioningResult( tenantName, tenant, System.currentTimeMillis() - start, null );
+          } catch ( RuntimeException e ) {
+            return new TenantProvisioningResult( tenantName, null, System.currentTimeMillis() - start, e );
+          }
+        }
+      } );
+    }
+    return run( "created", tasks ); //$NON-NLS-1$
+  }
+
+  /**
+   * Deletes tenants with their sub tenants. A tenant below another one of the list goes with that one and is not
+   * reported on its own.
+   * 
+   * @return one result per deleted tenant
+   */
+  public List<TenantProvisioningResult> deleteTenants( final List<ITenant> tenants ) {
+    List<Callable<TenantProvisioningResult>> tasks = new ArrayList<Callable<TenantProvisioningResult>>();
+    for ( final ITenant tenant : tenants ) {
+      if ( hasAncestor( tenant, tenants ) ) {
+        continue;
+      }
+      tasks.add( new Callable<TenantProvisioningResult>() {
+        public TenantProvisioningResult call() {
+          long start = System.currentTimeMillis();
+          try {
+            tenantManager.deleteTenant( tenant );
+            return new TenantProvisioningResult( tenant.getName(), tenant, System.currentTimeMillis() - start, null );
+          } catch ( RuntimeException e ) {
+            return new TenantProvisioningResult( tenant.getName(), tenant, System.currentTimeMillis() - start, e );
+          }
+        }
+      } );
+    }
+    return run( "deleted", tasks ); //$NON-NLS-1$
+  }
+
+  private boolean hasAncestor( final ITenant tenant, final List<ITenant> tenants ) {
+    String path = tenant.getRootFolderAbsolutePath();
+    for ( ITenant other : tenants ) {
+      String otherPath = other.getRootFolderAbsolutePath();
+      if ( !path.equals( otherPath ) && path.startsWith( otherPath + "/" ) ) { //$NON-NLS-1$
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs the tasks as the current user. With a single thread they run one after the other in the calling thread.
+   */
+  private List<TenantProvisioningResult> run( final String operation,
+      final List<Callable<TenantProvisioningResult>> tasks ) {
+    long start = System.currentTimeMillis();
+    List<TenantProvisioningResult> results = new ArrayList<TenantProvisioningResult>( tasks.size() );
+    int poolSize = Math.min( threads, tasks.size() );
+    if ( poolSize <= 1 ) {
+      for ( Callable<TenantProvisioningResult> task : tasks ) {
+        try {
+          results.add( task.call() );
+        } catch ( Exception e ) {
+          // the tasks report their failures in the result
+          throw new IllegalStateException( e );
+        }
+      }
+    } else {
+      final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+      final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+      final AtomicInteger count = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool( poolSize, new ThreadFactory() {
+        public Thread newThread( Runnable r ) {
+          final Thread thread = new Thread( r, "pentaho-tenant-provisioner-" + count.incrementAndGet() ); //$NON-NLS-1$
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+      try {
+        List<Future<TenantProvisioningResult>> futures = new ArrayList<Future<TenantProvisioningResult>>();
+        for ( final Callable<TenantProvisioningResult> task : tasks ) {
+          futures.add( executor.submit( new Callable<TenantProvisioningResult>() {
+            public TenantProvisioningResult call() throws Exception {
+              PentahoSessionHolder.setSession( pentahoSession );
+              SecurityContextHolder.getContext().setAuthentication( authentication );
+              try {
+                return task.call();
+              } finally {
+                PentahoSessionHolder.removeSession();
+                SecurityContextHolder.clearContext();
+              }
+            }
+          } ) );
+        }
+        for ( Future<TenantProvisioningResult> future : futures ) {
+          results.add( future.get() );
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException( e );
+      } catch ( ExecutionException e ) {
+        throw new IllegalStateException( e.getCause() );
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    int failed = 0;
+    for ( TenantProvisioningResult result : results ) {
+      if ( result.getError() != null ) {
+        failed++;
+        logger.warn( "tenant " + result.getTenantName() + " not " + operation, result.getError() ); //$NON-NLS-1$ //$NON-NLS-2$
+      } else if ( logger.isDebugEnabled() ) {
+        logger.debug( "tenant " + operation + ": " + result ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    logger.info( operation + " " + ( results.size() - failed ) + " of " + results.size() //$NON-NLS-1$ //$NON-NLS-2$
+        + " tenants in " + ( System.currentTimeMillis() - start ) + " ms" ); //$NON-NLS-1$ //$NON-NLS-2$
+    return results;
+  }
+
+}
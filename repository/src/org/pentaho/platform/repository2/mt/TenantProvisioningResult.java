@@ -0,0 +1,79 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.mt;
+
+import org.pentaho.platform.api.mt.ITenant;
+
+/**
+ * Outcome of provisioning or deleting one tenant in a {@link TenantProvisioner} batch.
+ */
+public class TenantProvisioningResult {
+
+  private final String tenantName;
+
+  private final ITenant tenant;
+
+  private final long elapsedMillis;
+
+  private final Throwable error;
+
+  public TenantProvisioningResult( final String tenantName, final ITenant tenant, final long elapsedMillis,
+      final Throwable error ) {
+    super();
+    this.tenantName = tenantName;
+    this.tenant = tenant;
+    this.elapsedMillis = elapsedMillis;
+    this.error = error;
+  }
+
+  public String getTenantName() {
+    return tenantName;
+  }
+
+  /**
+   * @return the tenant; {@code null} if it was not created
+   */
+  public ITenant getTenant() {
+    return tenant;
+  }
+
+  /**
+   * @return time spent on this tenant in milliseconds, not counting the time it waited for a thread
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * @return why the tenant failed; {@code null} if it succeeded or, on creation, already existed
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  public boolean isSuccessful() {
+    return ( error == null ) && ( tenant != null );
+  }
+
+  @Override
+  public String toString() {
+    return tenantName + ( isSuccessful() ? "" : error != null ? " failed: " + error : " skipped" ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + " (" + elapsedMillis + " ms)"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+}
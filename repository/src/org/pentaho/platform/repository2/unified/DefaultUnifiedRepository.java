@@ -21,6 +21,7 @@ package org.pentaho.platform.repository2.unified;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -361,6 +362,70 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     repositoryFileDao.undeleteFile( fileId, versionMessage );
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * <p>
+   * Runs in the caller's transaction, so every file shares one session and the saves are committed together.
+   * </p>
+   */
+  public Map<Serializable, Exception> deleteFilesInBatch( final List<Serializable> fileIds, final boolean permanent,
+      final String versionMessage ) {
+    Assert.notNull( fileIds );
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        deleteFile( fileId, permanent, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * <p>
+   * Runs in the caller's transaction, so every file shares one session and the saves are committed together.
+   * </p>
+   */
+  public Map<Serializable, Exception> moveFilesInBatch( final List<Serializable> fileIds, final String destAbsPath,
+      final String versionMessage ) {
+    Assert.notNull( fileIds );
+    Assert.hasText( destAbsPath );
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        moveFile( fileId, destAbsPath, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * <p>
+   * Runs in the caller's transaction, so every file shares one session and the saves are committed together.
+   * </p>
+   */
+  public Map<Serializable, Exception> undeleteFilesInBatch( final List<Serializable> fileIds,
+      final String versionMessage ) {
+    Assert.notNull( fileIds );
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        undeleteFile( fileId, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -411,6 +411,33 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.undeleteFile", fileId ) ); //$NON-NLS-1$
   }
 
+  public Map<Serializable, Exception> deleteFilesInBatch( final List<Serializable> fileIds, final boolean permanent,
+      final String versionMessage ) {
+    return callLogThrow( new Callable<Map<Serializable, Exception>>() {
+      public Map<Serializable, Exception> call() throws Exception {
+        return delegatee.deleteFilesInBatch( fileIds, permanent, versionMessage );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.deleteFilesInBatch" ) ); //$NON-NLS-1$
+  }
+
+  public Map<Serializable, Exception> moveFilesInBatch( final List<Serializable> fileIds, final String destAbsPath,
+      final String versionMessage ) {
+    return callLogThrow( new Callable<Map<Serializable, Exception>>() {
+      public Map<Serializable, Exception> call() throws Exception {
+        return delegatee.moveFilesInBatch( fileIds, destAbsPath, versionMessage );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.moveFilesInBatch", destAbsPath ) ); //$NON-NLS-1$
+  }
+
+  public Map<Serializable, Exception> undeleteFilesInBatch( final List<Serializable> fileIds,
+      final String versionMessage ) {
+    return callLogThrow( new Callable<Map<Serializable, Exception>>() {
+      public Map<Serializable, Exception> call() throws Exception {
+        return delegatee.undeleteFilesInBatch( fileIds, versionMessage );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.undeleteFilesInBatch" ) ); //$NON-NLS-1$
+  }
+
   public void unlockFile( final Serializable fileId ) {
     callLogThrow( new Callable<Void>() {
       public Void call() throws Exception {
@@ -0,0 +1,54 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Administrative view on the file locks in the repository. Locks are open-scoped and only go away when unlocked, so
+ * the locks of users who left or of clients that died are found and expired here.
+ */
+public interface ILockRegistry {
+
+  /**
+   * Returns the locked files.
+   * 
+   * @param lockOwner
+   *          only files locked by this user, with or without tenant; {@code null} for any owner
+   * @param lockedBefore
+   *          only files locked before this date; {@code null} for any date
+   * @return locked files, with their lock owner, date and message
+   */
+  List<RepositoryFile> getLockedFiles( final String lockOwner, final Date lockedBefore );
+
+  /**
+   * Unlocks the locked files. A file that cannot be unlocked is skipped.
+   * 
+   * @param lockOwner
+   *          only files locked by this user, with or without tenant; {@code null} for any owner
+   * @param lockedBefore
+   *          only files locked before this date; {@code null} for any date
+   * @return number of files unlocked
+   */
+  int expireLocks( final String lockOwner, final Date lockedBefore );
+
+}
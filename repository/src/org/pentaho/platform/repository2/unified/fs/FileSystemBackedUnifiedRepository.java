@@ -23,6 +23,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -246,6 +247,44 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
     repositoryFileDao.undeleteFile( fileId, versionMessage );
   }
 
+  public Map<Serializable, Exception> deleteFilesInBatch( List<Serializable> fileIds, boolean permanent,
+      String versionMessage ) {
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        deleteFile( fileId, permanent, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
+  public Map<Serializable, Exception> moveFilesInBatch( List<Serializable> fileIds, String destAbsPath,
+      String versionMessage ) {
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        moveFile( fileId, destAbsPath, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
+  public Map<Serializable, Exception> undeleteFilesInBatch( List<Serializable> fileIds, String versionMessage ) {
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        undeleteFile( fileId, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
   public void unlockFile( Serializable fileId ) {
     repositoryFileDao.unlockFile( fileId );
   }
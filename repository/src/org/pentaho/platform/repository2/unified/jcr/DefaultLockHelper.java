@@ -20,6 +20,7 @@ package org.pentaho.platform.repository2.unified.jcr;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
@@ -32,13 +33,21 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
 import javax.jcr.lock.LockManager;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Default implementation of {@link ILockHelper}. If user {@code suzy} in tenant {@code acme} locks a file with
@@ -54,6 +63,12 @@ import java.util.List;
  * message are null.
  * </p>
  * 
+ * <p>
+ * The lock tokens are also kept in memory by file id, so the owner of a lock gets its token without going through the
+ * home folder. The tokens in the home folders remain the reference: an entry is only used if it still matches the
+ * owner info of the lock, and sessions of other users always go through the home folder and its access control.
+ * </p>
+ * 
  * @author mlowery
  */
 public class DefaultLockHelper implements ILockHelper {
@@ -82,6 +97,29 @@ public class DefaultLockHelper implements ILockHelper {
   // ~ Instance fields
   // =================================================================================================
 
+  /**
+   * The most lock tokens kept in memory; a token that is not kept is read from the home folder of the lock owner.
+   */
+  static final int MAX_CACHED_LOCK_TOKENS = 10000;
+
+  /**
+   * Lock tokens by file id, with the owner info of the lock they belong to. Locks that go away without being unlocked
+   * here, on another node or with their file, leave an entry behind, so the least recently used ones are dropped.
+   */
+  private final Map<String, String[]> lockTokens = Collections.synchronizedMap( new LinkedHashMap<String, String[]>(
+      16, 0.75f, true ) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<String, String[]> eldest ) {
+      return size() > MAX_CACHED_LOCK_TOKENS;
+    }
+  } );
+
+  private static final int POSITION_TOKEN = 0;
+
+  private static final int POSITION_OWNER_INFO = 1;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -104,6 +142,9 @@ public class DefaultLockHelper implements ILockHelper {
     newLockTokenNode.setProperty( pentahoJcrConstants.getPHO_LOCKEDNODEREF(), lock.getNode() );
     newLockTokenNode.setProperty( pentahoJcrConstants.getPHO_LOCKTOKEN(), lock.getLockToken() );
     session.save();
+    if ( lock.getLockOwner() != null ) {
+      lockTokens.put( lock.getNode().getIdentifier(), new String[] { lock.getLockToken(), lock.getLockOwner() } );
+    }
   }
 
   /**
@@ -117,10 +158,35 @@ public class DefaultLockHelper implements ILockHelper {
    */
   protected String getLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
+    String fileId = lock.getNode().getIdentifier();
+    String[] entry = lockTokens.get( fileId );
+    if ( entry != null ) {
+      if ( !entry[POSITION_OWNER_INFO].equals( lock.getLockOwner() ) ) {
+        // the token of an earlier lock of the file
+        lockTokens.remove( fileId );
+      } else if ( isOwnLock( session, pentahoJcrConstants, lock ) ) {
+        return entry[POSITION_TOKEN];
+      }
+    }
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
-    NodeIterator nodes = lockTokensNode.getNodes( lock.getNode().getIdentifier() );
-    Assert.isTrue( nodes.hasNext() );
-    return nodes.nextNode().getProperty( pentahoJcrConstants.getPHO_LOCKTOKEN() ).getString();
+    Assert.isTrue( lockTokensNode.hasNode( fileId ) );
+    String lockToken = lockTokensNode.getNode( fileId ).getProperty( pentahoJcrConstants.getPHO_LOCKTOKEN() ).getString();
+    if ( lock.getLockOwner() != null ) {
+      lockTokens.put( fileId, new String[] { lockToken, lock.getLockOwner() } );
+    }
+    return lockToken;
+  }
+
+  /**
+   * Returns {@code true} if the user of the current pentaho session owns the lock, the only user the in memory token
+   * may be given to without checking access to the home folder.
+   */
+  private boolean isOwnLock( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
+    throws RepositoryException {
+    IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    return ( pentahoSession != null ) && ( pentahoSession.getName() != null )
+        && JcrTenantUtils.getTenantedUser( pentahoSession.getName() ).equals(
+            getLockOwner( session, pentahoJcrConstants, lock ) );
   }
 
   /**
@@ -129,20 +195,21 @@ public class DefaultLockHelper implements ILockHelper {
    */
   public void removeLockToken( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
+    String fileId = lock.getNode().getIdentifier();
+    lockTokens.remove( fileId );
     Node lockTokensNode = getOrCreateLockTokensNode( session, pentahoJcrConstants, lock );
-    NodeIterator nodes = lockTokensNode.getNodes( lock.getNode().getIdentifier() );
-    if ( nodes.hasNext() ) {
-      nodes.nextNode().remove();
+    if ( lockTokensNode.hasNode( fileId ) ) {
+      lockTokensNode.getNode( fileId ).remove();
     }
     session.save();
   }
 
   protected Node getOrCreateLockTokensNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final Lock lock ) throws RepositoryException {
+    String lockOwner = getLockOwner( session, pentahoJcrConstants, lock );
     String absPath =
-        ServerRepositoryPaths.getUserHomeFolderPath( userNameUtils.getTenant( getLockOwner( session,
-            pentahoJcrConstants, lock ) ), userNameUtils.getPrincipleName( getLockOwner( session, pentahoJcrConstants,
-            lock ) ) );
+        ServerRepositoryPaths.getUserHomeFolderPath( userNameUtils.getTenant( lockOwner ), userNameUtils
+            .getPrincipleName( lockOwner ) );
     Node userHomeFolderNode = (Node) session.getItem( absPath );
     if ( userHomeFolderNode.hasNode( FOLDER_NAME_LOCK_TOKENS ) ) {
       return userHomeFolderNode.getNode( FOLDER_NAME_LOCK_TOKENS );
@@ -159,10 +226,10 @@ public class DefaultLockHelper implements ILockHelper {
    */
   public boolean canUnlock( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException {
+    String lockOwner = getLockOwner( session, pentahoJcrConstants, lock );
     String absPath =
-        ServerRepositoryPaths.getUserHomeFolderPath( userNameUtils.getTenant( getLockOwner( session,
-            pentahoJcrConstants, lock ) ), userNameUtils.getPrincipleName( getLockOwner( session, pentahoJcrConstants,
-            lock ) ) );
+        ServerRepositoryPaths.getUserHomeFolderPath( userNameUtils.getTenant( lockOwner ), userNameUtils
+            .getPrincipleName( lockOwner ) );
     AccessControlManager acMgr = session.getAccessControlManager();
     return acMgr.hasPrivileges( absPath, new Privilege[] {
       acMgr.privilegeFromName( "jcr:read" ), acMgr.privilegeFromName( "jcr:write" ), //$NON-NLS-1$ //$NON-NLS-2$
@@ -236,6 +303,62 @@ public class DefaultLockHelper implements ILockHelper {
     addLockToken( session, pentahoJcrConstants, lock );
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * <p>
+   * Uses a query on the lock token nodes, which the repository keeps indexed by node type, instead of walking the
+   * home folders.
+   * </p>
+   */
+  public List<Serializable> getLockedFileIds( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final String lockOwner, final Date lockedBefore ) throws RepositoryException {
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    final Selector selector = fac.selector( pentahoJcrConstants.getPHO_NT_LOCKTOKENSTORAGE(), selectorName );
+    Query query = fac.createQuery( selector, null, null, null );
+    QueryResult result =
+        session.getWorkspace().getQueryManager().createQuery( query.getStatement(), Query.JCR_JQOM ).execute();
+
+    LockManager lockManager = session.getWorkspace().getLockManager();
+    List<Serializable> fileIds = new ArrayList<Serializable>();
+    NodeIterator nodes = result.getNodes();
+    while ( nodes.hasNext() ) {
+      Node lockTokenNode = nodes.nextNode();
+      Node fileNode;
+      try {
+        fileNode = lockTokenNode.getProperty( pentahoJcrConstants.getPHO_LOCKEDNODEREF() ).getNode();
+      } catch ( RepositoryException e ) {
+        // the file is gone or not readable by this session
+        logger.debug( "skipping lock token " + lockTokenNode.getPath(), e ); //$NON-NLS-1$
+        continue;
+      }
+      if ( !fileNode.isLocked() ) {
+        lockTokens.remove( fileNode.getIdentifier() );
+        continue;
+      }
+      Lock lock = lockManager.getLock( fileNode.getPath() );
+      if ( ( lockOwner != null ) && !isLockOwner( lockOwner, getLockOwner( session, pentahoJcrConstants, lock ) ) ) {
+        continue;
+      }
+      if ( lockedBefore != null ) {
+        Date lockDate = getLockDate( session, pentahoJcrConstants, lock );
+        if ( ( lockDate == null ) || !lockDate.before( lockedBefore ) ) {
+          continue;
+        }
+      }
+      fileIds.add( fileNode.getIdentifier() );
+    }
+    return fileIds;
+  }
+
+  /**
+   * The owner can be given with or without tenant.
+   */
+  private boolean isLockOwner( final String name, final String lockOwner ) {
+    return name.equals( lockOwner ) || name.equals( userNameUtils.getPrincipleName( lockOwner ) );
+  }
+
   private String makeOwnerInfo( final String lockOwner, final Date lockDate, final String lockMessage ) {
     return escape( lockOwner ) + LOCK_OWNER_INFO_SEPARATOR + lockDate.getTime() + LOCK_OWNER_INFO_SEPARATOR
         + escape( lockMessage );
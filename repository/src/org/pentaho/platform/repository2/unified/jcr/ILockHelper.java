@@ -23,6 +23,7 @@ import javax.jcr.Session;
 import javax.jcr.lock.Lock;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Helper class that stores, retrieves, and removes lock tokens. In section 8.4.7 of the JSR-170 specification, it
@@ -137,4 +138,21 @@ public interface ILockHelper {
 
   String getLockOwner( final Session session, final PentahoJcrConstants pentahoJcrConstants, final Lock lock )
     throws RepositoryException;
+
+  /**
+   * Returns the ids of the locked files the user represented by session can read.
+   * 
+   * @param session
+   *          session
+   * @param pentahoJcrConstants
+   *          constants
+   * @param lockOwner
+   *          only files locked by this user, with or without tenant; {@code null} for any owner
+   * @param lockedBefore
+   *          only files locked before this date; {@code null} for any date
+   * @throws RepositoryException
+   *           if anything goes wrong
+   */
+  List<Serializable> getLockedFileIds( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final String lockOwner, final Date lockedBefore ) throws RepositoryException;
 }
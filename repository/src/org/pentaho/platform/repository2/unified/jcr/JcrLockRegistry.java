@@ -0,0 +1,117 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.repository2.unified.ILockRegistry;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.util.Assert;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Finds the locks with {@link ILockHelper#getLockedFileIds} and expires them with {@link ILockHelper#unlockFile}.
+ */
+public class JcrLockRegistry implements ILockRegistry {
+
+  // ~ Static fields/initializers
+  // ======================================================================================
+
+  private static final Log logger = LogFactory.getLog( JcrLockRegistry.class );
+
+  // ~ Instance fields
+  // =================================================================================================
+
+  private JcrTemplate jcrTemplate;
+
+  private ILockHelper lockHelper;
+
+  private IPathConversionHelper pathConversionHelper;
+
+  // ~ Constructors
+  // ====================================================================================================
+
+  public JcrLockRegistry( final JcrTemplate jcrTemplate, final ILockHelper lockHelper,
+      final IPathConversionHelper pathConversionHelper ) {
+    super();
+    Assert.notNull( jcrTemplate );
+    Assert.notNull( lockHelper );
+    Assert.notNull( pathConversionHelper );
+    this.jcrTemplate = jcrTemplate;
+    this.lockHelper = lockHelper;
+    this.pathConversionHelper = pathConversionHelper;
+  }
+
+  // ~ Methods
+  // =========================================================================================================
+
+  /**
+   * {@inheritDoc}
+   */
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getLockedFiles( final String lockOwner, final Date lockedBefore ) {
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+        for ( Serializable fileId : lockHelper.getLockedFileIds( session, pentahoJcrConstants, lockOwner,
+            lockedBefore ) ) {
+          files.add( JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper,
+              lockHelper, session.getNodeByIdentifier( fileId.toString() ) ) );
+        }
+        return files;
+      }
+    } );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public int expireLocks( final String lockOwner, final Date lockedBefore ) {
+    return (Integer) jcrTemplate.execute( new JcrCallback() {
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        int count = 0;
+        for ( Serializable fileId : lockHelper.getLockedFileIds( session, pentahoJcrConstants, lockOwner,
+            lockedBefore ) ) {
+          try {
+            lockHelper.unlockFile( session, pentahoJcrConstants, fileId );
+            count++;
+          } catch ( RepositoryException e ) {
+            logger.warn( "unable to expire lock on file with id " + fileId, e ); //$NON-NLS-1$
+          }
+        }
+        if ( count > 0 ) {
+          logger.info( "expired " + count + " locks" ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return count;
+      }
+    } );
+  }
+
+}
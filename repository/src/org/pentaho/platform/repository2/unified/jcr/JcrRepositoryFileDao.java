@@ -635,7 +635,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     }
 
     Assert.notNull( fileId );
-    jcrTemplate.execute( new JcrCallback() {
+    executeDiscardingOnFailure( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
         RepositoryFile fileToBeDeleted = getFileById( fileId );
@@ -744,7 +744,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     }
 
     Assert.notNull( fileId );
-    jcrTemplate.execute( new JcrCallback() {
+    executeDiscardingOnFailure( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
         RepositoryFile fileToBeDeleted = getFileById( fileId );
@@ -775,7 +775,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     }
 
     Assert.notNull( fileId );
-    jcrTemplate.execute( new JcrCallback() {
+    executeDiscardingOnFailure( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
         PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
@@ -832,7 +832,7 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     }
 
     Assert.notNull( fileId );
-    jcrTemplate.execute( new JcrCallback() {
+    executeDiscardingOnFailure( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
         RepositoryFile file = getFileById( fileId );
@@ -1286,6 +1286,29 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     return null;
   }
 
+  /**
+   * Executes a callback that changes the repository, dropping whatever it left unsaved in the session if it fails.
+   * Within a transaction every call shares the session, and the next {@code save()} would otherwise persist half of
+   * the failed change (e.g. when the files of a batch are handled one after another).
+   */
+  private Object executeDiscardingOnFailure( final JcrCallback callback ) {
+    return jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        boolean done = false;
+        try {
+          Object result = callback.doInJcr( session );
+          done = true;
+          return result;
+        } finally {
+          if ( !done ) {
+            session.refresh( false );
+          }
+        }
+      }
+    } );
+  }
+
   private boolean isKioskEnabled() {
     if ( PentahoSystem.getInitializedOK() ) {
       return "true".equals( PentahoSystem.getSystemSetting( "kiosk-mode", "false" ) );
@@ -32,6 +32,7 @@ import java.util.Set;
 import javax.jcr.Credentials;
 import javax.jcr.NamespaceException;
 import javax.jcr.Node;
+import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
@@ -40,6 +41,8 @@ import org.apache.commons.collections.map.LRUMap;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.AuthorizableExistsException;
 import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.Query;
+import org.apache.jackrabbit.api.security.user.QueryBuilder;
 import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.jackrabbit.core.SessionImpl;
@@ -86,6 +89,8 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
 
   Name P_PRINCIPAL_NAME = NF.create( Name.NS_REP_URI, "principalName" ); //$NON-NLS-1$
 
+  Name P_MEMBERS = NF.create( Name.NS_REP_URI, "members" ); //$NON-NLS-1$
+
   protected ITenantedPrincipleNameResolver tenantedUserNameUtils;
 
   protected ITenantedPrincipleNameResolver tenantedRoleNameUtils;
@@ -305,15 +310,15 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
       throw new NotFoundException( Messages.getInstance().getString(
           "AbstractJcrBackedUserRoleDao.ERROR_0003_USER_NOT_FOUND" ) );
     }
+    ITenant tenant = theTenant == null ? JcrTenantUtils.getTenant( userName, true ) : theTenant;
     HashMap<String, Group> currentlyAssignedGroups = new HashMap<String, Group>();
-    Iterator<Group> currentGroups = jackrabbitUser.memberOf();
+    Iterator<Authorizable> currentGroups = findGroupsOfMember( session, tenant, jackrabbitUser );
     while ( currentGroups.hasNext() ) {
-      Group currentGroup = currentGroups.next();
+      Group currentGroup = (Group) currentGroups.next();
       currentlyAssignedGroups.put( currentGroup.getID(), currentGroup );
     }
 
     HashMap<String, Group> finalCollectionOfAssignedGroups = new HashMap<String, Group>();
-    ITenant tenant = theTenant == null ? JcrTenantUtils.getTenant( userName, true ) : theTenant;
     for ( String role : roleSet ) {
       Group jackrabbitGroup = getJackrabbitGroup( tenant, role, session );
       if ( jackrabbitGroup != null ) {
@@ -426,9 +431,9 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
         // [BISERVER-9215] Adding new user with same user name as a previously deleted user, defaults to all
         // previous
         // roles
-        Iterator<Group> currentGroups = jackrabbitUser.memberOf();
+        Iterator<Authorizable> currentGroups = findGroupsOfMember( session, user.getTenant(), jackrabbitUser );
         while ( currentGroups.hasNext() ) {
-          currentGroups.next().removeMember( jackrabbitUser );
+          ( (Group) currentGroups.next() ).removeMember( jackrabbitUser );
         }
         purgeUserFromCache( user.getUsername() );
         // [BISERVER-9215]
@@ -618,6 +623,122 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     return users;
   }
 
+  /**
+   * Lists one page of the users of a tenant. The name prefix, the order and the page are handed to the query of the
+   * user manager, so only the users of the page are read and converted.
+   */
+  public List<IPentahoUser> getUsers( Session session, ITenant theTenant, String namePrefix, final int offset,
+      final int limit ) throws RepositoryException {
+    ArrayList<IPentahoUser> users = new ArrayList<IPentahoUser>();
+    if ( theTenant == null || theTenant.getId() == null ) {
+      theTenant = JcrTenantUtils.getTenant();
+    }
+    if ( TenantUtils.isAccessibleTenant( theTenant ) ) {
+      UserManager userMgr = getUserManager( theTenant, session );
+      pPrincipalName = ( (SessionImpl) session ).getJCRName( P_PRINCIPAL_NAME );
+      final String property = "@" + pPrincipalName; //$NON-NLS-1$
+      final String pattern = getPrincipalIdPattern( tenantedUserNameUtils, theTenant, namePrefix, true, false );
+      Iterator<Authorizable> it = userMgr.findAuthorizables( new Query() {
+        public <T> void build( QueryBuilder<T> builder ) {
+          builder.setSelector( User.class );
+          builder.setCondition( builder.like( property, pattern ) );
+          builder.setSortOrder( property, QueryBuilder.Direction.ASCENDING );
+          builder.setLimit( Math.max( offset, 0 ), limit );
+        }
+      } );
+      while ( it.hasNext() ) {
+        users.add( convertToPentahoUser( (User) it.next() ) );
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Lists one page of the roles of a tenant, leaving out the extra roles. The name prefix, the order and the page are
+   * handed to the query of the user manager, so only the roles of the page are read and converted.
+   */
+  public List<IPentahoRole> getRoles( Session session, ITenant theTenant, String namePrefix, final int offset,
+      final int limit ) throws RepositoryException {
+    ArrayList<IPentahoRole> roles = new ArrayList<IPentahoRole>();
+    if ( theTenant == null || theTenant.getId() == null ) {
+      theTenant = JcrTenantUtils.getTenant();
+    }
+    if ( TenantUtils.isAccessibleTenant( theTenant ) ) {
+      UserManager userMgr = getUserManager( theTenant, session );
+      pPrincipalName = ( (SessionImpl) session ).getJCRName( P_PRINCIPAL_NAME );
+      final String property = "@" + pPrincipalName; //$NON-NLS-1$
+      final String pattern = getPrincipalIdPattern( tenantedRoleNameUtils, theTenant, namePrefix, true, false );
+      final List<String> excluded = new ArrayList<String>();
+      for ( String extraRole : extraRoles ) {
+        excluded.add( getPrincipalIdPattern( tenantedRoleNameUtils, theTenant, extraRole, false, false ) );
+      }
+      Iterator<Authorizable> it = userMgr.findAuthorizables( new Query() {
+        public <T> void build( QueryBuilder<T> builder ) {
+          T condition = builder.like( property, pattern );
+          for ( String extraRole : excluded ) {
+            condition = builder.and( condition, builder.not( builder.like( property, extraRole ) ) );
+          }
+          builder.setSelector( Group.class );
+          builder.setCondition( condition );
+          builder.setSortOrder( property, QueryBuilder.Direction.ASCENDING );
+          builder.setLimit( Math.max( offset, 0 ), limit );
+        }
+      } );
+      while ( it.hasNext() ) {
+        roles.add( convertToPentahoRole( (Group) it.next() ) );
+      }
+    }
+    return roles;
+  }
+
+  /**
+   * Builds the <code>jcr:like</code> pattern matching the principal ids of a tenant with the given name, or with names
+   * starting with it. With <code>includeSubtenants</code> the ids of the subtenants match as well.
+   */
+  protected static String getPrincipalIdPattern( ITenantedPrincipleNameResolver nameUtils, ITenant tenant,
+      String name, boolean isPrefix, boolean includeSubtenants ) {
+    String marker = "\uFFFF"; //$NON-NLS-1$
+    String id = nameUtils.getPrincipleId( tenant, marker );
+    int index = id.indexOf( marker );
+    if ( index < 0 ) {
+      return escapeLike( name == null ? "" : name ) + ( isPrefix ? "%" : "" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    StringBuilder pattern = new StringBuilder();
+    pattern.append( escapeTenant( id.substring( 0, index ), tenant, includeSubtenants ) );
+    pattern.append( escapeLike( name == null ? "" : name ) ); //$NON-NLS-1$
+    if ( isPrefix ) {
+      pattern.append( '%' );
+    }
+    pattern.append( escapeTenant( id.substring( index + marker.length() ), tenant, includeSubtenants ) );
+    return pattern.toString();
+  }
+
+  private static String escapeTenant( String idPart, ITenant tenant, boolean includeSubtenants ) {
+    String escaped = escapeLike( idPart );
+    if ( includeSubtenants && tenant != null && tenant.getId() != null ) {
+      String tenantId = escapeLike( tenant.getId() );
+      escaped = escaped.replace( tenantId, tenantId + "%" ); //$NON-NLS-1$
+    }
+    return escaped;
+  }
+
+  /**
+   * Escapes the wildcards of <code>jcr:like</code> and the quotes of the XPath literal the pattern ends up in.
+   */
+  private static String escapeLike( String value ) {
+    StringBuilder escaped = new StringBuilder( value.length() + 8 );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      if ( c == '%' || c == '_' || c == '\\' ) {
+        escaped.append( '\\' );
+      } else if ( c == '\'' ) {
+        escaped.append( '\'' );
+      }
+      escaped.append( c );
+    }
+    return escaped.toString();
+  }
+
   public IPentahoRole getRole( Session session, final ITenant tenant, final String name ) throws RepositoryException {
     Group jackrabbitGroup = getJackrabbitGroup( tenant, name, session );
     return jackrabbitGroup != null
@@ -701,12 +822,36 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
 
   public List<IPentahoUser> getRoleMembers( Session session, final ITenant theTenant, final String roleName )
     throws RepositoryException {
+    return getRoleMembers( session, theTenant, roleName, 0, -1 );
+  }
+
+  /**
+   * Lists one page of the members of a role. The members are found with one query of the user manager scoped to the
+   * group, which also sorts and pages them.
+   */
+  public List<IPentahoUser> getRoleMembers( Session session, final ITenant theTenant, final String roleName,
+      final int offset, final int limit ) throws RepositoryException {
     List<IPentahoUser> users = new ArrayList<IPentahoUser>();
     Group jackrabbitGroup = getJackrabbitGroup( theTenant, roleName, session );
     if ( ( jackrabbitGroup != null )
         && TenantUtils.isAccessibleTenant( theTenant == null ? tenantedRoleNameUtils
             .getTenant( jackrabbitGroup.getID() ) : theTenant ) ) {
-      Iterator<Authorizable> authorizables = jackrabbitGroup.getMembers();
+      ITenant tenant = theTenant == null ? tenantedRoleNameUtils.getTenant( jackrabbitGroup.getID() ) : theTenant;
+      if ( tenant == null || tenant.getId() == null ) {
+        tenant = JcrTenantUtils.getDefaultTenant();
+      }
+      UserManager userMgr = getUserManager( tenant, session );
+      pPrincipalName = ( (SessionImpl) session ).getJCRName( P_PRINCIPAL_NAME );
+      final String property = "@" + pPrincipalName; //$NON-NLS-1$
+      final String groupId = jackrabbitGroup.getID();
+      Iterator<Authorizable> authorizables = userMgr.findAuthorizables( new Query() {
+        public <T> void build( QueryBuilder<T> builder ) {
+          builder.setSelector( User.class );
+          builder.setScope( groupId, false );
+          builder.setSortOrder( property, QueryBuilder.Direction.ASCENDING );
+          builder.setLimit( Math.max( offset, 0 ), limit );
+        }
+      } );
       while ( authorizables.hasNext() ) {
         Authorizable authorizable = authorizables.next();
         if ( authorizable instanceof User ) {
@@ -717,6 +862,32 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     return users;
   }
 
+  /**
+   * Finds the groups a user is a member of with one query of the user manager on the members of the groups, sorted by
+   * name, instead of resolving the memberships of the user one group at a time.
+   */
+  private Iterator<Authorizable> findGroupsOfMember( Session session, ITenant theTenant, User jackrabbitUser )
+    throws RepositoryException {
+    ITenant tenant = theTenant == null ? tenantedUserNameUtils.getTenant( jackrabbitUser.getID() ) : theTenant;
+    if ( tenant == null || tenant.getId() == null ) {
+      tenant = JcrTenantUtils.getDefaultTenant();
+    }
+    UserManager userMgr = getUserManager( tenant, session );
+    pPrincipalName = ( (SessionImpl) session ).getJCRName( P_PRINCIPAL_NAME );
+    final String property = "@" + pPrincipalName; //$NON-NLS-1$
+    final String membersProperty = "@" + ( (SessionImpl) session ).getJCRName( P_MEMBERS ); //$NON-NLS-1$
+    final Value member =
+        session.getValueFactory().createValue( session.getNode( jackrabbitUser.getPath() ).getIdentifier(),
+            PropertyType.WEAKREFERENCE );
+    return userMgr.findAuthorizables( new Query() {
+      public <T> void build( QueryBuilder<T> builder ) {
+        builder.setSelector( Group.class );
+        builder.setCondition( builder.eq( membersProperty, member ) );
+        builder.setSortOrder( property, QueryBuilder.Direction.ASCENDING );
+      }
+    } );
+  }
+
   public List<IPentahoRole> getUserRoles( Session session, final ITenant theTenant, final String userName )
     throws RepositoryException {
     ArrayList<IPentahoRole> roles = new ArrayList<IPentahoRole>();
@@ -724,9 +895,9 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     if ( ( jackrabbitUser != null )
         && TenantUtils.isAccessibleTenant( theTenant == null ? tenantedUserNameUtils.getTenant( jackrabbitUser.getID() )
             : theTenant ) ) {
-      Iterator<Group> groups = jackrabbitUser.memberOf();
+      Iterator<Authorizable> groups = findGroupsOfMember( session, theTenant, jackrabbitUser );
       while ( groups.hasNext() ) {
-        IPentahoRole role = convertToPentahoRole( groups.next() );
+        IPentahoRole role = convertToPentahoRole( (Group) groups.next() );
         // Exclude the extra role from the list of roles to be returned back
         if ( !extraRoles.contains( role.getName() ) ) {
           roles.add( role );
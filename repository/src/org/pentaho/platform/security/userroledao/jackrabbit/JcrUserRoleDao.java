@@ -278,6 +278,22 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
     }
   }
 
+  @Override
+  public List<IPentahoRole> getRoles( final ITenant tenant, final String namePrefix, final int offset,
+      final int limit ) throws UncategorizedUserRoleDaoException {
+    try {
+      return (List<IPentahoRole>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getRoles( session, tenant, namePrefix, offset, limit );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0008_LISTING_ROLES", e.getLocalizedMessage() ), e );
+    }
+  }
+
   @Override
   public List<IPentahoUser> getUsers( ITenant tenant ) throws UncategorizedUserRoleDaoException {
     return getUsers( tenant, false );
@@ -299,6 +315,22 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
     }
   }
 
+  @Override
+  public List<IPentahoUser> getUsers( final ITenant tenant, final String namePrefix, final int offset,
+      final int limit ) throws UncategorizedUserRoleDaoException {
+    try {
+      return (List<IPentahoUser>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getUsers( session, tenant, namePrefix, offset, limit );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0009_LISTING_USERS", e.getLocalizedMessage() ), e );
+    }
+  }
+
   @Override
   public IPentahoRole getRole( final ITenant tenant, final String name ) throws UncategorizedUserRoleDaoException {
     try {
@@ -345,6 +377,22 @@ public class JcrUserRoleDao extends AbstractJcrBackedUserRoleDao {
     }
   }
 
+  @Override
+  public List<IPentahoUser> getRoleMembers( final ITenant tenant, final String roleName, final int offset,
+      final int limit ) throws UncategorizedUserRoleDaoException {
+    try {
+      return (List<IPentahoUser>) adminJcrTemplate.execute( new JcrCallback() {
+        @Override
+        public Object doInJcr( Session session ) throws IOException, RepositoryException {
+          return getRoleMembers( session, tenant, roleName, offset, limit );
+        }
+      } );
+    } catch ( DataAccessException e ) {
+      throw new UncategorizedUserRoleDaoException( Messages.getInstance().getString(
+          "JcrUserRoleDao.ERROR_0011_LISTING_ROLE_MEMBERS", e.getLocalizedMessage() ), e );
+    }
+  }
+
   @Override
   public List<IPentahoRole> getUserRoles( final ITenant tenant, final String userName )
     throws UncategorizedUserRoleDaoException {
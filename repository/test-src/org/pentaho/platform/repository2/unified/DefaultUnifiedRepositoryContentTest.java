@@ -65,6 +65,8 @@ import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepository
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.locale.PentahoLocale;
+import org.pentaho.platform.repository2.unified.jcr.DefaultLockHelper;
+import org.pentaho.platform.repository2.unified.jcr.JcrLockRegistry;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryDumpToFile;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryDumpToFile.Mode;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
@@ -1261,6 +1263,57 @@ public class DefaultUnifiedRepositoryContentTest extends DefaultUnifiedRepositor
 
   }
 
+  @Test
+  public void testLockRegistry() throws Exception {
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    final String parentFolderPath =
+        ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
+    RepositoryFile parentFolder = repo.getFile( parentFolderPath );
+    final SimpleRepositoryFileData content =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( "Hello World!".getBytes( "UTF-8" ) ), "UTF-8",
+            "text/plain" );
+    RepositoryFile lockedFile =
+        repo.createFile( parentFolder.getId(), new RepositoryFile.Builder( "locked.xaction" ).build(), content, null );
+    RepositoryFile otherFile =
+        repo.createFile( parentFolder.getId(), new RepositoryFile.Builder( "other.xaction" ).build(), content, null );
+    repo.lockFile( lockedFile.getId(), "stale lock" );
+    // the lock token comes from memory now; unlocking must still work
+    repo.unlockFile( lockedFile.getId() );
+    assertFalse( repo.getFileById( lockedFile.getId() ).isLocked() );
+    repo.lockFile( lockedFile.getId(), "stale lock" );
+    Date afterLock = new Date( System.currentTimeMillis() + 1000 );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    ILockRegistry lockRegistry =
+        new JcrLockRegistry( jcrTemplate, new DefaultLockHelper( userNameUtils ), pathConversionHelper );
+
+    List<RepositoryFile> files = lockRegistry.getLockedFiles( USERNAME_SUZY, null );
+    assertEquals( 1, files.size() );
+    assertEquals( lockedFile.getId(), files.get( 0 ).getId() );
+    assertEquals( "stale lock", files.get( 0 ).getLockMessage() );
+    assertEquals( 1, lockRegistry.getLockedFiles( null, afterLock ).size() );
+    assertEquals( 0, lockRegistry.getLockedFiles( USERNAME_ADMIN, null ).size() );
+    assertEquals( 0, lockRegistry.getLockedFiles( null, new Date( 0 ) ).size() );
+
+    assertEquals( 1, lockRegistry.expireLocks( USERNAME_SUZY, afterLock ) );
+
+    assertFalse( repo.getFileById( lockedFile.getId() ).isLocked() );
+    assertFalse( repo.getFileById( otherFile.getId() ).isLocked() );
+    assertNull( SimpleJcrTestUtils.getItem( testJcrTemplate, ServerRepositoryPaths.getUserHomeFolderPath( tenantAcme,
+        USERNAME_SUZY )
+        + "/.lockTokens/" + lockedFile.getId() ) );
+    assertEquals( 0, lockRegistry.getLockedFiles( null, null ).size() );
+  }
+
   @Test
   public void testUndeleteFile() throws Exception {
 
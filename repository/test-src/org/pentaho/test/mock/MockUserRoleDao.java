@@ -21,6 +21,7 @@ package org.pentaho.test.mock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -186,6 +187,55 @@ public class MockUserRoleDao implements IUserRoleDao {
     return Collections.list( Collections.enumeration( roleMembers.get( role ) ) );
   }
 
+  public List<IPentahoUser> getRoleMembers( ITenant tenant, String roleName, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    List<IPentahoUser> members = getRoleMembers( tenant, roleName );
+    Collections.sort( members, new Comparator<IPentahoUser>() {
+      public int compare( IPentahoUser user1, IPentahoUser user2 ) {
+        return user1.getUsername().compareTo( user2.getUsername() );
+      }
+    } );
+    return page( members, offset, limit );
+  }
+
+  public List<IPentahoRole> getRoles( ITenant tenant, String namePrefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    List<IPentahoRole> roles = new ArrayList<IPentahoRole>();
+    for ( IPentahoRole role : getRoles( tenant == null ? getCurrentTenant() : tenant ) ) {
+      if ( namePrefix == null || role.getName().startsWith( namePrefix ) ) {
+        roles.add( role );
+      }
+    }
+    Collections.sort( roles, new Comparator<IPentahoRole>() {
+      public int compare( IPentahoRole role1, IPentahoRole role2 ) {
+        return role1.getName().compareTo( role2.getName() );
+      }
+    } );
+    return page( roles, offset, limit );
+  }
+
+  public List<IPentahoUser> getUsers( ITenant tenant, String namePrefix, int offset, int limit )
+    throws UncategorizedUserRoleDaoException {
+    List<IPentahoUser> users = new ArrayList<IPentahoUser>();
+    for ( IPentahoUser user : getUsers( tenant == null ? getCurrentTenant() : tenant ) ) {
+      if ( namePrefix == null || user.getUsername().startsWith( namePrefix ) ) {
+        users.add( user );
+      }
+    }
+    Collections.sort( users, new Comparator<IPentahoUser>() {
+      public int compare( IPentahoUser user1, IPentahoUser user2 ) {
+        return user1.getUsername().compareTo( user2.getUsername() );
+      }
+    } );
+    return page( users, offset, limit );
+  }
+
+  private static <T> List<T> page( List<T> list, int offset, int limit ) {
+    int from = Math.min( Math.max( offset, 0 ), list.size() );
+    int to = limit < 0 ? list.size() : (int) Math.min( (long) from + limit, list.size() );
+    return new ArrayList<T>( list.subList( from, to ) );
+  }
+
   public List<IPentahoRole> getRoles() throws UncategorizedUserRoleDaoException {
     return getRoles( getCurrentTenant() );
   }
@@ -0,0 +1,110 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.test.platform.repository.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.pentaho.platform.repository.hibernate.HibernateUtil;
+import org.pentaho.test.platform.engine.core.BaseTest;
+
+@SuppressWarnings( "nls" )
+public class HibernateSessionScopeTest extends BaseTest {
+
+  private static final String SOLUTION_PATH = "test-src/solution";
+
+  public String getSolutionPath() {
+    return SOLUTION_PATH;
+  }
+
+  public void setUp() {
+    super.setUp();
+    // each test starts without a session on the thread
+    HibernateUtil.closeSession();
+  }
+
+  public void tearDown() {
+    try {
+      HibernateUtil.endSessionScope( false );
+    } finally {
+      super.tearDown();
+    }
+  }
+
+  public void testScopeClosesSession() {
+    assertTrue( HibernateUtil.beginSessionScope() );
+    Session session = HibernateUtil.getSession();
+    // a nested scope is not started, so it is not ended either
+    assertFalse( HibernateUtil.beginSessionScope() );
+
+    HibernateUtil.endSessionScope( true );
+
+    assertFalse( session.isOpen() );
+    assertTrue( HibernateUtil.beginSessionScope() );
+    assertNotSame( session, HibernateUtil.getSession() );
+  }
+
+  public void testScopeEndedWithoutCompletingRollsBack() {
+    assertTrue( HibernateUtil.beginSessionScope() );
+    HibernateUtil.beginTransaction();
+    Session session = HibernateUtil.getSession();
+    Transaction transaction = session.getTransaction();
+
+    HibernateUtil.endSessionScope( false );
+
+    assertTrue( transaction.wasRolledBack() );
+    assertFalse( transaction.wasCommitted() );
+    assertFalse( session.isOpen() );
+  }
+
+  public void testScopeEndedCompletedCommits() {
+    assertTrue( HibernateUtil.beginSessionScope() );
+    HibernateUtil.beginTransaction();
+    Transaction transaction = HibernateUtil.getSession().getTransaction();
+
+    HibernateUtil.endSessionScope( true );
+
+    assertTrue( transaction.wasCommitted() );
+  }
+
+  public void testLeakedSessionIsClosedAndCounted() {
+    // left open outside of any scope, as by work on a pooled thread that never closed its session
+    HibernateUtil.beginTransaction();
+    Session leaked = HibernateUtil.getSession();
+    Transaction transaction = leaked.getTransaction();
+    long leakedCount = HibernateUtil.getLeakedSessionCount();
+
+    assertTrue( HibernateUtil.beginSessionScope() );
+
+    assertEquals( leakedCount + 1, HibernateUtil.getLeakedSessionCount() );
+    assertFalse( leaked.isOpen() );
+    assertTrue( transaction.wasRolledBack() );
+    assertNotSame( leaked, HibernateUtil.getSession() );
+  }
+
+  public void testScopeWithoutSessionIsNotCountedAsLeak() {
+    long leakedCount = HibernateUtil.getLeakedSessionCount();
+
+    assertTrue( HibernateUtil.beginSessionScope() );
+    HibernateUtil.getSession();
+    HibernateUtil.endSessionScope( true );
+    assertTrue( HibernateUtil.beginSessionScope() );
+
+    assertEquals( leakedCount, HibernateUtil.getLeakedSessionCount() );
+  }
+}
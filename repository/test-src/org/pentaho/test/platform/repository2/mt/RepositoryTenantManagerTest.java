@@ -24,12 +24,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.engine.core.system.TenantUtils;
+import org.pentaho.platform.repository2.mt.TenantProvisioner;
+import org.pentaho.platform.repository2.mt.TenantProvisioningResult;
 import org.pentaho.platform.repository2.unified.DefaultUnifiedRepositoryBase;
 import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryDumpToFile;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryDumpToFile.Mode;
+import org.pentaho.platform.repository2.unified.jcr.SimpleJcrTestUtils;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -401,4 +405,43 @@ public class RepositoryTenantManagerTest extends DefaultUnifiedRepositoryBase {
     tenantManager.deleteTenant( mainTenant_2 );
     logout();
   }
+
+  @Test
+  public void testProvisionTenants() {
+    loginAsSysTenantAdmin();
+    ITenant existingTenant =
+      tenantManager.createTenant( systemTenant, TENANT_ID_SUN, tenantAdminRoleName, tenantAuthenticatedRoleName,
+        ANONYMOUS_ROLE_NAME );
+    // sessions are global in these tests, so the batch has to stay in the calling thread
+    TenantProvisioner provisioner = new TenantProvisioner( tenantManager, 1 );
+
+    List<TenantProvisioningResult> results =
+      provisioner.createTenants( systemTenant, Arrays.asList( TENANT_ID_APPLE, TENANT_ID_SUN, TENANT_ID_MICROSOFT ),
+        tenantAdminRoleName, tenantAuthenticatedRoleName, ANONYMOUS_ROLE_NAME );
+
+    assertEquals( 3, results.size() );
+    assertEquals( TENANT_ID_APPLE, results.get( 0 ).getTenantName() );
+    assertTrue( results.get( 0 ).isSuccessful() );
+    assertTrue( results.get( 0 ).getElapsedMillis() >= 0 );
+    assertFalse( results.get( 1 ).isSuccessful() );
+    assertNull( results.get( 1 ).getError() );
+    assertTrue( results.get( 2 ).isSuccessful() );
+    ITenant apple = results.get( 0 ).getTenant();
+    ITenant microsoft = results.get( 2 ).getTenant();
+    assertTenantNotNull( tenantManager.getTenant( apple.getRootFolderAbsolutePath() ) );
+    assertTenantNotNull( tenantManager.getTenant( microsoft.getRootFolderAbsolutePath() ) );
+    assertNotNull( SimpleJcrTestUtils.getItem( testJcrTemplate, ServerRepositoryPaths.getTenantRootFolderPath( apple )
+      + "/.authz/roleBased/runtimeRoles" ) );
+
+    results = provisioner.deleteTenants( Arrays.asList( apple, microsoft, existingTenant ) );
+
+    assertEquals( 3, results.size() );
+    for ( TenantProvisioningResult result : results ) {
+      assertTrue( result.isSuccessful() );
+    }
+    assertNull( tenantManager.getTenant( apple.getRootFolderAbsolutePath() ) );
+    assertNull( tenantManager.getTenant( microsoft.getRootFolderAbsolutePath() ) );
+    assertNull( tenantManager.getTenant( existingTenant.getRootFolderAbsolutePath() ) );
+    logout();
+  }
 }
@@ -0,0 +1,186 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.test.platform.repository2.mt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.mt.ITenantManager;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.repository2.mt.TenantProvisioner;
+import org.pentaho.platform.repository2.mt.TenantProvisioningResult;
+import org.springframework.security.Authentication;
+import org.springframework.security.context.SecurityContextHolder;
+import org.springframework.security.providers.UsernamePasswordAuthenticationToken;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the provisioner on several threads against a stubbed tenant manager. The repository tests keep their sessions
+ * in global holders, so {@link RepositoryTenantManagerTest} can only provision in the calling thread.
+ */
+@SuppressWarnings( "nls" )
+public class TenantProvisionerTest {
+
+  private IPentahoSession pentahoSession;
+
+  private Authentication authentication;
+
+  private ITenantManager tenantManager;
+
+  private ITenant parent;
+
+  // what the tenant manager saw, it is called from the worker threads
+  private final Set<String> threadNames = Collections.synchronizedSet( new HashSet<String>() );
+
+  private final Set<Object> sessions = Collections.synchronizedSet( new HashSet<Object>() );
+
+  private final Set<Object> authentications = Collections.synchronizedSet( new HashSet<Object>() );
+
+  @Before
+  public void setUp() {
+    pentahoSession = new StandaloneSession( "admin" );
+    authentication = new UsernamePasswordAuthenticationToken( "admin", "password" );
+    PentahoSessionHolder.setSession( pentahoSession );
+    SecurityContextHolder.getContext().setAuthentication( authentication );
+    tenantManager = mock( ITenantManager.class );
+    parent = tenant( "/pentaho" );
+  }
+
+  @After
+  public void tearDown() {
+    PentahoSessionHolder.removeSession();
+    SecurityContextHolder.clearContext();
+  }
+
+  private static ITenant tenant( final String path ) {
+    ITenant tenant = mock( ITenant.class );
+    when( tenant.getRootFolderAbsolutePath() ).thenReturn( path );
+    when( tenant.getName() ).thenReturn( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+    return tenant;
+  }
+
+  private void record() {
+    threadNames.add( Thread.currentThread().getName() );
+    sessions.add( PentahoSessionHolder.getSession() );
+    authentications.add( SecurityContextHolder.getContext().getAuthentication() );
+  }
+
+  private void assertRanAsCaller() {
+    assertFalse( threadNames.contains( Thread.currentThread().getName() ) );
+    assertEquals( Collections.singleton( pentahoSession ), sessions );
+    assertEquals( Collections.singleton( authentication ), authentications );
+    // the caller keeps its own session and authentication
+    assertSame( pentahoSession, PentahoSessionHolder.getSession() );
+    assertSame( authentication, SecurityContextHolder.getContext().getAuthentication() );
+  }
+
+  @Test
+  public void testTenantsAreCreatedConcurrently() {
+    // every tenant waits for the others, so they only get through when they are created at the same time
+    final CyclicBarrier allStarted = new CyclicBarrier( 3 );
+    when( tenantManager.createTenant( same( parent ), anyString(), anyString(), anyString(), anyString() ) )
+        .thenAnswer( new Answer<ITenant>() {
+          public ITenant answer( InvocationOnMock invocation ) throws Throwable {
+            record();
+            allStarted.await( 10, TimeUnit.SECONDS );
+            String name = (String) invocation.getArguments()[1];
+            if ( "sun".equals( name ) ) {
+              throw new IllegalArgumentException( name );
+            }
+            return tenant( "/pentaho/" + name );
+          }
+        } );
+    TenantProvisioner provisioner = new TenantProvisioner( tenantManager, 3 );
+
+    List<TenantProvisioningResult> results =
+        provisioner.createTenants( parent, Arrays.asList( "apple", "sun", "microsoft" ), "Admin", "Authenticated",
+            "Anonymous" );
+
+    assertEquals( 3, results.size() );
+    assertEquals( "apple", results.get( 0 ).getTenantName() );
+    assertTrue( results.get( 0 ).isSuccessful() );
+    assertEquals( "/pentaho/apple", results.get( 0 ).getTenant().getRootFolderAbsolutePath() );
+    assertEquals( "sun", results.get( 1 ).getTenantName() );
+    assertFalse( results.get( 1 ).isSuccessful() );
+    assertTrue( results.get( 1 ).getError() instanceof IllegalArgumentException );
+    assertEquals( "microsoft", results.get( 2 ).getTenantName() );
+    assertTrue( results.get( 2 ).isSuccessful() );
+    assertEquals( 3, threadNames.size() );
+    assertRanAsCaller();
+  }
+
+  @Test
+  public void testNestedTenantsAreDeletedWithTheirParent() {
+    doAnswer( new Answer<Object>() {
+      public Object answer( InvocationOnMock invocation ) {
+        record();
+        return null;
+      }
+    } ).when( tenantManager ).deleteTenant( any( ITenant.class ) );
+    ITenant apple = tenant( "/pentaho/apple" );
+    ITenant appleSub = tenant( "/pentaho/apple/sub" );
+    ITenant microsoft = tenant( "/pentaho/microsoft" );
+    ITenant sun = tenant( "/pentaho/sun" );
+    TenantProvisioner provisioner = new TenantProvisioner( tenantManager, 2 );
+
+    List<TenantProvisioningResult> results =
+        provisioner.deleteTenants( Arrays.asList( apple, appleSub, microsoft, sun ) );
+
+    assertEquals( 3, results.size() );
+    for ( TenantProvisioningResult result : results ) {
+      assertTrue( result.isSuccessful() );
+    }
+    verify( tenantManager ).deleteTenant( apple );
+    verify( tenantManager, never() ).deleteTenant( appleSub );
+    verify( tenantManager ).deleteTenant( microsoft );
+    verify( tenantManager ).deleteTenant( sun );
+    assertRanAsCaller();
+  }
+
+  @Test
+  public void testWorkerFailureIsRethrown() {
+    final Error failure = new Error( "broken" );
+    when( tenantManager.createTenant( same( parent ), anyString(), anyString(), anyString(), anyString() ) )
+        .thenThrow( failure );
+    TenantProvisioner provisioner = new TenantProvisioner( tenantManager, 2 );
+
+    try {
+      provisioner.createTenants( parent, Arrays.asList( "apple", "sun" ), "Admin", "Authenticated", "Anonymous" );
+      fail( "the failure of a worker must not be swallowed" );
+    } catch ( IllegalStateException e ) {
+      assertSame( failure, e.getCause() );
+    }
+    assertSame( pentahoSession, PentahoSessionHolder.getSession() );
+  }
+}
@@ -18,6 +18,7 @@
 package org.pentaho.test.platform.repository2.unified;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
@@ -173,6 +174,24 @@ public class EmptyUnifiedRepository implements IUnifiedRepository {
   public void undeleteFile( final Serializable fileId, final String versionMessage ) {
   }
 
+  @Override
+  public Map<Serializable, Exception> deleteFilesInBatch( final List<Serializable> fileIds, final boolean permanent,
+      final String versionMessage ) {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public Map<Serializable, Exception> moveFilesInBatch( final List<Serializable> fileIds, final String destAbsPath,
+      final String versionMessage ) {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public Map<Serializable, Exception> undeleteFilesInBatch( final List<Serializable> fileIds,
+      final String versionMessage ) {
+    return Collections.emptyMap();
+  }
+
   @Override
   public List<RepositoryFile> getDeletedFiles( final String origParentFolderPath ) {
     return null;
@@ -34,6 +34,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -576,6 +577,48 @@ public class MockUnifiedRepository implements IUnifiedRepository {
     deleteManager.restore( fileId );
   }
 
+  @Override
+  public Map<Serializable, Exception> deleteFilesInBatch( final List<Serializable> fileIds, final boolean permanent,
+      final String versionMessage ) {
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        deleteFile( fileId, permanent, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
+  @Override
+  public Map<Serializable, Exception> moveFilesInBatch( final List<Serializable> fileIds, final String destAbsPath,
+      final String versionMessage ) {
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        moveFile( fileId, destAbsPath, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
+  @Override
+  public Map<Serializable, Exception> undeleteFilesInBatch( final List<Serializable> fileIds,
+      final String versionMessage ) {
+    Map<Serializable, Exception> failures = new LinkedHashMap<Serializable, Exception>();
+    for ( Serializable fileId : fileIds ) {
+      try {
+        undeleteFile( fileId, versionMessage );
+      } catch ( Exception e ) {
+        failures.put( fileId, e );
+      }
+    }
+    return failures;
+  }
+
   @Override
   public List<RepositoryFile> getDeletedFiles( final String origParentFolderPath ) {
     return getDeletedFiles( origParentFolderPath, null );
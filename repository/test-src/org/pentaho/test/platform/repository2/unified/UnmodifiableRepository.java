@@ -492,6 +492,24 @@ public class UnmodifiableRepository implements IUnifiedRepository {
     throw new UnmodifiableRepositoryException();
   }
 
+  @Override
+  public Map<Serializable, Exception> deleteFilesInBatch( final List<Serializable> fileIds, final boolean permanent,
+      final String versionMessage ) {
+    throw new UnmodifiableRepositoryException();
+  }
+
+  @Override
+  public Map<Serializable, Exception> moveFilesInBatch( final List<Serializable> fileIds, final String destAbsPath,
+      final String versionMessage ) {
+    throw new UnmodifiableRepositoryException();
+  }
+
+  @Override
+  public Map<Serializable, Exception> undeleteFilesInBatch( final List<Serializable> fileIds,
+      final String versionMessage ) {
+    throw new UnmodifiableRepositoryException();
+  }
+
   /**
    * Gets all deleted files for the current user in this folder.
    * 
@@ -18,6 +18,7 @@
 
 package org.pentaho.test.platform.security.userroledao;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -34,7 +35,10 @@ import org.junit.Test;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.security.userroledao.NotFoundException;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
+import org.pentaho.platform.core.mt.Tenant;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.security.userroledao.DefaultTenantedPrincipleNameResolver;
 import org.pentaho.platform.security.userroledao.jackrabbit.AbstractJcrBackedUserRoleDao;
 import org.pentaho.platform.security.userroledao.jackrabbit.JcrUserRoleDao;
 
@@ -75,8 +79,30 @@ public class AbstractJcrBackedUserRoleDaoTest {
     roleDao.setUserRoles( jcrSession, tenant, adminDefaultUserName, newRoles );
   }
 
+  @Test
+  public void testPrincipalIdPattern() {
+    DefaultTenantedPrincipleNameResolver nameUtils = new DefaultTenantedPrincipleNameResolver();
+    ITenant tenant = new Tenant( "/pentaho/tenant_0", true );
+    assertEquals( "adm%-/pentaho/tenant\\_0", PatternDao.pattern( nameUtils, tenant, "adm", true, false ) );
+    assertEquals( "100\\%''s-/pentaho/tenant\\_0", PatternDao.pattern( nameUtils, tenant, "100%'s", false, false ) );
+    assertEquals( "%-/pentaho/tenant\\_0%", PatternDao.pattern( nameUtils, tenant, null, true, true ) );
+
+    nameUtils.setUserNameFollowsTenantName( true );
+    assertEquals( "/pentaho/tenant\\_0%-adm%", PatternDao.pattern( nameUtils, tenant, "adm", true, true ) );
+  }
+
   private void setUserName( String newUserName ) {
     when( pentahoSession.getName() ).thenReturn( newUserName );
   }
 
+  private abstract static class PatternDao extends AbstractJcrBackedUserRoleDao {
+    private PatternDao() throws NamespaceException {
+      super( null, null, null, null, null, null, null, null, null, null, null, null, null );
+    }
+
+    static String pattern( ITenantedPrincipleNameResolver nameUtils, ITenant tenant, String name, boolean isPrefix,
+        boolean includeSubtenants ) {
+      return getPrincipalIdPattern( nameUtils, tenant, name, isPrefix, includeSubtenants );
+    }
+  }
 }
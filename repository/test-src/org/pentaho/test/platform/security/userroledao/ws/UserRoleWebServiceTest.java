@@ -150,6 +150,42 @@ public class UserRoleWebServiceTest {
       return members == null ? new ArrayList<IPentahoUser>() : new ArrayList<IPentahoUser>( members );
     }
 
+    @Override
+    public List<IPentahoUser> getRoleMembers( ITenant tenant, String roleName, int offset, int limit )
+      throws UncategorizedUserRoleDaoException {
+      return page( getRoleMembers( tenant, roleName ), offset, limit );
+    }
+
+    @Override
+    public List<IPentahoRole> getRoles( ITenant tenant, String namePrefix, int offset, int limit )
+      throws UncategorizedUserRoleDaoException {
+      List<IPentahoRole> result = new ArrayList<IPentahoRole>();
+      for ( IPentahoRole role : getRoles( tenant == null ? getDefaultTenant() : tenant ) ) {
+        if ( namePrefix == null || role.getName().startsWith( namePrefix ) ) {
+          result.add( role );
+        }
+      }
+      return page( result, offset, limit );
+    }
+
+    @Override
+    public List<IPentahoUser> getUsers( ITenant tenant, String namePrefix, int offset, int limit )
+      throws UncategorizedUserRoleDaoException {
+      List<IPentahoUser> result = new ArrayList<IPentahoUser>();
+      for ( IPentahoUser user : getUsers( tenant == null ? getDefaultTenant() : tenant ) ) {
+        if ( namePrefix == null || user.getUsername().startsWith( namePrefix ) ) {
+          result.add( user );
+        }
+      }
+      return page( result, offset, limit );
+    }
+
+    private static <T> List<T> page( List<T> list, int offset, int limit ) {
+      int from = Math.min( Math.max( offset, 0 ), list.size() );
+      int to = limit < 0 ? list.size() : (int) Math.min( (long) from + limit, list.size() );
+      return new ArrayList<T>( list.subList( from, to ) );
+    }
+
     @Override
     public List<IPentahoRole> getUserRoles( ITenant tenant, String userName ) throws UncategorizedUserRoleDaoException {
       if ( tenant == null ) {
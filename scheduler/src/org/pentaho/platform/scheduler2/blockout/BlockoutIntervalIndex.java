@@ -0,0 +1,315 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.IScheduler;
+import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+import org.pentaho.platform.scheduler2.quartz.QuartzJobKey;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+import org.quartz.Trigger;
+
+/**
+ * The windows during which a set of blockouts is in effect, expanded from the blockout triggers and merged into
+ * sorted, non overlapping intervals, so whether a point in time is blocked is a binary search instead of a walk over
+ * the fire times of every blockout.
+ * <p>
+ * Windows are expanded from the moment the index is built up to {@link #HORIZON} ahead, with at most
+ * {@link #MAX_WINDOWS} windows per blockout like {@link BlockoutManagerUtil#getFireTimes(IJobTrigger, IScheduler)}.
+ * Times outside of what the index covers are checked against each blockout trigger, as before.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ */
+class BlockoutIntervalIndex {
+
+  static final long HORIZON = 4 * TIME.YEAR.time;
+
+  static final int MAX_WINDOWS = 1000;
+
+  private static final Comparator<long[]> WINDOW_START_ORDER = new Comparator<long[]>() {
+    public int compare( long[] window1, long[] window2 ) {
+      return window1[0] < window2[0] ? -1 : ( window1[0] == window2[0] ? 0 : 1 );
+    }
+  };
+
+  private final List<IJobTrigger> blockOutTriggers;
+
+  private final IScheduler scheduler;
+
+  /** The index holds every window in effect between these two times, both inclusive */
+  private final long from;
+
+  private final long coverageEnd;
+
+  /** Merged windows, sorted by start time */
+  private final long[] starts;
+
+  private final long[] ends;
+
+  BlockoutIntervalIndex( final List<IJobTrigger> blockOutTriggers, final IScheduler scheduler, final long now ) {
+    this.blockOutTriggers = new ArrayList<IJobTrigger>( blockOutTriggers );
+    this.scheduler = scheduler;
+    this.from = now;
+
+    List<long[]> windows = new ArrayList<long[]>();
+    long covered = now + HORIZON;
+    for ( IJobTrigger blockOutTrigger : blockOutTriggers ) {
+      covered = Math.min( covered, expand( blockOutTrigger, now, now + HORIZON, windows ) );
+    }
+    this.coverageEnd = covered;
+
+    Collections.sort( windows, WINDOW_START_ORDER );
+    long[] mergedStarts = new long[windows.size()];
+    long[] mergedEnds = new long[windows.size()];
+    int size = 0;
+    for ( long[] window : windows ) {
+      if ( size > 0 && window[0] <= mergedEnds[size - 1] ) {
+        mergedEnds[size - 1] = Math.max( mergedEnds[size - 1], window[1] );
+      } else {
+        mergedStarts[size] = window[0];
+        mergedEnds[size] = window[1];
+        size++;
+      }
+    }
+    starts = new long[size];
+    ends = new long[size];
+    System.arraycopy( mergedStarts, 0, starts, 0, size );
+    System.arraycopy( mergedEnds, 0, ends, 0, size );
+  }
+
+  /**
+   * Adds the windows of one blockout, clipped to its start and end time, and returns the time up to which they are
+   * complete.
+   */
+  private long expand( final IJobTrigger blockOutTrigger, final long now, final long horizonEnd,
+      final List<long[]> windows ) {
+    long duration = blockOutTrigger.getDuration();
+    long start = blockOutTrigger.getStartTime() != null ? blockOutTrigger.getStartTime().getTime() : Long.MIN_VALUE;
+    long end = blockOutTrigger.getEndTime() != null ? blockOutTrigger.getEndTime().getTime() : Long.MAX_VALUE;
+    // windows that started up to one duration ago may still be in effect
+    long earliest = now - duration;
+
+    if ( BlockoutManagerUtil.isComplexTrigger( blockOutTrigger ) ) {
+      Trigger trigger = createQuartzTrigger( blockOutTrigger );
+      // never let the trigger fire before the blockout's own start time
+      trigger.setStartTime( new Date( Math.max( earliest - TIME.SECOND.time, start ) ) );
+      Date fireTime = trigger.getFireTimeAfter( new Date( earliest - 1 ) );
+      for ( int count = 0; fireTime != null && fireTime.getTime() <= horizonEnd && fireTime.getTime() <= end;
+          count++ ) {
+        if ( count == MAX_WINDOWS ) {
+          return fireTime.getTime() - 1;
+        }
+        addWindow( windows, fireTime.getTime(), fireTime.getTime() + duration, start, end );
+        fireTime = trigger.getFireTimeAfter( fireTime );
+      }
+      return horizonEnd;
+    }
+
+    long interval = ( (SimpleJobTrigger) blockOutTrigger ).getRepeatInterval() * 1000;
+    long first = blockOutTrigger.getStartTime().getTime();
+    if ( interval <= 0 ) {
+      addWindow( windows, first, first + duration, start, end );
+      return horizonEnd;
+    }
+    long k = first >= earliest ? 0 : ( earliest - first ) / interval;
+    for ( int count = 0;; count++, k++ ) {
+      long windowStart = first + k * interval;
+      if ( windowStart > horizonEnd || windowStart > end ) {
+        return horizonEnd;
+      }
+      if ( count == MAX_WINDOWS ) {
+        return windowStart - 1;
+      }
+      addWindow( windows, windowStart, windowStart + duration, start, end );
+    }
+  }
+
+  private static void addWindow( final List<long[]> windows, final long windowStart, final long windowEnd,
+      final long start, final long end ) {
+    long clippedStart = Math.max( windowStart, start );
+    long clippedEnd = Math.min( windowEnd, end );
+    if ( clippedStart <= clippedEnd ) {
+      windows.add( new long[] { clippedStart, clippedEnd } );
+    }
+  }
+
+  /**
+   * @return whether any blockout is in effect at the given time
+   */
+  boolean isBlocked( final long time ) {
+    if ( time < from || time > coverageEnd ) {
+      Date date = new Date( time );
+      for ( IJobTrigger blockOutTrigger : blockOutTriggers ) {
+        if ( BlockoutManagerUtil.willBlockDate( blockOutTrigger, date, scheduler ) ) {
+          return true;
+        }
+      }
+      return false;
+    }
+    int low = 0;
+    int high = starts.length - 1;
+    // find the last window starting at or before the time
+    while ( low <= high ) {
+      int mid = ( low + high ) >>> 1;
+      if ( starts[mid] <= time ) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high >= 0 && time <= ends[high];
+  }
+
+  /**
+   * @return whether at least one fire time of the schedule falls within a blockout window
+   */
+  boolean blocksAny( final IJobTrigger scheduleTrigger ) {
+    if ( starts.length == 0 ) {
+      return false;
+    }
+    if ( !BlockoutManagerUtil.isComplexTrigger( scheduleTrigger ) ) {
+      long interval = ( (SimpleJobTrigger) scheduleTrigger ).getRepeatInterval() * 1000;
+      // with fewer windows than fire times, look for a fire time within each window instead
+      if ( interval > 0 && starts.length < ( coverageEnd - from ) / interval ) {
+        return blocksAnyWindow( (SimpleJobTrigger) scheduleTrigger, interval );
+      }
+    }
+    for ( long fireTime : getFireTimes( scheduleTrigger ) ) {
+      if ( isBlocked( fireTime ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean blocksAnyWindow( final SimpleJobTrigger scheduleTrigger, final long interval ) {
+    long start = scheduleTrigger.getStartTime().getTime();
+    long end = getLastFireTime( scheduleTrigger, interval );
+    for ( int i = 0; i < starts.length; i++ ) {
+      long windowStart = Math.max( starts[i], from );
+      // first fire time at or after the start of the window
+      long fireTime = windowStart <= start ? start : start + ceilDiv( windowStart - start, interval ) * interval;
+      if ( fireTime <= ends[i] && fireTime <= end && fireTime <= coverageEnd ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether every fire time of the schedule falls within a blockout window, i.e. the schedule will not fire
+   */
+  boolean blocksAll( final IJobTrigger scheduleTrigger ) {
+    List<Long> fireTimes = getFireTimes( scheduleTrigger );
+    if ( fireTimes.isEmpty() ) {
+      return false;
+    }
+    for ( long fireTime : fireTimes ) {
+      if ( !isBlocked( fireTime ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The fire times of a schedule that this index covers, at most {@link #MAX_WINDOWS} of them.
+   */
+  List<Long> getFireTimes( final IJobTrigger scheduleTrigger ) {
+    List<Long> fireTimes = new ArrayList<Long>();
+    long end = scheduleTrigger.getEndTime() != null ? scheduleTrigger.getEndTime().getTime() : Long.MAX_VALUE;
+    if ( BlockoutManagerUtil.isComplexTrigger( scheduleTrigger ) ) {
+      Trigger trigger = createQuartzTrigger( scheduleTrigger );
+      Date fireTime = trigger.getFireTimeAfter( new Date( from - 1 ) );
+      while ( fireTime != null && fireTime.getTime() <= coverageEnd && fireTime.getTime() <= end
+          && fireTimes.size() < MAX_WINDOWS ) {
+        fireTimes.add( fireTime.getTime() );
+        fireTime = trigger.getFireTimeAfter( fireTime );
+      }
+      return fireTimes;
+    }
+
+    SimpleJobTrigger simpleTrigger = (SimpleJobTrigger) scheduleTrigger;
+    long start = simpleTrigger.getStartTime().getTime();
+    long interval = simpleTrigger.getRepeatInterval() * 1000;
+    if ( interval <= 0 ) {
+      if ( start >= from && start <= coverageEnd ) {
+        fireTimes.add( start );
+      }
+      return fireTimes;
+    }
+    end = Math.min( end, getLastFireTime( simpleTrigger, interval ) );
+    long fireTime = start >= from ? start : start + ceilDiv( from - start, interval ) * interval;
+    while ( fireTime <= coverageEnd && fireTime <= end && fireTimes.size() < MAX_WINDOWS ) {
+      fireTimes.add( fireTime );
+      fireTime += interval;
+    }
+    return fireTimes;
+  }
+
+  private static long getLastFireTime( final SimpleJobTrigger scheduleTrigger, final long interval ) {
+    long end = scheduleTrigger.getEndTime() != null ? scheduleTrigger.getEndTime().getTime() : Long.MAX_VALUE;
+    if ( scheduleTrigger.getRepeatCount() >= 0 ) {
+      end = Math.min( end, scheduleTrigger.getStartTime().getTime() + scheduleTrigger.getRepeatCount() * interval );
+    }
+    return end;
+  }
+
+  private static long ceilDiv( final long dividend, final long divisor ) {
+    return ( dividend + divisor - 1 ) / divisor;
+  }
+
+  private Trigger createQuartzTrigger( final IJobTrigger jobTrigger ) {
+    if ( !( scheduler instanceof QuartzScheduler ) ) {
+      throw new RuntimeException( "Can not calculate fire times for unsupported Scheduler Type: " //$NON-NLS-1$
+          + scheduler.getClass().getSimpleName() );
+    }
+    try {
+      QuartzJobKey jobKey = new QuartzJobKey( "test", "test" ); //$NON-NLS-1$ //$NON-NLS-2$
+      return QuartzScheduler.createQuartzTrigger( jobTrigger, jobKey );
+    } catch ( SchedulerException e ) {
+      throw new RuntimeException( e );
+    }
+  }
+
+  /**
+   * @return whether the index should be built again, because time has moved on through half of what it covers
+   */
+  boolean isOutdated( final long now ) {
+    return now - from > ( coverageEnd - from ) / 2;
+  }
+
+  /**
+   * @return the number of merged windows
+   */
+  int size() {
+    return starts.length;
+  }
+
+  long getCoverageEnd() {
+    return coverageEnd;
+  }
+}
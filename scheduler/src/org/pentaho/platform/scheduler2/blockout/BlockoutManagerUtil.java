@@ -235,7 +235,7 @@ public class BlockoutManagerUtil {
     return false;
   }
 
-  private static boolean willBlockDate( IJobTrigger blockOutJobTrigger, Date date, IScheduler scheduler ) {
+  static boolean willBlockDate( IJobTrigger blockOutJobTrigger, Date date, IScheduler scheduler ) {
     // S + Rx <= d <= S + Rx + D
 
     // Out of range of block out
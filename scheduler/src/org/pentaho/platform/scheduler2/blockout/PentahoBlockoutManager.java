@@ -18,6 +18,7 @@
 package org.pentaho.platform.scheduler2.blockout;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.pentaho.platform.api.scheduler2.IBlockoutManager;
@@ -32,6 +33,11 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   private IScheduler scheduler;
 
+  /** The windows of the current blockouts, built again when a blockout is added, changed or removed */
+  private BlockoutIntervalIndex blockOutIndex;
+
+  private String blockOutIndexKey;
+
   public PentahoBlockoutManager() {
     this.scheduler = PentahoSystem.get( IScheduler.class, "IScheduler2", null ); //$NON-NLS-1$
   }
@@ -53,13 +59,12 @@ public class PentahoBlockoutManager implements IBlockoutManager {
     try {
       List<Job> jobs = scheduler.getJobs( new IJobFilter() {
         public boolean accept( Job job ) {
-          if ( BLOCK_OUT_JOB_NAME.equals( job.getJobName() ) ) {
-            job.getJobTrigger().setDuration( ( (Number) job.getJobParams().get( DURATION_PARAM ) ).longValue() );
-            return true;
-          }
-          return false;
+          return BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
         }
       } );
+      for ( Job job : jobs ) {
+        job.getJobTrigger().setDuration( ( (Number) job.getJobParams().get( DURATION_PARAM ) ).longValue() );
+      }
       return jobs;
 
     } catch ( SchedulerException e ) {
@@ -70,13 +75,12 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   @Override
   public boolean willFire( IJobTrigger scheduleTrigger ) {
-
-    return BlockoutManagerUtil.willFire( scheduleTrigger, getBlockOutJobTriggers(), this.scheduler );
+    return !getBlockOutIndex().blocksAll( scheduleTrigger );
   }
 
   @Override
   public boolean shouldFireNow() {
-    return BlockoutManagerUtil.shouldFireNow( getBlockOutJobTriggers(), this.scheduler );
+    return !getBlockOutIndex().isBlocked( System.currentTimeMillis() );
   }
 
   @Override
@@ -96,12 +100,14 @@ public class PentahoBlockoutManager implements IBlockoutManager {
       throw new RuntimeException( e );
     }
 
-    // Loop over trigger group names
+    // The windows of the tested block out are expanded once, then each schedule is looked up in them
+    BlockoutIntervalIndex testIndex =
+        new BlockoutIntervalIndex( Collections.singletonList( testBlockOutJobTrigger ), this.scheduler, System
+            .currentTimeMillis() );
     for ( Job scheduledJob : scheduledJobs ) {
 
       // Add schedule to list if block out conflicts at all
-      if ( BlockoutManagerUtil.willBlockSchedule( scheduledJob.getJobTrigger(),
-              testBlockOutJobTrigger, this.scheduler ) ) {
+      if ( testIndex.blocksAny( scheduledJob.getJobTrigger() ) ) {
         blockedSchedules.add( scheduledJob.getJobTrigger() );
       }
     }
@@ -111,17 +117,43 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   @Override
   public boolean isPartiallyBlocked( IJobTrigger scheduleJobTrigger ) {
-    return BlockoutManagerUtil.isPartiallyBlocked( scheduleJobTrigger, getBlockOutJobTriggers(), this.scheduler );
+    return getBlockOutIndex().blocksAny( scheduleJobTrigger );
   }
 
-  private List<IJobTrigger> getBlockOutJobTriggers() {
+  private List<IJobTrigger> getBlockOutJobTriggers( List<Job> blockOutJobs ) {
     List<IJobTrigger> blockOutJobTriggers = new ArrayList<IJobTrigger>();
 
-    for ( Job blockOutJob : getBlockOutJobs() ) {
+    for ( Job blockOutJob : blockOutJobs ) {
       blockOutJobTriggers.add( blockOutJob.getJobTrigger() );
     }
 
     return blockOutJobTriggers;
   }
 
+  /**
+   * Returns the index of the current blockouts. It is only built again when the blockouts differ from the ones it was
+   * built from, or when time has moved on through half of the period it covers.
+   */
+  synchronized BlockoutIntervalIndex getBlockOutIndex() {
+    List<Job> blockOutJobs = getBlockOutJobs();
+    String key = getBlockOutIndexKey( blockOutJobs );
+    long now = System.currentTimeMillis();
+    if ( blockOutIndex == null || !key.equals( blockOutIndexKey ) || blockOutIndex.isOutdated( now ) ) {
+      blockOutIndex = new BlockoutIntervalIndex( getBlockOutJobTriggers( blockOutJobs ), this.scheduler, now );
+      blockOutIndexKey = key;
+    }
+    return blockOutIndex;
+  }
+
+  private static String getBlockOutIndexKey( List<Job> blockOutJobs ) {
+    StringBuilder key = new StringBuilder();
+    for ( Job blockOutJob : blockOutJobs ) {
+      IJobTrigger trigger = blockOutJob.getJobTrigger();
+      key.append( blockOutJob.getJobId() ).append( '|' ).append( trigger.getClass().getName() ).append( '|' ).append(
+          trigger ).append( '|' ).append( trigger.getCronString() ).append( '|' ).append( trigger.getStartTime() )
+          .append( '|' ).append( trigger.getEndTime() ).append( '|' ).append( trigger.getDuration() ).append( '\n' );
+    }
+    return key.toString();
+  }
+
 }
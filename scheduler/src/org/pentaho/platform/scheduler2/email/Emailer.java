@@ -19,6 +19,8 @@ package org.pentaho.platform.scheduler2.email;
 
 import java.io.InputStream;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.activation.DataHandler;
@@ -52,6 +54,26 @@ public class Emailer {
   private static final Log logger = LogFactory.getLog( Emailer.class );
   private static final String MAILER = "smtpsend"; //$NON-NLS-1$
 
+  private static final int MAX_CACHED_SESSIONS = 16;
+
+  /**
+   * Mail sessions keyed by the mail settings they were created with. Reusing the session lets the outbound mail queue
+   * reuse its SMTP connections for consecutive messages.
+   */
+  private static final Map<Properties, Session> sessions = new LinkedHashMap<Properties, Session>( 16, 0.75f, true ) {
+    private static final long serialVersionUID = -8226016766335302497L;
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<Properties, Session> eldest ) {
+      if ( size() <= MAX_CACHED_SESSIONS ) {
+        return false;
+      }
+      // the queue would otherwise keep the SMTP connections of this session open
+      OutboundMailQueue.discardInstanceSession( eldest.getValue() );
+      return true;
+    }
+  };
+
   private Properties props = new Properties();
   private InputStream attachment = null;
   private String attachmentName = null;
@@ -201,6 +223,15 @@ public class Emailer {
     }
   }
 
+  /**
+   * Builds the message and sends it. When the outbound mail queue is enabled (<code>email-queue/enabled</code> in
+   * pentaho.xml) the message is only spooled here and delivered in the background, so <code>true</code> means the
+   * message was queued, not that the SMTP server accepted it. Deliveries that still fail after the last retry are
+   * logged and moved to the failed folder of the spool folder. With the queue disabled the message is sent before
+   * this method returns.
+   *
+   * @return <code>true</code> if the message was queued or, with the queue disabled, sent
+   */
   public boolean send() {
     String from = props.getProperty( "mail.from.default" );
     String fromName = props.getProperty( "mail.from.name" );
@@ -216,18 +247,7 @@ public class Emailer {
 
     try {
       // Get a Session object
-      Session session;
-
-      if ( authenticate ) {
-        session = Session.getInstance( props, authenticator );
-      } else {
-        session = Session.getInstance( props );
-      }
-
-      // if debugging is not set in the email config file, then default to false
-      if ( !props.containsKey( "mail.debug" ) ) { //$NON-NLS-1$
-        session.setDebug( false );
-      }
+      Session session = getSession( authenticate );
 
       // construct the message
       MimeMessage msg = new MimeMessage( session );
@@ -279,16 +299,65 @@ public class Emailer {
       msg.setHeader( "X-Mailer", Emailer.MAILER ); //$NON-NLS-1$
       msg.setSentDate( new Date() );
 
-      Transport.send( msg );
+      if ( OutboundMailQueue.isEnabled() ) {
+        // the message is spooled and delivered in the background; the caller doesn't wait on the SMTP server
+        OutboundMailQueue.getInstance().enqueue( session, msg );
+      } else {
+        Transport.send( msg );
+      }
 
       return true;
     } catch ( SendFailedException e ) {
-      logger.error( "Email.ERROR_0011_SEND_FAILED -" + to, e ); //$NON-NLS-1$
+      logger.error( Messages.getInstance().getErrorString( "Email.ERROR_0011_SEND_FAILED", to ), e ); //$NON-NLS-1$
     } catch ( AuthenticationFailedException e ) {
-      logger.error( "Email.ERROR_0014_AUTHENTICATION_FAILED - " + to, e ); //$NON-NLS-1$
+      logger.error(
+          Messages.getInstance().getErrorString( "Email.ERROR_0014_AUTHENTICATION_FAILED", to ), e ); //$NON-NLS-1$
     } catch ( Throwable e ) {
-      logger.error( "Email.ERROR_0011_SEND_FAILED - " + to, e ); //$NON-NLS-1$
+      logger.error( Messages.getInstance().getErrorString( "Email.ERROR_0011_SEND_FAILED", to ), e ); //$NON-NLS-1$
     }
     return false;
   }
+
+  /**
+   * Schedules delivery of mail left in the outbound queue's spool folder, e.g. by a server that stopped before it
+   * could deliver it. Must be called after {@link #setup()}.
+   *
+   * @return the number of messages resumed
+   */
+  public int recoverQueuedMail() {
+    if ( !OutboundMailQueue.isEnabled() ) {
+      return 0;
+    }
+    boolean authenticate = "true".equalsIgnoreCase( props.getProperty( "mail.smtp.auth" ) );
+    return OutboundMailQueue.getInstance().recover( getSession( authenticate ) );
+  }
+
+  /**
+   * Returns the mail session for the current mail settings, creating it the first time those settings are seen.
+   */
+  protected Session getSession( final boolean authenticate ) {
+    Properties mailProps = new Properties();
+    for ( String name : props.stringPropertyNames() ) {
+      if ( name.startsWith( "mail." ) ) { //$NON-NLS-1$
+        mailProps.setProperty( name, props.getProperty( name ) );
+      }
+    }
+    synchronized ( sessions ) {
+      Session session = sessions.get( mailProps );
+      if ( session == null ) {
+        if ( authenticate ) {
+          session = Session.getInstance( mailProps, authenticator );
+        } else {
+          session = Session.getInstance( mailProps );
+        }
+
+        // if debugging is not set in the email config file, then default to false
+        if ( !mailProps.containsKey( "mail.debug" ) ) { //$NON-NLS-1$
+          session.setDebug( false );
+        }
+        sessions.put( mailProps, session );
+      }
+      return session;
+    }
+  }
 }
@@ -0,0 +1,494 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.email;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.scheduler2.messsages.Messages;
+
+/**
+ * Delivers outgoing mail in the background so callers such as scheduled jobs don't wait on the SMTP server.
+ * <p>
+ * Every message is first written to a spool folder, so nothing is lost if the server stops before it is delivered;
+ * spooled messages are picked up again by {@link #recover(Session)}. A fixed number of worker threads deliver the
+ * messages over connections kept in a {@link SmtpTransportPool}, optionally limited to a number of messages per
+ * second. Failed deliveries are retried with an exponentially growing delay, and messages that can't be delivered
+ * are moved to the <code>failed</code> sub folder of the spool folder.
+ * <p>
+ * The shared instance is configured from the <code>email-queue</code> section of pentaho.xml.
+ */
+public class OutboundMailQueue {
+
+  private static final Log logger = LogFactory.getLog( OutboundMailQueue.class );
+
+  public static final int DEFAULT_CONCURRENCY = 2;
+
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  public static final long DEFAULT_RETRY_DELAY = 30000L;
+
+  private static final String SPOOL_EXTENSION = ".eml"; //$NON-NLS-1$
+
+  private static final String FAILED_FOLDER = "failed"; //$NON-NLS-1$
+
+  private static OutboundMailQueue instance;
+
+  private final File spoolFolder;
+
+  private final int maxAttempts;
+
+  private final long retryDelay;
+
+  /** Minimum time between two sends in nanoseconds; zero when not rate limited */
+  private final long sendInterval;
+
+  private long nextSendTime;
+
+  private final ThreadPoolExecutor workers;
+
+  private final ScheduledExecutorService retries;
+
+  private final Map<Session, SmtpTransportPool> pools = new IdentityHashMap<Session, SmtpTransportPool>();
+
+  /** Sessions no longer used for new messages; their remaining messages are sent without pooling connections */
+  private final Set<Session> discarded = Collections.newSetFromMap( new WeakHashMap<Session, Boolean>() );
+
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /** Names of the spool files currently queued, being sent or waiting for a retry */
+  private final Set<String> inFlight = Collections.synchronizedSet( new HashSet<String>() );
+
+  public static synchronized OutboundMailQueue getInstance() {
+    if ( instance == null ) {
+      instance =
+          new OutboundMailQueue( getDefaultSpoolFolder(),
+              PentahoSystem.getSystemSettingAsInt( "email-queue/concurrency", DEFAULT_CONCURRENCY ), //$NON-NLS-1$
+              PentahoSystem.getSystemSettingAsDouble( "email-queue/max-messages-per-second", 0 ), //$NON-NLS-1$
+              PentahoSystem.getSystemSettingAsInt( "email-queue/max-attempts", DEFAULT_MAX_ATTEMPTS ), //$NON-NLS-1$
+              PentahoSystem.getSystemSettingAsInt( "email-queue/retry-delay", (int) DEFAULT_RETRY_DELAY ) ); //$NON-NLS-1$
+    }
+    return instance;
+  }
+
+  /**
+   * Whether scheduled mail should go through the queue; set <code>email-queue/enabled</code> to false to send
+   * synchronously.
+   */
+  public static boolean isEnabled() {
+    return !"false".equalsIgnoreCase( PentahoSystem.getSystemSetting( "email-queue/enabled", "true" ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+  }
+
+  /**
+   * Closes the pooled connections of <code>session</code> if the shared queue has been started.
+   *
+   * @see #discardSession(Session)
+   */
+  static synchronized void discardInstanceSession( final Session session ) {
+    if ( instance != null ) {
+      instance.discardSession( session );
+    }
+  }
+
+  public static synchronized void shutdownInstance() {
+    if ( instance != null ) {
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  /**
+   * @param spoolFolder
+   *          where messages are kept until delivered
+   * @param concurrency
+   *          number of messages delivered in parallel
+   * @param maxMessagesPerSecond
+   *          upper bound on the send rate; zero or less for no limit
+   * @param maxAttempts
+   *          number of delivery attempts before a message is given up on
+   * @param retryDelay
+   *          delay in milliseconds before the first retry; doubled for each further retry
+   */
+  public OutboundMailQueue( final File spoolFolder, final int concurrency, final double maxMessagesPerSecond,
+      final int maxAttempts, final long retryDelay ) {
+    this.spoolFolder = spoolFolder;
+    this.maxAttempts = Math.max( maxAttempts, 1 );
+    this.retryDelay = Math.max( retryDelay, 0 );
+    this.sendInterval = maxMessagesPerSecond > 0 ? (long) ( TimeUnit.SECONDS.toNanos( 1 ) / maxMessagesPerSecond ) : 0;
+    int threads = Math.max( concurrency, 1 );
+    this.workers =
+        new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new MailThreadFactory( "pentaho-mail-sender" ) ); //$NON-NLS-1$
+    this.retries = Executors.newSingleThreadScheduledExecutor( new MailThreadFactory( "pentaho-mail-retry" ) ); //$NON-NLS-1$
+    if ( !spoolFolder.exists() && !spoolFolder.mkdirs() ) {
+      logger.error( "Unable to create mail spool folder " + spoolFolder.getAbsolutePath() ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Spools the message and schedules its delivery. Returns as soon as the message is safely on disk.
+   *
+   * @throws MessagingException
+   *           if the message can't be written to the spool folder
+   */
+  public void enqueue( final Session session, final MimeMessage message ) throws MessagingException {
+    String name = UUID.randomUUID().toString();
+    // written under a temporary name so recover() never picks up a partially written message
+    File tempFile = new File( spoolFolder, name + ".tmp" ); //$NON-NLS-1$
+    File spoolFile = new File( spoolFolder, name + SPOOL_EXTENSION );
+    try {
+      OutputStream out = new BufferedOutputStream( new FileOutputStream( tempFile ) );
+      try {
+        // writeTo saves pending changes (message id, content headers) before writing
+        message.writeTo( out );
+      } finally {
+        out.close();
+      }
+      if ( !tempFile.renameTo( spoolFile ) ) {
+        throw new IOException( "Unable to rename " + tempFile.getAbsolutePath() ); //$NON-NLS-1$
+      }
+    } catch ( IOException e ) {
+      tempFile.delete();
+      throw new MessagingException( "Unable to spool message to " + spoolFile.getAbsolutePath(), e ); //$NON-NLS-1$
+    }
+    submit( new Delivery( session, spoolFile ) );
+  }
+
+  /**
+   * Schedules delivery of every message left in the spool folder, e.g. by a previous run of the server.
+   *
+   * @return the number of messages found that were not already queued
+   */
+  public int recover( final Session session ) {
+    File[] spooled = spoolFolder.listFiles( new FilenameFilter() {
+      public boolean accept( final File dir, final String name ) {
+        return name.endsWith( SPOOL_EXTENSION );
+      }
+    } );
+    if ( spooled == null ) {
+      return 0;
+    }
+    // oldest first, so recovered mail goes out roughly in the order it was queued
+    Arrays.sort( spooled, new java.util.Comparator<File>() {
+      public int compare( final File f1, final File f2 ) {
+        long diff = f1.lastModified() - f2.lastModified();
+        return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+      }
+    } );
+    int recovered = 0;
+    for ( File file : spooled ) {
+      if ( submit( new Delivery( session, file ) ) ) {
+        recovered++;
+      }
+    }
+    if ( recovered > 0 ) {
+      logger.info( "Resuming delivery of " + recovered + " spooled email messages" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return recovered;
+  }
+
+  /**
+   * Number of messages queued or waiting for a retry.
+   */
+  public int getPendingCount() {
+    return pending.get();
+  }
+
+  public File getSpoolFolder() {
+    return spoolFolder;
+  }
+
+  /**
+   * Waits until no messages are pending or the timeout elapses.
+   *
+   * @return true if the queue drained
+   */
+  public boolean awaitIdle( final long timeout, final TimeUnit unit ) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos( timeout );
+    while ( pending.get() > 0 ) {
+      if ( System.nanoTime() > deadline ) {
+        return false;
+      }
+      Thread.sleep( 10 );
+    }
+    return true;
+  }
+
+  /**
+   * Stops the workers and closes pooled connections. Messages not yet delivered stay in the spool folder.
+   */
+  public void shutdown() {
+    retries.shutdownNow();
+    workers.shutdownNow();
+    synchronized ( pools ) {
+      for ( SmtpTransportPool pool : pools.values() ) {
+        pool.close();
+      }
+      pools.clear();
+    }
+  }
+
+  /**
+   * Closes the pooled connections of a mail session that will not be used for new messages. Messages of that session
+   * still in the queue are sent over connections that are closed after each message.
+   */
+  public void discardSession( final Session session ) {
+    SmtpTransportPool pool;
+    synchronized ( pools ) {
+      discarded.add( session );
+      pool = pools.remove( session );
+    }
+    if ( pool != null ) {
+      pool.close();
+    }
+  }
+
+  /**
+   * Returns the number of open connections kept for reuse, over all sessions.
+   */
+  int getIdleConnectionCount() {
+    int count = 0;
+    synchronized ( pools ) {
+      for ( SmtpTransportPool pool : pools.values() ) {
+        count += pool.getIdleCount();
+      }
+    }
+    return count;
+  }
+
+  private boolean submit( final Delivery delivery ) {
+    if ( !inFlight.add( delivery.spoolFile.getName() ) ) {
+      return false;
+    }
+    pending.incrementAndGet();
+    workers.execute( delivery );
+    return true;
+  }
+
+  private SmtpTransportPool getPool( final Session session ) {
+    synchronized ( pools ) {
+      SmtpTransportPool pool = pools.get( session );
+      if ( pool == null ) {
+        pool = new SmtpTransportPool( session, workers.getMaximumPoolSize(), 60000L );
+        if ( discarded.contains( session ) ) {
+          // a closed pool still connects, but closes each transport once it is handed back
+          pool.close();
+        } else {
+          pools.put( session, pool );
+        }
+      }
+      return pool;
+    }
+  }
+
+  /**
+   * Blocks until the rate limit allows another message to be sent.
+   */
+  private void acquireSendPermit() throws InterruptedException {
+    if ( sendInterval <= 0 ) {
+      return;
+    }
+    long wait;
+    synchronized ( this ) {
+      long now = System.nanoTime();
+      long sendTime = Math.max( now, nextSendTime );
+      nextSendTime = sendTime + sendInterval;
+      wait = sendTime - now;
+    }
+    if ( wait > 0 ) {
+      TimeUnit.NANOSECONDS.sleep( wait );
+    }
+  }
+
+  private class Delivery implements Runnable {
+
+    private final Session session;
+
+    private final File spoolFile;
+
+    private int attempts;
+
+    Delivery( final Session session, final File spoolFile ) {
+      this.session = session;
+      this.spoolFile = spoolFile;
+    }
+
+    public void run() {
+      boolean done = true;
+      try {
+        done = attempt();
+      } catch ( InterruptedException e ) {
+        // shutting down; the message stays spooled
+        Thread.currentThread().interrupt();
+      } catch ( Throwable t ) {
+        logger.error( Messages.getInstance().getErrorString( "OutboundMailQueue.ERROR_0001_SEND_FAILED", //$NON-NLS-1$
+            spoolFile.getName() ), t );
+        moveToFailed();
+      } finally {
+        if ( done ) {
+          inFlight.remove( spoolFile.getName() );
+          pending.decrementAndGet();
+        }
+      }
+    }
+
+    /**
+     * @return false if the message was rescheduled for another attempt
+     */
+    private boolean attempt() throws InterruptedException, IOException, MessagingException {
+      if ( !spoolFile.exists() ) {
+        return true;
+      }
+      MimeMessage message;
+      InputStream in = new BufferedInputStream( new FileInputStream( spoolFile ) );
+      try {
+        message = new MimeMessage( session, in );
+      } finally {
+        in.close();
+      }
+      attempts++;
+      acquireSendPermit();
+      SmtpTransportPool pool = getPool( session );
+      Transport transport = null;
+      boolean reusable = false;
+      try {
+        transport = pool.borrow();
+        transport.sendMessage( message, message.getAllRecipients() );
+        reusable = true;
+        spoolFile.delete();
+        return true;
+      } catch ( SendFailedException e ) {
+        // the server rejected some recipients but the connection itself is fine
+        reusable = true;
+        Address[] sent = e.getValidSentAddresses();
+        Address[] unsent = e.getValidUnsentAddresses();
+        if ( sent != null && sent.length > 0 ) {
+          // delivered to some recipients; retrying would send them duplicates
+          logger.warn( Messages.getInstance().getErrorString(
+              "OutboundMailQueue.ERROR_0002_RECIPIENTS_REJECTED", spoolFile.getName(), //$NON-NLS-1$
+              Arrays.toString( e.getInvalidAddresses() ) ), e );
+          spoolFile.delete();
+          return true;
+        }
+        if ( unsent == null || unsent.length == 0 ) {
+          logger.error( Messages.getInstance().getErrorString(
+              "OutboundMailQueue.ERROR_0002_RECIPIENTS_REJECTED", spoolFile.getName(), //$NON-NLS-1$
+              Arrays.toString( e.getInvalidAddresses() ) ), e );
+          moveToFailed();
+          return true;
+        }
+        return retryOrFail( e );
+      } catch ( MessagingException e ) {
+        return retryOrFail( e );
+      } finally {
+        if ( transport != null ) {
+          pool.release( transport, reusable );
+        }
+      }
+    }
+
+    private boolean retryOrFail( final MessagingException e ) {
+      if ( attempts >= maxAttempts || retries.isShutdown() ) {
+        logger.error( Messages.getInstance().getErrorString( "OutboundMailQueue.ERROR_0003_GIVING_UP", //$NON-NLS-1$
+            spoolFile.getName(), String.valueOf( attempts ) ), e );
+        moveToFailed();
+        return true;
+      }
+      long delay = retryDelay << Math.min( attempts - 1, 16 );
+      logger.warn( Messages.getInstance().getErrorString( "OutboundMailQueue.ERROR_0004_RETRYING", //$NON-NLS-1$
+          spoolFile.getName(), String.valueOf( delay ), e.getMessage() ) );
+      retries.schedule( new Runnable() {
+        public void run() {
+          workers.execute( Delivery.this );
+        }
+      }, delay, TimeUnit.MILLISECONDS );
+      return false;
+    }
+
+    private void moveToFailed() {
+      File failedFolder = new File( spoolFolder, FAILED_FOLDER );
+      if ( !failedFolder.exists() ) {
+        failedFolder.mkdirs();
+      }
+      if ( spoolFile.exists() && !spoolFile.renameTo( new File( failedFolder, spoolFile.getName() ) ) ) {
+        logger.error( "Unable to move " + spoolFile.getAbsolutePath() + " to " + failedFolder.getAbsolutePath() ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+  }
+
+  private static class MailThreadFactory implements ThreadFactory {
+    private final String prefix;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    MailThreadFactory( final String prefix ) {
+      this.prefix = prefix;
+    }
+
+    public Thread newThread( final Runnable r ) {
+      Thread thread = new Thread( r, prefix + "-" + count.incrementAndGet() ); //$NON-NLS-1$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+  private static File getDefaultSpoolFolder() {
+    String folder = PentahoSystem.getSystemSetting( "email-queue/spool-folder", null ); //$NON-NLS-1$
+    if ( folder != null && folder.trim().length() > 0 ) {
+      return new File( folder.trim() );
+    }
+    IApplicationContext appContext = PentahoSystem.getApplicationContext();
+    if ( appContext != null ) {
+      return new File( appContext.getSolutionPath( "system/tmp/mail-spool" ) ); //$NON-NLS-1$
+    }
+    return new File( System.getProperty( "java.io.tmpdir" ), "pentaho-mail-spool" ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+}
@@ -0,0 +1,157 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.email;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps connected {@link Transport}s for one mail {@link Session} so consecutive messages reuse the same SMTP
+ * connection instead of connecting, authenticating and quitting for each one.
+ * <p>
+ * Transports that have been idle for longer than <code>maxIdleTime</code> are closed when the pool is next used, and
+ * at most <code>maxIdle</code> idle transports are kept.
+ */
+public class SmtpTransportPool {
+
+  private static final Log logger = LogFactory.getLog( SmtpTransportPool.class );
+
+  private final Session session;
+
+  private final int maxIdle;
+
+  private final long maxIdleTime;
+
+  private final LinkedList<IdleTransport> idle = new LinkedList<IdleTransport>();
+
+  private boolean closed;
+
+  private static final class IdleTransport {
+    private final Transport transport;
+
+    private final long since;
+
+    private IdleTransport( final Transport transport, final long since ) {
+      this.transport = transport;
+      this.since = since;
+    }
+  }
+
+  public SmtpTransportPool( final Session session, final int maxIdle, final long maxIdleTime ) {
+    this.session = session;
+    this.maxIdle = maxIdle;
+    this.maxIdleTime = maxIdleTime;
+  }
+
+  public Session getSession() {
+    return session;
+  }
+
+  /**
+   * Returns a connected transport, reusing an idle one when possible. The caller must hand it back with
+   * {@link #release(Transport, boolean)}.
+   */
+  public Transport borrow() throws MessagingException {
+    evictExpired();
+    while ( true ) {
+      IdleTransport candidate;
+      synchronized ( idle ) {
+        candidate = idle.pollLast();
+      }
+      if ( candidate == null ) {
+        break;
+      }
+      if ( candidate.transport.isConnected() ) {
+        return candidate.transport;
+      }
+      closeQuietly( candidate.transport );
+    }
+    Transport transport = session.getTransport();
+    transport.connect();
+    return transport;
+  }
+
+  /**
+   * Hands a transport back. Transports that failed (<code>reusable</code> is false) are closed, since the SMTP
+   * conversation may be in an unknown state.
+   */
+  public void release( final Transport transport, final boolean reusable ) {
+    if ( reusable ) {
+      synchronized ( idle ) {
+        if ( !closed && idle.size() < maxIdle ) {
+          idle.addLast( new IdleTransport( transport, System.currentTimeMillis() ) );
+          return;
+        }
+      }
+    }
+    closeQuietly( transport );
+  }
+
+  public int getIdleCount() {
+    synchronized ( idle ) {
+      return idle.size();
+    }
+  }
+
+  /**
+   * Closes every idle transport; transports released afterwards are closed immediately.
+   */
+  public void close() {
+    LinkedList<IdleTransport> toClose;
+    synchronized ( idle ) {
+      closed = true;
+      toClose = new LinkedList<IdleTransport>( idle );
+      idle.clear();
+    }
+    for ( IdleTransport idleTransport : toClose ) {
+      closeQuietly( idleTransport.transport );
+    }
+  }
+
+  private void evictExpired() {
+    long oldest = System.currentTimeMillis() - maxIdleTime;
+    LinkedList<IdleTransport> expired = new LinkedList<IdleTransport>();
+    synchronized ( idle ) {
+      for ( Iterator<IdleTransport> iter = idle.iterator(); iter.hasNext(); ) {
+        IdleTransport idleTransport = iter.next();
+        if ( idleTransport.since < oldest ) {
+          iter.remove();
+          expired.add( idleTransport );
+        }
+      }
+    }
+    for ( IdleTransport idleTransport : expired ) {
+      closeQuietly( idleTransport.transport );
+    }
+  }
+
+  private static void closeQuietly( final Transport transport ) {
+    try {
+      transport.close();
+    } catch ( MessagingException e ) {
+      logger.debug( "Failed to close SMTP transport", e ); //$NON-NLS-1$
+    }
+  }
+}
@@ -33,6 +33,7 @@ import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.action.IAction;
 import org.pentaho.platform.api.action.IStreamingAction;
 import org.pentaho.platform.api.action.IVarArgsAction;
+import org.pentaho.platform.api.engine.IPersistenceScope;
 import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.engine.PluginBeanException;
 import org.pentaho.platform.api.repository2.unified.ISourcesStreamEvents;
@@ -136,9 +137,17 @@ public class ActionAdapterQuartzJob implements Job {
 
     final IAction actionBean = (IAction) bean;
 
+    // the job is one unit of work, committed only if it completes; whatever the action left bound to this pooled
+    // thread is cleaned up when it ends
+    IPersistenceScope scope = null;
+    if ( PentahoSystem.getObjectFactory().objectDefined( IPersistenceScope.class ) ) {
+      scope = PentahoSystem.get( IPersistenceScope.class );
+    }
+    boolean scoped = ( scope != null ) && scope.begin();
+    boolean completed = false;
     try {
       invokeAction( actionBean, actionUser, context, jobDataMap.getWrappedMap() );
-
+      completed = true;
     } catch ( Throwable t ) {
       // ensure that scheduler thread isn't blocked on lock
       synchronized ( lock ) {
@@ -150,6 +159,10 @@ public class ActionAdapterQuartzJob implements Job {
       throw new LoggingJobExecutionException( Messages.getInstance().getErrorString(
           "ActionAdapterQuartzJob.ERROR_0004_ACTION_FAILED", actionBean //$NON-NLS-1$
               .getClass().getName() ), t );
+    } finally {
+      if ( scoped ) {
+        scope.end( completed );
+      }
     }
   }
 
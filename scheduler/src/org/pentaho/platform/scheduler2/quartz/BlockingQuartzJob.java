@@ -20,6 +20,7 @@ package org.pentaho.platform.scheduler2.quartz;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.scheduler2.IBlockoutManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.scheduler2.blockout.BlockoutAction;
 import org.pentaho.platform.scheduler2.blockout.PentahoBlockoutManager;
 import org.quartz.Job;
@@ -51,7 +52,10 @@ public class BlockingQuartzJob implements Job {
   }
 
   IBlockoutManager getBlockoutManager() throws SchedulerException {
-    return new PentahoBlockoutManager();
+    // the configured manager is shared, so the blockout windows it has worked out are reused between executions
+    IBlockoutManager blockoutManager =
+        PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$
+    return blockoutManager != null ? blockoutManager : new PentahoBlockoutManager();
   }
 
   Job createUnderlyingJob() {
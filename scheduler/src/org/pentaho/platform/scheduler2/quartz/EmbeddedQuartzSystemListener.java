@@ -34,12 +34,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.data.DBDatasourceServiceException;
 import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.api.email.IEmailService;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPentahoSystemListener;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.connection.datasource.dbcp.JndiDatasourceService;
+import org.pentaho.platform.scheduler2.email.Emailer;
+import org.pentaho.platform.scheduler2.email.OutboundMailQueue;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.quartz.SchedulerException;
 
@@ -109,6 +112,7 @@ public class EmbeddedQuartzSystemListener implements IPentahoSystemListener {
           logger.debug( scheduler.getQuartzScheduler().getSchedulerName() );
         }
         scheduler.start();
+        resumeQueuedMail();
       }
     } catch ( IOException ex ) {
       result = false;
@@ -249,6 +253,27 @@ public class EmbeddedQuartzSystemListener implements IPentahoSystemListener {
     } catch ( SchedulerException e ) {
       e.printStackTrace();
     }
+    // undelivered mail stays in the spool folder and is resumed on the next startup
+    OutboundMailQueue.shutdownInstance();
+  }
+
+  /**
+   * Resumes delivery of scheduler emails that were queued but not sent before the server last stopped.
+   */
+  protected void resumeQueuedMail() {
+    try {
+      IEmailService emailService = PentahoSystem.get( IEmailService.class, "IEmailService", null ); //$NON-NLS-1$
+      if ( emailService == null || !emailService.isValid() ) {
+        // email is not configured, so nothing can have been queued
+        return;
+      }
+      Emailer emailer = new Emailer();
+      if ( emailer.setup() ) {
+        emailer.recoverQueuedMail();
+      }
+    } catch ( Exception e ) {
+      logger.warn( "Unable to resume queued email delivery", e ); //$NON-NLS-1$
+    }
   }
 
   public Properties getQuartzProperties() {
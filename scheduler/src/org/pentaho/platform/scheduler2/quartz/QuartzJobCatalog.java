@@ -0,0 +1,323 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.quartz;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.Trigger;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+
+/**
+ * An in-memory copy of the {@link Job}s known to a Quartz {@link Scheduler}, grouped by owner, so listing jobs does not
+ * have to read every job detail, trigger, calendar and trigger state from the job store on each request.
+ * <p>
+ * The catalog is loaded on first use and kept current by Quartz scheduler and trigger listeners: an event only marks
+ * the affected job stale, and stale jobs are read again on the next listing. Jobs that are due, running or finished are
+ * always read again, and the whole catalog is reloaded once it is older than <code>maxAge</code> milliseconds to pick
+ * up changes made by other nodes of a clustered job store.
+ */
+class QuartzJobCatalog {
+
+  private static final Log logger = LogFactory.getLog( QuartzJobCatalog.class );
+
+  private final QuartzScheduler owner;
+
+  private final long maxAge;
+
+  private final String listenerName;
+
+  /** group (the owning user) -> job name -> one job per trigger */
+  private Map<String, TreeMap<String, List<Job>>> jobsByGroup = new TreeMap<String, TreeMap<String, List<Job>>>();
+
+  /** job name -> group of the jobs to read again */
+  private Map<String, String> staleJobs = new HashMap<String, String>();
+
+  private boolean loaded;
+
+  private long loadedAt;
+
+  /** Incremented whenever the whole catalog is invalidated, so a load that overlaps an invalidation is not trusted */
+  private int generation;
+
+  private final Object loadLock = new Object();
+
+  private final CatalogSchedulerListener schedulerListener = new CatalogSchedulerListener();
+
+  private final CatalogTriggerListener triggerListener = new CatalogTriggerListener();
+
+  QuartzJobCatalog( final QuartzScheduler owner, final long maxAge ) {
+    this.owner = owner;
+    this.maxAge = maxAge;
+    this.listenerName = QuartzJobCatalog.class.getName() + "-" + System.identityHashCode( this ); //$NON-NLS-1$
+  }
+
+  /**
+   * Starts listening to changes made through the given Quartz scheduler.
+   */
+  void register( final Scheduler scheduler ) throws org.quartz.SchedulerException {
+    invalidateAll();
+    scheduler.addSchedulerListener( schedulerListener );
+    scheduler.addGlobalTriggerListener( triggerListener );
+  }
+
+  void unregister( final Scheduler scheduler ) {
+    try {
+      scheduler.removeSchedulerListener( schedulerListener );
+      scheduler.removeGlobalTriggerListener( triggerListener );
+    } catch ( org.quartz.SchedulerException e ) {
+      logger.debug( "Failed to remove job catalog listeners", e ); //$NON-NLS-1$
+    }
+    invalidateAll();
+  }
+
+  synchronized void invalidate( final String jobName, final String groupName ) {
+    if ( jobName == null || groupName == null ) {
+      invalidateAll();
+    } else {
+      staleJobs.put( jobName, groupName );
+    }
+  }
+
+  synchronized void invalidateAll() {
+    loaded = false;
+    generation++;
+    staleJobs.clear();
+  }
+
+  /**
+   * Returns the cataloged jobs of one owner, or of every owner if <code>groupName</code> is null, ordered by group and
+   * job name. The returned jobs are shared with the catalog and must not be modified.
+   */
+  List<Job> getJobs( final Scheduler scheduler, final String groupName ) throws SchedulerException,
+    org.quartz.SchedulerException {
+    refresh( scheduler );
+    List<Job> jobs = new ArrayList<Job>();
+    synchronized ( this ) {
+      if ( groupName != null ) {
+        addJobs( jobs, jobsByGroup.get( groupName ) );
+      } else {
+        for ( TreeMap<String, List<Job>> groupJobs : jobsByGroup.values() ) {
+          addJobs( jobs, groupJobs );
+        }
+      }
+    }
+    return jobs;
+  }
+
+  private static void addJobs( final List<Job> jobs, final TreeMap<String, List<Job>> groupJobs ) {
+    if ( groupJobs != null ) {
+      for ( List<Job> triggerJobs : groupJobs.values() ) {
+        jobs.addAll( triggerJobs );
+      }
+    }
+  }
+
+  private void refresh( final Scheduler scheduler ) throws SchedulerException, org.quartz.SchedulerException {
+    synchronized ( loadLock ) {
+      int loadGeneration;
+      synchronized ( this ) {
+        if ( loaded && System.currentTimeMillis() - loadedAt > maxAge ) {
+          loaded = false;
+        }
+        loadGeneration = generation;
+      }
+      boolean reloaded = false;
+      if ( !isLoaded() ) {
+        reloaded = true;
+        long start = System.currentTimeMillis();
+        Map<String, TreeMap<String, List<Job>>> allJobs = new TreeMap<String, TreeMap<String, List<Job>>>();
+        for ( String groupName : scheduler.getJobGroupNames() ) {
+          TreeMap<String, List<Job>> groupJobs = new TreeMap<String, List<Job>>();
+          for ( String jobName : scheduler.getJobNames( groupName ) ) {
+            List<Job> triggerJobs = owner.loadJobs( scheduler, jobName, groupName );
+            if ( !triggerJobs.isEmpty() ) {
+              groupJobs.put( jobName, triggerJobs );
+            }
+          }
+          allJobs.put( groupName, groupJobs );
+        }
+        synchronized ( this ) {
+          jobsByGroup = allJobs;
+          // an invalidation during the load may have been missed by it, so only trust the result if there was none
+          loaded = loadGeneration == generation;
+          loadedAt = start;
+        }
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Loaded job catalog in " + ( System.currentTimeMillis() - start ) + " ms" ); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+      }
+      // jobs read by a full load are current already
+      refreshStale( scheduler, !reloaded );
+    }
+  }
+
+  private synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  private void refreshStale( final Scheduler scheduler, final boolean includeVolatile ) throws SchedulerException,
+    org.quartz.SchedulerException {
+    Map<String, String> toLoad;
+    synchronized ( this ) {
+      toLoad = staleJobs;
+      staleJobs = new HashMap<String, String>();
+      if ( includeVolatile ) {
+        addVolatileJobs( toLoad );
+      }
+    }
+    for ( Map.Entry<String, String> entry : toLoad.entrySet() ) {
+      String jobName = entry.getKey();
+      String groupName = entry.getValue();
+      List<Job> triggerJobs = owner.loadJobs( scheduler, jobName, groupName );
+      synchronized ( this ) {
+        TreeMap<String, List<Job>> groupJobs = jobsByGroup.get( groupName );
+        if ( triggerJobs.isEmpty() ) {
+          if ( groupJobs != null ) {
+            groupJobs.remove( jobName );
+            if ( groupJobs.isEmpty() ) {
+              jobsByGroup.remove( groupName );
+            }
+          }
+        } else {
+          if ( groupJobs == null ) {
+            groupJobs = new TreeMap<String, List<Job>>();
+            jobsByGroup.put( groupName, groupJobs );
+          }
+          groupJobs.put( jobName, triggerJobs );
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the jobs whose cataloged state is likely outdated without an event having been seen: jobs that should have
+   * fired by now, are running or have no next run.
+   */
+  private void addVolatileJobs( final Map<String, String> toLoad ) {
+    Date now = new Date();
+    for ( Map.Entry<String, TreeMap<String, List<Job>>> group : jobsByGroup.entrySet() ) {
+      for ( Map.Entry<String, List<Job>> entry : group.getValue().entrySet() ) {
+        for ( Job job : entry.getValue() ) {
+          Date nextRun = job.getNextRun();
+          if ( nextRun == null || !nextRun.after( now ) || job.getState() == JobState.BLOCKED ) {
+            toLoad.put( entry.getKey(), group.getKey() );
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  synchronized int size() {
+    int size = 0;
+    for ( TreeMap<String, List<Job>> groupJobs : jobsByGroup.values() ) {
+      size += groupJobs.size();
+    }
+    return size;
+  }
+
+  /**
+   * Marks the job of a trigger stale. Pentaho names triggers after their job; for any other trigger the whole catalog
+   * is invalidated since the job it belonged to cannot be told.
+   */
+  private synchronized void invalidateTrigger( final String triggerName, final String triggerGroup ) {
+    TreeMap<String, List<Job>> groupJobs = triggerGroup == null ? null : jobsByGroup.get( triggerGroup );
+    if ( groupJobs != null && triggerName != null && groupJobs.containsKey( triggerName ) ) {
+      staleJobs.put( triggerName, triggerGroup );
+    } else {
+      invalidateAll();
+    }
+  }
+
+  private class CatalogSchedulerListener extends SchedulerListenerSupport {
+    @Override
+    public void jobScheduled( final Trigger trigger ) {
+      invalidate( trigger.getJobName(), trigger.getJobGroup() );
+    }
+
+    @Override
+    public void jobUnscheduled( final String triggerName, final String triggerGroup ) {
+      invalidateTrigger( triggerName, triggerGroup );
+    }
+
+    @Override
+    public void triggerFinalized( final Trigger trigger ) {
+      invalidate( trigger.getJobName(), trigger.getJobGroup() );
+    }
+
+    @Override
+    public void triggersPaused( final String triggerName, final String triggerGroup ) {
+      invalidateTrigger( triggerName, triggerGroup );
+    }
+
+    @Override
+    public void triggersResumed( final String triggerName, final String triggerGroup ) {
+      invalidateTrigger( triggerName, triggerGroup );
+    }
+
+    @Override
+    public void jobsPaused( final String jobName, final String jobGroup ) {
+      invalidate( jobName, jobGroup );
+    }
+
+    @Override
+    public void jobsResumed( final String jobName, final String jobGroup ) {
+      invalidate( jobName, jobGroup );
+    }
+
+    @Override
+    public void schedulerShutdown() {
+      invalidateAll();
+    }
+  }
+
+  private class CatalogTriggerListener extends TriggerListenerSupport {
+    public String getName() {
+      return listenerName;
+    }
+
+    @Override
+    public void triggerFired( final Trigger trigger, final JobExecutionContext context ) {
+      invalidate( trigger.getJobName(), trigger.getJobGroup() );
+    }
+
+    @Override
+    public void triggerMisfired( final Trigger trigger ) {
+      invalidate( trigger.getJobName(), trigger.getJobGroup() );
+    }
+
+    @Override
+    public void triggerComplete( final Trigger trigger, final JobExecutionContext context,
+        final int triggerInstructionCode ) {
+      invalidate( trigger.getJobName(), trigger.getJobGroup() );
+    }
+  }
+}
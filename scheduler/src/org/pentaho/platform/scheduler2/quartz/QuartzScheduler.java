@@ -17,6 +17,7 @@
 
 package org.pentaho.platform.scheduler2.quartz;
 
+import org.apache.commons.lang.SerializationUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -37,6 +38,7 @@ import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.api.scheduler2.recur.ITimeRecurrence;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.pentaho.platform.scheduler2.recur.IncrementalRecurrence;
@@ -62,6 +64,8 @@ import java.text.MessageFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -98,6 +102,11 @@ public class QuartzScheduler implements IScheduler {
 
   private ArrayList<ISchedulerListener> listeners = new ArrayList<ISchedulerListener>();
 
+  /** Default number of seconds after which the job catalog is reloaded in full */
+  public static final int DEFAULT_JOB_CATALOG_MAX_AGE = 300;
+
+  private QuartzJobCatalog jobCatalog;
+
   private static final Pattern listPattern = Pattern.compile( "\\d+" ); //$NON-NLS-1$
 
   private static final Pattern dayOfWeekRangePattern = Pattern.compile( ".*\\-.*" ); //$NON-NLS-1$
@@ -143,15 +152,33 @@ public class QuartzScheduler implements IScheduler {
        * isolated scheduler instances, we should investigate named schedulers, but this API getScheduler() will not help
        * us in that regard.
        */
-      quartzScheduler = quartzSchedulerFactory.getScheduler();
+      setQuartzScheduler( quartzSchedulerFactory.getScheduler() );
     }
 
     logger.debug( "Using quartz scheduler " + quartzScheduler ); //$NON-NLS-1$
     return quartzScheduler;
   }
   
-  private void setQuartzScheduler( Scheduler quartzScheduler ) {
+  /**
+   * Swaps the Quartz scheduler, moving the job catalog's listeners from the old scheduler to the new one.
+   */
+  private void setQuartzScheduler( Scheduler quartzScheduler ) throws org.quartz.SchedulerException {
+    if ( this.quartzScheduler != null && jobCatalog != null ) {
+      jobCatalog.unregister( this.quartzScheduler );
+    }
     this.quartzScheduler = quartzScheduler;
+    if ( quartzScheduler != null ) {
+      getJobCatalog().register( quartzScheduler );
+    }
+  }
+
+  private synchronized QuartzJobCatalog getJobCatalog() {
+    if ( jobCatalog == null ) {
+      int maxAge =
+          PentahoSystem.getSystemSettingAsInt( "scheduler/job-catalog-max-age", DEFAULT_JOB_CATALOG_MAX_AGE ); //$NON-NLS-1$
+      jobCatalog = new QuartzJobCatalog( this, maxAge * 1000L );
+    }
+    return jobCatalog;
   }
 
   /** {@inheritDoc} */
@@ -434,34 +461,39 @@ public class QuartzScheduler implements IScheduler {
   }
 
   /** {@inheritDoc} */
-  @SuppressWarnings( "unchecked" )
   public List<Job> getJobs( IJobFilter filter ) throws SchedulerException {
-    ArrayList<Job> jobs = new ArrayList<Job>();
+    return getJobs( null, filter, null, 0, -1 );
+  }
+
+  /**
+   * Lists jobs from the job catalog rather than reading each job from the Quartz job store.
+   * 
+   * @param userName
+   *          only list the jobs owned by this user, or the jobs of every user if null
+   * @param filter
+   *          an optional filter applied to the jobs of the user
+   * @param order
+   *          the order of the result, or null to order by user and job name
+   * @param offset
+   *          the number of matching jobs to skip
+   * @param limit
+   *          the maximum number of jobs returned, or a negative number for no limit
+   * @return the matching jobs
+   * @throws SchedulerException
+   */
+  public List<Job> getJobs( String userName, IJobFilter filter, Comparator<? super Job> order, int offset, int limit )
+    throws SchedulerException {
+    List<Job> jobs;
     try {
       Scheduler scheduler = getQuartzScheduler();
-      for ( String groupName : scheduler.getJobGroupNames() ) {
-        for ( String jobId : scheduler.getJobNames( groupName ) ) {
-          for ( Trigger trigger : scheduler.getTriggersOfJob( jobId, groupName ) ) {
-            Job job = new Job();
-            job.setGroupName( groupName );
-            JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
-            if ( jobDetail != null ) {
-              job.setUserName( jobDetail.getGroup() );
-              JobDataMap jobDataMap = jobDetail.getJobDataMap();
-              if ( jobDataMap != null ) {
-                Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
-                job.setJobParams( wrappedMap );
-              }
-            }
-
-            job.setJobId( jobId );
-            setJobTrigger( scheduler, job, trigger );
-            job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
-            job.setNextRun( trigger.getNextFireTime() );
-            job.setLastRun( trigger.getPreviousFireTime() );
-            if ( ( filter == null ) || filter.accept( job ) ) {
-              jobs.add( job );
-            }
+      List<Job> cataloged = getJobCatalog().getJobs( scheduler, userName );
+      if ( filter == null ) {
+        jobs = cataloged;
+      } else {
+        jobs = new ArrayList<Job>();
+        for ( Job job : cataloged ) {
+          if ( filter.accept( job ) ) {
+            jobs.add( job );
           }
         }
       }
@@ -469,9 +501,79 @@ public class QuartzScheduler implements IScheduler {
       throw new SchedulerException(
           Messages.getInstance().getString( "QuartzScheduler.ERROR_0004_FAILED_TO_LIST_JOBS" ), e ); //$NON-NLS-1$
     }
+    if ( order != null ) {
+      Collections.sort( jobs, order );
+    }
+    int from = Math.min( Math.max( offset, 0 ), jobs.size() );
+    int to = limit < 0 ? jobs.size() : (int) Math.min( (long) from + limit, jobs.size() );
+    // the catalog keeps the jobs it hands out, so callers get copies they are free to modify
+    ArrayList<Job> page = new ArrayList<Job>( to - from );
+    for ( Job job : jobs.subList( from, to ) ) {
+      page.add( copyJob( job ) );
+    }
+    return page;
+  }
+
+  /**
+   * Reads one Quartz job from the job store, returning a {@link Job} per trigger or an empty list if the job no longer
+   * exists.
+   */
+  @SuppressWarnings( "unchecked" )
+  List<Job> loadJobs( Scheduler scheduler, String jobId, String groupName ) throws SchedulerException,
+    org.quartz.SchedulerException {
+    Trigger[] triggers = scheduler.getTriggersOfJob( jobId, groupName );
+    if ( triggers.length == 0 ) {
+      return Collections.emptyList();
+    }
+    JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
+    List<Job> jobs = new ArrayList<Job>( triggers.length );
+    for ( Trigger trigger : triggers ) {
+      Job job = new Job();
+      job.setGroupName( groupName );
+      if ( jobDetail != null ) {
+        job.setUserName( jobDetail.getGroup() );
+        JobDataMap jobDataMap = jobDetail.getJobDataMap();
+        if ( jobDataMap != null ) {
+          Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
+          job.setJobParams( wrappedMap );
+        }
+      }
+
+      job.setJobId( jobId );
+      setJobTrigger( scheduler, job, trigger );
+      job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
+      job.setNextRun( trigger.getNextFireTime() );
+      job.setLastRun( trigger.getPreviousFireTime() );
+      jobs.add( job );
+    }
     return jobs;
   }
 
+  /**
+   * Copies a cataloged job, including its trigger and parameters, so changes made by the caller can't reach the
+   * catalog.
+   */
+  @SuppressWarnings( "unchecked" )
+  private static Job copyJob( Job job ) {
+    Job copy = new Job();
+    if ( job.getJobTrigger() != null ) {
+      copy.setJobTrigger( (JobTrigger) SerializationUtils.clone( job.getJobTrigger() ) );
+    }
+    if ( job.getJobParams() != null ) {
+      copy.setJobParams( (Map<String, Serializable>) SerializationUtils.clone( new HashMap<String, Serializable>( job
+          .getJobParams() ) ) );
+    }
+    copy.setLastRun( job.getLastRun() );
+    copy.setNextRun( job.getNextRun() );
+    copy.setSchedulableClass( job.getSchedulableClass() );
+    copy.setJobId( job.getJobId() );
+    copy.setUserName( job.getUserName() );
+    copy.setJobName( job.getJobName() );
+    copy.setGroupName( job.getGroupName() );
+    copy.setState( job.getState() );
+    return copy;
+  }
+
   private void setJobTrigger( Scheduler scheduler, Job job, Trigger trigger ) throws SchedulerException,
     org.quartz.SchedulerException {
     QuartzJobKey jobKey = QuartzJobKey.parse( job.getJobId() );
@@ -0,0 +1,186 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.IScheduler;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+
+public class BlockoutIntervalIndexTest {
+
+  private static final long DURATION = TIME.HOUR.time * 2;
+
+  private final IScheduler scheduler = new QuartzScheduler();
+
+  @Test
+  public void testIsBlockedMatchesBlockoutTriggers() {
+    long now = System.currentTimeMillis();
+    IJobTrigger weekly = createSimpleBlockOut( new Date( now - TIME.DAY.time ), TIME.WEEK.time, DURATION );
+    IJobTrigger daily = createSimpleBlockOut( new Date( now + TIME.HOUR.time * 5 ), TIME.DAY.time, TIME.HOUR.time );
+    List<IJobTrigger> blockOuts = Arrays.asList( weekly, daily );
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex( blockOuts, scheduler, now );
+
+    for ( long time = now; time < now + TIME.WEEK.time * 3; time += TIME.MINUTE.time * 17 ) {
+      assertEquals( new Date( time ).toString(), isBlockedPairwise( blockOuts, time ), index.isBlocked( time ) );
+    }
+  }
+
+  @Test
+  public void testOverlappingWindowsAreMerged() {
+    long now = System.currentTimeMillis();
+    IJobTrigger first = createSimpleBlockOut( new Date( now + TIME.HOUR.time ), TIME.DAY.time, DURATION );
+    IJobTrigger second = createSimpleBlockOut( new Date( now + TIME.HOUR.time * 2 ), TIME.DAY.time, DURATION );
+    BlockoutIntervalIndex both = new BlockoutIntervalIndex( Arrays.asList( first, second ), scheduler, now );
+    BlockoutIntervalIndex single = new BlockoutIntervalIndex( Arrays.asList( first ), scheduler, now );
+
+    assertEquals( single.size(), both.size() );
+    assertTrue( both.isBlocked( now + TIME.HOUR.time * 4 ) );
+    assertFalse( both.isBlocked( now + TIME.HOUR.time * 4 + 1 ) );
+  }
+
+  @Test
+  public void testComplexBlockoutInEffectWhenIndexIsBuilt() {
+    // Monday midnight for two hours, with the index built half an hour into the window
+    ComplexJobTrigger blockOut = new ComplexJobTrigger();
+    blockOut.setStartTime( new GregorianCalendar( 2013, Calendar.JANUARY, 1 ).getTime() );
+    blockOut.setCronString( "0 0 0 ? * 2 *" ); //$NON-NLS-1$
+    blockOut.setDuration( DURATION );
+    long now = new GregorianCalendar( 2013, Calendar.JANUARY, 7, 0, 30, 0 ).getTimeInMillis();
+
+    BlockoutIntervalIndex index =
+        new BlockoutIntervalIndex( Collections.<IJobTrigger> singletonList( blockOut ), scheduler, now );
+    assertTrue( index.isBlocked( now ) );
+    assertTrue( index.isBlocked( now + TIME.HOUR.time ) );
+    assertFalse( index.isBlocked( now + TIME.HOUR.time * 2 ) );
+    assertTrue( index.isBlocked( now + TIME.WEEK.time ) );
+  }
+
+  @Test
+  public void testSchedulesBlockedPartiallyAndCompletely() {
+    long now = System.currentTimeMillis();
+    Date blockOutStart = new Date( now + TIME.HOUR.time );
+    IJobTrigger blockOut = createSimpleBlockOut( blockOutStart, TIME.WEEK.time, DURATION );
+    BlockoutIntervalIndex index =
+        new BlockoutIntervalIndex( Collections.singletonList( blockOut ), scheduler, now );
+
+    Date inWindow = new Date( blockOutStart.getTime() + TIME.HOUR.time );
+    Date outOfWindow = new Date( blockOutStart.getTime() + TIME.HOUR.time * 3 );
+    IJobTrigger weeklyInWindow = new SimpleJobTrigger( inWindow, null, -1, TIME.WEEK.time / 1000 );
+    IJobTrigger dailyInWindow = new SimpleJobTrigger( inWindow, null, -1, TIME.DAY.time / 1000 );
+    IJobTrigger weeklyOutOfWindow = new SimpleJobTrigger( outOfWindow, null, -1, TIME.WEEK.time / 1000 );
+    IJobTrigger onceInWindow = new SimpleJobTrigger( inWindow, null, 0, 0 );
+
+    assertTrue( index.blocksAny( weeklyInWindow ) );
+    assertTrue( index.blocksAll( weeklyInWindow ) );
+    assertTrue( index.blocksAny( dailyInWindow ) );
+    assertFalse( index.blocksAll( dailyInWindow ) );
+    assertFalse( index.blocksAny( weeklyOutOfWindow ) );
+    assertFalse( index.blocksAll( weeklyOutOfWindow ) );
+    assertTrue( index.blocksAll( onceInWindow ) );
+
+    // a schedule that has run out before the next window is not blocked
+    IJobTrigger endsEarly = new SimpleJobTrigger( outOfWindow, null, 3, TIME.DAY.time / 1000 );
+    assertFalse( index.blocksAny( endsEarly ) );
+  }
+
+  @Test
+  public void testComplexBlockoutStartingInTheFuture() {
+    // Monday midnight for two hours, but only from an hour into the current Monday's window
+    long now = new GregorianCalendar( 2013, Calendar.JANUARY, 7, 0, 30, 0 ).getTimeInMillis();
+    ComplexJobTrigger blockOut = new ComplexJobTrigger();
+    blockOut.setStartTime( new Date( now + TIME.MINUTE.time * 30 ) );
+    blockOut.setCronString( "0 0 0 ? * 2 *" ); //$NON-NLS-1$
+    blockOut.setDuration( DURATION );
+    List<IJobTrigger> blockOuts = Collections.<IJobTrigger> singletonList( blockOut );
+
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex( blockOuts, scheduler, now );
+    assertFalse( index.isBlocked( now ) );
+    assertFalse( index.isBlocked( now + TIME.HOUR.time ) );
+    assertTrue( index.isBlocked( now + TIME.WEEK.time ) );
+    for ( long time = now; time < now + TIME.WEEK.time * 2; time += TIME.MINUTE.time * 17 ) {
+      assertEquals( new Date( time ).toString(), isBlockedPairwise( blockOuts, time ), index.isBlocked( time ) );
+    }
+  }
+
+  /**
+   * Checks every schedule against a couple of hundred blockouts, both pairwise through
+   * {@link BlockoutManagerUtil#isPartiallyBlocked(IJobTrigger, List, IScheduler)} and through the index. The index
+   * only looks at fire times from the time it was built, so all blockouts and schedules start after that; the pairwise
+   * check would also count windows in the past.
+   */
+  @Test
+  public void testManyBlockoutsAgainstPairwiseEvaluation() {
+    long now = System.currentTimeMillis();
+    List<IJobTrigger> blockOuts = new ArrayList<IJobTrigger>();
+    for ( int i = 0; i < 200; i++ ) {
+      long interval = i % 2 == 0 ? TIME.DAY.time : TIME.WEEK.time;
+      blockOuts.add( createSimpleBlockOut( new Date( now + TIME.MINUTE.time * 37 * i ), interval,
+          TIME.MINUTE.time * 5 ) );
+    }
+    List<IJobTrigger> schedules = new ArrayList<IJobTrigger>();
+    for ( int i = 0; i < 500; i++ ) {
+      schedules.add( new SimpleJobTrigger( new Date( now + TIME.MINUTE.time * 13 * i + 1000 ), null, -1,
+          ( i % 3 == 0 ? TIME.HOUR.time : TIME.DAY.time ) / 1000 ) );
+    }
+
+    BlockoutIntervalIndex index = new BlockoutIntervalIndex( blockOuts, scheduler, now );
+    int blocked = 0;
+    for ( IJobTrigger schedule : schedules ) {
+      boolean pairwise = BlockoutManagerUtil.isPartiallyBlocked( schedule, blockOuts, scheduler );
+      assertEquals( schedule.getStartTime().toString(), pairwise, index.blocksAny( schedule ) );
+      if ( pairwise ) {
+        blocked++;
+      }
+    }
+    assertEquals( isBlockedPairwise( blockOuts, now ), index.isBlocked( now ) );
+    // both outcomes must be covered for the comparison to mean anything
+    assertTrue( blocked > 0 );
+    assertTrue( blocked < schedules.size() );
+  }
+
+  private boolean isBlockedPairwise( List<IJobTrigger> blockOuts, long time ) {
+    for ( IJobTrigger blockOut : blockOuts ) {
+      if ( BlockoutManagerUtil.willBlockDate( blockOut, new Date( time ), scheduler ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static IJobTrigger createSimpleBlockOut( Date start, long interval, long duration ) {
+    IJobTrigger blockOut = new SimpleJobTrigger( start, null, -1, interval / 1000 );
+    blockOut.setDuration( duration );
+    return blockOut;
+  }
+}
@@ -0,0 +1,211 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.email;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dumbster.smtp.SimpleSmtpServer;
+
+public class OutboundMailQueueTest {
+
+  private int smtpPort;
+
+  private File spoolFolder;
+
+  private Session session;
+
+  private OutboundMailQueue queue;
+
+  private SimpleSmtpServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    // a free port picked by the system; dumbster does not report the port it was bound to
+    ServerSocket socket = new ServerSocket( 0 );
+    smtpPort = socket.getLocalPort();
+    socket.close();
+    spoolFolder = File.createTempFile( "mail-spool", "" );
+    spoolFolder.delete();
+    spoolFolder.mkdirs();
+    Properties props = new Properties();
+    props.setProperty( "mail.smtp.host", "localhost" );
+    props.setProperty( "mail.smtp.port", String.valueOf( smtpPort ) );
+    props.setProperty( "mail.transport.protocol", "smtp" );
+    session = Session.getInstance( props );
+  }
+
+  @After
+  public void tearDown() {
+    if ( queue != null ) {
+      queue.shutdown();
+    }
+    if ( server != null ) {
+      server.stop();
+    }
+    deleteRecursively( spoolFolder );
+  }
+
+  @Test
+  public void testMessagesAreDelivered() throws Exception {
+    server = SimpleSmtpServer.start( smtpPort );
+    queue = new OutboundMailQueue( spoolFolder, 2, 0, 3, 10 );
+    for ( int i = 0; i < 20; i++ ) {
+      queue.enqueue( session, createMessage( "message " + i ) );
+    }
+    Assert.assertTrue( queue.awaitIdle( 30, TimeUnit.SECONDS ) );
+    Assert.assertEquals( 20, server.getReceivedEmailSize() );
+    Assert.assertEquals( 0, countSpooled() );
+  }
+
+  @Test
+  public void testFailedDeliveryIsRetried() throws Exception {
+    // a server that hangs up on the first connection, so the first attempt fails
+    final ServerSocket failing = new ServerSocket( smtpPort );
+    final CountDownLatch refused = new CountDownLatch( 1 );
+    Thread refuser = new Thread() {
+      public void run() {
+        try {
+          Socket connection = failing.accept();
+          connection.close();
+          refused.countDown();
+        } catch ( Exception e ) {
+          // closed by the test
+        }
+      }
+    };
+    refuser.start();
+    queue = new OutboundMailQueue( spoolFolder, 1, 0, 20, 50 );
+    queue.enqueue( session, createMessage( "retried" ) );
+    Assert.assertTrue( refused.await( 30, TimeUnit.SECONDS ) );
+    failing.close();
+    refuser.join();
+    Assert.assertEquals( 1, queue.getPendingCount() );
+    Assert.assertEquals( 1, countSpooled() );
+
+    server = SimpleSmtpServer.start( smtpPort );
+    Assert.assertTrue( queue.awaitIdle( 60, TimeUnit.SECONDS ) );
+    Assert.assertEquals( 1, server.getReceivedEmailSize() );
+    Assert.assertEquals( 0, countSpooled() );
+  }
+
+  @Test
+  public void testGivesUpAfterMaxAttempts() throws Exception {
+    queue = new OutboundMailQueue( spoolFolder, 1, 0, 2, 10 );
+    queue.enqueue( session, createMessage( "undeliverable" ) );
+    Assert.assertTrue( queue.awaitIdle( 30, TimeUnit.SECONDS ) );
+    Assert.assertEquals( 0, countSpooled() );
+    Assert.assertEquals( 1, new File( spoolFolder, "failed" ).listFiles().length );
+  }
+
+  @Test
+  public void testSpooledMessagesAreRecovered() throws Exception {
+    // simulate a message left behind by a previous run
+    OutputStream out = new FileOutputStream( new File( spoolFolder, "leftover.eml" ) );
+    try {
+      createMessage( "leftover" ).writeTo( out );
+    } finally {
+      out.close();
+    }
+
+    server = SimpleSmtpServer.start( smtpPort );
+    queue = new OutboundMailQueue( spoolFolder, 1, 0, 3, 10 );
+    Assert.assertEquals( 1, queue.recover( session ) );
+    // recovering again while the message is still in flight must not send it twice
+    queue.recover( session );
+    Assert.assertTrue( queue.awaitIdle( 30, TimeUnit.SECONDS ) );
+    Assert.assertEquals( 1, server.getReceivedEmailSize() );
+  }
+
+  @Test
+  public void testDiscardedSessionKeepsNoConnections() throws Exception {
+    server = SimpleSmtpServer.start( smtpPort );
+    queue = new OutboundMailQueue( spoolFolder, 1, 0, 3, 10 );
+    queue.enqueue( session, createMessage( "pooled" ) );
+    Assert.assertTrue( queue.awaitIdle( 30, TimeUnit.SECONDS ) );
+    Assert.assertEquals( 1, queue.getIdleConnectionCount() );
+
+    queue.discardSession( session );
+    Assert.assertEquals( 0, queue.getIdleConnectionCount() );
+    // messages of a discarded session are still delivered, without keeping their connection
+    queue.enqueue( session, createMessage( "unpooled" ) );
+    Assert.assertTrue( queue.awaitIdle( 30, TimeUnit.SECONDS ) );
+    Assert.assertEquals( 0, queue.getIdleConnectionCount() );
+    Assert.assertEquals( 2, server.getReceivedEmailSize() );
+  }
+
+  @Test
+  public void testRateLimit() throws Exception {
+    server = SimpleSmtpServer.start( smtpPort );
+    queue = new OutboundMailQueue( spoolFolder, 4, 20, 3, 10 );
+    long start = System.currentTimeMillis();
+    for ( int i = 0; i < 10; i++ ) {
+      queue.enqueue( session, createMessage( "limited " + i ) );
+    }
+    Assert.assertTrue( queue.awaitIdle( 30, TimeUnit.SECONDS ) );
+    // 10 messages at 20 per second take at least 9 intervals of 50ms
+    Assert.assertTrue( System.currentTimeMillis() - start >= 400 );
+    Assert.assertEquals( 10, server.getReceivedEmailSize() );
+  }
+
+  private MimeMessage createMessage( String subject ) throws Exception {
+    MimeMessage msg = new MimeMessage( session );
+    msg.setFrom( new InternetAddress( "scheduler@localhost" ) );
+    msg.setRecipients( Message.RecipientType.TO, InternetAddress.parse( "user@localhost" ) );
+    msg.setSubject( subject );
+    msg.setText( "body of " + subject );
+    return msg;
+  }
+
+  private int countSpooled() {
+    int count = 0;
+    for ( File file : spoolFolder.listFiles() ) {
+      if ( file.getName().endsWith( ".eml" ) ) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void deleteRecursively( File file ) {
+    File[] children = file.listFiles();
+    if ( children != null ) {
+      for ( File child : children ) {
+        deleteRecursively( child );
+      }
+    }
+    file.delete();
+  }
+}
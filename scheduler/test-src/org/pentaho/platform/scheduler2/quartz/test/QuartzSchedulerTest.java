@@ -20,6 +20,7 @@ package org.pentaho.platform.scheduler2.quartz.test;
 import java.io.Serializable;
 import java.security.Principal;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
 import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
@@ -451,6 +453,60 @@ public class QuartzSchedulerTest {
     Assert.assertTrue( theJob.getJobName().contains( "getJobsTestJob" ) );
   }
 
+  @Test
+  public void testGetJobsFromCatalog() throws SchedulerException {
+    scheduler.pause();
+    ComplexJobTrigger trigger = new ComplexJobTrigger();
+    trigger.addYearlyRecurrence( 2050 );
+    for ( int i = 0; i < 5; i++ ) {
+      scheduler.createJob( "catalogJob" + i, TestAction.class, new HashMap<String, Serializable>(), trigger );
+    }
+    SecurityHelper.getInstance().becomeUser( "OtherUser" );
+    for ( int i = 0; i < 3; i++ ) {
+      scheduler.createJob( "otherJob" + i, TestAction.class, new HashMap<String, Serializable>(), trigger );
+    }
+    SecurityHelper.getInstance().becomeUser( TEST_USER );
+
+    Assert.assertEquals( 8, scheduler.getJobs( null ).size() );
+    List<Job> otherJobs = scheduler.getJobs( "OtherUser", null, null, 0, -1 );
+    Assert.assertEquals( 3, otherJobs.size() );
+    for ( Job job : otherJobs ) {
+      Assert.assertEquals( "OtherUser", job.getUserName() );
+    }
+
+    Comparator<Job> byName = new Comparator<Job>() {
+      public int compare( Job job1, Job job2 ) {
+        return job1.getJobName().compareTo( job2.getJobName() );
+      }
+    };
+    List<Job> page = scheduler.getJobs( TEST_USER, null, byName, 1, 2 );
+    Assert.assertEquals( 2, page.size() );
+    Assert.assertEquals( "catalogJob1", page.get( 0 ).getJobName() );
+    Assert.assertEquals( "catalogJob2", page.get( 1 ).getJobName() );
+    Assert.assertEquals( 1, scheduler.getJobs( TEST_USER, null, byName, 4, 10 ).size() );
+    Assert.assertEquals( 0, scheduler.getJobs( TEST_USER, null, byName, 10, 10 ).size() );
+
+    // changes made through another scheduler instance reach the catalog through the quartz listeners
+    QuartzScheduler otherScheduler = new QuartzScheduler();
+    Job paused = page.get( 0 );
+    otherScheduler.pauseJob( paused.getJobId() );
+    for ( Job job : scheduler.getJobs( TEST_USER, null, null, 0, -1 ) ) {
+      Assert.assertEquals( job.getJobId().equals( paused.getJobId() ) ? JobState.PAUSED : JobState.NORMAL, job
+          .getState() );
+    }
+    otherScheduler.removeJob( paused.getJobId() );
+    Assert.assertEquals( 4, scheduler.getJobs( TEST_USER, null, null, 0, -1 ).size() );
+
+    // jobs handed out are copies
+    page.get( 1 ).setJobName( "renamed" );
+    page.get( 1 ).getJobParams().put( "added", "value" );
+    page.get( 1 ).getJobTrigger().setUiPassParam( "changed" );
+    Job again = scheduler.getJobs( TEST_USER, null, byName, 1, 1 ).get( 0 );
+    Assert.assertEquals( "catalogJob2", again.getJobName() );
+    Assert.assertFalse( again.getJobParams().containsKey( "added" ) );
+    Assert.assertFalse( "changed".equals( again.getJobTrigger().getUiPassParam() ) );
+  }
+
   public static class TestAction2 implements IAction {
     public static int counter = 0;
 